@@ -18,6 +18,7 @@
  */
 package org.apache.bookkeeper.common.util;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
@@ -67,6 +68,38 @@ public class MemoryLimitController {
         }
     }
 
+    /**
+     * Reserve memory, waiting at most the given time for memory to be released if the limit is exceeded.
+     *
+     * @return true if the memory was reserved, false if the waiting time elapsed before.
+     */
+    public boolean reserveMemory(long size, long timeout, TimeUnit unit) throws InterruptedException {
+        if (tryReserveMemory(size)) {
+            return true;
+        }
+
+        long remainingNanos = unit.toNanos(timeout);
+        mutex.lock();
+        try {
+            while (!tryReserveMemory(size)) {
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                remainingNanos = condition.awaitNanos(remainingNanos);
+            }
+            return true;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    /**
+     * Account for memory which is already in use, regardless of the limit.
+     */
+    public void forceReserveMemory(long size) {
+        currentUsage.addAndGet(size);
+    }
+
     public void releaseMemory(long size) {
         long newUsage = currentUsage.addAndGet(-size);
         if (newUsage + size > memoryLimit && newUsage <= memoryLimit) {
@@ -83,4 +116,8 @@ public class MemoryLimitController {
     public long currentUsage() {
         return currentUsage.get();
     }
+
+    public long memoryLimit() {
+        return memoryLimit;
+    }
 }
\ No newline at end of file
@@ -566,6 +566,21 @@ public class OrderedExecutor implements ExecutorService {
         return threadIds[chooseThreadIdx(orderingKey, threads.length)];
     }
 
+    /**
+     * Check whether the calling thread is one of the threads of this executor.
+     *
+     * @return true if the calling thread belongs to this executor
+     */
+    public boolean isExecutorThread() {
+        long threadId = Thread.currentThread().getId();
+        for (long id : threadIds) {
+            if (id == threadId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public ExecutorService chooseThread() {
         // skip random # generation in this special case
         if (threads.length == 1) {
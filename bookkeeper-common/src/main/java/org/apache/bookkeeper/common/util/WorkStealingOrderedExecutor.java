@@ -0,0 +1,353 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.common.util;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.StatsLogger;
+
+/**
+ * An {@link OrderedExecutor} whose unordered tasks are executed by any idle thread.
+ *
+ * <p>The tasks submitted with an ordering key keep their strict ordering: they are queued to the
+ * thread of their key, as with {@link OrderedExecutor}. The tasks submitted without a key, through
+ * {@link #execute(Runnable)} and {@link #submit(Callable)}, are queued to a queue shared by all the
+ * threads, from which each thread takes tasks whenever its own queue is empty. An unordered task
+ * then never waits behind a slow task of one thread while another thread is idle.
+ */
+@Slf4j
+public class WorkStealingOrderedExecutor extends OrderedExecutor {
+
+    /**
+     * Create a builder to build a work stealing ordered executor.
+     *
+     * @return builder to build a work stealing ordered executor.
+     */
+    public static Builder newWorkStealingBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder to build a work stealing ordered executor.
+     */
+    public static class Builder extends AbstractBuilder<WorkStealingOrderedExecutor> {
+        @Override
+        public WorkStealingOrderedExecutor build() {
+            if (null == threadFactory) {
+                threadFactory = new DefaultThreadFactory(name);
+            }
+            return new WorkStealingOrderedExecutor(name, numThreads, threadFactory, statsLogger,
+                    traceTaskExecution, preserveMdcForTaskExecution, warnTimeMicroSec, maxTasksInQueue,
+                    enableThreadScopedMetrics);
+        }
+    }
+
+    // created by the first call of createSingleThreadExecutor(), which happens in the constructor of
+    // OrderedExecutor before the field initializers of this class run, so they must not have one
+    private UnorderedTasks unorderedTasks;
+    private List<StealingThreadExecutor> stealingThreads;
+
+    private WorkStealingOrderedExecutor(String baseName, int numThreads, ThreadFactory threadFactory,
+                                        StatsLogger statsLogger, boolean traceTaskExecution,
+                                        boolean preserveMdcForTaskExecution, long warnTimeMicroSec,
+                                        int maxTasksInQueue, boolean enableThreadScopedMetrics) {
+        super(baseName, numThreads, threadFactory, statsLogger, traceTaskExecution, preserveMdcForTaskExecution,
+                warnTimeMicroSec, maxTasksInQueue, false, enableThreadScopedMetrics);
+
+        // OrderedExecutor only registers the metrics of the threads it knows
+        for (StealingThreadExecutor thread : stealingThreads) {
+            thread.registerMetrics(statsLogger);
+        }
+        registerGauge(statsLogger, String.format("%s-unordered-queue", name), unorderedTasks::size);
+    }
+
+    @Override
+    protected ExecutorService createSingleThreadExecutor(ThreadFactory factory) {
+        if (unorderedTasks == null) {
+            unorderedTasks = new UnorderedTasks();
+            stealingThreads = new ArrayList<>();
+        }
+        StealingThreadExecutor thread = new StealingThreadExecutor(factory, maxTasksInQueue, unorderedTasks);
+        stealingThreads.add(thread);
+        return thread;
+    }
+
+    private static void registerGauge(StatsLogger statsLogger, String name, Supplier<Number> sample) {
+        statsLogger.registerGauge(name, new Gauge<Number>() {
+            @Override
+            public Number getDefaultValue() {
+                return 0;
+            }
+
+            @Override
+            public Number getSample() {
+                return sample.get();
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(Runnable command) {
+        if (isShutdown()) {
+            throw new RejectedExecutionException("Executor is shutting down");
+        }
+        if (maxTasksInQueue > 0 && unorderedTasks.size() >= maxTasksInQueue * threads.length) {
+            throw new RejectedExecutionException("Executor queue is full");
+        }
+        unorderedTasks.add(timedRunnable(command));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        FutureTask<T> future = new FutureTask<>(task);
+        execute(future);
+        return future;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> Future<T> submit(Runnable task, T result) {
+        FutureTask<T> future = new FutureTask<>(task, result);
+        execute(future);
+        return future;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Future<?> submit(Runnable task) {
+        return submit(task, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> runnables = super.shutdownNow();
+        Runnable r;
+        while ((r = unorderedTasks.poll()) != null) {
+            runnables.add(r);
+        }
+        return runnables;
+    }
+
+    /**
+     * The unordered tasks, and the threads waiting for tasks.
+     */
+    static final class UnorderedTasks {
+        final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        // the size of a ConcurrentLinkedQueue isn't constant time
+        final AtomicInteger numTasks = new AtomicInteger(0);
+        // may contain threads which are no longer idle, which are skipped
+        final Queue<StealingThreadExecutor> idleThreads = new ConcurrentLinkedQueue<>();
+
+        int size() {
+            return numTasks.get();
+        }
+
+        Runnable poll() {
+            Runnable task = tasks.poll();
+            if (task != null) {
+                numTasks.decrementAndGet();
+            }
+            return task;
+        }
+
+        void add(Runnable task) {
+            numTasks.incrementAndGet();
+            tasks.add(task);
+            wakeUpIdleThread();
+        }
+
+        void wakeUpIdleThread() {
+            StealingThreadExecutor idleThread;
+            while ((idleThread = idleThreads.poll()) != null) {
+                if (idleThread.idle.compareAndSet(true, false)) {
+                    LockSupport.unpark(idleThread.runner);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Single thread executor which runs the unordered tasks when it has no task of its own.
+     */
+    static final class StealingThreadExecutor extends AbstractExecutorService implements Runnable {
+        private final Queue<Runnable> queue;
+        private final UnorderedTasks unorderedTasks;
+        private final Thread runner;
+        final AtomicBoolean idle = new AtomicBoolean(false);
+
+        private final LongAdder tasksCompleted = new LongAdder();
+        private final LongAdder tasksRejected = new LongAdder();
+        private final LongAdder tasksFailed = new LongAdder();
+
+        private volatile boolean shutdown = false;
+        private volatile boolean terminated = false;
+
+        StealingThreadExecutor(ThreadFactory factory, int maxTasksInQueue, UnorderedTasks unorderedTasks) {
+            this.queue = maxTasksInQueue > 0 ? new ArrayBlockingQueue<>(maxTasksInQueue) : new LinkedBlockingQueue<>();
+            this.unorderedTasks = unorderedTasks;
+            this.runner = factory.newThread(this);
+            this.runner.start();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Runnable task = queue.poll();
+                    if (task == null) {
+                        task = unorderedTasks.poll();
+                    }
+                    if (task != null && unorderedTasks.size() > 0) {
+                        // pass the unordered tasks on, this thread may have been woken up for them but is
+                        // busy with a task again
+                        unorderedTasks.wakeUpIdleThread();
+                    }
+                    if (task != null) {
+                        safeRunTask(task);
+                    } else if (shutdown) {
+                        return;
+                    } else {
+                        waitForTasks();
+                    }
+                }
+            } finally {
+                terminated = true;
+            }
+        }
+
+        private void waitForTasks() {
+            idle.set(true);
+            unorderedTasks.idleThreads.add(this);
+            // check again after being registered as idle, not to miss a task added in between
+            if (queue.isEmpty() && unorderedTasks.tasks.isEmpty() && !shutdown) {
+                LockSupport.park(this);
+                // an interrupt left by a task would make the next parks return at once
+                Thread.interrupted();
+            }
+            if (idle.compareAndSet(true, false)) {
+                // not woken up by an unordered task, so still registered as idle
+                unorderedTasks.idleThreads.remove(this);
+            }
+        }
+
+        private void safeRunTask(Runnable task) {
+            try {
+                task.run();
+                tasksCompleted.increment();
+            } catch (Throwable t) {
+                tasksFailed.increment();
+                log.error("Error while running task: {}", t.getMessage(), t);
+            }
+        }
+
+        /**
+         * Register the gauges of a {@link SingleThreadExecutor}. The completed tasks include the
+         * unordered tasks run by this thread.
+         */
+        void registerMetrics(StatsLogger statsLogger) {
+            StatsLogger threadStatsLogger = statsLogger.scopeLabel("thread", runner.getName());
+            registerGauge(threadStatsLogger, "thread_executor_queue", queue::size);
+            registerGauge(threadStatsLogger, "thread_executor_completed", tasksCompleted::sum);
+            registerGauge(threadStatsLogger, "thread_executor_tasks_completed", tasksCompleted::sum);
+            registerGauge(threadStatsLogger, "thread_executor_tasks_rejected", tasksRejected::sum);
+            registerGauge(threadStatsLogger, "thread_executor_tasks_failed", tasksFailed::sum);
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            if (shutdown) {
+                throw new RejectedExecutionException("Executor is shutting down");
+            }
+            if (!queue.offer(task)) {
+                tasksRejected.increment();
+                throw new RejectedExecutionException("Executor queue is full");
+            }
+            if (idle.get()) {
+                LockSupport.unpark(runner);
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+            LockSupport.unpark(runner);
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            List<Runnable> remainingTasks = new ArrayList<>();
+            Runnable task;
+            while ((task = queue.poll()) != null) {
+                remainingTasks.add(task);
+            }
+            runner.interrupt();
+            return remainingTasks;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return terminated;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            runner.join(unit.toMillis(timeout));
+            return !runner.isAlive();
+        }
+    }
+}
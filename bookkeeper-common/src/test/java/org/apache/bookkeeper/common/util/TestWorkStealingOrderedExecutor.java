@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.common.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the class {@link WorkStealingOrderedExecutor}.
+ */
+public class TestWorkStealingOrderedExecutor {
+
+    private static WorkStealingOrderedExecutor executor(int numThreads, int maxTasksInQueue) {
+        return WorkStealingOrderedExecutor.newWorkStealingBuilder()
+                .name("test")
+                .numThreads(numThreads)
+                .maxTasksInQueue(maxTasksInQueue)
+                .build();
+    }
+
+    /**
+     * Keep the thread of a key busy until the release latch is counted down.
+     *
+     * @return the name of the blocked thread
+     */
+    private static String block(WorkStealingOrderedExecutor executor, long key, CountDownLatch release)
+            throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        String[] threadName = new String[1];
+        executor.executeOrdered(key, () -> {
+            threadName[0] = Thread.currentThread().getName();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        return threadName[0];
+    }
+
+    private static void shutdown(WorkStealingOrderedExecutor executor) throws Exception {
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testOrderedTasksKeepTheirOrder() throws Exception {
+        WorkStealingOrderedExecutor executor = executor(4, 0);
+        try {
+            int numTasks = 1000;
+            List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+            Set<String> threads = Collections.synchronizedSet(new HashSet<>());
+            CountDownLatch done = new CountDownLatch(numTasks);
+            for (int i = 0; i < numTasks; i++) {
+                int task = i;
+                executor.executeOrdered(1L, () -> {
+                    executed.add(task);
+                    threads.add(Thread.currentThread().getName());
+                    done.countDown();
+                });
+                // unordered tasks in between don't change the order of the ordered ones
+                executor.execute(() -> { });
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+
+            for (int i = 0; i < numTasks; i++) {
+                assertEquals(i, executed.get(i).intValue());
+            }
+            assertEquals(1, threads.size());
+        } finally {
+            shutdown(executor);
+        }
+    }
+
+    @Test
+    public void testUnorderedTasksStolenByIdleThread() throws Exception {
+        WorkStealingOrderedExecutor executor = executor(2, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            String blockedThread = block(executor, 0L, release);
+
+            int numTasks = 100;
+            Set<String> threads = Collections.synchronizedSet(new HashSet<>());
+            CountDownLatch done = new CountDownLatch(numTasks);
+            for (int i = 0; i < numTasks; i++) {
+                executor.submit(() -> {
+                    threads.add(Thread.currentThread().getName());
+                    done.countDown();
+                });
+            }
+
+            // all run by the other thread while the first one is busy
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(1, threads.size());
+            assertFalse(threads.contains(blockedThread));
+        } finally {
+            release.countDown();
+            shutdown(executor);
+        }
+    }
+
+    @Test
+    public void testBoundedQueues() throws Exception {
+        WorkStealingOrderedExecutor executor = executor(1, 2);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            block(executor, 0L, release);
+
+            executor.executeOrdered(0L, () -> { });
+            executor.executeOrdered(0L, () -> { });
+            assertThrows(RejectedExecutionException.class, () -> executor.executeOrdered(0L, () -> { }));
+
+            // the shared queue holds up to the queue size of each thread
+            executor.execute(() -> { });
+            executor.execute(() -> { });
+            assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> { }));
+        } finally {
+            release.countDown();
+            shutdown(executor);
+        }
+    }
+
+    @Test
+    public void testShutdownDrainsQueuedTasks() throws Exception {
+        WorkStealingOrderedExecutor executor = executor(2, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        block(executor, 0L, release);
+        block(executor, 1L, release);
+
+        AtomicInteger executed = new AtomicInteger();
+        for (int i = 0; i < 10; i++) {
+            executor.executeOrdered(i, executed::incrementAndGet);
+            executor.execute(executed::incrementAndGet);
+        }
+        executor.shutdown();
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(executed::incrementAndGet));
+        assertThrows(RejectedExecutionException.class, () -> executor.executeOrdered(0L, executed::incrementAndGet));
+
+        release.countDown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(20, executed.get());
+    }
+}
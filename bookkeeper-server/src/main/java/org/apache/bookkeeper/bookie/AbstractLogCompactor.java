@@ -45,8 +45,17 @@ public abstract class AbstractLogCompactor {
     protected final LogRemovalListener logRemovalListener;
 
     public AbstractLogCompactor(ServerConfiguration conf, LogRemovalListener logRemovalListener) {
+        this(conf, logRemovalListener, new Throttler(conf));
+    }
+
+    /**
+     * Create a compactor which acquires permits from the given throttler, so that several
+     * compactors running concurrently can share a single rate budget.
+     */
+    public AbstractLogCompactor(ServerConfiguration conf, LogRemovalListener logRemovalListener,
+                                Throttler throttler) {
         this.conf = conf;
-        this.throttler = new Throttler(conf);
+        this.throttler = throttler;
         this.logRemovalListener = logRemovalListener;
     }
 
@@ -104,6 +113,10 @@ public abstract class AbstractLogCompactor {
         public void cancelledAcquire() {
             cancelled.set(true);
         }
+
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
     }
 
 }
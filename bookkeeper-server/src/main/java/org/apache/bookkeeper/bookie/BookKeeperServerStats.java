@@ -55,6 +55,13 @@ public interface BookKeeperServerStats {
     String READ_ENTRY = "READ_ENTRY";
     String READ_ENTRY_REJECTED = "READ_ENTRY_REJECTED";
     String READ_ENTRY_SCHEDULING_DELAY = "READ_ENTRY_SCHEDULING_DELAY";
+    String READ_SCHEDULER_QUEUE_TIME = "READ_SCHEDULER_QUEUE_TIME";
+    String READ_SCHEDULER_CLASS_LABEL = "readClass";
+    String PRINCIPAL_REQUESTS = "PRINCIPAL_REQUESTS";
+    String PRINCIPAL_ADD_BYTES = "PRINCIPAL_ADD_BYTES";
+    String PRINCIPAL_READ_BYTES = "PRINCIPAL_READ_BYTES";
+    String PRINCIPAL_THROTTLED_REQUESTS = "PRINCIPAL_THROTTLED_REQUESTS";
+    String PRINCIPAL_LABEL = "principal";
     String READ_ENTRY_FENCE_REQUEST = "READ_ENTRY_FENCE_REQUEST";
     String READ_ENTRY_FENCE_WAIT = "READ_ENTRY_FENCE_WAIT";
     String READ_ENTRY_FENCE_READ = "READ_ENTRY_FENCE_READ";
@@ -70,6 +77,9 @@ public interface BookKeeperServerStats {
     String GET_BOOKIE_INFO = "GET_BOOKIE_INFO";
     String GET_LIST_OF_ENTRIES_OF_LEDGER = "GET_LIST_OF_ENTRIES_OF_LEDGER";
     String GET_LIST_OF_ENTRIES_OF_LEDGER_REQUEST = "GET_LIST_OF_ENTRIES_OF_LEDGER_REQUEST";
+    String COPY_LEDGER_FRAGMENT = "COPY_LEDGER_FRAGMENT";
+    String COPY_LEDGER_FRAGMENT_REQUEST = "COPY_LEDGER_FRAGMENT_REQUEST";
+    String COPY_LEDGER_FRAGMENT_BYTES = "COPY_LEDGER_FRAGMENT_BYTES";
 
     // Ensemble Stats
     String WATCHER_SCOPE = "bookie_watcher";
@@ -153,6 +163,12 @@ public interface BookKeeperServerStats {
     String MINOR_COMPACTION_COUNT = "MINOR_COMPACTION_TOTAL";
     String ACTIVE_LEDGER_COUNT = "ACTIVE_LEDGER_TOTAL";
     String DELETED_LEDGER_COUNT = "DELETED_LEDGER_TOTAL";
+    String COMPACTION_WORKER_LABEL = "compactionWorker";
+    String COMPACTION_WORKER_RUNTIME = "COMPACTION_WORKER_RUNTIME";
+    String COMPACTION_WORKER_RECLAIMED_SPACE_BYTES = "COMPACTION_WORKER_RECLAIMED_SPACE_BYTES";
+    String ACTIVE_COMPACTION_WORKER_COUNT = "ACTIVE_COMPACTION_WORKER_TOTAL";
+    String EXTRACT_ENTRY_LOG_METADATA_TIME = "EXTRACT_ENTRY_LOG_METADATA_TIME";
+    String GC_READY_TIME_MS = "GC_READY_TIME_MS";
 
     // Index Related Counters
     String INDEX_INMEM_ILLEGAL_STATE_RESET = "INDEX_INMEM_ILLEGAL_STATE_RESET";
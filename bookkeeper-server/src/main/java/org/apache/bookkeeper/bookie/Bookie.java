@@ -53,6 +53,7 @@ public interface Bookie {
     // these can probably be moved out and called directly on ledgerdirmanager
     long getTotalDiskSpace() throws IOException;
     long getTotalFreeSpace() throws IOException;
+    int getJournalQueueLength();
 
     // TODO: Shouldn't this be async?
     ByteBuf readEntry(long ledgerId, long entryId)
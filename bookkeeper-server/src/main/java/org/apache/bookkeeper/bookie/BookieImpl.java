@@ -316,6 +316,15 @@ public class BookieImpl extends BookieCriticalThread implements Bookie {
         return getLedgerDirsManager().getTotalFreeSpace(ledgerDirsManager.getAllLedgerDirs());
     }
 
+    @Override
+    public int getJournalQueueLength() {
+        int queueLength = 0;
+        for (Journal journal : journals) {
+            queueLength += journal.getJournalQueueLength();
+        }
+        return queueLength;
+    }
+
     public static File getCurrentDirectory(File dir) {
         return new File(dir, BookKeeperConstants.CURRENT_DIR);
     }
@@ -99,6 +99,27 @@ public class BufferedReadChannel extends BufferedChannelBase  {
         return (int) (currentPosition - pos);
     }
 
+    /**
+     * Read length bytes starting at position pos directly from the FileChannel into dest,
+     * bypassing the read buffer. Large reads through the read buffer would be split
+     * into reads of the read buffer capacity.
+     * @return The total number of bytes read, which is less than length if the end of
+     *         the file was reached.
+     * @throws IOException if I/O error occurs
+     */
+    public int readBypassingBuffer(ByteBuf dest, long pos, int length) throws IOException {
+        FileChannel fc = validateAndGetFileChannel();
+        int totalRead = 0;
+        while (totalRead < length) {
+            int read = dest.writeBytes(fc, pos + totalRead, length - totalRead);
+            if (read <= 0) {
+                break;
+            }
+            totalRead += read;
+        }
+        return totalRead;
+    }
+
     public synchronized void clear() {
         readBuffer.clear();
     }
@@ -0,0 +1,49 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * An entry log eligible for compaction, as ranked by the garbage collector.
+ *
+ * <p>The age, decay rate and score are only filled in when the candidates are ranked
+ * by the {@link CostBenefitCompactionSelector}.
+ */
+@Setter
+@Getter
+@Builder
+public class CompactionCandidate {
+    private long entryLogId;
+    private long totalSize;
+    private long remainingSize;
+    // usage used to decide whether the entry log is eligible for compaction
+    private double usage;
+
+    // number of entry logs created since this entry log, including itself
+    private long age;
+    // fraction of the remaining bytes deleted per gc cycle, smoothed over gc cycles
+    private double decayRate;
+    private double score;
+}
@@ -0,0 +1,121 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ranks compaction candidates by the space they reclaim per byte rewritten, in the spirit of
+ * the cost-benefit cleaning policy of log-structured file systems.
+ *
+ * <p>For each entry log:
+ * <ul>
+ *     <li>benefit = reclaimable bytes * age * (1 - decay rate)</li>
+ *     <li>cost = live bytes that compaction has to rewrite</li>
+ * </ul>
+ *
+ * <p>Entry log ids are allocated sequentially, so the age of an entry log is measured as the number of
+ * entry logs created since it, i.e. in units of data written by the bookie. The decay rate tracks how fast
+ * ledgers of the entry log are being deleted between gc cycles. Entry logs that are still shrinking
+ * quickly will soon be reclaimed by deletion alone, so compacting them is deferred in favour of
+ * stable entry logs.
+ */
+public class CostBenefitCompactionSelector {
+
+    // weight of the latest gc cycle in the smoothed decay rate
+    private static final double DECAY_RATE_ALPHA = 0.5;
+
+    private final Map<Long, LogDecay> logDecays = new ConcurrentHashMap<>();
+
+    private static class LogDecay {
+        long lastRemainingSize;
+        double decayRate;
+
+        LogDecay(long remainingSize) {
+            this.lastRemainingSize = remainingSize;
+            this.decayRate = 0.0;
+        }
+    }
+
+    /**
+     * Record the remaining size of an entry log observed in a gc cycle.
+     */
+    public void recordRemainingSize(long entryLogId, long remainingSize) {
+        logDecays.compute(entryLogId, (logId, decay) -> {
+            if (decay == null) {
+                return new LogDecay(remainingSize);
+            }
+            double cycleDecay = decay.lastRemainingSize > 0
+                    ? (double) Math.max(0L, decay.lastRemainingSize - remainingSize) / decay.lastRemainingSize
+                    : 0.0;
+            decay.decayRate = DECAY_RATE_ALPHA * cycleDecay + (1 - DECAY_RATE_ALPHA) * decay.decayRate;
+            decay.lastRemainingSize = remainingSize;
+            return decay;
+        });
+    }
+
+    /**
+     * Forget the tracked state of an entry log which has been removed.
+     */
+    public void remove(long entryLogId) {
+        logDecays.remove(entryLogId);
+    }
+
+    public double getDecayRate(long entryLogId) {
+        LogDecay decay = logDecays.get(entryLogId);
+        return decay == null ? 0.0 : decay.decayRate;
+    }
+
+    /**
+     * Score the given candidates and sort them, the most profitable entry log first.
+     *
+     * @param candidates entry logs eligible for compaction
+     * @param newestEntryLogId the id of the most recent entry log known to the garbage collector
+     */
+    public void rank(List<CompactionCandidate> candidates, long newestEntryLogId) {
+        score(candidates, newestEntryLogId);
+        candidates.sort(Comparator.comparingDouble(CompactionCandidate::getScore).reversed());
+    }
+
+    /**
+     * Fill in the age, decay rate and score of the given candidates, without reordering them.
+     *
+     * @param candidates entry logs eligible for compaction
+     * @param newestEntryLogId the id of the most recent entry log known to the garbage collector
+     */
+    public void score(List<CompactionCandidate> candidates, long newestEntryLogId) {
+        for (CompactionCandidate candidate : candidates) {
+            long age = Math.max(1L, newestEntryLogId - candidate.getEntryLogId() + 1);
+            double decayRate = getDecayRate(candidate.getEntryLogId());
+            long reclaimable = Math.max(0L, candidate.getTotalSize() - candidate.getRemainingSize());
+            double benefit = (double) reclaimable * age * (1 - decayRate);
+            double cost = Math.max(1L, candidate.getRemainingSize());
+
+            candidate.setAge(age);
+            candidate.setDecayRate(decayRate);
+            candidate.setScore(benefit / cost);
+        }
+    }
+}
@@ -45,8 +45,10 @@ import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousCloseException;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -213,11 +215,9 @@ public class DefaultEntryLogger implements EntryLogger {
     final RecentEntryLogsStatus recentlyCreatedEntryLogsStatus;
 
     /**
-     * locks for compaction log.
+     * The compaction logs being written, each compaction writes its own.
      */
-    private final Object compactionLogLock = new Object();
-
-    private volatile BufferedLogChannel compactionLogChannel;
+    private final Set<BufferedLogChannel> compactionLogChannels = ConcurrentHashMap.newKeySet();
 
     final EntryLoggerAllocator entryLoggerAllocator;
     private final EntryLogManager entryLogManager;
@@ -281,9 +281,17 @@ public class DefaultEntryLogger implements EntryLogger {
     static final long LEDGERS_MAP_ENTRY_ID = -2L;
 
     static final int MIN_SANE_ENTRY_SIZE = 8 + 8;
+
+    /**
+     * Maximum span of an entry log region which {@link #readEntries(long[])} fetches
+     * with a single read.
+     */
+    static final int READ_ENTRIES_MAX_REGION_BYTES = 4 * 1024 * 1024;
     static final long MB = 1024 * 1024;
 
     private final int maxSaneEntrySize;
+    // scanned bytes between the checkpoints of the scans of the entry logs without ledgers map, 0 to disable
+    private final long scanCheckpointIntervalBytes;
 
     private final ByteBufAllocator allocator;
 
@@ -318,6 +326,7 @@ public class DefaultEntryLogger implements EntryLogger {
         //We reserve 500 bytes as overhead for the protocol.  This is not 100% accurate
         // but the protocol varies so an exact value is difficult to determine
         this.maxSaneEntrySize = conf.getNettyMaxFrameSizeBytes() - 500;
+        this.scanCheckpointIntervalBytes = conf.getGcEntryLogMetadataScanCheckpointBytes();
         this.allocator = allocator;
         this.ledgerDirsManager = ledgerDirsManager;
         this.conf = conf;
@@ -478,18 +487,6 @@ public class DefaultEntryLogger implements EntryLogger {
         return entryLoggerAllocator.getPreallocatedLogId();
     }
 
-    /**
-     * Get the current log file for compaction.
-     */
-    private File getCurCompactionLogFile() {
-        synchronized (compactionLogLock) {
-            if (compactionLogChannel == null) {
-                return null;
-            }
-            return compactionLogChannel.getLogFile();
-        }
-    }
-
     void prepareSortedLedgerStorageCheckpoint(long numBytesFlushed) throws IOException {
         entryLogManager.prepareSortedLedgerStorageCheckpoint(numBytesFlushed);
     }
@@ -529,6 +526,7 @@ public class DefaultEntryLogger implements EntryLogger {
         if (!entryLogFile.delete()) {
             LOG.warn("Could not delete entry log file {}", entryLogFile);
         }
+        EntryLogScanCheckpoint.delete(entryLogFile.getParentFile(), entryLogId);
         return true;
     }
 
@@ -608,73 +606,6 @@ public class DefaultEntryLogger implements EntryLogger {
         }
     };
 
-    private long addEntryForCompaction(long ledgerId, ByteBuf entry) throws IOException {
-        synchronized (compactionLogLock) {
-            int entrySize = entry.readableBytes() + 4;
-            if (compactionLogChannel == null) {
-                createNewCompactionLog();
-            }
-
-            ByteBuf sizeBuffer = this.sizeBuffer.get();
-            sizeBuffer.clear();
-            sizeBuffer.writeInt(entry.readableBytes());
-            compactionLogChannel.write(sizeBuffer);
-
-            long pos = compactionLogChannel.position();
-            compactionLogChannel.write(entry);
-            compactionLogChannel.registerWrittenEntry(ledgerId, entrySize);
-            return (compactionLogChannel.getLogId() << 32L) | pos;
-        }
-    }
-
-    private void flushCompactionLog() throws IOException {
-        synchronized (compactionLogLock) {
-            if (compactionLogChannel != null) {
-                compactionLogChannel.appendLedgersMap();
-                compactionLogChannel.flushAndForceWrite(false);
-                LOG.info("Flushed compaction log file {} with logId {}.",
-                    compactionLogChannel.getLogFile(),
-                    compactionLogChannel.getLogId());
-                // since this channel is only used for writing, after flushing the channel,
-                // we had to close the underlying file channel. Otherwise, we might end up
-                // leaking fds which cause the disk spaces could not be reclaimed.
-                compactionLogChannel.close();
-            } else {
-                throw new IOException("Failed to flush compaction log which has already been removed.");
-            }
-        }
-    }
-
-    private void createNewCompactionLog() throws IOException {
-        synchronized (compactionLogLock) {
-            if (compactionLogChannel == null) {
-                compactionLogChannel = entryLogManager.createNewLogForCompaction();
-            }
-        }
-    }
-
-    /**
-     * Remove the current compaction log, usually invoked when compaction failed and
-     * we need to do some clean up to remove the compaction log file.
-     */
-    private void removeCurCompactionLog() {
-        synchronized (compactionLogLock) {
-            if (compactionLogChannel != null) {
-                if (!compactionLogChannel.getLogFile().delete()) {
-                    LOG.warn("Could not delete compaction log file {}", compactionLogChannel.getLogFile());
-                }
-
-                try {
-                    compactionLogChannel.close();
-                } catch (IOException e) {
-                    LOG.error("Failed to close file channel for compaction log {}", compactionLogChannel.getLogId(),
-                            e);
-                }
-                compactionLogChannel = null;
-            }
-        }
-    }
-
     static long logIdForOffset(long offset) {
         return offset >> 32L;
     }
@@ -816,7 +747,95 @@ public class DefaultEntryLogger implements EntryLogger {
 
     @Override
     public ByteBuf readEntry(long location) throws IOException, Bookie.NoEntryException {
-        return internalReadEntry(location, -1L, -1L, false /* validateEntry */);
+        return internalReadEntry(-1L, -1L, location, false /* validateEntry */);
+    }
+
+    /**
+     * Read a batch of entries. Locations are visited in file order, and runs of locations
+     * which fall close to each other in the same rotated entry log are fetched with a single
+     * positional read of the region spanning them, instead of two reads per entry through
+     * the read buffer.
+     */
+    @Override
+    public ByteBuf[] readEntries(long[] entryLocations) throws IOException, Bookie.NoEntryException {
+        ByteBuf[] entries = new ByteBuf[entryLocations.length];
+        Integer[] order = new Integer[entryLocations.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> entryLocations[i]));
+
+        try {
+            int start = 0;
+            while (start < order.length) {
+                long entryLogId = logIdForOffset(entryLocations[order[start]]);
+                long regionStart = posForOffset(entryLocations[order[start]]) - 4;
+                int end = start + 1;
+                while (end < order.length
+                        && logIdForOffset(entryLocations[order[end]]) == entryLogId
+                        && posForOffset(entryLocations[order[end]]) - regionStart <= READ_ENTRIES_MAX_REGION_BYTES) {
+                    end++;
+                }
+
+                // the current logs may still have data in their write buffers, read those entry by entry
+                if (end - start > 1 && entryLogManager.getCurrentLogIfPresent(entryLogId) == null) {
+                    readEntriesFromRegion(entryLocations, order, start, end, entries);
+                } else {
+                    for (int i = start; i < end; i++) {
+                        entries[order[i]] = internalReadEntry(-1L, -1L, entryLocations[order[i]], false);
+                    }
+                }
+                start = end;
+            }
+        } catch (IOException | RuntimeException e) {
+            for (ByteBuf entry : entries) {
+                ReferenceCountUtil.release(entry);
+            }
+            throw e;
+        }
+        return entries;
+    }
+
+    private void readEntriesFromRegion(long[] entryLocations, Integer[] order, int start, int end,
+                                       ByteBuf[] entries) throws IOException, Bookie.NoEntryException {
+        long entryLogId = logIdForOffset(entryLocations[order[start]]);
+        long regionStart = posForOffset(entryLocations[order[start]]) - 4;
+        long lastPos = posForOffset(entryLocations[order[end - 1]]);
+
+        BufferedReadChannel fc;
+        int lastEntrySize;
+        try {
+            fc = getFCForEntryInternal(-1L, -1L, entryLogId, regionStart + 4);
+            // the region ends with the body of the last entry, so its size is read first
+            lastEntrySize = readEntrySize(-1L, -1L, entryLogId, lastPos, fc).getInt(0);
+        } catch (EntryLookupException e) {
+            throw new IOException("Bad entry read from log file id: " + entryLogId, e);
+        }
+        if (lastEntrySize < MIN_SANE_ENTRY_SIZE || lastEntrySize > maxSaneEntrySize) {
+            // a corrupt size, leave the last entry out of the region, its own read reports it
+            lastEntrySize = 0;
+        }
+        int regionLength = (int) (lastPos + lastEntrySize - regionStart);
+
+        ByteBuf region = allocator.buffer(regionLength, regionLength);
+        try {
+            int readable = fc.readBypassingBuffer(region, regionStart, regionLength);
+            for (int i = start; i < end; i++) {
+                long location = entryLocations[order[i]];
+                int offset = (int) (posForOffset(location) - regionStart);
+                int entrySize = offset <= readable ? region.getInt(offset - 4) : -1;
+                if (entrySize >= MIN_SANE_ENTRY_SIZE && offset + entrySize <= readable) {
+                    // copy out, so that a retained entry doesn't pin the whole region
+                    ByteBuf data = allocator.buffer(entrySize, entrySize);
+                    data.writeBytes(region, offset, entrySize);
+                    entries[order[i]] = data;
+                } else {
+                    entries[order[i]] = internalReadEntry(-1L, -1L, location, false);
+                }
+            }
+        } finally {
+            ReferenceCountUtil.release(region);
+        }
     }
 
 
@@ -964,6 +983,12 @@ public class DefaultEntryLogger implements EntryLogger {
      */
     @Override
     public void scanEntryLog(long entryLogId, EntryLogScanner scanner) throws IOException {
+        // Start the read position in the current entry log file to be after
+        // the header where all of the ledger entries are.
+        scanEntryLog(entryLogId, LOGFILE_HEADER_SIZE, scanner);
+    }
+
+    private void scanEntryLog(long entryLogId, long startPos, EntryLogScanner scanner) throws IOException {
         // Buffer where to read the entrySize (4 bytes) and the ledgerId (8 bytes)
         ByteBuf headerBuffer = Unpooled.buffer(4 + 8);
         BufferedReadChannel bc;
@@ -974,9 +999,7 @@ public class DefaultEntryLogger implements EntryLogger {
             LOG.warn("Failed to get channel to scan entry log: " + entryLogId + ".log");
             throw e;
         }
-        // Start the read position in the current entry log file to be after
-        // the header where all of the ledger entries are.
-        long pos = LOGFILE_HEADER_SIZE;
+        long pos = startPos;
 
         // Start with a reasonably sized buffer size
         ByteBuf data = allocator.directBuffer(1024 * 1024);
@@ -1134,8 +1157,17 @@ public class DefaultEntryLogger implements EntryLogger {
         throws IOException {
         final EntryLogMetadata meta = new EntryLogMetadata(entryLogId);
 
+        final EntryLogScanCheckpoint checkpoint = scanCheckpointIntervalBytes > 0
+                ? new EntryLogScanCheckpoint(findFile(entryLogId).getParentFile(), entryLogId,
+                        scanCheckpointIntervalBytes)
+                : null;
+        long startPos = LOGFILE_HEADER_SIZE;
+        if (checkpoint != null) {
+            startPos = checkpoint.resume(meta, LOGFILE_HEADER_SIZE, getChannelForLogId(entryLogId).size());
+        }
+
         // Read through the entry log file and extract the entry log meta
-        scanEntryLog(entryLogId, new EntryLogScanner() {
+        scanEntryLog(entryLogId, startPos, new EntryLogScanner() {
             @Override
             public void process(long ledgerId, long offset, ByteBuf entry) throws IOException {
                 if (throttler != null) {
@@ -1143,6 +1175,9 @@ public class DefaultEntryLogger implements EntryLogger {
                 }
                 // add new entry size of a ledger to entry log meta
                 meta.addLedgerSize(ledgerId, entry.readableBytes() + 4);
+                if (checkpoint != null) {
+                    checkpoint.scanned(offset + 4 + entry.readableBytes(), meta);
+                }
             }
 
             @Override
@@ -1150,6 +1185,12 @@ public class DefaultEntryLogger implements EntryLogger {
                 return ledgerId >= 0;
             }
         });
+        if (checkpoint != null) {
+            checkpoint.complete();
+        } else {
+            // left by a run with checkpoints enabled
+            EntryLogScanCheckpoint.delete(findFile(entryLogId).getParentFile(), entryLogId);
+        }
 
         if (LOG.isDebugEnabled()) {
             LOG.debug("Retrieved entry log meta data entryLogId: {}, meta: {}", entryLogId, meta);
@@ -1172,12 +1213,10 @@ public class DefaultEntryLogger implements EntryLogger {
             // clear the mapping, so we don't need to go through the channels again in finally block in normal case.
             logid2FileChannel.clear();
             entryLogManager.close();
-            synchronized (compactionLogLock) {
-                if (compactionLogChannel != null) {
-                    compactionLogChannel.close();
-                    compactionLogChannel = null;
-                }
+            for (BufferedLogChannel compactionLogChannel : compactionLogChannels) {
+                compactionLogChannel.close();
             }
+            compactionLogChannels.clear();
         } catch (IOException ie) {
             // we have no idea how to avoid io exception during shutting down, so just ignore it
             LOG.error("Error flush entry log during shutting down, which may cause entry log corrupted.", ie);
@@ -1187,7 +1226,7 @@ public class DefaultEntryLogger implements EntryLogger {
             }
 
             entryLogManager.forceClose();
-            synchronized (compactionLogLock) {
+            for (BufferedLogChannel compactionLogChannel : compactionLogChannels) {
                 IOUtils.close(LOG, compactionLogChannel);
             }
         }
@@ -1263,30 +1302,35 @@ public class DefaultEntryLogger implements EntryLogger {
 
     @Override
     public CompactionEntryLog newCompactionLog(long logToCompact) throws IOException {
-        createNewCompactionLog();
+        BufferedLogChannel compactionLogChannel = entryLogManager.createNewLogForCompaction();
+        compactionLogChannels.add(compactionLogChannel);
 
-        File compactingLogFile = getCurCompactionLogFile();
-        long compactionLogId = fileName2LogId(compactingLogFile.getName());
+        File compactingLogFile = compactionLogChannel.getLogFile();
+        long compactionLogId = compactionLogChannel.getLogId();
         File compactedLogFile = compactedLogFileFromCompacting(compactingLogFile, logToCompact);
         File finalLogFile = new File(compactingLogFile.getParentFile(),
                                      compactingLogFile.getName().substring(0,
                                              compactingLogFile.getName().indexOf(".log") + 4));
-        return new EntryLoggerCompactionEntryLog(
+        return new EntryLoggerCompactionEntryLog(compactionLogChannel,
                 compactionLogId, logToCompact, compactingLogFile, compactedLogFile, finalLogFile);
 
     }
 
     private class EntryLoggerCompactionEntryLog implements CompactionEntryLog {
+        // null once removed, or for the compaction logs recovered after a restart
+        private BufferedLogChannel compactionLogChannel;
         private final long compactionLogId;
         private final long logIdToCompact;
         private final File compactingLogFile;
         private final File compactedLogFile;
         private final File finalLogFile;
 
-        EntryLoggerCompactionEntryLog(long compactionLogId, long logIdToCompact,
+        EntryLoggerCompactionEntryLog(BufferedLogChannel compactionLogChannel,
+                                      long compactionLogId, long logIdToCompact,
                                       File compactingLogFile,
                                       File compactedLogFile,
                                       File finalLogFile) {
+            this.compactionLogChannel = compactionLogChannel;
             this.compactionLogId = compactionLogId;
             this.logIdToCompact = logIdToCompact;
             this.compactingLogFile = compactingLogFile;
@@ -1295,20 +1339,65 @@ public class DefaultEntryLogger implements EntryLogger {
         }
 
         @Override
-        public long addEntry(long ledgerId, ByteBuf entry) throws IOException {
-            return addEntryForCompaction(ledgerId, entry);
+        public synchronized long addEntry(long ledgerId, ByteBuf entry) throws IOException {
+            if (compactionLogChannel == null) {
+                throw new IOException("Compaction log " + compactionLogId + " has already been removed.");
+            }
+            int entrySize = entry.readableBytes() + 4;
+            ByteBuf sizeBuffer = DefaultEntryLogger.this.sizeBuffer.get();
+            sizeBuffer.clear();
+            sizeBuffer.writeInt(entry.readableBytes());
+            compactionLogChannel.write(sizeBuffer);
+
+            long pos = compactionLogChannel.position();
+            compactionLogChannel.write(entry);
+            compactionLogChannel.registerWrittenEntry(ledgerId, entrySize);
+            return (compactionLogChannel.getLogId() << 32L) | pos;
         }
         @Override
         public void scan(EntryLogScanner scanner) throws IOException {
             scanEntryLog(compactionLogId, scanner);
         }
         @Override
-        public void flush() throws IOException {
-            flushCompactionLog();
+        public synchronized void flush() throws IOException {
+            if (compactionLogChannel == null) {
+                throw new IOException("Failed to flush compaction log which has already been removed.");
+            }
+            compactionLogChannel.appendLedgersMap();
+            compactionLogChannel.flushAndForceWrite(false);
+            LOG.info("Flushed compaction log file {} with logId {}.",
+                compactionLogChannel.getLogFile(),
+                compactionLogChannel.getLogId());
+            // since this channel is only used for writing, after flushing the channel,
+            // we had to close the underlying file channel. Otherwise, we might end up
+            // leaking fds which cause the disk spaces could not be reclaimed.
+            compactionLogChannel.close();
         }
+
+        /**
+         * Remove the compaction log, usually invoked when compaction failed and
+         * we need to do some clean up to remove the compaction log file.
+         */
+        private synchronized void removeCompactionLog() {
+            if (compactionLogChannel != null) {
+                if (!compactionLogChannel.getLogFile().delete()) {
+                    LOG.warn("Could not delete compaction log file {}", compactionLogChannel.getLogFile());
+                }
+
+                try {
+                    compactionLogChannel.close();
+                } catch (IOException e) {
+                    LOG.error("Failed to close file channel for compaction log {}", compactionLogChannel.getLogId(),
+                            e);
+                }
+                compactionLogChannels.remove(compactionLogChannel);
+                compactionLogChannel = null;
+            }
+        }
+
         @Override
         public void abort() {
-            removeCurCompactionLog();
+            removeCompactionLog();
             if (compactedLogFile.exists()) {
                 if (!compactedLogFile.delete()) {
                     LOG.warn("Could not delete file: {}", compactedLogFile);
@@ -1325,7 +1414,7 @@ public class DefaultEntryLogger implements EntryLogger {
             } else {
                 throw new IOException("Compaction log doesn't exist any more after flush: " + compactingLogFile);
             }
-            removeCurCompactionLog();
+            removeCompactionLog();
         }
 
         @Override
@@ -1417,7 +1506,7 @@ public class DefaultEntryLogger implements EntryLogger {
                     File finalLogFile = new File(compactedFile.getParentFile(), compactionLogId + ".log");
 
                     compactionLogs.add(
-                            new EntryLoggerCompactionEntryLog(compactionLogId, compactedLogId,
+                            new EntryLoggerCompactionEntryLog(null, compactionLogId, compactedLogId,
                                                               compactingLogFile, compactedFile, finalLogFile));
                 }
             }
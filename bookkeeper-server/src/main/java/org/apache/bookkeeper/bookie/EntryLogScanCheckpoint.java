@@ -0,0 +1,172 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Progress of the scan of an entry log whose ledgers map index is missing.
+ *
+ * <p>Every {@code intervalBytes} of scanned entries, the offset reached by the scan and the metadata
+ * extracted until then are written to a {@code <logId>.scan} file next to the entry log. A scan
+ * interrupted by a crash resumes from the last checkpoint rather than from the start of the entry log.
+ * The checkpoint is deleted once the scan completes, or with the entry log.
+ *
+ * <pre>
+ * Checkpoint file is composed of:
+ * Version: 2 bytes
+ * Offset to resume the scan at: 8 bytes
+ * Entry log metadata scanned before that offset, see {@link EntryLogMetadata#serialize}
+ * </pre>
+ */
+public class EntryLogScanCheckpoint {
+    private static final Logger LOG = LoggerFactory.getLogger(EntryLogScanCheckpoint.class);
+
+    static final String SCAN_CHECKPOINT_SUFFIX = ".scan";
+    private static final short CHECKPOINT_VERSION = 0;
+
+    private final File file;
+    private final long entryLogId;
+    private final long intervalBytes;
+    private long lastCheckpointOffset;
+
+    /**
+     * @param directory the directory of the entry log
+     * @param entryLogId the id of the entry log
+     * @param intervalBytes the scanned bytes between checkpoints
+     */
+    public EntryLogScanCheckpoint(File directory, long entryLogId, long intervalBytes) {
+        this.file = checkpointFile(directory, entryLogId);
+        this.entryLogId = entryLogId;
+        this.intervalBytes = intervalBytes;
+    }
+
+    static File checkpointFile(File directory, long entryLogId) {
+        return new File(directory, Long.toHexString(entryLogId) + SCAN_CHECKPOINT_SUFFIX);
+    }
+
+    private static File tmpFile(File file) {
+        return new File(file.getParentFile(), file.getName() + ".tmp");
+    }
+
+    /**
+     * Delete the scan checkpoint of an entry log, if any, along with a checkpoint left half written.
+     */
+    public static void delete(File directory, long entryLogId) {
+        delete(checkpointFile(directory, entryLogId));
+    }
+
+    private static void delete(File file) {
+        for (File f : new File[] { file, tmpFile(file) }) {
+            if (f.exists() && !f.delete()) {
+                LOG.warn("Could not delete entry log scan checkpoint {}", f);
+            }
+        }
+    }
+
+    /**
+     * Load the checkpoint of a previous scan of the entry log.
+     *
+     * @param meta the metadata to add the entries scanned before the checkpoint to
+     * @param startOffset the offset of the first entry of the entry log
+     * @param logSize the size of the entry log
+     * @return the offset to resume the scan at, {@code startOffset} if there is no valid checkpoint
+     */
+    public long resume(EntryLogMetadata meta, long startOffset, long logSize) {
+        lastCheckpointOffset = startOffset;
+        if (!file.exists()) {
+            return startOffset;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            short version = in.readShort();
+            if (version != CHECKPOINT_VERSION) {
+                throw new IOException("Unknown scan checkpoint version " + version);
+            }
+            long offset = in.readLong();
+            if (offset < startOffset || offset > logSize) {
+                throw new IOException("Scan checkpoint offset " + offset + " out of the entry log");
+            }
+            EntryLogMetadata.EntryLogMetadataRecyclable checkpointMeta = EntryLogMetadata.deserialize(in);
+            try {
+                if (checkpointMeta.getEntryLogId() != entryLogId) {
+                    throw new IOException("Scan checkpoint of entry log " + checkpointMeta.getEntryLogId());
+                }
+                checkpointMeta.getLedgersMap().forEach(meta::addLedgerSize);
+            } finally {
+                checkpointMeta.recycle();
+            }
+            LOG.info("Resuming the scan of entry log {} at offset {} of {}", entryLogId, offset, logSize);
+            lastCheckpointOffset = offset;
+            return offset;
+        } catch (IOException e) {
+            LOG.warn("Ignoring invalid scan checkpoint {}: {}", file, e.getMessage());
+            return startOffset;
+        }
+    }
+
+    /**
+     * Record that the scan reached the given offset, writing a checkpoint if enough bytes were
+     * scanned since the last one.
+     *
+     * @param offset the offset after the last scanned entry
+     * @param meta the metadata of the entries scanned before the offset
+     */
+    public void scanned(long offset, EntryLogMetadata meta) {
+        if (offset - lastCheckpointOffset < intervalBytes) {
+            return;
+        }
+        File tmpFile = tmpFile(file);
+        try {
+            try (FileOutputStream fos = new FileOutputStream(tmpFile);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+                out.writeShort(CHECKPOINT_VERSION);
+                out.writeLong(offset);
+                meta.serialize(out);
+                fos.getChannel().force(true);
+            }
+            Files.move(tmpFile.toPath(), file.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            lastCheckpointOffset = offset;
+        } catch (IOException | IllegalStateException e) {
+            // the scan goes on, it only resumes from an older checkpoint after a crash
+            LOG.warn("Failed to write scan checkpoint {}", file, e);
+        }
+    }
+
+    /**
+     * The scan is done, drop its checkpoint.
+     */
+    public void complete() {
+        delete(file);
+    }
+}
@@ -29,12 +29,19 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.atomic.AtomicLong;
 import lombok.Getter;
 import org.apache.bookkeeper.bookie.BookieException.EntryLogMetadataMapException;
@@ -124,6 +131,24 @@ public class GarbageCollectorThread implements Runnable {
     private static final AtomicLong threadNum = new AtomicLong(0);
     final AbstractLogCompactor.Throttler throttler;
 
+    // Rank compaction candidates by cost-benefit rather than by usage
+    final boolean useCostBenefitCompactionSelection;
+    final CostBenefitCompactionSelector costBenefitSelector = new CostBenefitCompactionSelector();
+
+    // Parallel compaction, only set up when more than one compaction worker is configured.
+    // All workers share a single throttler so the configured compaction rate is a global budget.
+    final int compactionWorkerThreads;
+    private final ExecutorService compactionExecutor;
+    private final BlockingQueue<CompactionWorker> idleCompactionWorkers;
+    private final AbstractLogCompactor.Throttler compactionWorkersThrottler;
+    private final AtomicInteger activeCompactionWorkers = new AtomicInteger(0);
+
+    // Concurrent entry log metadata extraction, only set up when more than one thread is configured
+    private final ExecutorService extractionExecutor;
+    // Used to report how long it took until the metadata of all entry logs was known after startup
+    private final long gcStartTimeNanos = MathUtils.nowInNano();
+    private volatile long gcReadyTimeMillis = 0L;
+
     /**
      * Create a garbage collector thread.
      *
@@ -167,11 +192,18 @@ public class GarbageCollectorThread implements Runnable {
         this.numActiveEntryLogs = 0;
         this.totalEntryLogSize = 0L;
         this.garbageCollector = new ScanAndCompareGarbageCollector(ledgerManager, ledgerStorage, conf, statsLogger);
+        this.compactionWorkerThreads = conf.getCompactionWorkerThreads();
+        if (compactionWorkerThreads < 1) {
+            throw new IOException("Invalid number of compaction worker threads : " + compactionWorkerThreads);
+        }
         this.gcStats = new GarbageCollectorStats(
             statsLogger,
             () -> numActiveEntryLogs,
             () -> totalEntryLogSize,
-            () -> garbageCollector.getNumActiveLedgers()
+            () -> garbageCollector.getNumActiveLedgers(),
+            compactionWorkerThreads > 1 ? compactionWorkerThreads : 0,
+            () -> activeCompactionWorkers.get(),
+            () -> gcReadyTimeMillis
         );
 
         this.garbageCleaner = ledgerId -> {
@@ -194,6 +226,7 @@ public class GarbageCollectorThread implements Runnable {
         isForceGCAllowWhenNoSpace = conf.getIsForceGCAllowWhenNoSpace();
         majorCompactionMaxTimeMillis = conf.getMajorCompactionMaxTimeMillis();
         minorCompactionMaxTimeMillis = conf.getMinorCompactionMaxTimeMillis();
+        useCostBenefitCompactionSelection = conf.isUseCostBenefitCompactionSelection();
 
         boolean isForceAllowCompaction = conf.isForceAllowCompaction();
 
@@ -210,10 +243,31 @@ public class GarbageCollectorThread implements Runnable {
                 }
             }
         };
-        if (conf.getUseTransactionalCompaction()) {
-            this.compactor = new TransactionalEntryLogCompactor(conf, entryLogger, ledgerStorage, remover);
+        this.compactor = createCompactor(remover, new AbstractLogCompactor.Throttler(conf));
+
+        if (compactionWorkerThreads > 1) {
+            // each worker owns its compactor, since compactors buffer the relocated entries
+            // of the log being compacted
+            this.compactionWorkersThrottler = new AbstractLogCompactor.Throttler(conf);
+            this.idleCompactionWorkers = new ArrayBlockingQueue<>(compactionWorkerThreads);
+            for (int i = 0; i < compactionWorkerThreads; i++) {
+                idleCompactionWorkers.add(
+                        new CompactionWorker(i, createCompactor(remover, compactionWorkersThrottler)));
+            }
+            this.compactionExecutor = Executors.newFixedThreadPool(compactionWorkerThreads,
+                    new DefaultThreadFactory("GarbageCollectorThread-compaction"));
+        } else {
+            this.compactionWorkersThrottler = null;
+            this.idleCompactionWorkers = null;
+            this.compactionExecutor = null;
+        }
+
+        int extractionThreads = conf.getGcEntryLogMetadataExtractionThreads();
+        if (extractionThreads > 1) {
+            this.extractionExecutor = Executors.newFixedThreadPool(extractionThreads,
+                    new DefaultThreadFactory("GarbageCollectorThread-extract-meta"));
         } else {
-            this.compactor = new EntryLogCompactor(conf, entryLogger, ledgerStorage, remover);
+            this.extractionExecutor = null;
         }
 
         this.throttler = new AbstractLogCompactor.Throttler(conf);
@@ -264,10 +318,21 @@ public class GarbageCollectorThread implements Runnable {
                + minorCompactionThreshold + ", interval=" + minorCompactionInterval);
         LOG.info("Major Compaction : enabled=" + enableMajorCompaction + ", threshold="
                + majorCompactionThreshold + ", interval=" + majorCompactionInterval);
+        LOG.info("Compaction workers : {}, cost-benefit selection : {}", compactionWorkerThreads,
+                useCostBenefitCompactionSelection);
 
         lastMinorCompactionTime = lastMajorCompactionTime = System.currentTimeMillis();
     }
 
+    private AbstractLogCompactor createCompactor(AbstractLogCompactor.LogRemovalListener remover,
+                                                 AbstractLogCompactor.Throttler compactionThrottler) {
+        if (conf.getUseTransactionalCompaction()) {
+            return new TransactionalEntryLogCompactor(conf, entryLogger, ledgerStorage, remover, compactionThrottler);
+        } else {
+            return new EntryLogCompactor(conf, entryLogger, ledgerStorage, remover, compactionThrottler);
+        }
+    }
+
     private EntryLogMetadataMap createEntryLogMetadataMap() throws IOException {
         if (conf.isGcEntryLogMetadataCacheEnabled()) {
             String baseDir = Strings.isNullOrEmpty(conf.getGcEntryLogMetadataCachePath())
@@ -499,9 +564,12 @@ public class GarbageCollectorThread implements Runnable {
                     LOG.info("Deleting entryLogId {} as it has no active ledgers!", entryLogId);
                     removeEntryLog(entryLogId);
                     gcStats.getReclaimedSpaceViaDeletes().addCount(meta.getTotalSize());
-                } else if (modified) {
-                    // update entryLogMetaMap only when the meta modified.
-                    entryLogMetaMap.put(meta.getEntryLogId(), meta);
+                } else {
+                    if (modified) {
+                        // update entryLogMetaMap only when the meta modified.
+                        entryLogMetaMap.put(meta.getEntryLogId(), meta);
+                    }
+                    costBenefitSelector.recordRemainingSize(entryLogId, meta.getRemainingSize());
                 }
             } catch (EntryLogMetadataMapException e) {
                 // Ignore and continue because ledger will not be cleaned up
@@ -539,7 +607,8 @@ public class GarbageCollectorThread implements Runnable {
      * Compact entry logs if necessary.
      *
      * <p>
-     * Compaction will be executed from low unused space to high unused space.
+     * Compaction will be executed from low unused space to high unused space, or, when cost-benefit
+     * selection is enabled, from the entry logs reclaiming the most space per byte rewritten.
      * Those entry log files whose remaining size percentage is higher than threshold
      * would not be compacted.
      * </p>
@@ -552,13 +621,79 @@ public class GarbageCollectorThread implements Runnable {
         int[] entryLogUsageBuckets = new int[numBuckets];
         int[] compactedBuckets = new int[numBuckets];
 
-        ArrayList<LinkedList<Long>> compactableBuckets = new ArrayList<>(numBuckets);
-        for (int i = 0; i < numBuckets; i++) {
-            compactableBuckets.add(new LinkedList<>());
+        long start = System.currentTimeMillis();
+        List<CompactionCandidate> candidates = selectCompactionCandidates(threshold, start, maxTimeMillis,
+                entryLogUsageBuckets);
+
+        LOG.info(
+                "Compaction: entry log usage buckets before compaction [10% 20% 30% 40% 50% 60% 70% 80% 90% 100%] = {}",
+                entryLogUsageBuckets);
+
+        if (compactionExecutor != null) {
+            compactEntryLogsConcurrently(candidates, compactedBuckets, threshold, start, maxTimeMillis);
+            LOG.info(
+                "Compaction: entry log usage buckets[10% 20% 30% 40% 50% 60% 70% 80% 90% 100%] = {}, compacted {}",
+                entryLogUsageBuckets, compactedBuckets);
+            return;
         }
 
-        long start = System.currentTimeMillis();
-        MutableLong end = new MutableLong(start);
+        long timeDiff = 0;
+        for (CompactionCandidate candidate : candidates) {
+            timeDiff = System.currentTimeMillis() - start;
+            if ((maxTimeMillis > 0 && timeDiff >= maxTimeMillis) || !running) {
+                break;
+            }
+
+            final int bucketIndex = calculateUsageIndex(compactedBuckets.length, candidate.getUsage());
+            final long logId = candidate.getEntryLogId();
+
+            entryLogMetaMap.forKey(logId, (entryLogId, meta) -> {
+                if (meta == null) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Metadata for entry log {} already deleted", logId);
+                    }
+                    return;
+                }
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Compacting entry log {} with usage {} below threshold {}",
+                            meta.getEntryLogId(), meta.getUsage(), threshold);
+                }
+
+                long priorRemainingSize = meta.getRemainingSize();
+                compactEntryLog(meta);
+                gcStats.getReclaimedSpaceViaCompaction().addCount(meta.getTotalSize() - priorRemainingSize);
+                compactedBuckets[bucketIndex]++;
+            });
+        }
+
+        if (LOG.isDebugEnabled()) {
+            if (!running) {
+                LOG.debug("Compaction exited due to gc not running");
+            }
+            if (maxTimeMillis > 0 && timeDiff > maxTimeMillis) {
+                LOG.debug("Compaction ran for {}ms but was limited by {}ms", timeDiff, maxTimeMillis);
+            }
+        }
+        LOG.info(
+                "Compaction: entry log usage buckets[10% 20% 30% 40% 50% 60% 70% 80% 90% 100%] = {}, compacted {}",
+                entryLogUsageBuckets, compactedBuckets);
+    }
+
+    /**
+     * Select the entry logs to compact, in the order they should be compacted.
+     *
+     * @param threshold entry logs whose usage is at or above the threshold are not selected
+     * @param start the time the compaction started
+     * @param maxTimeMillis stop selecting entry logs once compaction has run for this long, if positive
+     * @param entryLogUsageBuckets filled with the number of entry logs per usage bucket
+     * @return the entry logs to compact
+     */
+    private List<CompactionCandidate> selectCompactionCandidates(double threshold, long start, long maxTimeMillis,
+                                                                 int[] entryLogUsageBuckets)
+            throws EntryLogMetadataMapException {
+        final int numBuckets = entryLogUsageBuckets.length;
+        List<CompactionCandidate> candidates = new ArrayList<>();
+        MutableLong newestEntryLogId = new MutableLong(-1L);
         MutableLong timeDiff = new MutableLong(0);
 
         entryLogMetaMap.forEach((entryLogId, meta) -> {
@@ -568,10 +703,10 @@ public class GarbageCollectorThread implements Runnable {
             }
             int bucketIndex = calculateUsageIndex(numBuckets, usage);
             entryLogUsageBuckets[bucketIndex]++;
+            newestEntryLogId.setValue(Math.max(newestEntryLogId.getValue(), entryLogId));
 
             if (timeDiff.getValue() < maxTimeMillis) {
-                end.setValue(System.currentTimeMillis());
-                timeDiff.setValue(end.getValue() - start);
+                timeDiff.setValue(System.currentTimeMillis() - start);
             }
             if ((usage >= threshold
                 || (maxTimeMillis > 0 && timeDiff.getValue() >= maxTimeMillis)
@@ -581,63 +716,147 @@ public class GarbageCollectorThread implements Runnable {
                 return;
             }
 
-            compactableBuckets.get(bucketIndex).add(meta.getEntryLogId());
+            candidates.add(CompactionCandidate.builder()
+                    .entryLogId(meta.getEntryLogId())
+                    .totalSize(meta.getTotalSize())
+                    .remainingSize(meta.getRemainingSize())
+                    .usage(usage)
+                    .build());
         });
 
-        LOG.info(
-                "Compaction: entry log usage buckets before compaction [10% 20% 30% 40% 50% 60% 70% 80% 90% 100%] = {}",
-                entryLogUsageBuckets);
-
-        final int maxBucket = calculateUsageIndex(numBuckets, threshold);
-        stopCompaction:
-        for (int currBucket = 0; currBucket <= maxBucket; currBucket++) {
-            LinkedList<Long> entryLogIds = compactableBuckets.get(currBucket);
-            while (!entryLogIds.isEmpty()) {
-                if (timeDiff.getValue() < maxTimeMillis) {
-                    end.setValue(System.currentTimeMillis());
-                    timeDiff.setValue(end.getValue() - start);
-                }
+        if (useCostBenefitCompactionSelection) {
+            costBenefitSelector.rank(candidates, newestEntryLogId.getValue());
+        } else {
+            // scores are still reported by getCompactionCandidates
+            costBenefitSelector.score(candidates, newestEntryLogId.getValue());
+            // stable sort, entry logs within a bucket keep the order they were found in
+            candidates.sort(Comparator.comparingInt(c -> calculateUsageIndex(numBuckets, c.getUsage())));
+        }
+        return candidates;
+    }
 
-                if ((maxTimeMillis > 0 && timeDiff.getValue() >= maxTimeMillis) || !running) {
-                    // We allow the usage limit calculation to continue so that we get an accurate
-                    // report of where the usage was prior to running compaction.
-                    break stopCompaction;
-                }
+    /**
+     * Report the entry logs that a compaction with the given threshold would pick, in the order
+     * they would be compacted, without compacting anything.
+     *
+     * @param threshold entry logs whose usage is at or above the threshold are not reported
+     * @return the ranked compaction candidates
+     */
+    public List<CompactionCandidate> getCompactionCandidates(double threshold) throws EntryLogMetadataMapException {
+        return selectCompactionCandidates(threshold, System.currentTimeMillis(), 0, new int[10]);
+    }
 
-                final int bucketIndex = currBucket;
-                final long logId = entryLogIds.remove();
+    /**
+     * Compact the selected entry logs on the compaction workers, in the order they were selected.
+     *
+     * <p>The compacting flag is held for the whole round, so shutdown waits until every worker is done.
+     */
+    private void compactEntryLogsConcurrently(List<CompactionCandidate> candidates, int[] compactedBuckets,
+                                              double threshold, long start, long maxTimeMillis) {
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
 
-                entryLogMetaMap.forKey(logId, (entryLogId, meta) -> {
-                    if (meta == null) {
-                        if (LOG.isDebugEnabled()) {
-                            LOG.debug("Metadata for entry log {} already deleted", logId);
-                        }
+        try {
+            AtomicIntegerArray compacted = new AtomicIntegerArray(compactedBuckets.length);
+            List<Future<?>> futures = new ArrayList<>(candidates.size());
+            for (CompactionCandidate candidate : candidates) {
+                final int bucketIndex = calculateUsageIndex(compactedBuckets.length, candidate.getUsage());
+                final long logId = candidate.getEntryLogId();
+                futures.add(compactionExecutor.submit(() -> {
+                    if (!running || compactionWorkersThrottler.isCancelled()
+                            || (maxTimeMillis > 0 && System.currentTimeMillis() - start >= maxTimeMillis)) {
                         return;
                     }
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Compacting entry log {} with usage {} below threshold {}",
-                                meta.getEntryLogId(), meta.getUsage(), threshold);
+                    if (compactWithWorker(logId, threshold)) {
+                        compacted.incrementAndGet(bucketIndex);
                     }
-
-                    long priorRemainingSize = meta.getRemainingSize();
-                    compactEntryLog(meta);
-                    gcStats.getReclaimedSpaceViaCompaction().addCount(meta.getTotalSize() - priorRemainingSize);
-                    compactedBuckets[bucketIndex]++;
-                });
+                }));
             }
-        }
 
-        if (LOG.isDebugEnabled()) {
-            if (!running) {
-                LOG.debug("Compaction exited due to gc not running");
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    LOG.warn("Interrupted while waiting for compaction workers");
+                    futures.forEach(f -> f.cancel(false));
+                    break;
+                } catch (ExecutionException e) {
+                    LOG.error("Unexpected error in compaction worker", e.getCause());
+                }
             }
-            if (maxTimeMillis > 0 && timeDiff.getValue() > maxTimeMillis) {
-                LOG.debug("Compaction ran for {}ms but was limited by {}ms", timeDiff, maxTimeMillis);
+
+            for (int i = 0; i < compactedBuckets.length; i++) {
+                compactedBuckets[i] = compacted.get(i);
             }
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    private boolean compactWithWorker(long logId, double threshold) {
+        CompactionWorker worker;
+        try {
+            worker = idleCompactionWorkers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        activeCompactionWorkers.incrementAndGet();
+        MutableBoolean success = new MutableBoolean(false);
+        try {
+            entryLogMetaMap.forKey(logId, (entryLogId, meta) -> {
+                if (meta == null) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Metadata for entry log {} already deleted", logId);
+                    }
+                    return;
+                }
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Compaction worker {} compacting entry log {} with usage {} below threshold {}",
+                            worker.id, meta.getEntryLogId(), meta.getUsage(), threshold);
+                }
+
+                long startNanos = MathUtils.nowInNano();
+                long priorRemainingSize = meta.getRemainingSize();
+                try {
+                    success.setValue(worker.compactor.compact(meta));
+                } catch (Exception e) {
+                    LOG.error("Failed to compact entry log {} due to unexpected error", meta.getEntryLogId(), e);
+                }
+
+                if (success.booleanValue()) {
+                    long reclaimed = meta.getTotalSize() - priorRemainingSize;
+                    gcStats.getReclaimedSpaceViaCompaction().addCount(reclaimed);
+                    gcStats.getCompactionWorkerReclaimedSpace(worker.id).addCount(reclaimed);
+                    gcStats.getCompactionWorkerRuntime(worker.id).registerSuccessfulEvent(
+                            MathUtils.nowInNano() - startNanos, TimeUnit.NANOSECONDS);
+                } else {
+                    gcStats.getCompactionWorkerRuntime(worker.id).registerFailedEvent(
+                            MathUtils.nowInNano() - startNanos, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (EntryLogMetadataMapException e) {
+            LOG.warn("Failed to read entry-log metadata {} for compaction", logId, e);
+        } finally {
+            activeCompactionWorkers.decrementAndGet();
+            idleCompactionWorkers.add(worker);
+        }
+        return success.booleanValue();
+    }
+
+    /**
+     * A compaction worker, owning the compactor it uses to compact one entry log at a time.
+     */
+    private static class CompactionWorker {
+        final int id;
+        final AbstractLogCompactor compactor;
+
+        CompactionWorker(int id, AbstractLogCompactor compactor) {
+            this.id = id;
+            this.compactor = compactor;
         }
-        LOG.info(
-                "Compaction: entry log usage buckets[10% 20% 30% 40% 50% 60% 70% 80% 90% 100%] = {}, compacted {}",
-                entryLogUsageBuckets, compactedBuckets);
     }
 
     /**
@@ -667,6 +886,9 @@ public class GarbageCollectorThread implements Runnable {
 
         throttler.cancelledAcquire();
         compactor.throttler.cancelledAcquire();
+        if (compactionWorkersThrottler != null) {
+            compactionWorkersThrottler.cancelledAcquire();
+        }
         while (!compacting.compareAndSet(false, true)) {
             // Wait till the thread stops compacting
             Thread.sleep(100);
@@ -675,6 +897,12 @@ public class GarbageCollectorThread implements Runnable {
         this.running = false;
         // Interrupt GC executor thread
         gcExecutor.shutdownNow();
+        if (compactionExecutor != null) {
+            compactionExecutor.shutdownNow();
+        }
+        if (extractionExecutor != null) {
+            extractionExecutor.shutdownNow();
+        }
         try {
             entryLogMetaMap.close();
         } catch (Exception e) {
@@ -694,6 +922,7 @@ public class GarbageCollectorThread implements Runnable {
         if (entryLogger.removeEntryLog(entryLogId)) {
             LOG.info("Removing entry log metadata for {}", entryLogId);
             entryLogMetaMap.remove(entryLogId);
+            costBenefitSelector.remove(entryLogId);
         }
     }
 
@@ -729,9 +958,16 @@ public class GarbageCollectorThread implements Runnable {
      * Method to read in all of the entry logs (those that we haven't done so yet),
      * and find the set of ledger ID's that make up each entry log file.
      *
+     * <p>The metadata of each entry log is stored as soon as it is extracted, so if the extraction is
+     * interrupted, e.g. by a crash while using the persistent entry log metadata map, the next pass
+     * only extracts the entry logs which were not done yet. The scan of an entry log without ledgers
+     * map index is itself checkpointed by the entry logger, see {@link EntryLogScanCheckpoint}, so the
+     * entry log which was being scanned is only scanned from its last checkpoint.
+     *
      * @throws EntryLogMetadataMapException
      */
     protected void extractMetaFromEntryLogs() throws EntryLogMetadataMapException {
+        List<Long> pendingLogIds = new ArrayList<>();
         for (long entryLogId : entryLogger.getFlushedLogIds()) {
             // Comb the current entry log file if it has not already been extracted.
             if (entryLogMetaMap.containsKey(entryLogId)) {
@@ -743,28 +979,86 @@ public class GarbageCollectorThread implements Runnable {
             if (!entryLogger.logExists(entryLogId)) {
                 continue;
             }
+            pendingLogIds.add(entryLogId);
+        }
+        // oldest entry logs first
+        pendingLogIds.sort(null);
 
-            LOG.info("Extracting entry log meta from entryLogId: {}", entryLogId);
+        if (extractionExecutor == null || pendingLogIds.size() <= 1) {
+            for (long entryLogId : pendingLogIds) {
+                extractMetaFromEntryLog(entryLogId);
+            }
+        } else {
+            extractMetaFromEntryLogsConcurrently(pendingLogIds);
+        }
 
+        if (gcReadyTimeMillis == 0L) {
+            gcReadyTimeMillis = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(MathUtils.elapsedNanos(gcStartTimeNanos)));
+            LOG.info("Extracted the metadata of all entry logs {} ms after garbage collector start",
+                    gcReadyTimeMillis);
+        }
+    }
+
+    private void extractMetaFromEntryLogsConcurrently(List<Long> pendingLogIds)
+            throws EntryLogMetadataMapException {
+        List<Future<?>> futures = new ArrayList<>(pendingLogIds.size());
+        for (long entryLogId : pendingLogIds) {
+            futures.add(extractionExecutor.submit(() -> {
+                extractMetaFromEntryLog(entryLogId);
+                return null;
+            }));
+        }
+
+        EntryLogMetadataMapException metadataMapException = null;
+        for (Future<?> future : futures) {
             try {
-                // Read through the entry log file and extract the entry log meta
-                EntryLogMetadata entryLogMeta = entryLogger.getEntryLogMetadata(entryLogId, throttler);
-                removeIfLedgerNotExists(entryLogMeta);
-                if (entryLogMeta.isEmpty()) {
-                    // This means the entry log is not associated with any active
-                    // ledgers anymore.
-                    // We can remove this entry log file now.
-                    LOG.info("Deleting entryLogId {} as it has no active ledgers!", entryLogId);
-                    removeEntryLog(entryLogId);
-                    gcStats.getReclaimedSpaceViaDeletes().addCount(entryLogMeta.getTotalSize());
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(false));
+                throw new EntryLogMetadataMapException(new IOException(
+                        "Interrupted while extracting entry log metadata", e));
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof EntryLogMetadataMapException) {
+                    if (metadataMapException == null) {
+                        metadataMapException = (EntryLogMetadataMapException) e.getCause();
+                    }
                 } else {
-                    entryLogMetaMap.put(entryLogId, entryLogMeta);
+                    LOG.warn("Unexpected error while extracting entry log metadata", e.getCause());
                 }
-            } catch (IOException | RuntimeException e) {
-                LOG.warn("Premature exception when processing " + entryLogId
-                         + " recovery will take care of the problem", e);
             }
         }
+        if (metadataMapException != null) {
+            throw metadataMapException;
+        }
+    }
+
+    private void extractMetaFromEntryLog(long entryLogId) throws EntryLogMetadataMapException {
+        LOG.info("Extracting entry log meta from entryLogId: {}", entryLogId);
+
+        long startNanos = MathUtils.nowInNano();
+        try {
+            // Read through the entry log file and extract the entry log meta
+            EntryLogMetadata entryLogMeta = entryLogger.getEntryLogMetadata(entryLogId, throttler);
+            removeIfLedgerNotExists(entryLogMeta);
+            if (entryLogMeta.isEmpty()) {
+                // This means the entry log is not associated with any active
+                // ledgers anymore.
+                // We can remove this entry log file now.
+                LOG.info("Deleting entryLogId {} as it has no active ledgers!", entryLogId);
+                removeEntryLog(entryLogId);
+                gcStats.getReclaimedSpaceViaDeletes().addCount(entryLogMeta.getTotalSize());
+            } else {
+                entryLogMetaMap.put(entryLogId, entryLogMeta);
+            }
+            gcStats.getExtractEntryLogMetadataTime().registerSuccessfulEvent(
+                    MathUtils.elapsedNanos(startNanos), TimeUnit.NANOSECONDS);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Premature exception when processing " + entryLogId
+                     + " recovery will take care of the problem", e);
+            gcStats.getExtractEntryLogMetadataTime().registerFailedEvent(
+                    MathUtils.elapsedNanos(startNanos), TimeUnit.NANOSECONDS);
+        }
     }
 
     CompactableLedgerStorage getLedgerStorage() {
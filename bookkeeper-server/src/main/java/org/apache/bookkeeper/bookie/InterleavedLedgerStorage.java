@@ -689,6 +689,11 @@ public class InterleavedLedgerStorage implements CompactableLedgerStorage, Entry
         return Collections.singletonList(gcThread.getGarbageCollectionStatus());
     }
 
+    @Override
+    public List<CompactionCandidate> getCompactionCandidates(double threshold) throws BookieException {
+        return gcThread.getCompactionCandidates(threshold);
+    }
+
     @Override
     public OfLong getListOfEntriesOfLedger(long ledgerId) throws IOException {
         return ledgerCache.getEntriesIterator(ledgerId);
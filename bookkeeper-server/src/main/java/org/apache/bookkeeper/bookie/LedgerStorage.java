@@ -217,6 +217,17 @@ public interface LedgerStorage {
 
     ByteBuf getExplicitLac(long ledgerId) throws IOException, BookieException;
 
+    /**
+     * Get how full the write cache of the ledger storage is, reported to the clients as part of the load of the
+     * bookie.
+     *
+     * @return the size of the entries in the write cache, in percent of its capacity, or -1 if the ledger storage
+     *         has no write cache
+     */
+    default int getWriteCacheUsagePercent() {
+        return -1;
+    }
+
     // for testability
     default LedgerStorage getUnderlyingLedgerStorage() {
         return this;
@@ -339,6 +350,14 @@ public interface LedgerStorage {
         return Collections.emptyList();
     }
 
+    /**
+     * Get the entry logs that a compaction with the given threshold would pick, in the order
+     * they would be compacted. Nothing is compacted.
+     */
+    default List<CompactionCandidate> getCompactionCandidates(double threshold) throws BookieException {
+        return Collections.emptyList();
+    }
+
     /**
      * Returns the primitive long iterator for entries of the ledger, stored in
      * this LedgerStorage. The returned iterator provide weakly consistent state
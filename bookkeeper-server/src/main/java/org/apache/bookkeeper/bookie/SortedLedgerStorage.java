@@ -416,6 +416,11 @@ public class SortedLedgerStorage
         return interleavedLedgerStorage.getGarbageCollectionStatus();
     }
 
+    @Override
+    public List<CompactionCandidate> getCompactionCandidates(double threshold) throws BookieException {
+        return interleavedLedgerStorage.getCompactionCandidates(threshold);
+    }
+
     @Override
     public PrimitiveIterator.OfLong getListOfEntriesOfLedger(long ledgerId) throws IOException {
         PrimitiveIterator.OfLong entriesInMemtableItr = memTable.getListOfEntriesOfLedger(ledgerId);
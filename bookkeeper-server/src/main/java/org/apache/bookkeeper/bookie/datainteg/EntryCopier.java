@@ -20,8 +20,10 @@
 package org.apache.bookkeeper.bookie.datainteg;
 
 import java.io.IOException;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.net.BookieId;
 
 /**
  * Interface for copying entries from other bookies.
@@ -35,6 +37,17 @@ public interface EntryCopier {
      */
     Batch newBatch(long ledgerId, LedgerMetadata metadata) throws IOException;
 
+    /**
+     * Start copying a fragment of a ledger on behalf of a re-replication. The entries copied
+     * by the batch are verified against their digest before being stored locally.
+     *
+     * @param masterKey the master key derived from the metadata of the ledger, set on the local ledger
+     *                  if it doesn't exist yet
+     * @param unavailableBookies bookies known to be unavailable, only read from as a last resort
+     */
+    Batch newFragmentBatch(long ledgerId, LedgerMetadata metadata, byte[] masterKey,
+                           Set<BookieId> unavailableBookies) throws IOException;
+
     /**
      * An interface for a batch to be copied.
      */
@@ -24,8 +24,10 @@ import com.google.common.base.Ticker;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSortedMap;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.util.ReferenceCountUtil;
 import java.io.IOException;
+import java.security.GeneralSecurityException;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -43,10 +45,12 @@ import java.util.stream.IntStream;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.bookie.LedgerStorage;
 import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.BookKeeper;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.proto.BookieClient;
 import org.apache.bookkeeper.proto.BookieProtocol;
+import org.apache.bookkeeper.proto.checksum.DigestManager;
 
 /**
  * Implementation for the EntryCopier interface. Handles the reading of entries
@@ -77,7 +81,28 @@ public class EntryCopierImpl implements EntryCopier {
         if (!storage.ledgerExists(ledgerId)) {
             storage.setMasterKey(ledgerId, metadata.getPassword());
         }
-        return new BatchImpl(bookieId, ledgerId, metadata, sinBin);
+        return new BatchImpl(bookieId, ledgerId, metadata, sinBin, null);
+    }
+
+    @Override
+    public Batch newFragmentBatch(long ledgerId, LedgerMetadata metadata, byte[] masterKey,
+                                  Set<BookieId> unavailableBookies) throws IOException {
+        DigestManager digestManager;
+        try {
+            digestManager = DigestManager.instantiate(ledgerId, metadata.getPassword(),
+                    BookKeeper.DigestType.toProtoDigestType(
+                            BookKeeper.DigestType.fromApiDigestType(metadata.getDigestType())),
+                    PooledByteBufAllocator.DEFAULT, false);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to instantiate the digest manager of ledger " + ledgerId, e);
+        }
+        if (!storage.ledgerExists(ledgerId)) {
+            storage.setMasterKey(ledgerId, masterKey);
+        }
+        for (BookieId bookie : unavailableBookies) {
+            sinBin.addFailed(bookie);
+        }
+        return new BatchImpl(bookieId, ledgerId, metadata, sinBin, digestManager);
     }
 
     @VisibleForTesting
@@ -85,14 +110,17 @@ public class EntryCopierImpl implements EntryCopier {
         private final long ledgerId;
         private final LedgerMetadata metadata;
         private final SinBin sinBin;
+        // verifies the entries read before storing them, if not null
+        private final DigestManager digestManager;
         private volatile ImmutableSortedMap<Long, WriteSets> writeSets;
 
         BatchImpl(BookieId bookieId,
                   long ledgerId, LedgerMetadata metadata,
-                  SinBin sinBin) {
+                  SinBin sinBin, DigestManager digestManager) {
             this.ledgerId = ledgerId;
             this.metadata = metadata;
             this.sinBin = sinBin;
+            this.digestManager = digestManager;
             updateWriteSets();
         }
 
@@ -183,10 +211,17 @@ public class EntryCopierImpl implements EntryCopier {
             BookieId bookie = ensemble.get(writeSet.get(attempt));
             readEntry(bookie, ledgerId, entryId)
                 .whenComplete((buffer, exception) -> {
-                        if (exception != null) {
+                        Throwable error = exception;
+                        if (error == null && !verifyDigest(entryId, buffer)) {
+                            log.warn("Entry {}@{} read from {} failed digest verification",
+                                     ledgerId, entryId, bookie);
+                            ReferenceCountUtil.release(buffer);
+                            error = new BKException.BKDigestMatchException();
+                        }
+                        if (error != null) {
                             notifyBookieError(bookie);
                             Optional<Throwable> firstException1 =
-                                firstException.isPresent() ? firstException : Optional.of(exception);
+                                firstException.isPresent() ? firstException : Optional.of(error);
                             fetchRetryLoop(entryId, attempt + 1,
                                            ensemble, writeSet, promise, firstException1);
                         } else {
@@ -194,6 +229,19 @@ public class EntryCopierImpl implements EntryCopier {
                         }
                     });
         }
+
+        private boolean verifyDigest(long entryId, ByteBuf buffer) {
+            if (digestManager == null) {
+                return true;
+            }
+            try {
+                // verify a duplicate, the whole entry is stored
+                digestManager.verifyDigestAndReturnData(entryId, buffer.duplicate());
+                return true;
+            } catch (BKException.BKDigestMatchException e) {
+                return false;
+            }
+        }
     }
 
     // convert callback api to future api
@@ -19,12 +19,18 @@
 
 package org.apache.bookkeeper.bookie.stats;
 
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ACTIVE_COMPACTION_WORKER_COUNT;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ACTIVE_ENTRY_LOG_COUNT;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ACTIVE_ENTRY_LOG_SPACE_BYTES;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ACTIVE_LEDGER_COUNT;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_SCOPE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.COMPACTION_WORKER_LABEL;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.COMPACTION_WORKER_RECLAIMED_SPACE_BYTES;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.COMPACTION_WORKER_RUNTIME;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.DELETED_LEDGER_COUNT;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.EXTRACT_ENTRY_LOG_METADATA_TIME;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.GC_READY_TIME_MS;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.MAJOR_COMPACTION_COUNT;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.MINOR_COMPACTION_COUNT;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.RECLAIMED_COMPACTION_SPACE_BYTES;
@@ -32,6 +38,7 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.RECLAIMED_DELET
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.THREAD_RUNTIME;
 
 import java.util.function.Supplier;
+import lombok.AccessLevel;
 import lombok.Getter;
 import org.apache.bookkeeper.stats.Counter;
 import org.apache.bookkeeper.stats.Gauge;
@@ -96,11 +103,50 @@ public class GarbageCollectorStats {
         help = "Current number of active ledgers"
     )
     private final Gauge<Integer> activeLedgerCountGauge;
+    @StatsDoc(
+        name = COMPACTION_WORKER_RUNTIME,
+        help = "Operation stats of compacting a single entry log, labelled by compaction worker"
+    )
+    @Getter(AccessLevel.NONE)
+    private final OpStatsLogger[] compactionWorkerRuntime;
+    @StatsDoc(
+        name = COMPACTION_WORKER_RECLAIMED_SPACE_BYTES,
+        help = "Number of disk space bytes reclaimed via compaction, labelled by compaction worker"
+    )
+    @Getter(AccessLevel.NONE)
+    private final Counter[] compactionWorkerReclaimedSpace;
+    @StatsDoc(
+        name = ACTIVE_COMPACTION_WORKER_COUNT,
+        help = "Current number of compaction workers compacting an entry log"
+    )
+    private final Gauge<Integer> activeCompactionWorkerCountGauge;
+    @StatsDoc(
+        name = EXTRACT_ENTRY_LOG_METADATA_TIME,
+        help = "Operation stats of extracting the metadata of a single entry log"
+    )
+    private final OpStatsLogger extractEntryLogMetadataTime;
+    @StatsDoc(
+        name = GC_READY_TIME_MS,
+        help = "Milliseconds from the start of the garbage collector until the metadata of all entry logs"
+            + " was extracted for the first time, 0 until then"
+    )
+    private final Gauge<Long> gcReadyTimeGauge;
 
     public GarbageCollectorStats(StatsLogger statsLogger,
                                  Supplier<Integer> activeEntryLogCountSupplier,
                                  Supplier<Long> activeEntryLogSpaceBytesSupplier,
                                  Supplier<Integer> activeLedgerCountSupplier) {
+        this(statsLogger, activeEntryLogCountSupplier, activeEntryLogSpaceBytesSupplier,
+             activeLedgerCountSupplier, 0, () -> 0, () -> 0L);
+    }
+
+    public GarbageCollectorStats(StatsLogger statsLogger,
+                                 Supplier<Integer> activeEntryLogCountSupplier,
+                                 Supplier<Long> activeEntryLogSpaceBytesSupplier,
+                                 Supplier<Integer> activeLedgerCountSupplier,
+                                 int numCompactionWorkers,
+                                 Supplier<Integer> activeCompactionWorkerCountSupplier,
+                                 Supplier<Long> gcReadyTimeSupplier) {
         this.statsLogger = statsLogger;
 
         this.minorCompactionCounter = statsLogger.getCounter(MINOR_COMPACTION_COUNT);
@@ -108,6 +154,7 @@ public class GarbageCollectorStats {
         this.reclaimedSpaceViaCompaction = statsLogger.getCounter(RECLAIMED_COMPACTION_SPACE_BYTES);
         this.reclaimedSpaceViaDeletes = statsLogger.getCounter(RECLAIMED_DELETION_SPACE_BYTES);
         this.gcThreadRuntime = statsLogger.getOpStatsLogger(THREAD_RUNTIME);
+        this.extractEntryLogMetadataTime = statsLogger.getOpStatsLogger(EXTRACT_ENTRY_LOG_METADATA_TIME);
         this.deletedLedgerCounter = statsLogger.getCounter(DELETED_LEDGER_COUNT);
 
         this.activeEntryLogCountGauge = new Gauge<Integer>() {
@@ -146,6 +193,47 @@ public class GarbageCollectorStats {
             }
         };
         statsLogger.registerGauge(ACTIVE_LEDGER_COUNT, activeLedgerCountGauge);
+
+        this.compactionWorkerRuntime = new OpStatsLogger[numCompactionWorkers];
+        this.compactionWorkerReclaimedSpace = new Counter[numCompactionWorkers];
+        for (int i = 0; i < numCompactionWorkers; i++) {
+            StatsLogger workerStatsLogger = statsLogger.scopeLabel(COMPACTION_WORKER_LABEL, String.valueOf(i));
+            this.compactionWorkerRuntime[i] = workerStatsLogger.getOpStatsLogger(COMPACTION_WORKER_RUNTIME);
+            this.compactionWorkerReclaimedSpace[i] =
+                workerStatsLogger.getCounter(COMPACTION_WORKER_RECLAIMED_SPACE_BYTES);
+        }
+        this.activeCompactionWorkerCountGauge = new Gauge<Integer>() {
+            @Override
+            public Integer getDefaultValue() {
+                return 0;
+            }
+
+            @Override
+            public Integer getSample() {
+                return activeCompactionWorkerCountSupplier.get();
+            }
+        };
+        statsLogger.registerGauge(ACTIVE_COMPACTION_WORKER_COUNT, activeCompactionWorkerCountGauge);
+        this.gcReadyTimeGauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return gcReadyTimeSupplier.get();
+            }
+        };
+        statsLogger.registerGauge(GC_READY_TIME_MS, gcReadyTimeGauge);
+    }
+
+    public OpStatsLogger getCompactionWorkerRuntime(int workerId) {
+        return compactionWorkerRuntime[workerId];
+    }
+
+    public Counter getCompactionWorkerReclaimedSpace(int workerId) {
+        return compactionWorkerReclaimedSpace[workerId];
     }
 
 }
@@ -21,6 +21,7 @@
 package org.apache.bookkeeper.bookie.storage;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCountUtil;
 import java.io.IOException;
 import java.util.Collection;
 import org.apache.bookkeeper.bookie.AbstractLogCompactor;
@@ -67,6 +68,31 @@ public interface EntryLogger extends AutoCloseable {
     ByteBuf readEntry(long ledgerId, long entryId, long entryLocation)
             throws IOException, NoEntryException;
 
+    /**
+     * Read a batch of entries from their entrylog locations.
+     * Implementations may reorder and coalesce the reads of locations which are
+     * close to each other in the same entrylog. As with {@link #readEntry(long)},
+     * the entries are not matched against an expected ledger and entry ID.
+     * @param entryLocations the locations from which to read the entries
+     * @return the entries, in the order of the given locations. The caller owns
+     *         the returned buffers and is responsible for releasing them.
+     */
+    default ByteBuf[] readEntries(long[] entryLocations)
+            throws IOException, NoEntryException {
+        ByteBuf[] entries = new ByteBuf[entryLocations.length];
+        try {
+            for (int i = 0; i < entryLocations.length; i++) {
+                entries[i] = readEntry(entryLocations[i]);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (ByteBuf entry : entries) {
+                ReferenceCountUtil.release(entry);
+            }
+            throw e;
+        }
+        return entries;
+    }
+
     /**
      * Flush any outstanding writes to disk.
      */
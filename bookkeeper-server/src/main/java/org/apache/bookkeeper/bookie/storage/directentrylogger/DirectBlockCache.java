@@ -0,0 +1,275 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.directentrylogger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.ReferenceCountUtil;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
+
+/**
+ * An off-heap cache of entry log blocks, shared by all the readers of a DirectEntryLogger.
+ * <p/>
+ * Blocks are keyed by log id and aligned block offset, and have the size of the reader buffers,
+ * so a block read from disk by one reader can serve the reads of all the other threads without
+ * another direct read. Only blocks of logs which are no longer written to are cached, as those
+ * never change until the log is deleted.
+ * <p/>
+ * The cache is split into segments, each guarded by its own lock, with a fixed number of slots
+ * and a CLOCK hand for eviction. Slots are allocated on first use, and the total memory never
+ * exceeds the configured size.
+ */
+class DirectBlockCache implements AutoCloseable {
+    private static final int MAX_SEGMENTS = 16;
+    private static final long EMPTY = -1L;
+
+    private final ByteBufAllocator allocator;
+    private final int blockSize;
+    private final IntPredicate cacheable;
+    private final Segment[] segments;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter evictionCounter;
+
+    DirectBlockCache(ByteBufAllocator allocator, long totalSize, int blockSize,
+                     IntPredicate cacheable, DirectEntryLoggerStats stats) {
+        checkArgument(Buffer.isAligned(blockSize) && blockSize > 0,
+                      "Block size not aligned %d", blockSize);
+        long numSlots = totalSize / blockSize;
+        checkArgument(numSlots > 0, "Cache size %d lower than block size %d", totalSize, blockSize);
+
+        this.allocator = allocator;
+        this.blockSize = blockSize;
+        this.cacheable = cacheable;
+        this.hitCounter = stats.getBlockCacheHitCounter();
+        this.missCounter = stats.getBlockCacheMissCounter();
+        this.evictionCounter = stats.getBlockCacheEvictionCounter();
+
+        int numSegments = (int) Math.min(MAX_SEGMENTS, numSlots);
+        this.segments = new Segment[numSegments];
+        for (int i = 0; i < numSegments; i++) {
+            // spread the remainder over the first segments
+            int slots = (int) (numSlots / numSegments + (i < numSlots % numSegments ? 1 : 0));
+            segments[i] = new Segment(slots);
+        }
+    }
+
+    int blockSize() {
+        return blockSize;
+    }
+
+    /**
+     * @return whether blocks of the log can be added to the cache.
+     */
+    boolean isCacheable(int logId) {
+        return cacheable.test(logId);
+    }
+
+    /**
+     * Read the entry at offset from the cached blocks of a log. Each call counts as a single
+     * hit or miss, whatever the number of blocks the entry spans.
+     * @return the entry, or null if any of the blocks it spans is not cached.
+     */
+    ByteBuf readEntryAt(int logId, int offset, int maxSaneEntrySize) {
+        ByteBuf entry = lookupEntry(logId, offset, maxSaneEntrySize);
+        if (entry != null) {
+            hitCounter.inc();
+        } else {
+            missCounter.inc();
+        }
+        return entry;
+    }
+
+    private ByteBuf lookupEntry(int logId, int offset, int maxSaneEntrySize) {
+        ByteBuf sizeBuf = allocator.buffer(Integer.BYTES);
+        int entrySize;
+        try {
+            if (!readFully(logId, offset - Integer.BYTES, sizeBuf, Integer.BYTES)) {
+                return null;
+            }
+            entrySize = sizeBuf.getInt(0);
+        } finally {
+            ReferenceCountUtil.release(sizeBuf);
+        }
+        if (entrySize > maxSaneEntrySize || entrySize <= 0) {
+            // let the reader handle, and report, the invalid size
+            return null;
+        }
+
+        ByteBuf entry = allocator.buffer(entrySize, entrySize);
+        if (!readFully(logId, offset, entry, entrySize)) {
+            ReferenceCountUtil.release(entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Copy up to size bytes at offset of a log into dest, without crossing the end of the
+     * cached block containing offset.
+     * @return the number of bytes copied, or -1 if the block is not cached.
+     */
+    int read(int logId, long offset, ByteBuf dest, int size) {
+        long blockStart = offset & ~((long) blockSize - 1);
+        long key = key(logId, blockStart);
+        return segment(key).read(key, (int) (offset - blockStart), dest, size);
+    }
+
+    /**
+     * Add the block of a log starting at blockStart. The first length bytes of src are copied.
+     */
+    void put(int logId, long blockStart, ByteBuf src, int length) {
+        long key = key(logId, blockStart);
+        segment(key).put(key, src, length);
+    }
+
+    /**
+     * Drop all the cached blocks of a log.
+     */
+    void invalidate(int logId) {
+        for (Segment s : segments) {
+            s.invalidate(logId);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Segment s : segments) {
+            s.close();
+        }
+    }
+
+    private boolean readFully(int logId, long offset, ByteBuf dest, int size) {
+        while (size > 0) {
+            int bytesRead = read(logId, offset, dest, size);
+            if (bytesRead <= 0) {
+                return false;
+            }
+            offset += bytesRead;
+            size -= bytesRead;
+        }
+        return true;
+    }
+
+    private long key(int logId, long blockStart) {
+        return ((long) logId << 32) | (blockStart / blockSize);
+    }
+
+    private Segment segment(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return segments[(int) ((h >>> 32) % segments.length)];
+    }
+
+    private class Segment {
+        private final ConcurrentLongLongHashMap index;
+        private final long[] keys;
+        private final int[] lengths;
+        private final boolean[] referenced;
+        private final ByteBuf[] blocks;
+        private int hand = 0;
+
+        Segment(int numSlots) {
+            this.index = ConcurrentLongLongHashMap.newBuilder()
+                .expectedItems(numSlots)
+                .concurrencyLevel(1)
+                .build();
+            this.keys = new long[numSlots];
+            this.lengths = new int[numSlots];
+            this.referenced = new boolean[numSlots];
+            this.blocks = new ByteBuf[numSlots];
+            Arrays.fill(keys, EMPTY);
+        }
+
+        synchronized int read(long key, int offsetInBlock, ByteBuf dest, int size) {
+            long slot = index.get(key);
+            if (slot < 0) {
+                return -1;
+            }
+            int i = (int) slot;
+            int available = lengths[i] - offsetInBlock;
+            if (available <= 0) {
+                return -1;
+            }
+            int bytesToRead = Math.min(size, available);
+            dest.writeBytes(blocks[i], offsetInBlock, bytesToRead);
+            referenced[i] = true;
+            return bytesToRead;
+        }
+
+        synchronized void put(long key, ByteBuf src, int length) {
+            if (index.containsKey(key)) {
+                return;
+            }
+            int i = nextVictim();
+            if (keys[i] != EMPTY) {
+                index.remove(keys[i]);
+                evictionCounter.inc();
+            }
+            if (blocks[i] == null) {
+                blocks[i] = allocator.directBuffer(blockSize, blockSize);
+            }
+            blocks[i].setBytes(0, src, 0, length);
+            keys[i] = key;
+            lengths[i] = length;
+            referenced[i] = false;
+            index.put(key, i);
+        }
+
+        synchronized void invalidate(int logId) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY && (int) (keys[i] >>> 32) == logId) {
+                    index.remove(keys[i]);
+                    keys[i] = EMPTY;
+                    referenced[i] = false;
+                }
+            }
+        }
+
+        synchronized void close() {
+            for (int i = 0; i < blocks.length; i++) {
+                ReferenceCountUtil.release(blocks[i]);
+                blocks[i] = null;
+                keys[i] = EMPTY;
+            }
+            index.clear();
+        }
+
+        /**
+         * Advance the clock hand to the first free or unreferenced slot, clearing the
+         * reference bit of the slots it passes.
+         */
+        private int nextVictim() {
+            while (true) {
+                int i = hand;
+                hand = (hand + 1) % keys.length;
+                if (keys[i] == EMPTY || !referenced[i]) {
+                    return i;
+                }
+                referenced[i] = false;
+            }
+        }
+    }
+}
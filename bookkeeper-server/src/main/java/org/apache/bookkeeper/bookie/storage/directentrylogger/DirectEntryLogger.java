@@ -36,7 +36,9 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
@@ -51,6 +53,7 @@ import java.util.stream.Collectors;
 import org.apache.bookkeeper.bookie.AbstractLogCompactor;
 import org.apache.bookkeeper.bookie.Bookie.NoEntryException;
 import org.apache.bookkeeper.bookie.EntryLogMetadata;
+import org.apache.bookkeeper.bookie.EntryLogScanCheckpoint;
 import org.apache.bookkeeper.bookie.storage.CompactionEntryLog;
 import org.apache.bookkeeper.bookie.storage.EntryLogIds;
 import org.apache.bookkeeper.bookie.storage.EntryLogIdsImpl;
@@ -83,9 +86,17 @@ public class DirectEntryLogger implements EntryLogger {
     private final NativeIO nativeIO;
     private final List<Cache<?, ?>> allCaches = new CopyOnWriteArrayList<>();
     private final ThreadLocal<Cache<Integer, LogReader>> caches;
+    private final DirectBlockCache blockCache;
+    // scanned bytes between the checkpoints of the scans of the logs without index, 0 to disable
+    private final long scanCheckpointIntervalBytes;
 
     private static final int NUMBER_OF_WRITE_BUFFERS = 8;
 
+    /**
+     * Maximum span of a log region which {@link #readEntries(long[])} fetches with a single read.
+     */
+    static final int READ_ENTRIES_MAX_REGION_BYTES = 4 * 1024 * 1024;
+
     public DirectEntryLogger(File ledgerDir,
                              EntryLogIds ids,
                              NativeIO nativeIO,
@@ -101,7 +112,30 @@ public class DirectEntryLogger implements EntryLogger {
                              int maxFdCacheTimeSeconds,
                              Slogger slogParent,
                              StatsLogger stats) throws IOException {
+        this(ledgerDir, ids, nativeIO, allocator, writeExecutor, flushExecutor, maxFileSize, maxSaneEntrySize,
+             totalWriteBufferSize, totalReadBufferSize, readBufferSize, numReadThreads, maxFdCacheTimeSeconds,
+             0L, 0L, slogParent, stats);
+    }
+
+    public DirectEntryLogger(File ledgerDir,
+                             EntryLogIds ids,
+                             NativeIO nativeIO,
+                             ByteBufAllocator allocator,
+                             ExecutorService writeExecutor,
+                             ExecutorService flushExecutor,
+                             long maxFileSize,
+                             int maxSaneEntrySize,
+                             long totalWriteBufferSize,
+                             long totalReadBufferSize,
+                             int readBufferSize,
+                             int numReadThreads,
+                             int maxFdCacheTimeSeconds,
+                             long blockCacheSize,
+                             long scanCheckpointIntervalBytes,
+                             Slogger slogParent,
+                             StatsLogger stats) throws IOException {
         this.ledgerDir = ledgerDir;
+        this.scanCheckpointIntervalBytes = scanCheckpointIntervalBytes;
         this.flushExecutor = flushExecutor;
         this.writeExecutor = writeExecutor;
         this.pendingFlushes = new ArrayList<>();
@@ -150,8 +184,17 @@ public class DirectEntryLogger implements EntryLogger {
             .kv("perThreadBufferSize", perThreadBufferSize)
             .kv("maxCachedReadersPerThread", maxCachedReadersPerThread)
             .kv("maxCachedReaders", maxCachedReaders)
+            .kv("blockCacheSize", blockCacheSize)
             .info(Events.ENTRYLOGGER_CREATED);
 
+        if (blockCacheSize >= this.readBufferSize) {
+            // only logs which have been finalized are immutable, and safe to cache
+            this.blockCache = new DirectBlockCache(allocator, blockCacheSize, this.readBufferSize,
+                                                   logId -> !unflushedLogs.contains(logId), this.stats);
+        } else {
+            this.blockCache = null;
+        }
+
         this.caches = ThreadLocal.withInitial(() -> {
             RemovalListener<Integer, LogReader> rl = (notification) -> {
                 try {
@@ -211,12 +254,100 @@ public class DirectEntryLogger implements EntryLogger {
         return internalReadEntry(ledgerId, entryId, entryLocation, true);
     }
 
+    /**
+     * Read a batch of entries. Locations are visited in file order, and runs of locations
+     * which fall close to each other in the same flushed log are fetched with a single
+     * read of the region spanning them, instead of a size read and a body read per entry.
+     */
+    @Override
+    public ByteBuf[] readEntries(long[] entryLocations)
+            throws IOException, NoEntryException {
+        ByteBuf[] entries = new ByteBuf[entryLocations.length];
+        Integer[] order = new Integer[entryLocations.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> entryLocations[i]));
+
+        try {
+            int start = 0;
+            while (start < order.length) {
+                int logId = (int) (entryLocations[order[start]] >> 32);
+                long regionStart = (entryLocations[order[start]] & 0xFFFFFFFFL) - Integer.BYTES;
+                int end = start + 1;
+                while (end < order.length
+                        && (int) (entryLocations[order[end]] >> 32) == logId
+                        && (entryLocations[order[end]] & 0xFFFFFFFFL) - regionStart <= READ_ENTRIES_MAX_REGION_BYTES) {
+                    end++;
+                }
+
+                // the logs being written may have blocks which are not flushed yet, read those entry by entry
+                if (end - start > 1 && !unflushedLogs.contains(logId)) {
+                    readEntriesFromRegion(entryLocations, order, start, end, entries);
+                } else {
+                    for (int i = start; i < end; i++) {
+                        entries[order[i]] = internalReadEntry(-1L, -1L, entryLocations[order[i]], false);
+                    }
+                }
+                start = end;
+            }
+        } catch (IOException | RuntimeException e) {
+            for (ByteBuf entry : entries) {
+                ReferenceCountUtil.release(entry);
+            }
+            throw e;
+        }
+        return entries;
+    }
+
+    private void readEntriesFromRegion(long[] entryLocations, Integer[] order, int start, int end,
+                                       ByteBuf[] entries) throws IOException, NoEntryException {
+        int logId = (int) (entryLocations[order[start]] >> 32);
+        long regionStart = (entryLocations[order[start]] & 0xFFFFFFFFL) - Integer.BYTES;
+        long lastPos = entryLocations[order[end - 1]] & 0xFFFFFFFFL;
+
+        long startNanos = System.nanoTime();
+        ByteBuf region = null;
+        try {
+            LogReader reader = getReader(logId);
+            // the region ends with the body of the last entry, so its size is read first
+            int lastEntrySize = reader.readIntAt(lastPos - Integer.BYTES);
+            if (lastEntrySize > 0 && lastEntrySize <= maxSaneEntrySize) {
+                region = reader.readBufferAt(regionStart, (int) (lastPos + lastEntrySize - regionStart));
+            }
+        } catch (EOFException eof) {
+            // the entries are read one by one below, reporting the missing ones
+        }
+
+        try {
+            for (int i = start; i < end; i++) {
+                long location = entryLocations[order[i]];
+                int offset = (int) ((location & 0xFFFFFFFFL) - regionStart);
+                int entrySize = region != null ? region.getInt(offset - Integer.BYTES) : -1;
+                if (entrySize > 0 && entrySize <= maxSaneEntrySize && offset + entrySize <= region.readableBytes()) {
+                    // copy out, so that a retained entry doesn't pin the whole region
+                    ByteBuf data = allocator.buffer(entrySize, entrySize);
+                    data.writeBytes(region, offset, entrySize);
+                    entries[order[i]] = data;
+                } else {
+                    entries[order[i]] = internalReadEntry(-1L, -1L, location, false);
+                }
+            }
+            if (region != null) {
+                stats.getReadEntryStats().registerSuccessfulEvent(System.nanoTime() - startNanos,
+                        TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            ReferenceCountUtil.release(region);
+        }
+    }
+
     private LogReader getReader(int logId) throws IOException {
         Cache<Integer, LogReader> cache = caches.get();
         try {
             LogReader reader = cache.get(logId, () -> {
                 this.stats.getOpenReaderCounter().inc();
-                return newDirectReader(logId);
+                return newCachedDirectReader(logId);
             });
 
             // it is possible though unlikely, that the cache has already cleaned up this cache entry
@@ -243,10 +374,16 @@ public class DirectEntryLogger implements EntryLogger {
         int pos = (int) (location & 0xFFFFFFFF);
 
         long start = System.nanoTime();
-        LogReader reader = getReader(logId);
-
         try {
-            ByteBuf buf = reader.readEntryAt(pos);
+            ByteBuf buf = null;
+            if (blockCache != null && blockCache.isCacheable(logId)) {
+                // served from the shared blocks, without opening a reader. The blocks of the logs
+                // being written are never cached, their reads aren't counted as misses
+                buf = blockCache.readEntryAt(logId, pos, maxSaneEntrySize);
+            }
+            if (buf == null) {
+                buf = getReader(logId).readEntryAt(pos);
+            }
             if (validateEntry) {
                 long thisLedgerId = buf.getLong(0);
                 long thisEntryId = buf.getLong(8);
@@ -360,6 +497,9 @@ public class DirectEntryLogger implements EntryLogger {
         for (Cache<?, ?> c : allCaches) {
             c.invalidateAll();
         }
+        if (blockCache != null) {
+            blockCache.close();
+        }
 
         writeBuffers.close();
     }
@@ -377,6 +517,10 @@ public class DirectEntryLogger implements EntryLogger {
         checkArgument(entryLogId < Integer.MAX_VALUE, "Entry log id must be an int [%d]", entryLogId);
         File file = logFile(ledgerDir, (int) entryLogId);
         boolean result = file.delete();
+        EntryLogScanCheckpoint.delete(ledgerDir, entryLogId);
+        if (blockCache != null) {
+            blockCache.invalidate((int) entryLogId);
+        }
         slog.kv("file", file).kv("logId", entryLogId).kv("result", result).info(Events.LOG_DELETED);
         return result;
     }
@@ -418,24 +562,43 @@ public class DirectEntryLogger implements EntryLogger {
 
     @VisibleForTesting
     EntryLogMetadata scanEntryLogMetadata(long logId, AbstractLogCompactor.Throttler throttler) throws IOException {
+        checkArgument(logId < Integer.MAX_VALUE, "Entry log id must be an int [%d]", logId);
         final EntryLogMetadata meta = new EntryLogMetadata(logId);
+        final EntryLogScanCheckpoint checkpoint = scanCheckpointIntervalBytes > 0
+                ? new EntryLogScanCheckpoint(ledgerDir, logId, scanCheckpointIntervalBytes) : null;
 
         // Read through the entry log file and extract the entry log meta
-        scanEntryLog(logId, new EntryLogScanner() {
-            @Override
-            public void process(long ledgerId, long offset, ByteBuf entry) throws IOException {
-                // add new entry size of a ledger to entry log meta
-                if (throttler != null) {
-                    throttler.acquire(entry.readableBytes());
-                }
-                meta.addLedgerSize(ledgerId, entry.readableBytes() + Integer.BYTES);
+        try (LogReader reader = newDirectReader((int) logId)) {
+            int startOffset = Header.LOGFILE_LEGACY_HEADER_SIZE;
+            if (checkpoint != null) {
+                // the logs are smaller than 2GB, see the int offsets of LogReaderScan
+                startOffset = (int) checkpoint.resume(meta, startOffset, reader.maxOffset());
             }
+            LogReaderScan.scan(reader, startOffset, new EntryLogScanner() {
+                @Override
+                public void process(long ledgerId, long offset, ByteBuf entry) throws IOException {
+                    // add new entry size of a ledger to entry log meta
+                    if (throttler != null) {
+                        throttler.acquire(entry.readableBytes());
+                    }
+                    meta.addLedgerSize(ledgerId, entry.readableBytes() + Integer.BYTES);
+                    if (checkpoint != null) {
+                        checkpoint.scanned(offset + Integer.BYTES + entry.readableBytes(), meta);
+                    }
+                }
 
-            @Override
-            public boolean accept(long ledgerId) {
-                return ledgerId >= 0;
-            }
-        });
+                @Override
+                public boolean accept(long ledgerId) {
+                    return ledgerId >= 0;
+                }
+            });
+        }
+        if (checkpoint != null) {
+            checkpoint.complete();
+        } else {
+            // left by a run with checkpoints enabled
+            EntryLogScanCheckpoint.delete(ledgerDir, logId);
+        }
         return meta;
     }
 
@@ -446,6 +609,15 @@ public class DirectEntryLogger implements EntryLogger {
                                 maxSaneEntrySize, stats.getReadBlockStats());
     }
 
+    private LogReader newCachedDirectReader(int logId) throws IOException {
+        if (blockCache == null) {
+            return newDirectReader(logId);
+        }
+        return new DirectReader(logId, logFilename(ledgerDir, logId),
+                                allocator, nativeIO, readBufferSize,
+                                maxSaneEntrySize, stats.getReadBlockStats(), blockCache);
+    }
+
     private LogWriter newDirectWriter(int newId) throws IOException {
         unflushedLogs.add(newId);
         LogWriter writer = new DirectWriter(newId, logFilename(ledgerDir, newId), maxFileSize,
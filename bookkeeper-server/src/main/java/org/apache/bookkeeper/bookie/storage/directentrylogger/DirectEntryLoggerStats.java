@@ -43,6 +43,9 @@ class DirectEntryLoggerStats {
     private static final String READER_OPEN = "entrylog-open-reader";
     private static final String READER_CLOSE = "entrylog-close-reader";
     private static final String CACHED_READER_SERVED_CLOSED = "entrylog-cached-reader-closed";
+    private static final String BLOCK_CACHE_HIT = "entrylog-block-cache-hit";
+    private static final String BLOCK_CACHE_MISS = "entrylog-block-cache-miss";
+    private static final String BLOCK_CACHE_EVICTION = "entrylog-block-cache-eviction";
 
     @StatsDoc(
               name = ADD_ENTRY,
@@ -94,11 +97,32 @@ class DirectEntryLoggerStats {
     )
     private static ThreadLocal<Counter> cachedReadersServedClosed;
 
+    @StatsDoc(
+            name = BLOCK_CACHE_HIT,
+            help = "Number of entry reads served from the shared block cache"
+    )
+    private final Counter blockCacheHitCounter;
+
+    @StatsDoc(
+            name = BLOCK_CACHE_MISS,
+            help = "Number of entry reads which could not be served from the shared block cache"
+    )
+    private final Counter blockCacheMissCounter;
+
+    @StatsDoc(
+            name = BLOCK_CACHE_EVICTION,
+            help = "Number of blocks evicted from the shared block cache"
+    )
+    private final Counter blockCacheEvictionCounter;
+
     DirectEntryLoggerStats(StatsLogger stats) {
         addEntryStats = stats.getOpStatsLogger(ADD_ENTRY);
 
         flushStats = stats.getOpStatsLogger(FLUSH);
         writerFlushStats = stats.getOpStatsLogger(WRITER_FLUSH);
+        blockCacheHitCounter = stats.getCounter(BLOCK_CACHE_HIT);
+        blockCacheMissCounter = stats.getCounter(BLOCK_CACHE_MISS);
+        blockCacheEvictionCounter = stats.getCounter(BLOCK_CACHE_EVICTION);
         setStats(stats);
     }
 
@@ -174,4 +198,16 @@ class DirectEntryLoggerStats {
     Counter getCachedReadersServedClosedCounter() {
         return cachedReadersServedClosed.get();
     }
+
+    Counter getBlockCacheHitCounter() {
+        return blockCacheHitCounter;
+    }
+
+    Counter getBlockCacheMissCounter() {
+        return blockCacheMissCounter;
+    }
+
+    Counter getBlockCacheEvictionCounter() {
+        return blockCacheEvictionCounter;
+    }
 }
@@ -20,6 +20,7 @@
  */
 package org.apache.bookkeeper.bookie.storage.directentrylogger;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static org.apache.bookkeeper.common.util.ExceptionMessageHelper.exMsg;
 
@@ -42,6 +43,7 @@ class DirectReader implements LogReader {
     private final int fd;
     private final int maxSaneEntrySize;
     private final OpStatsLogger readBlockStats;
+    private final DirectBlockCache blockCache;
     private long currentBlock = -1;
     private long currentBlockEnd = -1;
     private long maxOffset;
@@ -50,12 +52,22 @@ class DirectReader implements LogReader {
     DirectReader(int logId, String filename, ByteBufAllocator allocator,
                  NativeIO nativeIO, int bufferSize,
                  int maxSaneEntrySize, OpStatsLogger readBlockStats) throws IOException {
+        this(logId, filename, allocator, nativeIO, bufferSize, maxSaneEntrySize, readBlockStats, null);
+    }
+
+    DirectReader(int logId, String filename, ByteBufAllocator allocator,
+                 NativeIO nativeIO, int bufferSize,
+                 int maxSaneEntrySize, OpStatsLogger readBlockStats,
+                 DirectBlockCache blockCache) throws IOException {
+        checkArgument(blockCache == null || blockCache.blockSize() == bufferSize,
+                      "Block cache block size must match the buffer size (%d)", bufferSize);
         this.nativeIO = nativeIO;
         this.allocator = allocator;
         this.logId = logId;
         this.filename = filename;
         this.maxSaneEntrySize = maxSaneEntrySize;
         this.readBlockStats = readBlockStats;
+        this.blockCache = blockCache;
 
         nativeBuffer = new Buffer(nativeIO, bufferSize);
         closed = false;
@@ -147,6 +159,12 @@ class DirectReader implements LogReader {
     private int readBytesIntoBuf(ByteBuf buf, long offset, int size) throws IOException, EOFException {
         synchronized (nativeBuffer) {
             if (offset < currentBlock || offset >= currentBlockEnd) {
+                if (blockCache != null) {
+                    int bytesRead = blockCache.read(logId, offset, buf, size);
+                    if (bytesRead > 0) {
+                        return bytesRead;
+                    }
+                }
                 readBlock(offset);
             }
             int offsetInBuffer = offsetInBlock(offset);
@@ -202,6 +220,8 @@ class DirectReader implements LogReader {
             refreshMaxOffset();
         }
         final long bytesAvailable = maxOffset > blockStart ? maxOffset - blockStart : 0;
+        // checked before reading, so that a block read while the log was still written isn't cached
+        final boolean cacheable = blockCache != null && blockCache.isCacheable(logId);
         final long startNs = System.nanoTime();
 
         long bufferOffset = 0;
@@ -245,6 +265,9 @@ class DirectReader implements LogReader {
         readBlockStats.registerSuccessfulEvent(System.nanoTime() - startNs, TimeUnit.NANOSECONDS);
         currentBlock = blockStart;
         currentBlockEnd = blockStart + Math.min(blockSize, bytesAvailable);
+        if (cacheable) {
+            blockCache.put(logId, currentBlock, nativeBuffer.buffer, (int) (currentBlockEnd - currentBlock));
+        }
     }
 
     @Override
@@ -47,6 +47,7 @@ import org.apache.bookkeeper.bookie.BookieException;
 import org.apache.bookkeeper.bookie.CheckpointSource;
 import org.apache.bookkeeper.bookie.CheckpointSource.Checkpoint;
 import org.apache.bookkeeper.bookie.Checkpointer;
+import org.apache.bookkeeper.bookie.CompactionCandidate;
 import org.apache.bookkeeper.bookie.DefaultEntryLogger;
 import org.apache.bookkeeper.bookie.GarbageCollectionStatus;
 import org.apache.bookkeeper.bookie.LastAddConfirmedUpdateNotification;
@@ -91,6 +92,8 @@ public class DbLedgerStorage implements LedgerStorage {
         "dbStorage_directIOEntryLoggerReadBufferSizeMB";
     public static final String DIRECT_IO_ENTRYLOGGER_MAX_FD_CACHE_TIME_SECONDS =
         "dbStorage_directIOEntryLoggerMaxFdCacheTimeSeconds";
+    public static final String DIRECT_IO_ENTRYLOGGER_BLOCK_CACHE_SIZE_MB =
+        "dbStorage_directIOEntryLoggerBlockCacheSizeMB";
 
     static final String MAX_THROTTLE_TIME_MILLIS = "dbStorage_maxThrottleTimeMs";
 
@@ -116,6 +119,8 @@ public class DbLedgerStorage implements LedgerStorage {
     private static final long DEFAULT_DIRECT_IO_READBUFFER_SIZE_MB = 8;
 
     private static final int DEFAULT_DIRECT_IO_MAX_FD_CACHE_TIME_SECONDS = 300;
+    // the shared block cache is disabled by default
+    private static final long DEFAULT_DIRECT_IO_BLOCK_CACHE_SIZE_MB = 0;
 
     // use the storage assigned to ledger 0 for flags.
     // if the storage configuration changes, the flags may be lost
@@ -213,6 +218,10 @@ public class DbLedgerStorage implements LedgerStorage {
                     conf,
                     DIRECT_IO_ENTRYLOGGER_MAX_FD_CACHE_TIME_SECONDS,
                     DEFAULT_DIRECT_IO_MAX_FD_CACHE_TIME_SECONDS);
+                long perDirectoryBlockCacheSize = MB * getLongVariableOrDefault(
+                    conf,
+                    DIRECT_IO_ENTRYLOGGER_BLOCK_CACHE_SIZE_MB,
+                    DEFAULT_DIRECT_IO_BLOCK_CACHE_SIZE_MB) / numberOfDirs;
                 Slf4jSlogger slog = new Slf4jSlogger(DbLedgerStorage.class);
                 entryLoggerWriteExecutor = Executors.newSingleThreadExecutor(
                     new DefaultThreadFactory("EntryLoggerWrite"));
@@ -234,6 +243,8 @@ public class DbLedgerStorage implements LedgerStorage {
                     readBufferSize,
                     numReadThreads,
                     maxFdCacheTimeSeconds,
+                    perDirectoryBlockCacheSize,
+                    conf.getGcEntryLogMetadataScanCheckpointBytes(),
                     slog, statsLogger);
             } else {
                 entrylogger = new DefaultEntryLogger(conf, ldm, null, statsLogger, allocator);
@@ -443,6 +454,15 @@ public class DbLedgerStorage implements LedgerStorage {
         return getLedgerStorage(ledgerId).getLastEntry(ledgerId);
     }
 
+    /**
+     * @return the usage of the fullest write cache, as adds to the ledgers of its directory block when it is full
+     */
+    @Override
+    public int getWriteCacheUsagePercent() {
+        return ledgerStorageList.stream().mapToInt(SingleDirectoryDbLedgerStorage::getWriteCacheUsagePercent)
+                .max().orElse(-1);
+    }
+
     @VisibleForTesting
     boolean isFlushRequired() {
         return ledgerStorageList.stream().allMatch(SingleDirectoryDbLedgerStorage::isFlushRequired);
@@ -597,6 +617,15 @@ public class DbLedgerStorage implements LedgerStorage {
             .map(single -> single.getGarbageCollectionStatus().get(0)).collect(Collectors.toList());
     }
 
+    @Override
+    public List<CompactionCandidate> getCompactionCandidates(double threshold) throws BookieException {
+        List<CompactionCandidate> candidates = new ArrayList<>();
+        for (SingleDirectoryDbLedgerStorage ledgerStorage : ledgerStorageList) {
+            candidates.addAll(ledgerStorage.getCompactionCandidates(threshold));
+        }
+        return candidates;
+    }
+
     static long getLongVariableOrDefault(ServerConfiguration conf, String keyName, long defaultValue) {
         Object obj = conf.getProperty(keyName);
         if (obj instanceof Number) {
@@ -56,6 +56,7 @@ import org.apache.bookkeeper.bookie.CheckpointSource;
 import org.apache.bookkeeper.bookie.CheckpointSource.Checkpoint;
 import org.apache.bookkeeper.bookie.Checkpointer;
 import org.apache.bookkeeper.bookie.CompactableLedgerStorage;
+import org.apache.bookkeeper.bookie.CompactionCandidate;
 import org.apache.bookkeeper.bookie.EntryLocation;
 import org.apache.bookkeeper.bookie.GarbageCollectionStatus;
 import org.apache.bookkeeper.bookie.GarbageCollectorThread;
@@ -768,6 +769,11 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         return content;
     }
 
+    @Override
+    public int getWriteCacheUsagePercent() {
+        return (int) ((writeCache.size() + writeCacheBeingFlushed.size()) * 100 / writeCacheMaxSize);
+    }
+
     @VisibleForTesting
     boolean isFlushRequired() {
         long stamp = writeCacheRotationLock.readLock();
@@ -1121,6 +1127,11 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         return Collections.singletonList(gcThread.getGarbageCollectionStatus());
     }
 
+    @Override
+    public List<CompactionCandidate> getCompactionCandidates(double threshold) throws BookieException {
+        return gcThread.getCompactionCandidates(threshold);
+    }
+
     /**
      * Interface which process ledger logger.
      */
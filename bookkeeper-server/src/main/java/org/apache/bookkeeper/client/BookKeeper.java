@@ -64,6 +64,7 @@ import org.apache.bookkeeper.client.api.ListLedgersResultBuilder;
 import org.apache.bookkeeper.client.api.OpenBuilder;
 import org.apache.bookkeeper.client.api.WriteFlag;
 import org.apache.bookkeeper.common.allocator.ByteBufAllocatorBuilder;
+import org.apache.bookkeeper.common.util.MemoryLimitController;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
 import org.apache.bookkeeper.common.util.OrderedScheduler;
 import org.apache.bookkeeper.common.util.ReflectionUtils;
@@ -71,6 +72,7 @@ import org.apache.bookkeeper.conf.AbstractConfiguration;
 import org.apache.bookkeeper.conf.ClientConfiguration;
 import org.apache.bookkeeper.feature.FeatureProvider;
 import org.apache.bookkeeper.feature.SettableFeatureProvider;
+import org.apache.bookkeeper.meta.CachingLedgerManager;
 import org.apache.bookkeeper.meta.CleanupLedgerManager;
 import org.apache.bookkeeper.meta.LedgerIdGenerator;
 import org.apache.bookkeeper.meta.LedgerManager;
@@ -78,6 +80,7 @@ import org.apache.bookkeeper.meta.LedgerManager.LedgerRangeIterator;
 import org.apache.bookkeeper.meta.LedgerManagerFactory;
 import org.apache.bookkeeper.meta.MetadataClientDriver;
 import org.apache.bookkeeper.meta.MetadataDrivers;
+import org.apache.bookkeeper.meta.PreallocatingLedgerIdGenerator;
 import org.apache.bookkeeper.meta.exceptions.MetadataException;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.net.DNSToSwitchMapping;
@@ -85,6 +88,7 @@ import org.apache.bookkeeper.proto.BookieAddressResolver;
 import org.apache.bookkeeper.proto.BookieClient;
 import org.apache.bookkeeper.proto.BookieClientImpl;
 import org.apache.bookkeeper.proto.DataFormats;
+import org.apache.bookkeeper.stats.Gauge;
 import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.util.EventLoopUtil;
@@ -119,6 +123,16 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
     private final BookKeeperClientStats clientStats;
     private final double bookieQuarantineRatio;
 
+    // Memory held by pending adds and in-flight read responses, null if unlimited
+    private final MemoryLimitController memoryLimitController;
+
+    // Limits the concurrent ledger recoveries, null if unlimited
+    private final LedgerRecoveryScheduler recoveryScheduler;
+
+    // Entries read by the handles of this client, null if disabled
+    private final ClientEntryCache entryCache;
+    private final ExplicitLacFlusher explicitLacFlusher;
+
     // whether the event loop group is one we created, or is owned by whoever
     // instantiated us
     boolean ownEventLoopGroup = false;
@@ -438,6 +452,66 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         this.statsLogger = rootStatsLogger.scope(BookKeeperClientStats.CLIENT_SCOPE);
         this.clientStats = BookKeeperClientStats.newInstance(this.statsLogger);
 
+        // initialize client memory limit
+        if (conf.getClientMemoryLimitBytes() > 0) {
+            this.memoryLimitController = new MemoryLimitController(conf.getClientMemoryLimitBytes());
+            clientStats.registerMemoryUsedGauge(new Gauge<Long>() {
+                @Override
+                public Long getDefaultValue() {
+                    return 0L;
+                }
+
+                @Override
+                public Long getSample() {
+                    return memoryLimitController.currentUsage();
+                }
+            });
+            clientStats.registerMemoryLimitGauge(new Gauge<Long>() {
+                @Override
+                public Long getDefaultValue() {
+                    return 0L;
+                }
+
+                @Override
+                public Long getSample() {
+                    return memoryLimitController.memoryLimit();
+                }
+            });
+        } else {
+            this.memoryLimitController = null;
+        }
+
+        // initialize ledger recovery scheduling
+        if (conf.getRecoveryMaxConcurrentLedgers() > 0 || conf.getRecoveryMaxConcurrentLedgersPerBookie() > 0) {
+            this.recoveryScheduler = new LedgerRecoveryScheduler(
+                    conf.getRecoveryMaxConcurrentLedgers(), conf.getRecoveryMaxConcurrentLedgersPerBookie(),
+                    mainWorkerPool, clientStats.getRecoverQueueTimeLogger());
+            clientStats.registerPendingRecoveriesGauge(new Gauge<Integer>() {
+                @Override
+                public Integer getDefaultValue() {
+                    return 0;
+                }
+
+                @Override
+                public Integer getSample() {
+                    return recoveryScheduler.getNumPendingRecoveries();
+                }
+            });
+            clientStats.registerRunningRecoveriesGauge(new Gauge<Integer>() {
+                @Override
+                public Integer getDefaultValue() {
+                    return 0;
+                }
+
+                @Override
+                public Integer getSample() {
+                    return recoveryScheduler.getNumRunningRecoveries();
+                }
+            });
+        } else {
+            this.recoveryScheduler = null;
+        }
+
         // initialize metadata driver
         try {
             String metadataServiceUriStr = conf.getMetadataServiceUri();
@@ -481,6 +555,12 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
                     .build();
         }
 
+        if (conf.getClientEntryCacheSizeBytes() > 0) {
+            this.entryCache = new ClientEntryCache(this.allocator, conf.getClientEntryCacheSizeBytes(),
+                    this.statsLogger);
+        } else {
+            this.entryCache = null;
+        }
 
         if (null == requestTimer) {
             this.requestTimer = new HashedWheelTimer(
@@ -511,6 +591,13 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         this.bookieClient = new BookieClientImpl(conf, this.eventLoopGroup, this.allocator, this.mainWorkerPool,
                 scheduler, rootStatsLogger, this.bookieWatcher.getBookieAddressResolver());
 
+        if (conf.getExplictLacInterval() > 0 && conf.isExplicitLacBatchEnabled()) {
+            this.explicitLacFlusher = new ExplicitLacFlusher(this.bookieClient, scheduler,
+                    conf.getExplictLacInterval(), conf.getExplicitLacMaxBatchSize());
+        } else {
+            this.explicitLacFlusher = null;
+        }
+
         if (conf.getDiskWeightBasedPlacementEnabled()) {
             LOG.info("Weighted ledger placement enabled");
             ThreadFactoryBuilder tFBuilder = new ThreadFactoryBuilder()
@@ -533,8 +620,19 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         } catch (MetadataException e) {
             throw new IOException("Failed to initialize ledger manager factory", e);
         }
-        this.ledgerManager = new CleanupLedgerManager(ledgerManagerFactory.newLedgerManager());
-        this.ledgerIdGenerator = ledgerManagerFactory.newLedgerIdGenerator();
+        LedgerManager underlyingLedgerManager = ledgerManagerFactory.newLedgerManager();
+        if (conf.getLedgerMetadataCacheMaxEntries() > 0) {
+            underlyingLedgerManager = new CachingLedgerManager(underlyingLedgerManager,
+                    conf.getLedgerMetadataCacheMaxEntries(), conf.getLedgerMetadataCacheExpirySeconds(),
+                    this.statsLogger);
+        }
+        this.ledgerManager = new CleanupLedgerManager(underlyingLedgerManager);
+        if (conf.getLedgerIdPreallocationSize() > 1) {
+            this.ledgerIdGenerator = new PreallocatingLedgerIdGenerator(ledgerManagerFactory.newLedgerIdGenerator(),
+                    conf.getLedgerIdPreallocationSize());
+        } else {
+            this.ledgerIdGenerator = ledgerManagerFactory.newLedgerIdGenerator();
+        }
 
         this.bookieQuarantineRatio = conf.getBookieQuarantineRatio();
         scheduleBookieHealthCheckIfEnabled(conf);
@@ -549,6 +647,10 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         internalConf = ClientInternalConf.fromConfig(conf);
         statsLogger = NullStatsLogger.INSTANCE;
         clientStats = BookKeeperClientStats.newInstance(statsLogger);
+        memoryLimitController = null;
+        recoveryScheduler = null;
+        entryCache = null;
+        explicitLacFlusher = null;
         scheduler = null;
         requestTimer = null;
         metadataDriver = null;
@@ -878,6 +980,67 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
     }
 
 
+    /**
+     * Creates new ledgers asynchronously, in bulk. The ids of all the ledgers are generated at once,
+     * in a single metadata store operation where the ledger id generator supports it, and the
+     * metadata of the ledgers are written concurrently.
+     *
+     * <p>The callback is called once for each ledger. The other parameters match those of
+     * {@link #asyncCreateLedger(int, int, int, DigestType, byte[], AsyncCallback.CreateCallback, Object, Map)}
+     *
+     * @param numLedgers
+     *          number of ledgers to create
+     * @param ensSize
+     *          number of bookies over which to stripe entries
+     * @param writeQuorumSize
+     *          number of bookies each entry will be written to
+     * @param ackQuorumSize
+     *          number of bookies which must acknowledge an entry before the call is completed
+     * @param digestType
+     *          digest type, either MAC or CRC32
+     * @param passwd
+     *          password
+     * @param cb
+     *          createCallback implementation, called for each ledger
+     * @param ctx
+     *          optional control object
+     * @param customMetadata
+     *          optional customMetadata that holds user specified metadata
+     */
+    public void asyncCreateLedgers(final int numLedgers, final int ensSize, final int writeQuorumSize,
+                                   final int ackQuorumSize, final DigestType digestType, final byte[] passwd,
+                                   final CreateCallback cb, final Object ctx,
+                                   final Map<String, byte[]> customMetadata) {
+        if (writeQuorumSize < ackQuorumSize) {
+            throw new IllegalArgumentException("Write quorum must be larger than ack quorum");
+        }
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                for (int i = 0; i < numLedgers; i++) {
+                    cb.createComplete(BKException.Code.ClientClosedException, null, ctx);
+                }
+                return;
+            }
+            ledgerIdGenerator.generateLedgerIds(numLedgers, (rc, ledgerIds) -> {
+                if (rc != BKException.Code.OK) {
+                    for (int i = 0; i < numLedgers; i++) {
+                        cb.createComplete(rc, null, ctx);
+                    }
+                    return;
+                }
+                for (long ledgerId : ledgerIds) {
+                    new LedgerCreateOp(BookKeeper.this, ensSize, writeQuorumSize,
+                                       ackQuorumSize, digestType, passwd, cb, ctx,
+                                       customMetadata, WriteFlag.NONE, clientStats)
+                        .initiateWithGeneratedLedgerId(ledgerId);
+                }
+            });
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
     /**
      * Creates a new ledger. Default of 3 servers, and quorum of 2 servers.
      *
@@ -1444,6 +1607,10 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
             closeLock.writeLock().unlock();
         }
 
+        if (explicitLacFlusher != null) {
+            explicitLacFlusher.close();
+        }
+
         // Close bookie client so all pending bookie requests would be failed
         // which will reject any incoming bookie requests.
         bookieClient.close();
@@ -1472,6 +1639,10 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
             }
         }
 
+        if (entryCache != null) {
+            entryCache.close();
+        }
+
         if (ownTimer) {
             requestTimer.stop();
         }
@@ -1649,6 +1820,26 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
                 return clientStats;
             }
 
+            @Override
+            public MemoryLimitController getMemoryLimitController() {
+                return memoryLimitController;
+            }
+
+            @Override
+            public LedgerRecoveryScheduler getRecoveryScheduler() {
+                return recoveryScheduler;
+            }
+
+            @Override
+            public ClientEntryCache getEntryCache() {
+                return entryCache;
+            }
+
+            @Override
+            public ExplicitLacFlusher getExplicitLacFlusher() {
+                return explicitLacFlusher;
+            }
+
             @Override
             public boolean isClientClosed() {
                 return BookKeeper.this.isClosed();
@@ -1132,6 +1132,21 @@ public class BookKeeperAdmin implements AutoCloseable {
      */
     public void replicateLedgerFragment(LedgerHandle lh, final LedgerFragment ledgerFragment,
             final BiConsumer<Long, Long> onReadEntryFailureCallback) throws InterruptedException, BKException {
+        Map<Integer, BookieId> targetBookieAddresses = getReplacementBookiesOfFragment(lh, ledgerFragment);
+        replicateLedgerFragment(lh, ledgerFragment, targetBookieAddresses, onReadEntryFailureCallback);
+    }
+
+    /**
+     * Choose the bookies the Ledger fragment should be replicated to.
+     *
+     * @param lh
+     *            - ledgerHandle
+     * @param ledgerFragment
+     *            - LedgerFragment to replicate
+     * @return the target bookies, by index in the ensemble of the fragment
+     */
+    public Map<Integer, BookieId> getReplacementBookiesOfFragment(LedgerHandle lh, final LedgerFragment ledgerFragment)
+            throws BKException.BKNotEnoughBookiesException, BKException.BKLedgerRecoveryException {
         Map<Integer, BookieId> targetBookieAddresses = null;
         if (LedgerFragment.ReplicateType.DATA_LOSS == ledgerFragment.getReplicateType()) {
             Optional<Set<BookieId>> excludedBookies = Optional.empty();
@@ -1147,10 +1162,20 @@ public class BookKeeperAdmin implements AutoCloseable {
                     ledgerFragment.getReplicateType(), ledgerFragment.getLedgerId());
             throw new BKException.BKLedgerRecoveryException();
         }
-        replicateLedgerFragment(lh, ledgerFragment, targetBookieAddresses, onReadEntryFailureCallback);
+        return targetBookieAddresses;
     }
 
-    private void replicateLedgerFragment(LedgerHandle lh,
+    /**
+     * Replicate the Ledger fragment to the given target bookies.
+     *
+     * @param lh
+     *            - ledgerHandle
+     * @param ledgerFragment
+     *            - LedgerFragment to replicate
+     * @param targetBookieAddresses
+     *            - target bookies, by index in the ensemble of the fragment
+     */
+    public void replicateLedgerFragment(LedgerHandle lh,
             final LedgerFragment ledgerFragment,
             final Map<Integer, BookieId> targetBookieAddresses,
             final BiConsumer<Long, Long> onReadEntryFailureCallback)
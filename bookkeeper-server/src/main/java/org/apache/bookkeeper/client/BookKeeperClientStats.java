@@ -59,12 +59,28 @@ public interface BookKeeperClientStats {
     String READ_LAST_CONFIRMED_AND_ENTRY_RESPONSE = "READ_LAST_CONFIRMED_AND_ENTRY_RESPONSE";
     String PENDING_ADDS = "NUM_PENDING_ADD";
     String ENSEMBLE_CHANGES = "NUM_ENSEMBLE_CHANGE";
+    String SLOW_BOOKIE_ENSEMBLE_SWAPS = "NUM_SLOW_BOOKIE_ENSEMBLE_SWAPS";
     String LAC_UPDATE_HITS = "LAC_UPDATE_HITS";
     String LAC_UPDATE_MISSES = "LAC_UPDATE_MISSES";
     String GET_BOOKIE_INFO_OP = "GET_BOOKIE_INFO";
     String SPECULATIVE_READ_COUNT = "SPECULATIVE_READ_COUNT";
     String READ_REQUESTS_REORDERED = "READ_REQUESTS_REORDERED";
     String GET_LIST_OF_ENTRIES_OF_LEDGER_OP = "GET_LIST_OF_ENTRIES_OF_LEDGER";
+    String CLIENT_MEMORY_USED = "CLIENT_MEMORY_USED_BYTES";
+    String CLIENT_MEMORY_LIMIT = "CLIENT_MEMORY_LIMIT_BYTES";
+    String CLIENT_MEMORY_WAIT = "CLIENT_MEMORY_WAIT";
+    String LEDGER_METADATA_CACHE_HIT = "LEDGER_METADATA_CACHE_HIT";
+    String LEDGER_METADATA_CACHE_MISS = "LEDGER_METADATA_CACHE_MISS";
+    String LEDGER_METADATA_CACHE_EVICTION = "LEDGER_METADATA_CACHE_EVICTION";
+    String LEDGER_METADATA_CACHE_SIZE = "LEDGER_METADATA_CACHE_SIZE";
+    String ENTRY_CACHE_HIT = "CLIENT_ENTRY_CACHE_HIT";
+    String ENTRY_CACHE_MISS = "CLIENT_ENTRY_CACHE_MISS";
+    String ENTRY_CACHE_SHARED_READ = "CLIENT_ENTRY_CACHE_SHARED_READ";
+    String ENTRY_CACHE_EVICTION = "CLIENT_ENTRY_CACHE_EVICTION";
+    String ENTRY_CACHE_SIZE = "CLIENT_ENTRY_CACHE_SIZE_BYTES";
+    String RECOVER_QUEUE_TIME = "LEDGER_RECOVER_QUEUE_TIME";
+    String PENDING_RECOVERIES = "NUM_PENDING_RECOVERIES";
+    String RUNNING_RECOVERIES = "NUM_RUNNING_RECOVERIES";
 
     // per channel stats
     String CHANNEL_SCOPE = "per_channel_bookie_client";
@@ -74,8 +90,10 @@ public interface BookKeeperClientStats {
     String CHANNEL_ADD_OP = "ADD_ENTRY";
     String CHANNEL_TIMEOUT_ADD = "TIMEOUT_ADD_ENTRY";
     String CHANNEL_WRITE_LAC_OP = "WRITE_LAC";
+    String CHANNEL_BATCH_WRITE_LAC_OP = "BATCH_WRITE_LAC";
     String CHANNEL_FORCE_OP = "FORCE";
     String CHANNEL_TIMEOUT_WRITE_LAC = "TIMEOUT_WRITE_LAC";
+    String CHANNEL_TIMEOUT_BATCH_WRITE_LAC = "TIMEOUT_BATCH_WRITE_LAC";
     String CHANNEL_TIMEOUT_FORCE = "TIMEOUT_FORCE";
     String CHANNEL_READ_LAC_OP = "READ_LAC";
     String CHANNEL_TIMEOUT_READ_LAC = "TIMEOUT_READ_LAC";
@@ -83,6 +101,8 @@ public interface BookKeeperClientStats {
     String CHANNEL_START_TLS_OP = "START_TLS";
     String CHANNEL_TIMEOUT_START_TLS_OP = "TIMEOUT_START_TLS";
     String TIMEOUT_GET_LIST_OF_ENTRIES_OF_LEDGER = "TIMEOUT_GET_LIST_OF_ENTRIES_OF_LEDGER";
+    String CHANNEL_COPY_LEDGER_FRAGMENT_OP = "COPY_LEDGER_FRAGMENT";
+    String CHANNEL_TIMEOUT_COPY_LEDGER_FRAGMENT = "TIMEOUT_COPY_LEDGER_FRAGMENT";
 
     String NETTY_EXCEPTION_CNT = "NETTY_EXCEPTION_CNT";
     String CLIENT_CHANNEL_WRITE_WAIT = "CLIENT_CHANNEL_WRITE_WAIT";
@@ -123,13 +143,20 @@ public interface BookKeeperClientStats {
     Counter getSpeculativeReadCounter();
     Counter getEnsembleBookieDistributionCounter(String bookie);
     Counter getEnsembleChangeCounter();
+    Counter getSlowBookieEnsembleSwapCounter();
     Counter getLacUpdateHitsCounter();
     Counter getLacUpdateMissesCounter();
     OpStatsLogger getClientChannelWriteWaitLogger();
     OpStatsLogger getWriteDelayedDueToNotEnoughFaultDomainsLatency();
     Counter getWriteDelayedDueToNotEnoughFaultDomains();
     Counter getWriteTimedOutDueToNotEnoughFaultDomains();
+    OpStatsLogger getMemoryWaitLogger();
+    OpStatsLogger getRecoverQueueTimeLogger();
     void registerPendingAddsGauge(Gauge<Integer> gauge);
+    void registerMemoryUsedGauge(Gauge<Long> gauge);
+    void registerMemoryLimitGauge(Gauge<Long> gauge);
+    void registerPendingRecoveriesGauge(Gauge<Integer> gauge);
+    void registerRunningRecoveriesGauge(Gauge<Integer> gauge);
 
     static BookKeeperClientStats newInstance(StatsLogger stats) {
         return new BookKeeperClientStatsImpl(stats);
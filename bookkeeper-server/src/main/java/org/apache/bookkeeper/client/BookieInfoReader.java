@@ -53,6 +53,7 @@ public class BookieInfoReader {
     private final ScheduledExecutorService scheduler;
     private final BookKeeper bk;
     private final ClientConfiguration conf;
+    private final boolean loadAware;
 
     /**
      * A class represents the information (e.g. disk usage, load) of a bookie.
@@ -62,12 +63,34 @@ public class BookieInfoReader {
     public static class BookieInfo implements WeightedObject {
         private final long freeDiskSpace;
         private final long totalDiskSpace;
+        // load of the bookie, -1 if unknown
+        private final long journalQueueLength;
+        private final int writeCacheUsagePercent;
+        private final long addRequestsPerSecond;
+        private final long readRequestsPerSecond;
+        // scales the free disk space weight of the bookie down by its load, see applyLoadFactors()
+        private final double loadFactor;
         public BookieInfo() {
             this(0L, 0L);
         }
         public BookieInfo(long totalDiskSpace, long freeDiskSpace) {
+            this(totalDiskSpace, freeDiskSpace, -1L, -1, -1L, -1L);
+        }
+        public BookieInfo(long totalDiskSpace, long freeDiskSpace, long journalQueueLength,
+                          int writeCacheUsagePercent, long addRequestsPerSecond, long readRequestsPerSecond) {
+            this(totalDiskSpace, freeDiskSpace, journalQueueLength, writeCacheUsagePercent, addRequestsPerSecond,
+                 readRequestsPerSecond, 1.0);
+        }
+        private BookieInfo(long totalDiskSpace, long freeDiskSpace, long journalQueueLength,
+                           int writeCacheUsagePercent, long addRequestsPerSecond, long readRequestsPerSecond,
+                           double loadFactor) {
             this.totalDiskSpace = totalDiskSpace;
             this.freeDiskSpace = freeDiskSpace;
+            this.journalQueueLength = journalQueueLength;
+            this.writeCacheUsagePercent = writeCacheUsagePercent;
+            this.addRequestsPerSecond = addRequestsPerSecond;
+            this.readRequestsPerSecond = readRequestsPerSecond;
+            this.loadFactor = loadFactor;
         }
         public long getFreeDiskSpace() {
             return freeDiskSpace;
@@ -75,14 +98,86 @@ public class BookieInfoReader {
         public long getTotalDiskSpace() {
             return totalDiskSpace;
         }
+        public boolean hasLoad() {
+            return journalQueueLength >= 0;
+        }
+        public long getJournalQueueLength() {
+            return journalQueueLength;
+        }
+        public int getWriteCacheUsagePercent() {
+            return writeCacheUsagePercent;
+        }
+        public long getRequestsPerSecond() {
+            return addRequestsPerSecond + readRequestsPerSecond;
+        }
+        public double getLoadFactor() {
+            return loadFactor;
+        }
+        BookieInfo withLoadFactor(double loadFactor) {
+            return new BookieInfo(totalDiskSpace, freeDiskSpace, journalQueueLength, writeCacheUsagePercent,
+                                  addRequestsPerSecond, readRequestsPerSecond, loadFactor);
+        }
         @Override
         public long getWeight() {
-            return freeDiskSpace;
+            return (long) (freeDiskSpace * loadFactor);
         }
         @Override
         public String toString() {
-            return "FreeDiskSpace: " + this.freeDiskSpace + " TotalDiskCapacity: " + this.totalDiskSpace;
+            String info = "FreeDiskSpace: " + this.freeDiskSpace + " TotalDiskCapacity: " + this.totalDiskSpace;
+            if (hasLoad()) {
+                info += " JournalQueueLength: " + journalQueueLength + " WriteCacheUsage: " + writeCacheUsagePercent
+                    + "% AddRequestsPerSecond: " + addRequestsPerSecond + " ReadRequestsPerSecond: "
+                    + readRequestsPerSecond + " LoadFactor: " + loadFactor;
+            }
+            return info;
+        }
+    }
+
+    /**
+     * The lowest load factor of a bookie, so that a busy bookie is still picked sometimes.
+     */
+    static final double MIN_LOAD_FACTOR = 0.05;
+
+    /**
+     * Scale the free disk space weights of the bookies down by their load, so that new ensembles avoid the busiest
+     * bookies.
+     *
+     * <p>The load factor of a bookie is 1 as long as its request rate and its journal queue length are not above the
+     * average of the bookies, and is inversely proportional to them above the average. It also goes down as the
+     * write cache of the bookie fills up beyond half of its capacity, since the adds block when it is full.
+     *
+     * @param bookieInfos the bookie info of the bookies
+     * @return the bookie info of the bookies, with their load factor set
+     */
+    static Map<BookieId, BookieInfo> applyLoadFactors(Map<BookieId, BookieInfo> bookieInfos) {
+        long numBookies = bookieInfos.values().stream().filter(BookieInfo::hasLoad).count();
+        if (numBookies == 0) {
+            return bookieInfos;
         }
+        double meanRequestsPerSecond = bookieInfos.values().stream().filter(BookieInfo::hasLoad)
+            .mapToLong(BookieInfo::getRequestsPerSecond).sum() / (double) numBookies;
+        double meanJournalQueueLength = bookieInfos.values().stream().filter(BookieInfo::hasLoad)
+            .mapToLong(BookieInfo::getJournalQueueLength).sum() / (double) numBookies;
+
+        Map<BookieId, BookieInfo> weightedInfos = new HashMap<>();
+        for (Map.Entry<BookieId, BookieInfo> e : bookieInfos.entrySet()) {
+            BookieInfo info = e.getValue();
+            if (!info.hasLoad()) {
+                weightedInfos.put(e.getKey(), info);
+                continue;
+            }
+            double loadFactor = 1.0;
+            if (info.getRequestsPerSecond() > meanRequestsPerSecond) {
+                loadFactor *= meanRequestsPerSecond / info.getRequestsPerSecond();
+            }
+            loadFactor *= (meanJournalQueueLength + 1) / (Math.max(info.getJournalQueueLength(),
+                                                                   meanJournalQueueLength) + 1);
+            if (info.getWriteCacheUsagePercent() > 50) {
+                loadFactor *= Math.max(0, 100 - info.getWriteCacheUsagePercent()) / 50.0;
+            }
+            weightedInfos.put(e.getKey(), info.withLoadFactor(Math.max(MIN_LOAD_FACTOR, loadFactor)));
+        }
+        return weightedInfos;
     }
 
 
@@ -231,6 +326,7 @@ public class BookieInfoReader {
         this.bk = bk;
         this.conf = conf;
         this.scheduler = scheduler;
+        this.loadAware = conf.getLoadAwarePlacementEnabled();
     }
 
     public void start() {
@@ -259,7 +355,8 @@ public class BookieInfoReader {
                     }
                 }
             }
-        }, 0, conf.getGetBookieInfoIntervalSeconds(), TimeUnit.SECONDS);
+        }, 0, loadAware ? conf.getGetBookieLoadIntervalSeconds() : conf.getGetBookieInfoIntervalSeconds(),
+            TimeUnit.SECONDS);
     }
 
     private void submitTask() {
@@ -326,8 +423,11 @@ public class BookieInfoReader {
         }
 
         BookieClient bkc = bk.getBookieClient();
-        final long requested = BookkeeperProtocol.GetBookieInfoRequest.Flags.TOTAL_DISK_CAPACITY_VALUE
-                               | BookkeeperProtocol.GetBookieInfoRequest.Flags.FREE_DISK_SPACE_VALUE;
+        long flags = GET_BOOKIE_INFO_REQUEST_FLAGS;
+        if (loadAware) {
+            flags |= BookkeeperProtocol.GetBookieInfoRequest.Flags.LOAD_VALUE;
+        }
+        final long requested = flags;
         totalSent = 0;
         completedCnt = 0;
         errorCnt = 0;
@@ -381,10 +481,13 @@ public class BookieInfoReader {
     }
 
     void onExit() {
-        bk.placementPolicy.updateBookieInfo(bookieInfoMap.getBookieMap());
+        Map<BookieId, BookieInfo> bookieInfos = bookieInfoMap.getBookieMap();
+        bk.placementPolicy.updateBookieInfo(loadAware ? applyLoadFactors(bookieInfos) : bookieInfos);
         if (errorCnt > 0) {
             if (LOG.isInfoEnabled()) {
-                LOG.info("Rescheduling in {}s due to errors", conf.getGetBookieInfoIntervalSeconds());
+                LOG.info("Rescheduling in {}s due to errors, periodic scan every {}s",
+                         conf.getGetBookieInfoRetryIntervalSeconds(),
+                         loadAware ? conf.getGetBookieLoadIntervalSeconds() : conf.getGetBookieInfoIntervalSeconds());
             }
             instanceState.tryStartPartial();
             submitTaskWithDelay(conf.getGetBookieInfoRetryIntervalSeconds());
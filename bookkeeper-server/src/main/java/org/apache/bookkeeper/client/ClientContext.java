@@ -21,6 +21,7 @@
 package org.apache.bookkeeper.client;
 
 import io.netty.buffer.ByteBufAllocator;
+import org.apache.bookkeeper.common.util.MemoryLimitController;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
 import org.apache.bookkeeper.common.util.OrderedScheduler;
 import org.apache.bookkeeper.meta.LedgerManager;
@@ -42,5 +43,9 @@ public interface ClientContext {
     OrderedExecutor getMainWorkerPool();
     OrderedScheduler getScheduler();
     BookKeeperClientStats getClientStats();
+    MemoryLimitController getMemoryLimitController(); // null if the client memory is not limited
+    LedgerRecoveryScheduler getRecoveryScheduler(); // null if ledger recoveries are not limited
+    ClientEntryCache getEntryCache(); // null if the entry cache is disabled
+    ExplicitLacFlusher getExplicitLacFlusher(); // null if explicit LACs are not batched
     boolean isClientClosed();
 }
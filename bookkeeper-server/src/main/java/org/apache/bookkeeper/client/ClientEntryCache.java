@@ -0,0 +1,263 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.apache.bookkeeper.client.BookKeeperClientStats.CATEGORY_CLIENT;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.ENTRY_CACHE_EVICTION;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.ENTRY_CACHE_HIT;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.ENTRY_CACHE_MISS;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.ENTRY_CACHE_SHARED_READ;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.ENTRY_CACHE_SIZE;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.ReferenceCountUtil;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.stats.annotations.StatsDoc;
+
+/**
+ * A client-wide cache of the entries read from the bookies, shared by all the handles of the
+ * client reading the same ledgers.
+ *
+ * <p>Only entries up to the last add confirmed of the ledger are cached, as those never change.
+ * The entries are copied off-heap, and the least recently read entries are evicted when the
+ * size of the cache goes above its limit. The cache is split into segments, each guarded by its
+ * own lock.
+ *
+ * <p>Besides caching, the cache tracks the entries being read from the bookies, so concurrent
+ * readers of the same entry wait for the first read to complete instead of reading the entry
+ * again.
+ */
+@StatsDoc(
+    name = "entry_cache",
+    category = CATEGORY_CLIENT,
+    help = "Client entry cache stats"
+)
+class ClientEntryCache implements AutoCloseable {
+    @VisibleForTesting
+    static final int NUM_SEGMENTS = 16;
+
+    private final ByteBufAllocator allocator;
+    private final Segment[] segments;
+    private final ConcurrentMap<EntryKey, CompletableFuture<Void>> inflightReads = new ConcurrentHashMap<>();
+
+    @StatsDoc(
+        name = ENTRY_CACHE_HIT,
+        help = "Number of entry reads served by the cache"
+    )
+    private final Counter hitCounter;
+    @StatsDoc(
+        name = ENTRY_CACHE_MISS,
+        help = "Number of entry reads not found in the cache"
+    )
+    private final Counter missCounter;
+    @StatsDoc(
+        name = ENTRY_CACHE_SHARED_READ,
+        help = "Number of entry reads which waited for the read of the same entry by another reader"
+    )
+    private final Counter sharedReadCounter;
+    @StatsDoc(
+        name = ENTRY_CACHE_EVICTION,
+        help = "Number of entries evicted from the cache"
+    )
+    private final Counter evictionCounter;
+
+    ClientEntryCache(ByteBufAllocator allocator, long maxSizeBytes, StatsLogger statsLogger) {
+        this.allocator = allocator;
+        this.segments = new Segment[NUM_SEGMENTS];
+        for (int i = 0; i < NUM_SEGMENTS; i++) {
+            segments[i] = new Segment(Math.max(1, maxSizeBytes / NUM_SEGMENTS));
+        }
+        this.hitCounter = statsLogger.getCounter(ENTRY_CACHE_HIT);
+        this.missCounter = statsLogger.getCounter(ENTRY_CACHE_MISS);
+        this.sharedReadCounter = statsLogger.getCounter(ENTRY_CACHE_SHARED_READ);
+        this.evictionCounter = statsLogger.getCounter(ENTRY_CACHE_EVICTION);
+        statsLogger.registerGauge(ENTRY_CACHE_SIZE, new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return size();
+            }
+        });
+    }
+
+    /**
+     * Fill <i>entry</i> with the cached data of the entry.
+     *
+     * @return true if the entry was cached, false otherwise.
+     */
+    boolean get(LedgerEntryImpl entry) {
+        EntryKey key = new EntryKey(entry.getLedgerId(), entry.getEntryId());
+        if (segment(key).get(key, entry)) {
+            hitCounter.inc();
+            return true;
+        } else {
+            missCounter.inc();
+            return false;
+        }
+    }
+
+    /**
+     * Look up an entry again after {@link #get(LedgerEntryImpl)} missed it, e.g. once the read
+     * of the entry by another reader finished. The lookup is not counted as another read.
+     *
+     * @return true if the entry was cached, false otherwise.
+     */
+    boolean recheck(LedgerEntryImpl entry) {
+        EntryKey key = new EntryKey(entry.getLedgerId(), entry.getEntryId());
+        return segment(key).get(key, entry);
+    }
+
+    /**
+     * Add an entry to the cache. The entry must not be beyond the last add confirmed of the ledger.
+     */
+    void put(long ledgerId, long entryId, long length, ByteBuf content) {
+        EntryKey key = new EntryKey(ledgerId, entryId);
+        segment(key).put(key, length, content);
+    }
+
+    /**
+     * Register a read of an entry from the bookies.
+     *
+     * @return null if the caller should read the entry and then call {@link #finishRead(long, long)},
+     *         otherwise a future completed once the read of the entry by another reader finished.
+     */
+    CompletableFuture<Void> startRead(long ledgerId, long entryId) {
+        CompletableFuture<Void> inflight = inflightReads.putIfAbsent(new EntryKey(ledgerId, entryId),
+                                                                     new CompletableFuture<>());
+        if (inflight != null) {
+            sharedReadCounter.inc();
+        }
+        return inflight;
+    }
+
+    /**
+     * Notify the readers waiting for a read registered with {@link #startRead(long, long)}.
+     * If the read succeeded, the entry should be added to the cache before.
+     */
+    void finishRead(long ledgerId, long entryId) {
+        CompletableFuture<Void> inflight = inflightReads.remove(new EntryKey(ledgerId, entryId));
+        if (inflight != null) {
+            inflight.complete(null);
+        }
+    }
+
+    long size() {
+        long size = 0;
+        for (Segment s : segments) {
+            size += s.size();
+        }
+        return size;
+    }
+
+    @Override
+    public void close() {
+        for (Segment s : segments) {
+            s.clear();
+        }
+        inflightReads.values().forEach(f -> f.complete(null));
+        inflightReads.clear();
+    }
+
+    private Segment segment(EntryKey key) {
+        return segments[(key.hashCode() & Integer.MAX_VALUE) % segments.length];
+    }
+
+    @RequiredArgsConstructor
+    @EqualsAndHashCode
+    private static class EntryKey {
+        private final long ledgerId;
+        private final long entryId;
+    }
+
+    @RequiredArgsConstructor
+    private static class CachedEntry {
+        private final long length;
+        private final ByteBuf data;
+    }
+
+    private class Segment {
+        private final long maxSize;
+        // access ordered, so the eldest entry is the least recently read
+        private final LinkedHashMap<EntryKey, CachedEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long size = 0;
+
+        Segment(long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        synchronized boolean get(EntryKey key, LedgerEntryImpl entry) {
+            CachedEntry cached = entries.get(key);
+            if (cached == null) {
+                return false;
+            }
+            entry.setLength(cached.length);
+            entry.setEntryBuf(cached.data.retainedDuplicate());
+            return true;
+        }
+
+        synchronized void put(EntryKey key, long length, ByteBuf content) {
+            int entrySize = content.readableBytes();
+            if (entrySize > maxSize || entries.containsKey(key)) {
+                return;
+            }
+            ByteBuf data = allocator.directBuffer(entrySize, entrySize);
+            data.writeBytes(content, content.readerIndex(), entrySize);
+            entries.put(key, new CachedEntry(length, data));
+            size += entrySize;
+
+            Iterator<Map.Entry<EntryKey, CachedEntry>> iter = entries.entrySet().iterator();
+            while (size > maxSize && iter.hasNext()) {
+                CachedEntry evicted = iter.next().getValue();
+                iter.remove();
+                size -= evicted.data.readableBytes();
+                ReferenceCountUtil.release(evicted.data);
+                evictionCounter.inc();
+            }
+        }
+
+        synchronized long size() {
+            return size;
+        }
+
+        synchronized void clear() {
+            entries.values().forEach(cached -> ReferenceCountUtil.release(cached.data));
+            entries.clear();
+            size = 0;
+        }
+    }
+}
@@ -40,14 +40,23 @@ class ClientInternalConf {
     final boolean enableParallelRecoveryRead;
     final boolean enableReorderReadSequence;
     final boolean enableStickyReads;
+    final boolean singleWriterAddSequencing;
+    final boolean virtualThreadDirectDispatch;
     final int recoveryReadBatchSize;
+    final int recoveryReadMaxOutstandingBatches;
+    final int streamingReadMaxOutstandingEntries;
     final int throttleValue;
+    final long memoryLimitWaitTimeoutMs;
     final int bookieFailureHistoryExpirationMSec;
     final int maxAllowedEnsembleChanges;
     final long timeoutMonitorIntervalSec;
     final boolean enableBookieFailureTracking;
     final boolean useV2WireProtocol;
     final boolean enforceMinNumFaultDomainsForWrite;
+    final boolean slowBookieEnsembleSwapEnabled;
+    final double slowBookieLatencyMultiplier;
+    final long slowBookieMinLatencyNanos;
+    final long slowBookieSwapIntervalNanos;
 
     static ClientInternalConf defaultValues() {
         return fromConfig(new ClientConfiguration());
@@ -68,9 +77,12 @@ class ClientInternalConf {
         this.enableReorderReadSequence = conf.isReorderReadSequenceEnabled();
         this.enableParallelRecoveryRead = conf.getEnableParallelRecoveryRead();
         this.recoveryReadBatchSize = conf.getRecoveryReadBatchSize();
+        this.recoveryReadMaxOutstandingBatches = conf.getRecoveryReadMaxOutstandingBatches();
+        this.streamingReadMaxOutstandingEntries = conf.getStreamingReadMaxOutstandingEntries();
         this.waitForWriteSetMs = conf.getWaitTimeoutOnBackpressureMillis();
         this.addEntryQuorumTimeoutNanos = TimeUnit.SECONDS.toNanos(conf.getAddEntryQuorumTimeout());
         this.throttleValue = conf.getThrottleValue();
+        this.memoryLimitWaitTimeoutMs = conf.getClientMemoryLimitWaitTimeoutMs();
         this.bookieFailureHistoryExpirationMSec = conf.getBookieFailureHistoryExpirationMSec();
 
         this.disableEnsembleChangeFeature = featureProvider.getFeature(conf.getDisableEnsembleChangeFeatureName());
@@ -81,7 +93,13 @@ class ClientInternalConf {
         this.enableBookieFailureTracking = conf.getEnableBookieFailureTracking();
         this.useV2WireProtocol = conf.getUseV2WireProtocol();
         this.enableStickyReads = conf.isStickyReadsEnabled();
+        this.singleWriterAddSequencing = conf.isSingleWriterAddSequencingEnabled();
+        this.virtualThreadDirectDispatch = conf.isVirtualThreadDirectDispatchEnabled();
         this.enforceMinNumFaultDomainsForWrite = conf.getEnforceMinNumFaultDomainsForWrite();
+        this.slowBookieEnsembleSwapEnabled = conf.isSlowBookieEnsembleSwapEnabled();
+        this.slowBookieLatencyMultiplier = conf.getSlowBookieLatencyMultiplier();
+        this.slowBookieMinLatencyNanos = TimeUnit.MILLISECONDS.toNanos(conf.getSlowBookieMinLatencyMillis());
+        this.slowBookieSwapIntervalNanos = TimeUnit.SECONDS.toNanos(conf.getSlowBookieSwapIntervalSeconds());
 
         if (conf.getFirstSpeculativeReadTimeout() > 0) {
             this.readSpeculativeRequestPolicy =
@@ -159,4 +159,52 @@ interface ExplicitLacFlushPolicy {
             setPiggyBackedLac(piggyBackedLac);
         }
     }
+
+    /**
+     * Flush policy of a ledger whose explicit LACs are sent by the {@link ExplicitLacFlusher} of the
+     * client, batched with those of the other ledgers.
+     */
+    class BatchedExplicitLacFlushPolicy implements ExplicitLacFlushPolicy {
+        volatile long piggyBackedLac = LedgerHandle.INVALID_ENTRY_ID;
+        // only accessed by the flusher thread
+        long explicitLac = LedgerHandle.INVALID_ENTRY_ID;
+        final LedgerHandle lh;
+        final ExplicitLacFlusher flusher;
+
+        BatchedExplicitLacFlushPolicy(LedgerHandle lh, ExplicitLacFlusher flusher) {
+            this.lh = lh;
+            this.flusher = flusher;
+            flusher.register(this);
+        }
+
+        /**
+         * @return the LAC to send to the bookies, or {@link LedgerHandle#INVALID_ENTRY_ID} if the
+         *         bookies already know it.
+         */
+        long getLacToFlush() {
+            // Made progress since previous explicitLAC through
+            // Piggyback, so no need to send an explicit LAC update to
+            // bookies.
+            if (explicitLac < piggyBackedLac) {
+                explicitLac = piggyBackedLac;
+                return LedgerHandle.INVALID_ENTRY_ID;
+            }
+            long lac = lh.getLastAddConfirmed();
+            if (lac > explicitLac) {
+                explicitLac = lac;
+                return lac;
+            }
+            return LedgerHandle.INVALID_ENTRY_ID;
+        }
+
+        @Override
+        public void stopExplicitLacFlush() {
+            flusher.unregister(this);
+        }
+
+        @Override
+        public void updatePiggyBackedLac(long piggyBackedLac) {
+            this.piggyBackedLac = piggyBackedLac;
+        }
+    }
 }
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.client;
+
+import io.netty.util.ReferenceCountUtil;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.ExplicitLacFlushPolicy.BatchedExplicitLacFlushPolicy;
+import org.apache.bookkeeper.common.util.OrderedScheduler;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookieClient;
+import org.apache.bookkeeper.proto.BookieClient.ExplicitLac;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteLacCallback;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends the explicit LACs of all the ledgers written by a client, on a single timer.
+ *
+ * <p>Instead of scheduling a flush task per ledger, the ledgers register with the flusher. At
+ * every interval, the flusher collects the ledgers whose last add confirmed advanced without
+ * being piggybacked on an add, and sends their LACs to the bookies of the write set of the LAC,
+ * in a single request per bookie carrying at most a given number of ledgers.
+ *
+ * <p>The bookies must support batched explicit LACs.
+ */
+class ExplicitLacFlusher implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(ExplicitLacFlusher.class);
+
+    private final BookieClient bookieClient;
+    private final int maxBatchSize;
+    private final ConcurrentMap<Long, BatchedExplicitLacFlushPolicy> ledgers = new ConcurrentHashMap<>();
+    private final ScheduledFuture<?> scheduledFuture;
+
+    private final WriteLacCallback writeLacCallback = new WriteLacCallback() {
+        @Override
+        public void writeLacComplete(int rc, long ledgerId, BookieId addr, Object ctx) {
+            if (rc != BKException.Code.OK && LOG.isDebugEnabled()) {
+                LOG.debug("Explicit LAC of ledger {} was not written to {} : {}",
+                          ledgerId, addr, BKException.getMessage(rc));
+            }
+        }
+    };
+
+    ExplicitLacFlusher(BookieClient bookieClient, OrderedScheduler scheduler,
+                       int explicitLacIntervalInMs, int maxBatchSize) {
+        this.bookieClient = bookieClient;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.scheduledFuture = scheduler.scheduleAtFixedRate(this::flush,
+                explicitLacIntervalInMs, explicitLacIntervalInMs, TimeUnit.MILLISECONDS);
+    }
+
+    void register(BatchedExplicitLacFlushPolicy policy) {
+        ledgers.put(policy.lh.getId(), policy);
+    }
+
+    void unregister(BatchedExplicitLacFlushPolicy policy) {
+        ledgers.remove(policy.lh.getId(), policy);
+    }
+
+    void flush() {
+        Map<BookieId, List<ExplicitLac>> lacsPerBookie = new HashMap<>();
+        List<ByteBufList> buffers = new ArrayList<>();
+        try {
+            for (BatchedExplicitLacFlushPolicy policy : ledgers.values()) {
+                long lac = policy.getLacToFlush();
+                if (lac == LedgerHandle.INVALID_ENTRY_ID) {
+                    continue;
+                }
+                LedgerHandle lh = policy.lh;
+                ByteBufList toSend = lh.macManager.computeDigestAndPackageForSendingLac(lac);
+                buffers.add(toSend);
+                ExplicitLac explicitLac = new ExplicitLac(lh.getId(), lh.ledgerKey, lac, toSend);
+
+                List<BookieId> ensemble = lh.getCurrentEnsemble();
+                DistributionSchedule.WriteSet writeSet = lh.distributionSchedule.getWriteSet(lac);
+                try {
+                    for (int i = 0; i < writeSet.size(); i++) {
+                        lacsPerBookie.computeIfAbsent(ensemble.get(writeSet.get(i)), bookie -> new ArrayList<>())
+                            .add(explicitLac);
+                    }
+                } finally {
+                    writeSet.recycle();
+                }
+            }
+
+            for (Map.Entry<BookieId, List<ExplicitLac>> e : lacsPerBookie.entrySet()) {
+                List<ExplicitLac> lacs = e.getValue();
+                for (int start = 0; start < lacs.size(); start += maxBatchSize) {
+                    List<ExplicitLac> batch = lacs.subList(start, Math.min(lacs.size(), start + maxBatchSize));
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Sending explicit LACs of {} ledgers to {}", batch.size(), e.getKey());
+                    }
+                    bookieClient.batchWriteLac(e.getKey(), batch, writeLacCallback, null);
+                }
+            }
+        } catch (RejectedExecutionException ree) {
+            LOG.warn("Failed to send explicit LACs, the client is closing");
+        } catch (Throwable t) {
+            // keep the timer running for the next interval
+            LOG.error("Failed to send explicit LACs", t);
+        } finally {
+            buffers.forEach(ReferenceCountUtil::release);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduledFuture.cancel(false);
+        ledgers.clear();
+    }
+}
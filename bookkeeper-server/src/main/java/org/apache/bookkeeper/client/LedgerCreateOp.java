@@ -180,7 +180,7 @@ class LedgerCreateOp {
             metadataBuilder.withCreationTime(System.currentTimeMillis()).storingCreationTime(true);
         }
 
-        if (this.generateLedgerId) {
+        if (this.generateLedgerId && this.ledgerId < 0) {
             generateLedgerIdAndCreateLedger(metadataBuilder);
         } else {
             this.metadata = metadataBuilder.withId(ledgerId).build();
@@ -209,6 +209,15 @@ class LedgerCreateOp {
         });
     }
 
+    /**
+     * Initiates the operation with an id already generated, e.g. as part of a batch. Another id is
+     * generated if a ledger already exists with it.
+     */
+    void initiateWithGeneratedLedgerId(long ledgerId) {
+        this.ledgerId = ledgerId;
+        initiate();
+    }
+
     /**
      * Initiates the operation to return LedgerHandleAdv.
      */
@@ -24,14 +24,18 @@ import static org.apache.bookkeeper.replication.ReplicationStats.NUM_BYTES_READ;
 import static org.apache.bookkeeper.replication.ReplicationStats.NUM_BYTES_WRITTEN;
 import static org.apache.bookkeeper.replication.ReplicationStats.NUM_ENTRIES_READ;
 import static org.apache.bookkeeper.replication.ReplicationStats.NUM_ENTRIES_WRITTEN;
+import static org.apache.bookkeeper.replication.ReplicationStats.NUM_FRAGMENT_COPY_FALLBACKS;
 import static org.apache.bookkeeper.replication.ReplicationStats.READ_DATA_LATENCY;
 import static org.apache.bookkeeper.replication.ReplicationStats.REPLICATION_WORKER_SCOPE;
 import static org.apache.bookkeeper.replication.ReplicationStats.WRITE_DATA_LATENCY;
 
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
 import com.google.common.util.concurrent.RateLimiter;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.util.ReferenceCounted;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -39,10 +43,13 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 import org.apache.bookkeeper.client.AsyncCallback.ReadCallback;
 import org.apache.bookkeeper.client.api.WriteFlag;
@@ -106,6 +113,11 @@ public class LedgerFragmentReplicator {
             help = "The distribution of latency of write entries by the replicator"
     )
     private final OpStatsLogger writeDataLatency;
+    @StatsDoc(
+            name = NUM_FRAGMENT_COPY_FALLBACKS,
+            help = "Number of fragments which new bookies failed to copy, replicated by reading and writing entries"
+    )
+    private final Counter numFragmentCopyFallbacks;
 
     protected Throttler replicationThrottle = null;
 
@@ -124,6 +136,7 @@ public class LedgerFragmentReplicator {
         numBytesWritten = this.statsLogger.getOpStatsLogger(NUM_BYTES_WRITTEN);
         readDataLatency = this.statsLogger.getOpStatsLogger(READ_DATA_LATENCY);
         writeDataLatency = this.statsLogger.getOpStatsLogger(WRITE_DATA_LATENCY);
+        numFragmentCopyFallbacks = this.statsLogger.getCounter(NUM_FRAGMENT_COPY_FALLBACKS);
         if (conf.getReplicationRateByBytes() > 0) {
             this.replicationThrottle = new Throttler(conf.getReplicationRateByBytes());
         }
@@ -142,7 +155,8 @@ public class LedgerFragmentReplicator {
             final LedgerFragment lf,
             final AsyncCallback.VoidCallback ledgerFragmentMcb,
             final Set<BookieId> newBookies,
-            final BiConsumer<Long, Long> onReadEntryFailureCallback) throws InterruptedException {
+            final BiConsumer<Long, Long> onReadEntryFailureCallback,
+            final boolean copy) {
         if (!lf.isClosed()) {
             LOG.error("Trying to replicate an unclosed fragment;"
                       + " This is not safe {}", lf);
@@ -171,6 +185,22 @@ public class LedgerFragmentReplicator {
             return;
         }
 
+        if (copy) {
+            copyFragment(lh, lf, ledgerFragmentMcb, newBookies, onReadEntryFailureCallback);
+        } else {
+            readAndWriteEntries(lh, lf, ledgerFragmentMcb, newBookies, onReadEntryFailureCallback);
+        }
+    }
+
+    /**
+     * Replicate the entries of a fragment by reading them from the bookies of the ensemble and
+     * writing them to the new bookies.
+     */
+    private void readAndWriteEntries(final LedgerHandle lh,
+            final LedgerFragment lf,
+            final AsyncCallback.VoidCallback ledgerFragmentMcb,
+            final Set<BookieId> newBookies,
+            final BiConsumer<Long, Long> onReadEntryFailureCallback) {
         /*
          * Add all the entries to entriesToReplicate list from
          * firstStoredEntryId to lastStoredEntryID.
@@ -190,12 +220,101 @@ public class LedgerFragmentReplicator {
         if (this.replicationThrottle != null) {
             this.replicationThrottle.resetRate(this.conf.getReplicationRateByBytes());
         }
-        for (final Long entryId : entriesToReplicate) {
-            recoverLedgerFragmentEntry(entryId, lh, ledgerFragmentEntryMcb,
-                    newBookies, onReadEntryFailureCallback);
+        dispatchThrottled(Iterators.peekingIterator(entriesToReplicate.iterator()),
+                entryId -> averageEntrySize.get(),
+                entryId -> recoverLedgerFragmentEntry(entryId, lh, ledgerFragmentEntryMcb,
+                        newBookies, onReadEntryFailureCallback),
+                entryId -> ledgerFragmentEntryMcb.processResult(BKException.Code.ClientClosedException, null, null));
+    }
+
+    /**
+     * Dispatch items as long as the replication throttle grants their permits. When it doesn't, the
+     * remaining items are dispatched later from the scheduler of the client, so that neither the
+     * replication worker nor the threads of the bookie client, on which the replication of the next
+     * entries is started, block on the throttle.
+     *
+     * @param items the items to dispatch
+     * @param permits the permits of an item
+     * @param dispatch dispatches an item
+     * @param reject fails an item which can't be dispatched as the client is closed
+     */
+    private <T> void dispatchThrottled(PeekingIterator<T> items, ToIntFunction<T> permits,
+                                       Consumer<T> dispatch, Consumer<T> reject) {
+        while (items.hasNext()) {
+            int itemPermits = permits.applyAsInt(items.peek());
+            if (replicationThrottle != null && !replicationThrottle.tryAcquire(itemPermits)) {
+                try {
+                    bkc.getScheduler().schedule(() -> dispatchThrottled(items, permits, dispatch, reject),
+                            replicationThrottle.getRetryDelayMs(itemPermits), TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    items.forEachRemaining(reject);
+                }
+                return;
+            }
+            dispatch.accept(items.next());
         }
     }
 
+    /**
+     * Replicate the entries of a fragment by asking each new bookie to copy them from the other
+     * bookies of the ensemble, so the entries don't go through the replicator. The entries are
+     * read and written by the replicator for the new bookies failing to copy them, e.g. when
+     * they don't support the copy.
+     *
+     * <p>The whole fragment is copied by a single request to each new bookie, which flushes its
+     * ledger storage once all the entries are copied.
+     */
+    private void copyFragment(final LedgerHandle lh,
+            final LedgerFragment lf,
+            final AsyncCallback.VoidCallback ledgerFragmentMcb,
+            final Set<BookieId> newBookies,
+            final BiConsumer<Long, Long> onReadEntryFailureCallback) {
+        final long firstEntryId = lf.getFirstStoredEntryId();
+        final long lastEntryId = lf.getLastStoredEntryId();
+        MultiCallback ledgerFragmentCopyMcb = new MultiCallback(
+                newBookies.size(), ledgerFragmentMcb, null, BKException.Code.OK,
+                BKException.Code.LedgerRecoveryException);
+        if (this.replicationThrottle != null) {
+            this.replicationThrottle.resetRate(this.conf.getReplicationRateByBytes());
+        }
+        dispatchThrottled(Iterators.peekingIterator(newBookies.iterator()),
+                newBookie -> (int) Math.min(Integer.MAX_VALUE,
+                        (lastEntryId - firstEntryId + 1) * averageEntrySize.get()),
+                newBookie -> copyFragmentTo(newBookie, lh, lf, ledgerFragmentCopyMcb, onReadEntryFailureCallback),
+                newBookie -> ledgerFragmentCopyMcb.processResult(BKException.Code.ClientClosedException, null, null));
+    }
+
+    private void copyFragmentTo(final BookieId newBookie,
+            final LedgerHandle lh,
+            final LedgerFragment lf,
+            final AsyncCallback.VoidCallback ledgerFragmentCopyMcb,
+            final BiConsumer<Long, Long> onReadEntryFailureCallback) {
+        final long firstEntryId = lf.getFirstStoredEntryId();
+        final long lastEntryId = lf.getLastStoredEntryId();
+        long startCopyTime = MathUtils.nowInNano();
+        bkc.getBookieClient().copyLedgerFragment(newBookie, lh.getId(), lh.getLedgerKey(),
+                firstEntryId, lastEntryId, lf.getAddresses(),
+                (rc, ledgerId, entriesCopied, bytesCopied, ctx) -> {
+                    if (rc == BKException.Code.OK) {
+                        writeDataLatency.registerSuccessfulEvent(MathUtils.elapsedNanos(startCopyTime),
+                                TimeUnit.NANOSECONDS);
+                        numEntriesWritten.addCount(entriesCopied);
+                        if (replicationThrottle != null && entriesCopied > 0) {
+                            updateAverageEntrySize((int) (bytesCopied / entriesCopied));
+                        }
+                        ledgerFragmentCopyMcb.processResult(rc, null, null);
+                        return;
+                    }
+                    LOG.warn("Bookie {} failed to copy entries [{}, {}] of ledger {} : {},"
+                             + " replicating them by reading and writing the entries",
+                             newBookie, firstEntryId, lastEntryId, ledgerId, BKException.getMessage(rc));
+                    numFragmentCopyFallbacks.inc();
+                    replicateNextBatch(lh,
+                            splitIntoSubFragments(lh, lf, bkc.getConf().getRereplicationEntryBatchSize()).iterator(),
+                            ledgerFragmentCopyMcb, Collections.singleton(newBookie), onReadEntryFailureCallback);
+                }, null);
+    }
+
     /**
      * This method replicate a ledger fragment which is a contiguous portion of
      * a ledger that was stored in an ensemble that included the failed bookie.
@@ -203,7 +322,8 @@ public class LedgerFragmentReplicator {
      * max entries up to the configured value of rereplicationEntryBatchSize and
      * then it re-replicates that batched entry fragments one by one. After
      * re-replication of all batched entry fragments, it will update the
-     * ensemble info with new Bookie once
+     * ensemble info with new Bookie once. When the fragment copy is enabled,
+     * the new bookies copy the whole fragment instead.
      *
      * @param lh
      *            LedgerHandle for the ledger
@@ -221,6 +341,12 @@ public class LedgerFragmentReplicator {
             final Set<BookieId> targetBookieAddresses,
             final BiConsumer<Long, Long> onReadEntryFailureCallback)
             throws InterruptedException {
+        if (conf.isRereplicationFragmentCopyEnabled()) {
+            // the new bookies copy the whole fragment, flushing their ledger storage once
+            replicateFragmentInternal(lh, lf, ledgerFragmentMcb, targetBookieAddresses,
+                    onReadEntryFailureCallback, true);
+            return;
+        }
         Set<LedgerFragment> partionedFragments = splitIntoSubFragments(lh, lf,
                 bkc.getConf().getRereplicationEntryBatchSize());
         LOG.info("Replicating fragment {} in {} sub fragments.",
@@ -238,28 +364,22 @@ public class LedgerFragmentReplicator {
             final Set<BookieId> targetBookieAddresses,
             final BiConsumer<Long, Long> onReadEntryFailureCallback) {
         if (fragments.hasNext()) {
-            try {
-                replicateFragmentInternal(lh, fragments.next(),
-                        new AsyncCallback.VoidCallback() {
-                            @Override
-                            public void processResult(int rc, String v, Object ctx) {
-                                if (rc != BKException.Code.OK) {
-                                    ledgerFragmentMcb.processResult(rc, null,
-                                            null);
-                                } else {
-                                    replicateNextBatch(lh, fragments,
-                                            ledgerFragmentMcb,
-                                            targetBookieAddresses,
-                                            onReadEntryFailureCallback);
-                                }
+            replicateFragmentInternal(lh, fragments.next(),
+                    new AsyncCallback.VoidCallback() {
+                        @Override
+                        public void processResult(int rc, String v, Object ctx) {
+                            if (rc != BKException.Code.OK) {
+                                ledgerFragmentMcb.processResult(rc, null,
+                                        null);
+                            } else {
+                                replicateNextBatch(lh, fragments,
+                                        ledgerFragmentMcb,
+                                        targetBookieAddresses,
+                                        onReadEntryFailureCallback);
                             }
+                        }
 
-                        }, targetBookieAddresses, onReadEntryFailureCallback);
-            } catch (InterruptedException e) {
-                ledgerFragmentMcb.processResult(
-                        BKException.Code.InterruptedException, null, null);
-                Thread.currentThread().interrupt();
-            }
+                    }, targetBookieAddresses, onReadEntryFailureCallback, false);
         } else {
             ledgerFragmentMcb.processResult(BKException.Code.OK, null, null);
         }
@@ -340,15 +460,11 @@ public class LedgerFragmentReplicator {
             final LedgerHandle lh,
             final AsyncCallback.VoidCallback ledgerFragmentEntryMcb,
             final Set<BookieId> newBookies,
-            final BiConsumer<Long, Long> onReadEntryFailureCallback) throws InterruptedException {
+            final BiConsumer<Long, Long> onReadEntryFailureCallback) {
         final long ledgerId = lh.getId();
         final AtomicInteger numCompleted = new AtomicInteger(0);
         final AtomicBoolean completed = new AtomicBoolean(false);
 
-        if (replicationThrottle != null) {
-            replicationThrottle.acquire(averageEntrySize.get());
-        }
-
         final WriteCallback multiWriteCallback = new WriteCallback() {
             @Override
             public void writeComplete(int rc, long ledgerId, long entryId, BookieId addr, Object ctx) {
@@ -532,9 +648,15 @@ public class LedgerFragmentReplicator {
             return this.rateLimiter.getRate();
         }
 
-        // acquire. if bybytes: bytes of this entry; if byentries: 1.
-        void acquire(int permits) {
-            rateLimiter.acquire(permits);
+        // acquire without waiting. if bybytes: bytes of this entry; if byentries: 1.
+        boolean tryAcquire(int permits) {
+            return rateLimiter.tryAcquire(permits);
+        }
+
+        // the delay before trying to acquire the permits again
+        long getRetryDelayMs(int permits) {
+            long delayMs = (long) (1000 * permits / rateLimiter.getRate());
+            return Math.max(1, Math.min(1000, delayMs));
         }
     }
 }
@@ -36,6 +36,7 @@ import io.netty.buffer.Unpooled;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -64,10 +65,10 @@ import org.apache.bookkeeper.client.SyncCallbackUtils.FutureReadLastConfirmedAnd
 import org.apache.bookkeeper.client.SyncCallbackUtils.SyncAddCallback;
 import org.apache.bookkeeper.client.SyncCallbackUtils.SyncCloseCallback;
 import org.apache.bookkeeper.client.SyncCallbackUtils.SyncReadCallback;
-import org.apache.bookkeeper.client.SyncCallbackUtils.SyncReadLastConfirmedCallback;
 import org.apache.bookkeeper.client.api.BKException.Code;
 import org.apache.bookkeeper.client.api.LastConfirmedAndEntry;
 import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerEntryStreamListener;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
 import org.apache.bookkeeper.client.api.WriteFlag;
 import org.apache.bookkeeper.client.api.WriteHandle;
@@ -75,6 +76,8 @@ import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
 import org.apache.bookkeeper.common.concurrent.FutureEventListener;
 import org.apache.bookkeeper.common.concurrent.FutureUtils;
 import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.common.util.MemoryLimitController;
+import org.apache.bookkeeper.common.util.VirtualThreads;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.proto.BookieProtocol;
 import org.apache.bookkeeper.proto.checksum.DigestManager;
@@ -98,7 +101,7 @@ public class LedgerHandle implements WriteHandle {
     final ClientContext clientCtx;
 
     final byte[] ledgerKey;
-    private Versioned<LedgerMetadata> versionedMetadata;
+    private volatile Versioned<LedgerMetadata> versionedMetadata;
     final long ledgerId;
     long lastAddPushed;
 
@@ -166,6 +169,14 @@ public class LedgerHandle implements WriteHandle {
     Queue<PendingAddOp> pendingAddOps;
     ExplicitLacFlushPolicy explicitLacFlushPolicy;
 
+    // Adds waiting to be sequenced by the ordered executor thread of the ledger, when
+    // single writer add sequencing is enabled, and the count of pending sequencing requests
+    private final Queue<PendingAddOp> addsToSequence = new ConcurrentLinkedQueue<PendingAddOp>();
+    private final AtomicInteger addsToSequenceWip = new AtomicInteger(0);
+
+    // detects the slow bookies of the ensemble, null if they are not replaced
+    final SlowBookieDetector slowBookieDetector;
+
     final Counter ensembleChangeCounter;
     final Counter lacUpdateHitsCounter;
     final Counter lacUpdateMissesCounter;
@@ -239,6 +250,15 @@ public class LedgerHandle implements WriteHandle {
             }
         };
 
+        if (clientCtx.getConf().slowBookieEnsembleSwapEnabled && !metadata.isClosed()
+                && !writeFlags.contains(WriteFlag.DEFERRED_SYNC)) {
+            this.slowBookieDetector = new SlowBookieDetector(getCurrentEnsemble(),
+                    clientCtx.getConf().slowBookieLatencyMultiplier, clientCtx.getConf().slowBookieMinLatencyNanos,
+                    clientCtx.getConf().slowBookieSwapIntervalNanos);
+        } else {
+            this.slowBookieDetector = null;
+        }
+
         ensembleChangeCounter = clientCtx.getClientStats().getEnsembleChangeCounter();
         lacUpdateHitsCounter = clientCtx.getClientStats().getLacUpdateHitsCounter();
         lacUpdateMissesCounter = clientCtx.getClientStats().getLacUpdateMissesCounter();
@@ -274,7 +294,10 @@ public class LedgerHandle implements WriteHandle {
     }
 
     protected void initializeWriteHandleState() {
-        if (clientCtx.getConf().explicitLacInterval > 0) {
+        if (clientCtx.getConf().explicitLacInterval > 0 && clientCtx.getExplicitLacFlusher() != null) {
+            explicitLacFlushPolicy = new ExplicitLacFlushPolicy.BatchedExplicitLacFlushPolicy(
+                    this, clientCtx.getExplicitLacFlusher());
+        } else if (clientCtx.getConf().explicitLacInterval > 0) {
             explicitLacFlushPolicy = new ExplicitLacFlushPolicy.ExplicitLacFlushPolicyImpl(
                     this, clientCtx);
         } else {
@@ -316,7 +339,8 @@ public class LedgerHandle implements WriteHandle {
      * {@inheritDoc}
      */
     @Override
-    public synchronized long getLastAddConfirmed() {
+    public long getLastAddConfirmed() {
+        // lastAddConfirmed is volatile, no need to contend on the handle
         return lastAddConfirmed;
     }
 
@@ -500,7 +524,7 @@ public class LedgerHandle implements WriteHandle {
      * {@inheritDoc}
      */
     @Override
-    public synchronized boolean isClosed() {
+    public boolean isClosed() {
         return getLedgerMetadata().isClosed();
     }
 
@@ -792,35 +816,77 @@ public class LedgerHandle implements WriteHandle {
         return readEntriesInternalAsync(firstEntry, lastEntry, false);
     }
 
+    /**
+     * Read a sequence of entries as a stream, handing the entries to the listener in order as
+     * soon as each of them is read.
+     *
+     * @param firstEntry
+     *          id of first entry of sequence
+     * @param lastEntry
+     *          id of last entry of sequence
+     * @param listener
+     *          listener receiving the entries
+     */
+    @Override
+    public void readStream(long firstEntry, long lastEntry, LedgerEntryStreamListener listener) {
+        // Little sanity check
+        if (firstEntry < 0 || firstEntry > lastEntry) {
+            LOG.error("IncorrectParameterException on ledgerId:{} firstEntry:{} lastEntry:{}",
+                    ledgerId, firstEntry, lastEntry);
+            listener.onError(new BKIncorrectParameterException());
+            return;
+        }
+
+        if (lastEntry > lastAddConfirmed) {
+            LOG.error("ReadStream exception on ledgerId:{} firstEntry:{} lastEntry:{} lastAddConfirmed:{}",
+                    ledgerId, firstEntry, lastEntry, lastAddConfirmed);
+            listener.onError(new BKReadException());
+            return;
+        }
+
+        if (clientCtx.isClientClosed()) {
+            listener.onError(BKException.create(ClientClosedException));
+            return;
+        }
+
+        // the stream is driven from the ordered executor thread of the ledger
+        new StreamingPendingReadOp(this, clientCtx, firstEntry, lastEntry, listener).submit();
+    }
+
     void asyncReadEntriesInternal(long firstEntry, long lastEntry, ReadCallback cb,
                                   Object ctx, boolean isRecoveryRead) {
         if (!clientCtx.isClientClosed()) {
-            readEntriesInternalAsync(firstEntry, lastEntry, isRecoveryRead)
-                .whenCompleteAsync(new FutureEventListener<LedgerEntries>() {
-                    @Override
-                    public void onSuccess(LedgerEntries entries) {
-                        cb.readComplete(
-                            Code.OK,
-                            LedgerHandle.this,
-                            IteratorUtils.asEnumeration(
-                                Iterators.transform(entries.iterator(), le -> {
-                                    LedgerEntry entry = new LedgerEntry((LedgerEntryImpl) le);
-                                    le.close();
-                                    return entry;
-                                })),
-                            ctx);
-                    }
+            FutureEventListener<LedgerEntries> listener = new FutureEventListener<LedgerEntries>() {
+                @Override
+                public void onSuccess(LedgerEntries entries) {
+                    cb.readComplete(
+                        Code.OK,
+                        LedgerHandle.this,
+                        IteratorUtils.asEnumeration(
+                            Iterators.transform(entries.iterator(), le -> {
+                                LedgerEntry entry = new LedgerEntry((LedgerEntryImpl) le);
+                                le.close();
+                                return entry;
+                            })),
+                        ctx);
+                }
 
-                    @Override
-                    public void onFailure(Throwable cause) {
-                        if (cause instanceof BKException) {
-                            BKException bke = (BKException) cause;
-                            cb.readComplete(bke.getCode(), LedgerHandle.this, null, ctx);
-                        } else {
-                            cb.readComplete(Code.UnexpectedConditionException, LedgerHandle.this, null, ctx);
-                        }
+                @Override
+                public void onFailure(Throwable cause) {
+                    if (cause instanceof BKException) {
+                        BKException bke = (BKException) cause;
+                        cb.readComplete(bke.getCode(), LedgerHandle.this, null, ctx);
+                    } else {
+                        cb.readComplete(Code.UnexpectedConditionException, LedgerHandle.this, null, ctx);
                     }
-                    }, clientCtx.getMainWorkerPool().chooseThread(ledgerId));
+                }
+            };
+            CompletableFuture<LedgerEntries> result = readEntriesInternalAsync(firstEntry, lastEntry, isRecoveryRead);
+            if (dispatchDirectly()) {
+                result.whenComplete(listener);
+            } else {
+                result.whenCompleteAsync(listener, clientCtx.getMainWorkerPool().chooseThread(ledgerId));
+            }
         } else {
             cb.readComplete(Code.ClientClosedException, LedgerHandle.this, null, ctx);
         }
@@ -864,6 +930,17 @@ public class LedgerHandle implements WriteHandle {
         PendingReadOp op = new PendingReadOp(this, clientCtx,
                                              firstEntry, lastEntry, isRecoveryRead);
         if (!clientCtx.isClientClosed()) {
+            // The size of the responses is unknown until they arrive, so only wait for the
+            // client to be back under its memory limit. PendingReadOp accounts for the responses.
+            // Recovery reads are issued by the client itself, from its callback threads, and are
+            // never held back, or the recovery of a ledger would fail under memory pressure.
+            MemoryLimitController memoryLimitController = clientCtx.getMemoryLimitController();
+            if (memoryLimitController != null && !isRecoveryRead
+                    && !waitForClientMemory(memoryLimitController, 0)) {
+                op.future().completeExceptionally(BKException.create(Code.TooManyRequestsException));
+                return op.future();
+            }
+
             // Waiting on the first one.
             // This is not very helpful if there are multiple ensembles or if bookie goes into unresponsive
             // state later after N requests sent.
@@ -887,7 +964,7 @@ public class LedgerHandle implements WriteHandle {
                 }
             }
 
-            if (isHandleWritable()) {
+            if (isHandleWritable() && !dispatchDirectly()) {
                 // Ledger handle in read/write mode: submit to OSE for ordered execution.
                 executeOrdered(op);
             } else {
@@ -901,6 +978,13 @@ public class LedgerHandle implements WriteHandle {
         return op.future();
     }
 
+    /**
+     * Whether the calling thread is a virtual thread for which reads bypass the ordered executor.
+     */
+    private boolean dispatchDirectly() {
+        return clientCtx.getConf().virtualThreadDirectDispatch && VirtualThreads.isCurrentThreadVirtual();
+    }
+
     /**
      * Add entry synchronously to an open ledger.
      *
@@ -1297,10 +1381,108 @@ public class LedgerHandle implements WriteHandle {
         return writableResult;
     }
 
+    /**
+     * Reserve size bytes against the client memory limit, waiting for at most the configured
+     * client memory limit wait timeout if it is set. A size of 0 only checks that the client is
+     * back under its limit.
+     *
+     * @return true if the memory was reserved, false if it was not available in time
+     */
+    boolean waitForClientMemory(MemoryLimitController memoryLimitController, long size) {
+        final long startTime = MathUtils.nowInNano();
+        boolean reserved = reserveClientMemory(memoryLimitController, size,
+                clientCtx.getConf().memoryLimitWaitTimeoutMs, !isClientThread());
+
+        OpStatsLogger memoryWaitLogger = clientCtx.getClientStats().getMemoryWaitLogger();
+        if (reserved) {
+            memoryWaitLogger.registerSuccessfulEvent(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
+        } else {
+            memoryWaitLogger.registerFailedEvent(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
+        }
+        return reserved;
+    }
+
+    /**
+     * Reserve memory against the client memory limit. Without a timeout, the default, the caller
+     * fails at once when the memory isn't available. The threads of the client never wait: the
+     * memory is released by the completions they run.
+     */
+    static boolean reserveClientMemory(MemoryLimitController memoryLimitController, long size,
+                                       long waitTimeoutMs, boolean mayWait) {
+        boolean reserved = memoryLimitController.tryReserveMemory(size);
+        if (!reserved && waitTimeoutMs > 0 && mayWait) {
+            try {
+                reserved = memoryLimitController.reserveMemory(size, waitTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return reserved;
+    }
+
+    private boolean isClientThread() {
+        return clientCtx.getMainWorkerPool().isExecutorThread() || clientCtx.getScheduler().isExecutorThread();
+    }
+
+    /**
+     * Reserve the memory of the payload of a pending add against the client memory limit.
+     * The memory is released once the payload has been sent and the add completed.
+     *
+     * @return true if the add can proceed, false if it was failed for lack of memory
+     */
+    boolean reservePendingAddMemory(final PendingAddOp op) {
+        MemoryLimitController memoryLimitController = clientCtx.getMemoryLimitController();
+        if (memoryLimitController == null) {
+            return true;
+        }
+
+        int size = op.payload.readableBytes();
+        if (waitForClientMemory(memoryLimitController, size)) {
+            op.setReservedMemory(memoryLimitController, size);
+            return true;
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Client memory limit reached, failing add of {} bytes to ledger {}", size, ledgerId);
+        }
+        // make sure the callback is triggered in main worker pool
+        try {
+            executeOrdered(new Runnable() {
+                @Override
+                public void run() {
+                    op.cb.addCompleteWithLatency(BKException.Code.TooManyRequestsException,
+                            LedgerHandle.this, op.getEntryId(), 0, op.ctx);
+                    op.recyclePendAddOpObject();
+                }
+
+                @Override
+                public String toString() {
+                    return String.format("AsyncAddEntryOverMemoryLimit(lid=%d)", ledgerId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            op.cb.addCompleteWithLatency(BookKeeper.getReturnRc(clientCtx.getBookieClient(),
+                            BKException.Code.InterruptedException),
+                    LedgerHandle.this, op.getEntryId(), 0, op.ctx);
+            op.recyclePendAddOpObject();
+        }
+        return false;
+    }
+
     protected void doAsyncAddEntry(final PendingAddOp op) {
         if (throttler != null) {
             throttler.acquire();
         }
+        if (!reservePendingAddMemory(op)) {
+            return;
+        }
+        // the recovery re-adds are checked against lastAddPushed as they're made, so they aren't
+        // sequenced in the background
+        if (clientCtx.getConf().singleWriterAddSequencing && clientCtx.getConf().waitForWriteSetMs < 0
+                && !op.isRecoveryAdd) {
+            enqueueAddForSequencing(op);
+            return;
+        }
 
         boolean wasClosed = false;
         synchronized (this) {
@@ -1359,6 +1541,86 @@ public class LedgerHandle implements WriteHandle {
 
     }
 
+    /**
+     * Queue an add to be sequenced by the ordered executor thread of the ledger. The thread
+     * which finds no sequencing in progress schedules it, so adding threads never contend
+     * on the ledger handle, and adds queued while the sequencer runs join its next batch.
+     */
+    private void enqueueAddForSequencing(PendingAddOp op) {
+        addsToSequence.add(op);
+        if (addsToSequenceWip.getAndIncrement() == 0) {
+            try {
+                executeOrdered(this::sequencePendingAdds);
+            } catch (RejectedExecutionException e) {
+                failAddsToSequence(BookKeeper.getReturnRc(clientCtx.getBookieClient(),
+                        BKException.Code.InterruptedException));
+            }
+        }
+    }
+
+    /**
+     * Assign entry ids to the queued adds and send them, in batches. This runs on the ordered
+     * executor thread of the ledger, the single writer of the sequence, so the handle lock is
+     * only taken once per batch, and never contended by adding threads.
+     */
+    private void sequencePendingAdds() {
+        List<PendingAddOp> sequenced = new ArrayList<>();
+        List<PendingAddOp> rejected = new ArrayList<>();
+        int missed = 1;
+        while (true) {
+            synchronized (this) {
+                // the ledger can't be closed while the batch is sequenced
+                PendingAddOp op;
+                while ((op = addsToSequence.poll()) != null) {
+                    if (isHandleWritable()) {
+                        long entryId = ++lastAddPushed;
+                        long currentLedgerLength = addToLength(op.payload.readableBytes());
+                        op.setEntryId(entryId);
+                        op.setLedgerLength(currentLedgerLength);
+                        pendingAddOps.add(op);
+                        sequenced.add(op);
+                    } else {
+                        rejected.add(op);
+                    }
+                }
+            }
+
+            // callbacks and sends shouldn't run under the handle lock
+            for (PendingAddOp op : rejected) {
+                LOG.warn("Attempt to add to closed ledger: {}", ledgerId);
+                op.cb.addCompleteWithLatency(BKException.Code.LedgerClosedException,
+                        LedgerHandle.this, INVALID_ENTRY_ID, 0, op.ctx);
+                op.recyclePendAddOpObject();
+            }
+            for (PendingAddOp op : sequenced) {
+                op.initiate();
+            }
+            rejected.clear();
+            sequenced.clear();
+
+            missed = addsToSequenceWip.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    private void failAddsToSequence(int rc) {
+        int missed = 1;
+        while (true) {
+            PendingAddOp op;
+            while ((op = addsToSequence.poll()) != null) {
+                op.cb.addCompleteWithLatency(rc, LedgerHandle.this, INVALID_ENTRY_ID, 0, op.ctx);
+                op.recyclePendAddOpObject();
+            }
+
+            missed = addsToSequenceWip.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
     synchronized void updateLastConfirmed(long lac, long len) {
         if (lac > lastAddConfirmed) {
             lastAddConfirmed = lac;
@@ -1586,39 +1848,6 @@ public class LedgerHandle implements WriteHandle {
             .initiate();
     }
 
-    /**
-     * Context objects for synchronous call to read last confirmed.
-     */
-    static class LastConfirmedCtx {
-        static final long ENTRY_ID_PENDING = -10;
-        long response;
-        int rc;
-
-        LastConfirmedCtx() {
-            this.response = ENTRY_ID_PENDING;
-        }
-
-        void setLastConfirmed(long lastConfirmed) {
-            this.response = lastConfirmed;
-        }
-
-        long getlastConfirmed() {
-            return this.response;
-        }
-
-        void setRC(int rc) {
-            this.rc = rc;
-        }
-
-        int getRC() {
-            return this.rc;
-        }
-
-        boolean ready() {
-            return (this.response != ENTRY_ID_PENDING);
-        }
-    }
-
     /**
      * Obtains synchronously the last confirmed write from a quorum of bookies. This call
      * obtains the last add confirmed each bookie has received for this ledger
@@ -1637,18 +1866,9 @@ public class LedgerHandle implements WriteHandle {
      */
     public long readLastConfirmed()
             throws InterruptedException, BKException {
-        LastConfirmedCtx ctx = new LastConfirmedCtx();
-        asyncReadLastConfirmed(new SyncReadLastConfirmedCallback(), ctx);
-        synchronized (ctx) {
-            while (!ctx.ready()) {
-                ctx.wait();
-            }
-        }
-
-        if (ctx.getRC() != BKException.Code.OK) {
-            throw BKException.create(ctx.getRC());
-        }
-        return ctx.getlastConfirmed();
+        FutureReadLastConfirmed result = new FutureReadLastConfirmed();
+        asyncReadLastConfirmed(result, null);
+        return SyncCallbackUtils.waitForResult(result);
     }
 
     /**
@@ -1665,17 +1885,9 @@ public class LedgerHandle implements WriteHandle {
      * @throws BKException
      */
     public long tryReadLastConfirmed() throws InterruptedException, BKException {
-        LastConfirmedCtx ctx = new LastConfirmedCtx();
-        asyncTryReadLastConfirmed(new SyncReadLastConfirmedCallback(), ctx);
-        synchronized (ctx) {
-            while (!ctx.ready()) {
-                ctx.wait();
-            }
-        }
-        if (ctx.getRC() != BKException.Code.OK) {
-            throw BKException.create(ctx.getRC());
-        }
-        return ctx.getlastConfirmed();
+        FutureReadLastConfirmed result = new FutureReadLastConfirmed();
+        asyncTryReadLastConfirmed(result, null);
+        return SyncCallbackUtils.waitForResult(result);
     }
 
     /**
@@ -1746,17 +1958,9 @@ public class LedgerHandle implements WriteHandle {
      * @throws BKException
      */
     public long readExplicitLastConfirmed() throws InterruptedException, BKException {
-        LastConfirmedCtx ctx = new LastConfirmedCtx();
-        asyncReadExplicitLastConfirmed(new SyncReadLastConfirmedCallback(), ctx);
-        synchronized (ctx) {
-            while (!ctx.ready()) {
-                ctx.wait();
-            }
-        }
-        if (ctx.getRC() != BKException.Code.OK) {
-            throw BKException.create(ctx.getRC());
-        }
-        return ctx.getlastConfirmed();
+        FutureReadLastConfirmed result = new FutureReadLastConfirmed();
+        asyncReadExplicitLastConfirmed(result, null);
+        return SyncCallbackUtils.waitForResult(result);
     }
 
     // close the ledger and send fails to all the adds in the pipeline
@@ -1908,7 +2112,86 @@ public class LedgerHandle implements WriteHandle {
         }
     }
 
+    /**
+     * Record the time a bookie of the current ensemble took to acknowledge an add, and replace the bookie with an
+     * ensemble change if it is persistently slower than the other bookies of the ensemble.
+     */
+    void recordBookieAddLatency(int bookieIndex, long addStartNanos) {
+        int slowBookieIndex = slowBookieDetector.recordAddLatency(bookieIndex, addStartNanos);
+        if (slowBookieIndex >= 0) {
+            replaceSlowBookie(slowBookieIndex);
+        }
+    }
+
+    /**
+     * Replace a slow bookie of the current ensemble. The slow bookie is quarantined, so that it isn't picked for new
+     * ensembles for a while, and the pending adds are sent to the new bookie, so they no longer wait on the slow one.
+     *
+     * <p>Unlike the replacement of a failed bookie, the replacement of a slow bookie is optional. It isn't attempted
+     * while the ensemble is changing, and it is given up, leaving the ledger writable, when there isn't any bookie to
+     * replace the slow one or the metadata can't be updated. It is also skipped when the ensemble changed since the
+     * latencies were measured, since the bookie at the index may no longer be the slow one.
+     */
+    private void replaceSlowBookie(int bookieIndex) {
+        if (clientCtx.getConf().disableEnsembleChangeFeature.isAvailable()) {
+            return;
+        }
+        List<BookieId> origEnsemble;
+        BookieId addr;
+        synchronized (metadataLock) {
+            if (changingEnsemble) {
+                return;
+            }
+            origEnsemble = getCurrentEnsemble();
+            addr = bookieIndex < origEnsemble.size() ? origEnsemble.get(bookieIndex) : null;
+            if (addr == null || !addr.equals(slowBookieDetector.getBookie(bookieIndex))) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Ensemble of ledger {} changed since bookie {} was found slow, not replacing it",
+                              ledgerId, slowBookieDetector.getBookie(bookieIndex));
+                }
+                return;
+            }
+            changingEnsemble = true;
+        }
+
+        LOG.warn("Bookie {} of ledger {} is slow, with an average add latency of {} ms, replacing it", addr, ledgerId,
+                 TimeUnit.NANOSECONDS.toMillis(slowBookieDetector.getAverageLatencyNanos(bookieIndex)));
+        clientCtx.getBookieWatcher().quarantineBookie(addr);
+        clientCtx.getClientStats().getSlowBookieEnsembleSwapCounter().inc();
+        ensembleChangeLoop(origEnsemble, Collections.singletonMap(bookieIndex, addr), true);
+    }
+
+    /**
+     * Give up an optional ensemble change, going on with the failed bookies reported in the meantime if any.
+     */
+    private void giveUpOptionalEnsembleChange() {
+        synchronized (metadataLock) {
+            if (delayedWriteFailedBookies.isEmpty()) {
+                changingEnsemble = false;
+                return;
+            }
+            Map<Integer, BookieId> toReplace = new HashMap<>(delayedWriteFailedBookies);
+            delayedWriteFailedBookies.clear();
+
+            ensembleChangeLoop(getCurrentEnsemble(), toReplace);
+        }
+    }
+
     void ensembleChangeLoop(List<BookieId> origEnsemble, Map<Integer, BookieId> failedBookies) {
+        ensembleChangeLoop(origEnsemble, failedBookies, false);
+    }
+
+    /**
+     * @param optional whether the ensemble change can be given up, rather than failing the ledger, when no
+     *                 bookie can replace the failed ones or the metadata can't be updated
+     */
+    private void ensembleChangeLoop(List<BookieId> origEnsemble, Map<Integer, BookieId> failedBookies,
+                                    boolean optional) {
+        if (optional && numEnsembleChanges.get() >= clientCtx.getConf().maxAllowedEnsembleChanges) {
+            // keep the remaining ensemble changes for the failed bookies
+            giveUpOptionalEnsembleChange();
+            return;
+        }
         int ensembleChangeId = numEnsembleChanges.incrementAndGet();
         String logContext = String.format("[EnsembleChange(ledger:%d, change-id:%010d)]", ledgerId, ensembleChangeId);
 
@@ -1956,7 +2239,11 @@ public class LedgerHandle implements WriteHandle {
                 },
                 this::setLedgerMetadata)
             .run().whenCompleteAsync((metadata, ex) -> {
-                    if (ex != null) {
+                    if (ex != null && optional) {
+                        LOG.info("{}[attempt:{}] Giving up the optional ensemble change: {}", logContext,
+                                 attempts.get(), ex.getMessage());
+                        giveUpOptionalEnsembleChange();
+                    } else if (ex != null) {
                         LOG.warn("{}[attempt:{}] Exception changing ensemble", logContext, attempts.get(), ex);
                         handleUnrecoverableErrorDuringAdd(BKException.getExceptionCode(ex, WriteException));
                     } else if (metadata.getValue().isClosed()) {
@@ -1994,6 +2281,9 @@ public class LedgerHandle implements WriteHandle {
                             }
                         }
                         if (newEnsemble != null) { // unsetSuccess outside of lock
+                            if (slowBookieDetector != null) {
+                                slowBookieDetector.ensembleChanged(newEnsemble);
+                            }
                             unsetSuccessAndSendWriteRequest(newEnsemble, replaced);
                         }
                     }
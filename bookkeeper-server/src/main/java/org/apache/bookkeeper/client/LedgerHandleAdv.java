@@ -224,6 +224,9 @@ public class LedgerHandleAdv extends LedgerHandle implements WriteAdvHandle {
         if (throttler != null) {
             throttler.acquire();
         }
+        if (!reservePendingAddMemory(op)) {
+            return;
+        }
 
         boolean wasClosed = false;
         synchronized (this) {
@@ -20,6 +20,7 @@ package org.apache.bookkeeper.client;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static org.apache.bookkeeper.meta.LedgerMetadataSerDe.CURRENT_METADATA_FORMAT_VERSION;
+import static org.apache.bookkeeper.meta.LedgerMetadataSerDe.MAXIMUM_METADATA_FORMAT_VERSION;
 import static org.apache.bookkeeper.meta.LedgerMetadataSerDe.METADATA_FORMAT_VERSION_1;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -30,6 +31,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.TreeMap;
+import java.util.function.Supplier;
 import org.apache.bookkeeper.client.api.DigestType;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
 import org.apache.bookkeeper.client.api.LedgerMetadata.State;
@@ -55,6 +57,7 @@ public class LedgerMetadataBuilder {
     private Optional<Long> length = Optional.empty();
 
     private TreeMap<Long, List<BookieId>> ensembles = new TreeMap<>();
+    private Supplier<? extends Map<Long, List<BookieId>>> ensemblesDecoder = null;
 
     private Optional<DigestType> digestType = Optional.empty();
     private Optional<byte[]> password = Optional.empty();
@@ -107,7 +110,7 @@ public class LedgerMetadataBuilder {
     }
 
     public LedgerMetadataBuilder withMetadataFormatVersion(int version) {
-        if (version < METADATA_FORMAT_VERSION_1 || version > CURRENT_METADATA_FORMAT_VERSION) {
+        if (version < METADATA_FORMAT_VERSION_1 || version > MAXIMUM_METADATA_FORMAT_VERSION) {
             return this;
         }
         this.metadataFormatVersion = version;
@@ -141,6 +144,7 @@ public class LedgerMetadataBuilder {
     }
 
     public LedgerMetadataBuilder newEnsembleEntry(long firstEntry, List<BookieId> ensemble) {
+        checkState(ensemblesDecoder == null, "Ensembles are decoded lazily");
         checkArgument(ensemble.size() == ensembleSize,
                       "Size of passed in ensemble must match the ensembleSize of the builder");
         checkArgument(ensembles.isEmpty() || firstEntry > ensembles.lastKey(),
@@ -150,6 +154,7 @@ public class LedgerMetadataBuilder {
     }
 
     public LedgerMetadataBuilder replaceEnsembleEntry(long firstEntry, List<BookieId> ensemble) {
+        checkState(ensemblesDecoder == null, "Ensembles are decoded lazily");
         checkArgument(ensemble.size() == ensembleSize,
                       "Size of passed in ensemble must match the ensembleSize of the builder");
         checkArgument(ensembles.containsKey(firstEntry),
@@ -158,6 +163,17 @@ public class LedgerMetadataBuilder {
         return this;
     }
 
+    /**
+     * Set the ensembles to be decoded on the first access to them, instead of when building the metadata.
+     * The decoder must return at least one ensemble, with increasing first entries, and ensembleSize bookies
+     * each.
+     */
+    public LedgerMetadataBuilder withLazyEnsembles(Supplier<? extends Map<Long, List<BookieId>>> ensemblesDecoder) {
+        checkState(ensembles.isEmpty(), "Ensembles already set");
+        this.ensemblesDecoder = ensemblesDecoder;
+        return this;
+    }
+
     public LedgerMetadataBuilder withInRecoveryState() {
         this.state = State.IN_RECOVERY;
         return this;
@@ -203,6 +219,14 @@ public class LedgerMetadataBuilder {
         checkArgument(ensembleSize >= writeQuorumSize, "Write quorum must be less or equal to ensemble size");
         checkArgument(writeQuorumSize >= ackQuorumSize, "Write quorum must be greater or equal to ack quorum");
 
+        if (ensemblesDecoder != null) {
+            return new LedgerMetadataImpl(ledgerId, metadataFormatVersion,
+                                          ensembleSize, writeQuorumSize, ackQuorumSize,
+                                          state, lastEntryId, length, ensemblesDecoder,
+                                          digestType, password, ctime, storeCtime,
+                                          cToken,
+                                          customMetadata);
+        }
         return new LedgerMetadataImpl(ledgerId, metadataFormatVersion,
                                       ensembleSize, writeQuorumSize, ackQuorumSize,
                                       state, lastEntryId, length, ensembles,
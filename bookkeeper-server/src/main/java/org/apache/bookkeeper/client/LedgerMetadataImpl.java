@@ -18,6 +18,7 @@
 package org.apache.bookkeeper.client;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableList;
@@ -30,6 +31,7 @@ import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Optional;
 import java.util.TreeMap;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import lombok.EqualsAndHashCode;
 import org.apache.bookkeeper.client.api.DigestType;
@@ -45,12 +47,11 @@ import org.slf4j.LoggerFactory;
  *
  * <p>It provides parsing and serialization methods of such metadata.
  */
-@EqualsAndHashCode(exclude =
-        "ledgerId" // ledgerId is not serialized inside ZK node data
-)
+@EqualsAndHashCode
 class LedgerMetadataImpl implements LedgerMetadata {
     static final Logger LOG = LoggerFactory.getLogger(LedgerMetadataImpl.class);
 
+    @EqualsAndHashCode.Exclude // ledgerId is not serialized inside ZK node data
     private final long ledgerId;
 
     private final int metadataFormatVersion;
@@ -64,8 +65,11 @@ class LedgerMetadataImpl implements LedgerMetadata {
     private final long ctime;
     final boolean storeCtime; // non-private so builder can access for copy
 
-    private final NavigableMap<Long, ImmutableList<BookieId>> ensembles;
-    private final ImmutableList<BookieId> currentEnsemble;
+    // null until decoded, when the metadata is parsed with lazy ensembles
+    @EqualsAndHashCode.Exclude
+    private volatile NavigableMap<Long, ImmutableList<BookieId>> ensembles;
+    @EqualsAndHashCode.Exclude
+    private Supplier<? extends Map<Long, List<BookieId>>> ensemblesDecoder;
 
     private final boolean hasPassword;
     private final DigestType digestType;
@@ -90,7 +94,51 @@ class LedgerMetadataImpl implements LedgerMetadata {
                        boolean storeCtime,
                        long cToken,
                        Map<String, byte[]> customMetadata) {
+        this(ledgerId, metadataFormatVersion, ensembleSize, writeQuorumSize, ackQuorumSize, state,
+             lastEntryId, length, digestType, password, ctime, storeCtime, cToken, customMetadata);
         checkArgument(ensembles.size() > 0, "There must be at least one ensemble in the ledger");
+        this.ensembles = immutableEnsembles(ensembles);
+    }
+
+    /**
+     * Create ledger metadata whose ensembles are only decoded when first accessed. Parsing the
+     * metadata of a ledger with many ensembles is then cheap for the users which don't look at
+     * them, like the ones only checking if the ledger is closed.
+     */
+    LedgerMetadataImpl(long ledgerId,
+                       int metadataFormatVersion,
+                       int ensembleSize,
+                       int writeQuorumSize,
+                       int ackQuorumSize,
+                       State state,
+                       Optional<Long> lastEntryId,
+                       Optional<Long> length,
+                       Supplier<? extends Map<Long, List<BookieId>>> ensemblesDecoder,
+                       Optional<DigestType> digestType,
+                       Optional<byte[]> password,
+                       long ctime,
+                       boolean storeCtime,
+                       long cToken,
+                       Map<String, byte[]> customMetadata) {
+        this(ledgerId, metadataFormatVersion, ensembleSize, writeQuorumSize, ackQuorumSize, state,
+             lastEntryId, length, digestType, password, ctime, storeCtime, cToken, customMetadata);
+        this.ensemblesDecoder = ensemblesDecoder;
+    }
+
+    private LedgerMetadataImpl(long ledgerId,
+                               int metadataFormatVersion,
+                               int ensembleSize,
+                               int writeQuorumSize,
+                               int ackQuorumSize,
+                               State state,
+                               Optional<Long> lastEntryId,
+                               Optional<Long> length,
+                               Optional<DigestType> digestType,
+                               Optional<byte[]> password,
+                               long ctime,
+                               boolean storeCtime,
+                               long cToken,
+                               Map<String, byte[]> customMetadata) {
         if (state == State.CLOSED) {
             checkArgument(length.isPresent(), "Closed ledger must have a length");
             checkArgument(lastEntryId.isPresent(), "Closed ledger must have a last entry");
@@ -112,18 +160,6 @@ class LedgerMetadataImpl implements LedgerMetadata {
         this.lastEntryId = lastEntryId.orElse(LedgerHandle.INVALID_ENTRY_ID);
         this.length = length.orElse(0L);
 
-        this.ensembles = Collections.unmodifiableNavigableMap(
-                ensembles.entrySet().stream().collect(TreeMap::new,
-                                                      (m, e) -> m.put(e.getKey(),
-                                                                      ImmutableList.copyOf(e.getValue())),
-                                                      TreeMap::putAll));
-
-        if (state != State.CLOSED) {
-            currentEnsemble = this.ensembles.lastEntry().getValue();
-        } else {
-            currentEnsemble = null;
-        }
-
         if (password.isPresent()) {
             this.password = password.get();
             this.digestType = digestType.get();
@@ -141,14 +177,40 @@ class LedgerMetadataImpl implements LedgerMetadata {
         this.customMetadata = ImmutableMap.copyOf(customMetadata);
     }
 
+    private static NavigableMap<Long, ImmutableList<BookieId>> immutableEnsembles(
+            Map<Long, List<BookieId>> ensembles) {
+        return Collections.unmodifiableNavigableMap(
+                ensembles.entrySet().stream().collect(TreeMap::new,
+                                                      (m, e) -> m.put(e.getKey(),
+                                                                      ImmutableList.copyOf(e.getValue())),
+                                                      TreeMap::putAll));
+    }
+
     @Override
     public long getLedgerId() {
         return ledgerId;
     }
 
     @Override
+    @EqualsAndHashCode.Include
     public NavigableMap<Long, ? extends List<BookieId>> getAllEnsembles() {
-        return ensembles;
+        return decodedEnsembles();
+    }
+
+    private NavigableMap<Long, ImmutableList<BookieId>> decodedEnsembles() {
+        NavigableMap<Long, ImmutableList<BookieId>> decoded = ensembles;
+        if (decoded == null) {
+            synchronized (this) {
+                decoded = ensembles;
+                if (decoded == null) {
+                    decoded = immutableEnsembles(ensemblesDecoder.get());
+                    checkState(decoded.size() > 0, "There must be at least one ensemble in the ledger");
+                    ensembles = decoded;
+                    ensemblesDecoder = null;
+                }
+            }
+        }
+        return decoded;
     }
 
     @Override
@@ -224,7 +286,8 @@ class LedgerMetadataImpl implements LedgerMetadata {
     public List<BookieId> getEnsembleAt(long entryId) {
         // the head map cannot be empty, since we insert an ensemble for
         // entry-id 0, right when we start
-        return ensembles.get(ensembles.headMap(entryId + 1).lastKey());
+        NavigableMap<Long, ImmutableList<BookieId>> decoded = decodedEnsembles();
+        return decoded.get(decoded.headMap(entryId + 1).lastKey());
     }
 
     @Override
@@ -268,7 +331,7 @@ class LedgerMetadataImpl implements LedgerMetadata {
                 helper.add("password", "OMITTED");
             }
         }
-        helper.add("ensembles", ensembles.toString());
+        helper.add("ensembles", decodedEnsembles().toString());
         helper.add("customMetadata",
                    customMetadata.entrySet().stream().collect(
                            Collectors.toMap(e -> e.getKey(),
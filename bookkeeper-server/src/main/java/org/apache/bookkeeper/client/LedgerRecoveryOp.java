@@ -18,6 +18,10 @@
 package org.apache.bookkeeper.client;
 
 import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicLong;
 import org.apache.bookkeeper.client.AsyncCallback.AddCallback;
@@ -32,6 +36,10 @@ import org.slf4j.LoggerFactory;
  * with entry-id of -1 (BookieProtocol.LAST_ADD_CONFIRMED) to all bookies. Then
  * starting from the last confirmed entry (from hints in the ledger entries),
  * it reads forward until it is not able to find a particular entry.
+ *
+ * <p>Up to {@code recoveryReadMaxOutstandingBatches} batches of recovery reads are outstanding at
+ * once, and the entries read are re-added while the next batches are read. Entries of a batch
+ * which completes before the previous ones are held until they can be re-added in entry id order.
  */
 class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
 
@@ -46,6 +54,15 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
     volatile long startEntryToRead;
     volatile long endEntryToRead;
 
+    // guarded by this
+    private final int maxOutstandingReadBatches;
+    private int outstandingReadBatches = 0;
+    private long nextEntryToRecover;
+    private final TreeMap<Long, ReadResult> readAheadEntries = new TreeMap<>();
+    // the entries to re-add, in entry id order, by a thread at a time
+    private final ArrayDeque<ReadResult> entriesToRecover = new ArrayDeque<>();
+    private boolean recoveringEntries = false;
+
     // keep a copy of metadata for recovery.
     LedgerMetadata metadataForRecovery;
 
@@ -69,6 +86,34 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
 
     }
 
+    /**
+     * The range of entries of a recovery read, delivered in entry id order.
+     */
+    @VisibleForTesting
+    static class ReadBatch {
+        final long firstEntryId;
+        final long lastEntryId;
+        long nextEntryId;
+
+        ReadBatch(long firstEntryId, long lastEntryId) {
+            this.firstEntryId = firstEntryId;
+            this.lastEntryId = lastEntryId;
+            this.nextEntryId = firstEntryId;
+        }
+    }
+
+    private static class ReadResult {
+        final int rc;
+        final LedgerEntry entry;
+        final ReadBatch batch;
+
+        ReadResult(int rc, LedgerEntry entry, ReadBatch batch) {
+            this.rc = rc;
+            this.entry = entry;
+            this.batch = batch;
+        }
+    }
+
     public LedgerRecoveryOp(LedgerHandle lh, ClientContext clientCtx) {
         readCount = new AtomicLong(0);
         writeCount = new AtomicLong(0);
@@ -76,6 +121,7 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
         this.promise = new CompletableFuture<>();
         this.lh = lh;
         this.clientCtx = clientCtx;
+        this.maxOutstandingReadBatches = Math.max(1, clientCtx.getConf().recoveryReadMaxOutstandingBatches);
     }
 
     /**
@@ -123,12 +169,11 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
 
                                 lh.length = data.getLength();
                                 lh.pendingAddsSequenceHead = lh.lastAddConfirmed;
-                                startEntryToRead = endEntryToRead = lh.lastAddConfirmed;
                             }
                             // keep a copy of ledger metadata before proceeding
                             // ledger recovery
                             metadataForRecovery = lh.getLedgerMetadata();
-                            doRecoveryRead();
+                            recoverFrom(lh.getLastAddConfirmed());
                         } else if (rc == BKException.Code.TimeoutException) {
                             submitCallback(rc);
                         } else if (rc == BKException.Code.UnauthorizedAccessException) {
@@ -162,17 +207,42 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
     }
 
     /**
-     * Try to read past the last confirmed.
+     * Start reading and re-adding the entries past the last confirmed one.
+     */
+    @VisibleForTesting
+    void recoverFrom(long lastAddConfirmed) {
+        synchronized (this) {
+            startEntryToRead = endEntryToRead = lastAddConfirmed;
+            nextEntryToRecover = lastAddConfirmed + 1;
+        }
+        doRecoveryRead();
+    }
+
+    /**
+     * Try to read past the last confirmed, issuing batches of reads until
+     * {@code maxOutstandingReadBatches} are outstanding.
      */
     private void doRecoveryRead() {
-        if (!promise.isDone()) {
-            startEntryToRead = endEntryToRead + 1;
-            endEntryToRead = endEntryToRead + clientCtx.getConf().recoveryReadBatchSize;
-            new RecoveryReadOp(lh, clientCtx, startEntryToRead, endEntryToRead, this, null)
-                .initiate();
+        List<ReadBatch> batches = new ArrayList<>();
+        synchronized (this) {
+            while (!promise.isDone() && !readDone && outstandingReadBatches < maxOutstandingReadBatches) {
+                startEntryToRead = endEntryToRead + 1;
+                endEntryToRead = endEntryToRead + clientCtx.getConf().recoveryReadBatchSize;
+                outstandingReadBatches++;
+                batches.add(new ReadBatch(startEntryToRead, endEntryToRead));
+            }
+        }
+        for (ReadBatch batch : batches) {
+            readBatch(batch);
         }
     }
 
+    @VisibleForTesting
+    void readBatch(ReadBatch batch) {
+        new RecoveryReadOp(lh, clientCtx, batch.firstEntryId, batch.lastEntryId, this, batch)
+            .initiate();
+    }
+
     @Override
     public void onEntryComplete(int rc, LedgerHandle lh, LedgerEntry entry, Object ctx) {
         // notify entry listener on individual entries being read during ledger recovery.
@@ -181,6 +251,56 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
             listener.onEntryComplete(rc, lh, entry, ctx);
         }
 
+        ReadBatch batch = (ReadBatch) ctx;
+        boolean batchDone;
+        synchronized (this) {
+            // a read op delivers the entries of its batch in order
+            long entryId = batch.nextEntryId++;
+            batchDone = entryId == batch.lastEntryId;
+            if (batchDone) {
+                outstandingReadBatches--;
+            }
+            readAheadEntries.put(entryId, new ReadResult(rc, entry, batch));
+
+            // re-add the entries in order, the ones read ahead wait for the previous batches
+            ReadResult result;
+            while ((result = readAheadEntries.remove(nextEntryToRecover)) != null) {
+                nextEntryToRecover++;
+                entriesToRecover.add(result);
+            }
+        }
+        recoverEntries();
+        if (batchDone) {
+            // trigger next batch read
+            doRecoveryRead();
+        }
+    }
+
+    /**
+     * Re-add the entries ready to be recovered, outside of the lock of the op. A single thread
+     * re-adds them at a time, so they are added in entry id order.
+     */
+    private void recoverEntries() {
+        synchronized (this) {
+            if (recoveringEntries) {
+                return;
+            }
+            recoveringEntries = true;
+        }
+        while (true) {
+            ReadResult result;
+            synchronized (this) {
+                result = entriesToRecover.poll();
+                if (result == null) {
+                    recoveringEntries = false;
+                    return;
+                }
+            }
+            recoverEntry(result.rc, result.entry, result.batch);
+        }
+    }
+
+    private void recoverEntry(int rc, LedgerEntry entry, ReadBatch batch) {
         // we only trigger recovery add an entry when readDone == false && callbackDone == false
         if (!promise.isDone() && !readDone && rc == BKException.Code.OK) {
             readCount.incrementAndGet();
@@ -202,19 +322,18 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
             }
             if (BKException.Code.OK == rc) {
                 lh.asyncRecoveryAddEntry(data, 0, data.length, this, null);
-                if (entry.getEntryId() == endEntryToRead) {
-                    // trigger next batch read
-                    doRecoveryRead();
-                }
                 return;
             }
         }
 
         // no entry found. stop recovery procedure but wait until recovery add finished.
         if (rc == BKException.Code.NoSuchEntryException || rc == BKException.Code.NoSuchLedgerExistsException) {
-            readDone = true;
-            if (readCount.get() == writeCount.get()) {
-                submitCallback(BKException.Code.OK);
+            // the batches read ahead of the end of the ledger find no entries either
+            if (!readDone) {
+                readDone = true;
+                if (readCount.get() == writeCount.get()) {
+                    submitCallback(BKException.Code.OK);
+                }
             }
             return;
         }
@@ -222,7 +341,7 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
         // otherwise, some other error, we can't handle
         if (BKException.Code.OK != rc && !promise.isDone()) {
             LOG.error("Failure {} while reading entries: ({} - {}), ledger: {} while recovering ledger",
-                      BKException.getMessage(rc), startEntryToRead, endEntryToRead, lh.getId());
+                      BKException.getMessage(rc), batch.firstEntryId, batch.lastEntryId, lh.getId());
             submitCallback(rc);
         } else if (BKException.Code.OK == rc) {
             // we are here is because we successfully read an entry but readDone was already set to true.
@@ -230,7 +349,6 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
             LOG.warn("Successfully read entry {} for ledger {}, but readDone is already {}",
                     entry.getEntryId(), lh.getId(), readDone);
         }
-        return;
     }
 
     @Override
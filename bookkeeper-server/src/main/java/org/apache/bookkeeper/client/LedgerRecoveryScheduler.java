@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounds the number of ledger recoveries run concurrently by a client.
+ *
+ * <p>Opening many ledgers with recovery at once, e.g. when a new writer takes over the ledgers
+ * of a failed one, would otherwise fence, read and rewrite the tails of all of them at the same
+ * time, on the same few bookies. The scheduler runs at most a given number of recoveries, and at
+ * most a given number of recoveries involving the same bookie. Other recoveries wait in a queue,
+ * in submission order, and a queued recovery whose bookies are busy doesn't hold back the
+ * recoveries behind it on other bookies.
+ */
+class LedgerRecoveryScheduler {
+    private static final Logger LOG = LoggerFactory.getLogger(LedgerRecoveryScheduler.class);
+
+    private final int maxConcurrentRecoveries;
+    private final int maxConcurrentRecoveriesPerBookie;
+    private final OrderedExecutor executor;
+    private final OpStatsLogger queueTimeLogger;
+
+    private final LinkedList<PendingRecovery<?>> pendingRecoveries = new LinkedList<>();
+    private final Map<BookieId, Integer> recoveriesPerBookie = new HashMap<>();
+    private int runningRecoveries = 0;
+
+    LedgerRecoveryScheduler(int maxConcurrentRecoveries, int maxConcurrentRecoveriesPerBookie,
+                            OrderedExecutor executor, OpStatsLogger queueTimeLogger) {
+        this.maxConcurrentRecoveries = maxConcurrentRecoveries;
+        this.maxConcurrentRecoveriesPerBookie = maxConcurrentRecoveriesPerBookie;
+        this.executor = executor;
+        this.queueTimeLogger = queueTimeLogger;
+    }
+
+    /**
+     * Run the recovery of a ledger once the concurrency limits allow it.
+     *
+     * @param ledgerId the ledger being recovered
+     * @param ensemble the bookies the recovery reads from and writes to
+     * @param recovery starts the recovery, invoked on the executor thread of the ledger
+     * @return a future completed with the result of the recovery
+     */
+    <T> CompletableFuture<T> submit(long ledgerId, List<BookieId> ensemble,
+                                    Supplier<CompletableFuture<T>> recovery) {
+        PendingRecovery<T> pending = new PendingRecovery<>(ledgerId, ensemble, recovery);
+        synchronized (this) {
+            pendingRecoveries.add(pending);
+        }
+        startRecoveries();
+        return pending.future;
+    }
+
+    synchronized int getNumPendingRecoveries() {
+        return pendingRecoveries.size();
+    }
+
+    synchronized int getNumRunningRecoveries() {
+        return runningRecoveries;
+    }
+
+    private void startRecoveries() {
+        List<PendingRecovery<?>> toStart = new ArrayList<>();
+        synchronized (this) {
+            Iterator<PendingRecovery<?>> iter = pendingRecoveries.iterator();
+            while (iter.hasNext()
+                   && (maxConcurrentRecoveries <= 0 || runningRecoveries < maxConcurrentRecoveries)) {
+                PendingRecovery<?> pending = iter.next();
+                if (!bookiesAvailable(pending.bookies)) {
+                    continue;
+                }
+                iter.remove();
+                runningRecoveries++;
+                for (BookieId bookie : pending.bookies) {
+                    recoveriesPerBookie.merge(bookie, 1, Integer::sum);
+                }
+                toStart.add(pending);
+            }
+        }
+        // start the recoveries outside the lock, on the executor so a recovery completing
+        // synchronously doesn't recurse into the next one
+        for (PendingRecovery<?> pending : toStart) {
+            try {
+                executor.executeOrdered(pending.ledgerId, pending::start);
+            } catch (RejectedExecutionException ree) {
+                pending.future.completeExceptionally(new BKException.BKInterruptedException());
+                recoveryComplete(pending);
+            }
+        }
+    }
+
+    private boolean bookiesAvailable(Set<BookieId> bookies) {
+        if (maxConcurrentRecoveriesPerBookie <= 0) {
+            return true;
+        }
+        for (BookieId bookie : bookies) {
+            if (recoveriesPerBookie.getOrDefault(bookie, 0) >= maxConcurrentRecoveriesPerBookie) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void recoveryComplete(PendingRecovery<?> recovery) {
+        synchronized (this) {
+            runningRecoveries--;
+            for (BookieId bookie : recovery.bookies) {
+                recoveriesPerBookie.computeIfPresent(bookie, (b, count) -> count > 1 ? count - 1 : null);
+            }
+        }
+        startRecoveries();
+    }
+
+    private class PendingRecovery<T> {
+        final long ledgerId;
+        final Set<BookieId> bookies;
+        final Supplier<CompletableFuture<T>> recovery;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final long enqueueTimeNanos = MathUtils.nowInNano();
+
+        PendingRecovery(long ledgerId, List<BookieId> ensemble, Supplier<CompletableFuture<T>> recovery) {
+            this.ledgerId = ledgerId;
+            this.bookies = new LinkedHashSet<>(ensemble);
+            this.recovery = recovery;
+        }
+
+        void start() {
+            long startTimeNanos = MathUtils.nowInNano();
+            queueTimeLogger.registerSuccessfulEvent(startTimeNanos - enqueueTimeNanos, TimeUnit.NANOSECONDS);
+
+            CompletableFuture<T> result;
+            try {
+                result = recovery.get();
+            } catch (Throwable t) {
+                result = new CompletableFuture<>();
+                result.completeExceptionally(t);
+            }
+            result.whenComplete((value, cause) -> {
+                LOG.info("Recovery of ledger {} completed in {} ms, after waiting {} ms to start ({})",
+                         ledgerId, MathUtils.elapsedMSec(startTimeNanos),
+                         TimeUnit.NANOSECONDS.toMillis(startTimeNanos - enqueueTimeNanos),
+                         cause == null ? "OK" : cause.getMessage());
+                recoveryComplete(this);
+                if (cause != null) {
+                    future.completeExceptionally(cause);
+                } else {
+                    future.complete(value);
+                }
+            });
+        }
+    }
+}
@@ -37,6 +37,7 @@ import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import org.apache.bookkeeper.client.AsyncCallback.AddCallbackWithLatency;
 import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.common.util.MemoryLimitController;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
 import org.apache.bookkeeper.util.MathUtils;
@@ -80,6 +81,8 @@ class PendingAddOp implements WriteCallback {
     EnumSet<WriteFlag> writeFlags;
     boolean allowFailFast = false;
     List<BookieId> ensemble;
+    MemoryLimitController memoryLimitController;
+    long reservedMemory;
 
     @SuppressFBWarnings("IS2_INCONSISTENT_SYNC")
     static PendingAddOp create(LedgerHandle lh, ClientContext clientCtx,
@@ -107,6 +110,8 @@ class PendingAddOp implements WriteCallback {
         op.allowFailFast = false;
         op.qwcLatency = 0;
         op.writeFlags = writeFlags;
+        op.memoryLimitController = null;
+        op.reservedMemory = 0;
 
         if (op.addEntrySuccessBookies == null) {
             op.addEntrySuccessBookies = new HashSet<>();
@@ -132,6 +137,19 @@ class PendingAddOp implements WriteCallback {
         return this;
     }
 
+    synchronized void setReservedMemory(MemoryLimitController memoryLimitController, long size) {
+        this.memoryLimitController = memoryLimitController;
+        this.reservedMemory = size;
+    }
+
+    private synchronized void releaseReservedMemory() {
+        if (memoryLimitController != null) {
+            memoryLimitController.releaseMemory(reservedMemory);
+            memoryLimitController = null;
+            reservedMemory = 0;
+        }
+    }
+
     void setEntryId(long entryId) {
         this.entryId = entryId;
     }
@@ -277,6 +295,9 @@ class PendingAddOp implements WriteCallback {
         if (BKException.Code.OK == rc) {
             ackQuorum = ackSet.completeBookieAndCheck(bookieIndex);
             addEntrySuccessBookies.add(ensemble.get(bookieIndex));
+            if (lh.slowBookieDetector != null) {
+                lh.recordBookieAddLatency(bookieIndex, requestTimeNanos);
+            }
         }
 
         if (completed) {
@@ -467,6 +488,7 @@ class PendingAddOp implements WriteCallback {
         if (hasRun && callbackTriggered) {
             ReferenceCountUtil.release(toSend);
             toSend = null;
+            releaseReservedMemory();
         }
         // only recycle a pending add op after it has been run.
         if (hasRun && toSend == null && pendingWriteRequests == 0) {
@@ -481,6 +503,7 @@ class PendingAddOp implements WriteCallback {
             ReferenceCountUtil.release(payload);
             payload = null;
         }
+        releaseReservedMemory();
         cb = null;
         ctx = null;
         ensemble = null;
@@ -33,11 +33,13 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.bookkeeper.client.BKException.BKDigestMatchException;
 import org.apache.bookkeeper.client.api.LedgerEntries;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
 import org.apache.bookkeeper.client.impl.LedgerEntriesImpl;
 import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
+import org.apache.bookkeeper.common.util.MemoryLimitController;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.proto.BookieProtocol;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
@@ -81,6 +83,10 @@ class PendingReadOp implements ReadEntryCallback, Runnable {
     abstract class LedgerEntryRequest implements SpeculativeRequestExecutor, AutoCloseable {
 
         final AtomicBoolean complete = new AtomicBoolean(false);
+        // bytes of the response accounted against the client memory limit, -1 once released
+        final AtomicLong reservedMemory = new AtomicLong(0);
+        // whether other readers of the entry wait for this request, through the entry cache
+        final AtomicBoolean sharedRead = new AtomicBoolean(false);
 
         int rc = BKException.Code.OK;
         int firstError = BKException.Code.OK;
@@ -115,6 +121,73 @@ class PendingReadOp implements ReadEntryCallback, Runnable {
                 writeSet.recycle();
             }
             entryImpl.close();
+            releaseReservedMemory();
+            finishSharedRead(null);
+        }
+
+        /**
+         * Complete the request with the entry from the entry cache.
+         *
+         * @param recheck whether the entry was already looked up by this request, in which case
+         *                the lookup isn't counted again
+         * @return true if the entry was cached, false otherwise.
+         */
+        boolean completeFromCache(ClientEntryCache entryCache, boolean recheck) {
+            if (isComplete()) {
+                return false;
+            }
+            LedgerEntryImpl cached = LedgerEntryImpl.create(lh.ledgerId, eId);
+            boolean found = recheck ? entryCache.recheck(cached) : entryCache.get(cached);
+            if (found && complete.compareAndSet(false, true)) {
+                rc = BKException.Code.OK;
+                entryImpl.setLength(cached.getLength());
+                entryImpl.setEntryBuf(cached.getEntryBuffer().retain());
+                writeSet.recycle();
+                cached.close();
+                return true;
+            }
+            cached.close();
+            return false;
+        }
+
+        /**
+         * Notify the readers waiting for this request in the entry cache, adding the entry to the
+         * cache if the read succeeded.
+         */
+        void finishSharedRead(ByteBuf content) {
+            if (sharedRead.compareAndSet(true, false)) {
+                ClientEntryCache entryCache = clientCtx.getEntryCache();
+                if (content != null) {
+                    entryCache.put(lh.ledgerId, eId, entryImpl.getLength(), content);
+                }
+                entryCache.finishRead(lh.ledgerId, eId);
+            }
+        }
+
+        /**
+         * Account for the memory of the response against the client memory limit.
+         */
+        void reserveMemory(long size) {
+            MemoryLimitController memoryLimitController = clientCtx.getMemoryLimitController();
+            if (memoryLimitController == null) {
+                return;
+            }
+            // the response is already in memory, so it can't be refused
+            memoryLimitController.forceReserveMemory(size);
+            if (!reservedMemory.compareAndSet(0, size)) {
+                // the request was released in the meantime
+                memoryLimitController.releaseMemory(size);
+            }
+        }
+
+        /**
+         * Release the memory of the response, once it is handed to the application or discarded.
+         */
+        void releaseReservedMemory() {
+            long size = reservedMemory.getAndSet(-1);
+            if (size > 0) {
+                clientCtx.getMemoryLimitController().releaseMemory(size);
+            }
         }
 
         /**
@@ -155,7 +228,9 @@ class PendingReadOp implements ReadEntryCallback, Runnable {
                  */
                 entryImpl.setLength(buffer.getLong(DigestManager.METADATA_LENGTH - 8));
                 entryImpl.setEntryBuf(content);
+                reserveMemory(buffer.readableBytes());
                 writeSet.recycle();
+                finishSharedRead(content);
                 return true;
             } else {
                 return false;
@@ -172,6 +247,7 @@ class PendingReadOp implements ReadEntryCallback, Runnable {
         boolean fail(int rc) {
             if (complete.compareAndSet(false, true)) {
                 this.rc = rc;
+                finishSharedRead(null);
                 submitCallback(rc);
                 return true;
             } else {
@@ -519,23 +595,62 @@ class PendingReadOp implements ReadEntryCallback, Runnable {
                 ensemble = getLedgerMetadata().getEnsembleAt(i);
                 nextEnsembleChange = LedgerMetadataUtils.getNextEnsembleChange(getLedgerMetadata(), i);
             }
-            LedgerEntryRequest entry;
-            if (parallelRead) {
-                entry = new ParallelReadRequest(ensemble, lh.ledgerId, i);
-            } else {
-                entry = new SequenceReadRequest(ensemble, lh.ledgerId, i);
-            }
-            seq.add(entry);
+            seq.add(createEntryRequest(ensemble, i));
             i++;
         } while (i <= endEntryId);
         // read the entries.
         for (LedgerEntryRequest entry : seq) {
-            entry.read();
-            if (!parallelRead && clientCtx.getConf().readSpeculativeRequestPolicy.isPresent()) {
-                speculativeTask = clientCtx.getConf().readSpeculativeRequestPolicy.get()
-                    .initiateSpeculativeRequest(clientCtx.getScheduler(), entry);
+            readEntry(entry);
+        }
+    }
+
+    LedgerEntryRequest createEntryRequest(List<BookieId> ensemble, long entryId) {
+        if (parallelRead) {
+            return new ParallelReadRequest(ensemble, lh.ledgerId, entryId);
+        } else {
+            return new SequenceReadRequest(ensemble, lh.ledgerId, entryId);
+        }
+    }
+
+    void readEntry(LedgerEntryRequest entry) {
+        ClientEntryCache entryCache = clientCtx.getEntryCache();
+        // entries up to the last add confirmed never change, so they can be shared with other readers
+        if (entryCache != null && !isRecoveryRead && entry.eId <= lh.getLastAddConfirmed()) {
+            if (entry.completeFromCache(entryCache, false)) {
+                // keep the callbacks on the ordered executor thread, as for the bookie responses
+                clientCtx.getMainWorkerPool().executeOrdered(lh.ledgerId, () -> submitCallback(BKException.Code.OK));
+                return;
+            }
+            CompletableFuture<Void> inflight = entryCache.startRead(lh.ledgerId, entry.eId);
+            if (inflight != null) {
+                // another reader is reading the entry, use its result or read the entry if it failed
+                inflight.whenComplete((ignore, cause) ->
+                    clientCtx.getMainWorkerPool().executeOrdered(lh.ledgerId, () -> {
+                        if (entry.completeFromCache(entryCache, true)) {
+                            submitCallback(BKException.Code.OK);
+                        } else if (!entry.isComplete()) {
+                            sendEntryRead(entry);
+                        }
+                    }));
+                return;
+            }
+            entry.sharedRead.set(true);
+            if (entry.completeFromCache(entryCache, true)) {
+                // the entry was added by a read which finished since the lookup
+                entry.finishSharedRead(null);
+                clientCtx.getMainWorkerPool().executeOrdered(lh.ledgerId, () -> submitCallback(BKException.Code.OK));
+                return;
             }
         }
+        sendEntryRead(entry);
+    }
+
+    private void sendEntryRead(LedgerEntryRequest entry) {
+        entry.read();
+        if (!parallelRead && clientCtx.getConf().readSpeculativeRequestPolicy.isPresent()) {
+            speculativeTask = clientCtx.getConf().readSpeculativeRequestPolicy.get()
+                .initiateSpeculativeRequest(clientCtx.getScheduler(), entry);
+        }
     }
 
     @Override
@@ -653,6 +768,8 @@ class PendingReadOp implements ReadEntryCallback, Runnable {
             future.completeExceptionally(BKException.create(code));
         } else {
             clientCtx.getClientStats().getReadOpLogger().registerSuccessfulEvent(latencyNanos, TimeUnit.NANOSECONDS);
+            // the entries are owned by the application from now on
+            seq.forEach(LedgerEntryRequest::releaseReservedMemory);
             future.complete(LedgerEntriesImpl.create(Lists.transform(seq, input -> input.entryImpl)));
         }
     }
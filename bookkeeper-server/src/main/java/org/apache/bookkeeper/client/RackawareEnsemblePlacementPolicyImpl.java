@@ -43,7 +43,6 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.apache.bookkeeper.client.BKException.BKNotEnoughBookiesException;
@@ -860,6 +859,8 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
         int remoteNodeInReorderSequence) {
         boolean useRegionAware = regionAware && (!myRegion.equals(UNKNOWN_REGION));
         int ensembleSize = ensemble.size();
+        // the reordering runs on every read, so it uses the latest snapshot of the topology instead of the lock
+        TopologySnapshot snapshot = topologySnapshot;
 
         // For rack aware, If all the bookies in the write set are available, simply return the original write set,
         // to avoid creating more lists
@@ -870,7 +871,7 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
         } else {
             for (int i = 0; i < ensemble.size(); i++) {
                 BookieId bookieAddr = ensemble.get(i);
-                if ((!knownBookies.containsKey(bookieAddr) && !readOnlyBookies.contains(bookieAddr))
+                if ((!snapshot.isWritable(bookieAddr) && !snapshot.isReadOnly(bookieAddr))
                     || slowBookies.getIfPresent(bookieAddr) != null) {
                     // Found at least one bookie not available in the ensemble, or in slowBookies
                     isAnyBookieUnavailable = true;
@@ -926,13 +927,12 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
             BookieId address = ensemble.get(idx);
             String region = writeSetWithRegion.get(idx);
             Long lastFailedEntryOnBookie = bookiesHealthInfo.getBookieFailureHistory(address);
-            if (null == knownBookies.get(address)) {
+            if (!snapshot.isWritable(address)) {
                 // there isn't too much differences between readonly bookies
                 // from unavailable bookies. since there
                 // is no write requests to them, so we shouldn't try reading
                 // from readonly bookie prior to writable bookies.
-                if ((null == readOnlyBookies)
-                    || !readOnlyBookies.contains(address)) {
+                if (!snapshot.isReadOnly(address)) {
                     writeSet.set(i, idx | UNAVAIL_MASK);
                 } else {
                     if (slowBookies.getIfPresent(address) != null) {
@@ -1032,7 +1032,7 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
         return writeSet;
     }
 
-    // this method should be called in readlock scope of 'rwlock'
+    // looks the bookies up in the latest topology snapshot, so it doesn't need the readlock of 'rwlock'
     @Override
     public PlacementPolicyAdherence isEnsembleAdheringToPlacementPolicy(List<BookieId> ensembleList,
             int writeQuorumSize, int ackQuorumSize) {
@@ -1042,14 +1042,16 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
         int ensembleSize = ensembleList.size();
         int minNumRacksPerWriteQuorumForThisEnsemble = Math.min(writeQuorumSize, minNumRacksPerWriteQuorum);
         HashSet<String> racksInQuorum = new HashSet<String>();
+        TopologySnapshot snapshot = topologySnapshot;
         BookieId bookie;
         for (int i = 0; i < ensembleList.size(); i++) {
             racksInQuorum.clear();
             for (int j = 0; j < writeQuorumSize; j++) {
                 bookie = ensembleList.get((i + j) % ensembleSize);
                 try {
-                    if (knownBookies.containsKey(bookie)) {
-                        racksInQuorum.add(knownBookies.get(bookie).getNetworkLocation());
+                    BookieNode node = snapshot.getWritableBookie(bookie);
+                    if (node != null) {
+                        racksInQuorum.add(node.getNetworkLocation());
                     } else if (LOG.isDebugEnabled()) {
                         LOG.debug("bookie {} is not in the list of knownBookies", bookie);
                     }
@@ -1077,27 +1079,23 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
         HashSet<String> rackCounter = new HashSet<>();
         int minWriteQuorumNumRacksPerWriteQuorum = Math.min(writeQuorumSize, minNumRacksPerWriteQuorum);
 
-        ReentrantReadWriteLock.ReadLock readLock = rwLock.readLock();
-        readLock.lock();
-        try {
-            for (BookieId bookie : ackedBookies) {
-                if (knownBookies.containsKey(bookie)) {
-                    rackCounter.add(knownBookies.get(bookie).getNetworkLocation());
-                } else if (LOG.isDebugEnabled()) {
-                    LOG.debug("bookie {} is not in the list of knownBookies", bookie);
-                }
+        TopologySnapshot snapshot = topologySnapshot;
+        for (BookieId bookie : ackedBookies) {
+            BookieNode node = snapshot.getWritableBookie(bookie);
+            if (node != null) {
+                rackCounter.add(node.getNetworkLocation());
+            } else if (LOG.isDebugEnabled()) {
+                LOG.debug("bookie {} is not in the list of knownBookies", bookie);
             }
+        }
 
-            // Check to make sure that ensemble is writing to `minNumberOfRacks`'s number of racks at least.
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("areAckedBookiesAdheringToPlacementPolicy returning {} because number of racks = {} and "
-                          + "minNumRacksPerWriteQuorum = {}",
-                          rackCounter.size() >= minNumRacksPerWriteQuorum,
-                          rackCounter.size(),
-                          minNumRacksPerWriteQuorum);
-            }
-        } finally {
-            readLock.unlock();
+        // Check to make sure that ensemble is writing to `minNumberOfRacks`'s number of racks at least.
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("areAckedBookiesAdheringToPlacementPolicy returning {} because number of racks = {} and "
+                      + "minNumRacksPerWriteQuorum = {}",
+                      rackCounter.size() >= minNumRacksPerWriteQuorum,
+                      rackCounter.size(),
+                      minNumRacksPerWriteQuorum);
         }
         return rackCounter.size() >= minWriteQuorumNumRacksPerWriteQuorum;
     }
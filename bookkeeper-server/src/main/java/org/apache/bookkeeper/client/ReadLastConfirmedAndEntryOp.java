@@ -144,6 +144,28 @@ class ReadLastConfirmedAndEntryOp implements BookkeeperInternalCallbacks.ReadEnt
             }
         }
 
+        /**
+         * Complete the read request with an entry from the entry cache.
+         *
+         * @param cached
+         *          the cached entry, owned by the request from now on
+         * @return true if we managed to complete the entry; otherwise return false if it is already completed
+         */
+        boolean completeFromCache(LedgerEntryImpl cached) {
+            if (!complete.getAndSet(true)) {
+                writeSet.recycle();
+                orderedEnsemble.recycle();
+                rc = BKException.Code.OK;
+                entryImpl.setLength(cached.getLength());
+                entryImpl.setEntryBuf(cached.getEntryBuffer().retain());
+                cached.close();
+                return true;
+            } else {
+                cached.close();
+                return false;
+            }
+        }
+
         /**
          * Fail the request with given result code <i>rc</i>.
          *
@@ -498,6 +520,10 @@ class ReadLastConfirmedAndEntryOp implements BookkeeperInternalCallbacks.ReadEnt
         } else {
             request = new SequenceReadRequest(currentEnsemble, lh.getId(), prevEntryId + 1);
         }
+        ClientEntryCache entryCache = clientCtx.getEntryCache();
+        if (entryCache != null && completeFromCache(entryCache)) {
+            return;
+        }
         request.read();
 
         if (!parallelRead && clientCtx.getConf().readLACSpeculativeRequestPolicy.isPresent()) {
@@ -506,6 +532,29 @@ class ReadLastConfirmedAndEntryOp implements BookkeeperInternalCallbacks.ReadEnt
         }
     }
 
+    /**
+     * Complete the operation with the entry, if another reader of the ledger already read it.
+     * Only entries up to the last add confirmed are cached, so the entry is confirmed as well.
+     */
+    private boolean completeFromCache(ClientEntryCache entryCache) {
+        long entryId = prevEntryId + 1;
+        LedgerEntryImpl cached = LedgerEntryImpl.create(lh.getId(), entryId);
+        if (!entryCache.get(cached)) {
+            cached.close();
+            return false;
+        }
+        if (!request.completeFromCache(cached)) {
+            return false;
+        }
+        if (entryId > lastAddConfirmed) {
+            lastAddConfirmed = entryId;
+            lh.updateLastConfirmed(entryId, 0L);
+        }
+        hasValidResponse = true;
+        completeRequest();
+        return true;
+    }
+
     void sendReadTo(int bookieIndex, BookieId to, ReadLACAndEntryRequest entry) throws InterruptedException {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Calling Read LAC and Entry with {} and long polling interval {} on Bookie {} - Parallel {}",
@@ -541,6 +590,12 @@ class ReadLastConfirmedAndEntryOp implements BookkeeperInternalCallbacks.ReadEnt
             clientCtx.getClientStats().getReadLacAndEntryOpLogger()
                 .registerSuccessfulEvent(latencyMicros, TimeUnit.MICROSECONDS);
             if (request.entryImpl.getEntryBuffer() != null) {
+                ClientEntryCache entryCache = clientCtx.getEntryCache();
+                if (entryCache != null && request.entryImpl.getEntryId() <= lastAddConfirmed) {
+                    // share the entry with the other readers tailing the ledger
+                    entryCache.put(lh.getId(), request.entryImpl.getEntryId(), request.entryImpl.getLength(),
+                                   request.entryImpl.getEntryBuffer());
+                }
                 entry = new LedgerEntry(request.entryImpl);
             } else {
                 entry = null;
@@ -31,6 +31,7 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 import org.apache.bookkeeper.client.AsyncCallback.AddCallback;
 import org.apache.bookkeeper.client.AsyncCallback.CloseCallback;
 import org.apache.bookkeeper.client.AsyncCallback.ReadCallback;
@@ -280,9 +281,7 @@ class ReadOnlyLedgerHandle extends LedgerHandle implements LedgerMetadataListene
                     if (metadata.getValue().isClosed()) {
                         return CompletableFuture.completedFuture(ReadOnlyLedgerHandle.this);
                     } else {
-                        return new LedgerRecoveryOp(ReadOnlyLedgerHandle.this, clientCtx)
-                            .setEntryListener(listener)
-                            .initiate();
+                        return recoverEntries(listener);
                     }
             })
             .thenCompose((ignore) -> closeRecovered())
@@ -296,6 +295,19 @@ class ReadOnlyLedgerHandle extends LedgerHandle implements LedgerMetadataListene
             });
     }
 
+    private CompletableFuture<LedgerHandle> recoverEntries(ReadEntryListener listener) {
+        Supplier<CompletableFuture<LedgerHandle>> recoveryOp =
+            () -> new LedgerRecoveryOp(ReadOnlyLedgerHandle.this, clientCtx)
+                .setEntryListener(listener)
+                .initiate();
+        LedgerRecoveryScheduler recoveryScheduler = clientCtx.getRecoveryScheduler();
+        if (recoveryScheduler == null) {
+            return recoveryOp.get();
+        }
+        // the recovery reads from, and writes to, the bookies of the last ensemble
+        return recoveryScheduler.submit(getId(), getCurrentEnsemble(), recoveryOp);
+    }
+
     CompletableFuture<Versioned<LedgerMetadata>> closeRecovered() {
         long lac, len;
         synchronized (this) {
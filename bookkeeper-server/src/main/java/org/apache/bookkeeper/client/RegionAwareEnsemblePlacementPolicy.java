@@ -165,6 +165,7 @@ public class RegionAwareEnsemblePlacementPolicy extends RackawareEnsemblePlaceme
             }
             regionEntry.getValue().handleBookiesThatJoined(regionSet);
         }
+        publishTopologySnapshot();
     }
 
     @Override
@@ -213,6 +214,7 @@ public class RegionAwareEnsemblePlacementPolicy extends RackawareEnsemblePlaceme
                     LOG.error("Failed to update bookie rack info: {} ", bookieAddress, e);
                 }
             });
+            publishTopologySnapshot();
         } finally {
             rwLock.writeLock().unlock();
         }
@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.client;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.util.MathUtils;
+
+/**
+ * Detects the bookies of the current ensemble of a ledger which are persistently slower than the
+ * other bookies of the ensemble at acknowledging adds.
+ *
+ * <p>The add latency of each bookie of the ensemble is tracked as an exponentially weighted moving
+ * average. Once every bookie has enough samples, a bookie is slow when its average latency is
+ * above both the minimum slow latency and the latency multiplier times the median average latency
+ * of the other bookies. At most one slow bookie is reported per swap interval, so that a slowdown
+ * of the whole cluster doesn't cause a storm of ensemble changes.
+ *
+ * <p>The acknowledgements only add their latency to the window of their bookie, without locking.
+ * The windows are folded into the averages, and the averages compared, at most once per evaluation
+ * interval, by the acknowledgement which ends the interval.
+ */
+class SlowBookieDetector {
+
+    // weight of a new latency sample in the average
+    static final double SAMPLE_WEIGHT = 0.05;
+    // number of samples of a bookie before its average latency is compared
+    static final int MIN_SAMPLES = 50;
+    static final long EVALUATION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The latencies recorded for the bookies of an ensemble since the last evaluation, indexed by the
+     * position of the bookies in the ensemble.
+     */
+    private static class Windows {
+        final List<BookieId> ensemble;
+        // when the bookies joined the ensemble, the adds sent before are not counted
+        final long[] joinTimeNanos;
+        final AtomicIntegerArray numSamples;
+        final AtomicLongArray sumLatencyNanos;
+
+        Windows(List<BookieId> ensemble, long[] joinTimeNanos) {
+            this.ensemble = ensemble;
+            this.joinTimeNanos = joinTimeNanos;
+            this.numSamples = new AtomicIntegerArray(ensemble.size());
+            this.sumLatencyNanos = new AtomicLongArray(ensemble.size());
+        }
+    }
+
+    private final double latencyMultiplier;
+    private final long minSlowLatencyNanos;
+    private final long swapIntervalNanos;
+
+    private volatile Windows windows;
+    private final AtomicLong nextEvaluationNanos;
+
+    // indexed by the position of the bookies in the ensemble, guarded by this
+    private double[] avgLatencyNanos;
+    private int[] totalSamples;
+    private boolean swapped = false;
+    private long lastSwapNanos;
+
+    SlowBookieDetector(List<BookieId> ensemble, double latencyMultiplier, long minSlowLatencyNanos,
+                       long swapIntervalNanos) {
+        this.latencyMultiplier = latencyMultiplier;
+        this.minSlowLatencyNanos = minSlowLatencyNanos;
+        this.swapIntervalNanos = swapIntervalNanos;
+        // the adds of the first ensemble are all counted
+        this.windows = new Windows(ensemble, new long[ensemble.size()]);
+        this.avgLatencyNanos = new double[ensemble.size()];
+        this.totalSamples = new int[ensemble.size()];
+        this.nextEvaluationNanos = new AtomicLong(MathUtils.nowInNano() + EVALUATION_INTERVAL_NANOS);
+    }
+
+    /**
+     * Record the latency of an add acknowledged by a bookie of the ensemble.
+     *
+     * @param bookieIndex the index of the bookie in the ensemble
+     * @param addStartNanos when the add started
+     * @return the index of a bookie which is slow and should be replaced now, -1 otherwise
+     */
+    int recordAddLatency(int bookieIndex, long addStartNanos) {
+        return recordAddLatency(bookieIndex, addStartNanos, MathUtils.nowInNano());
+    }
+
+    int recordAddLatency(int bookieIndex, long addStartNanos, long nowNanos) {
+        Windows current = windows;
+        if (bookieIndex >= current.joinTimeNanos.length || addStartNanos < current.joinTimeNanos[bookieIndex]) {
+            // sent before the bookie joined the ensemble, the latency includes the ensemble change
+            return -1;
+        }
+        current.numSamples.incrementAndGet(bookieIndex);
+        current.sumLatencyNanos.addAndGet(bookieIndex, nowNanos - addStartNanos);
+
+        long evaluationNanos = nextEvaluationNanos.get();
+        if (nowNanos - evaluationNanos < 0
+                || !nextEvaluationNanos.compareAndSet(evaluationNanos, nowNanos + EVALUATION_INTERVAL_NANOS)) {
+            return -1;
+        }
+        return evaluate(nowNanos);
+    }
+
+    /**
+     * Update the bookies of the ensemble after an ensemble change. The bookies which moved or joined
+     * the ensemble start over, and only count the adds sent from now on.
+     */
+    synchronized void ensembleChanged(List<BookieId> newEnsemble) {
+        Windows current = windows;
+        if (current.ensemble.equals(newEnsemble)) {
+            return;
+        }
+        foldWindows(current);
+        double[] newAvgLatencyNanos = new double[newEnsemble.size()];
+        int[] newTotalSamples = new int[newEnsemble.size()];
+        long[] newJoinTimeNanos = new long[newEnsemble.size()];
+        long nowNanos = MathUtils.nowInNano();
+        for (int i = 0; i < newEnsemble.size(); i++) {
+            if (i < current.ensemble.size() && newEnsemble.get(i).equals(current.ensemble.get(i))) {
+                newAvgLatencyNanos[i] = avgLatencyNanos[i];
+                newTotalSamples[i] = totalSamples[i];
+                newJoinTimeNanos[i] = current.joinTimeNanos[i];
+            } else {
+                newJoinTimeNanos[i] = nowNanos;
+            }
+        }
+        avgLatencyNanos = newAvgLatencyNanos;
+        totalSamples = newTotalSamples;
+        // the samples recorded in the previous windows from now on are lost, which only delays the detection
+        windows = new Windows(newEnsemble, newJoinTimeNanos);
+    }
+
+    /**
+     * Fold the latencies recorded since the last evaluation into the averages, and look for a slow bookie.
+     *
+     * @return the index of a bookie which is slow and should be replaced now, -1 otherwise
+     */
+    synchronized int evaluate(long nowNanos) {
+        foldWindows(windows);
+        if (swapped && nowNanos - lastSwapNanos < swapIntervalNanos) {
+            return -1;
+        }
+
+        int slowest = -1;
+        for (int i = 0; i < avgLatencyNanos.length; i++) {
+            if (totalSamples[i] < MIN_SAMPLES) {
+                // not enough samples to compare all the bookies yet
+                return -1;
+            }
+            if (slowest < 0 || avgLatencyNanos[i] > avgLatencyNanos[slowest]) {
+                slowest = i;
+            }
+        }
+        if (slowest < 0 || avgLatencyNanos.length < 2 || avgLatencyNanos[slowest] < minSlowLatencyNanos) {
+            return -1;
+        }
+
+        double[] peerLatencies = new double[avgLatencyNanos.length - 1];
+        int numPeers = 0;
+        for (int i = 0; i < avgLatencyNanos.length; i++) {
+            if (i != slowest) {
+                peerLatencies[numPeers++] = avgLatencyNanos[i];
+            }
+        }
+        Arrays.sort(peerLatencies);
+        double medianPeerLatency = numPeers % 2 == 1
+                ? peerLatencies[numPeers / 2]
+                : (peerLatencies[numPeers / 2 - 1] + peerLatencies[numPeers / 2]) / 2;
+        if (avgLatencyNanos[slowest] <= latencyMultiplier * medianPeerLatency) {
+            return -1;
+        }
+        swapped = true;
+        lastSwapNanos = nowNanos;
+        return slowest;
+    }
+
+    /**
+     * @return the bookie at the index of the ensemble whose latencies are tracked, null if there is none
+     */
+    BookieId getBookie(int bookieIndex) {
+        List<BookieId> ensemble = windows.ensemble;
+        return bookieIndex < ensemble.size() ? ensemble.get(bookieIndex) : null;
+    }
+
+    /**
+     * @return the average add latency of the bookie at the index of the ensemble, in nanoseconds
+     */
+    synchronized long getAverageLatencyNanos(int bookieIndex) {
+        return bookieIndex < avgLatencyNanos.length ? (long) avgLatencyNanos[bookieIndex] : 0L;
+    }
+
+    // the count and the sum of a window may be off by the samples recorded while it is folded, which
+    // doesn't matter for an average
+    private void foldWindows(Windows current) {
+        for (int i = 0; i < avgLatencyNanos.length; i++) {
+            int numSamples = current.numSamples.getAndSet(i, 0);
+            long sumLatencyNanos = current.sumLatencyNanos.getAndSet(i, 0);
+            if (numSamples <= 0) {
+                continue;
+            }
+            double windowLatencyNanos = (double) sumLatencyNanos / numSamples;
+            if (totalSamples[i] == 0) {
+                avgLatencyNanos[i] = windowLatencyNanos;
+            } else {
+                // as if each sample of the window had been added to the average in turn
+                double weight = 1 - Math.pow(1 - SAMPLE_WEIGHT, numSamples);
+                avgLatencyNanos[i] += weight * (windowLatencyNanos - avgLatencyNanos[i]);
+            }
+            totalSamples[i] = (int) Math.min(Integer.MAX_VALUE, (long) totalSamples[i] + numSamples);
+        }
+    }
+}
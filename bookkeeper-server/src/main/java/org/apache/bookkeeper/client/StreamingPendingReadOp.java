@@ -0,0 +1,176 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.client.api.LedgerEntryStream;
+import org.apache.bookkeeper.client.api.LedgerEntryStreamListener;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.util.MathUtils;
+
+/**
+ * A read of a range of entries which hands the entries to a {@link LedgerEntryStreamListener}
+ * in order, as soon as each of them is read and verified.
+ *
+ * <p>Entry requests are only sent for the entries the listener asked for, and at most
+ * {@link ClientInternalConf#streamingReadMaxOutstandingEntries} entries are read but not yet
+ * delivered. The state of the stream is only accessed from the ordered executor thread of the
+ * ledger, where the read responses are completed as well.
+ */
+@Slf4j
+class StreamingPendingReadOp extends PendingReadOp implements LedgerEntryStream {
+
+    private final LedgerEntryStreamListener listener;
+    private final int maxOutstandingEntries;
+
+    private List<BookieId> ensemble = null;
+    private long nextEnsembleChange;
+    private long nextEntryToRead;
+    private long nextEntryToDeliver;
+    // entries asked for by the listener and not yet delivered, Long.MAX_VALUE if unbounded
+    private long numRequested = 0;
+    private boolean done = false;
+
+    StreamingPendingReadOp(LedgerHandle lh,
+                           ClientContext clientCtx,
+                           long startEntryId,
+                           long endEntryId,
+                           LedgerEntryStreamListener listener) {
+        super(lh, clientCtx, startEntryId, endEntryId, false);
+        this.listener = listener;
+        this.maxOutstandingEntries = Math.max(1, clientCtx.getConf().streamingReadMaxOutstandingEntries);
+        this.nextEnsembleChange = startEntryId;
+        this.nextEntryToRead = startEntryId;
+        this.nextEntryToDeliver = startEntryId;
+    }
+
+    @Override
+    void initiate() {
+        this.requestTimeNanos = MathUtils.nowInNano();
+        listener.onStart(this);
+    }
+
+    @Override
+    public void request(long numEntries) {
+        clientCtx.getMainWorkerPool().executeOrdered(lh.ledgerId, () -> {
+            if (done) {
+                return;
+            }
+            if (numEntries <= 0) {
+                failStream(new IllegalArgumentException("Invalid number of requested entries : " + numEntries));
+                return;
+            }
+            numRequested = numRequested + numEntries < 0 ? Long.MAX_VALUE : numRequested + numEntries;
+            deliverEntries();
+            readAhead();
+        });
+    }
+
+    @Override
+    public void close() {
+        clientCtx.getMainWorkerPool().executeOrdered(lh.ledgerId, () -> {
+            if (!done) {
+                done = true;
+                cancelSpeculativeTask(true);
+                releaseEntries();
+            }
+        });
+    }
+
+    @Override
+    protected void submitCallback(int code) {
+        // the entries are checked in order, regardless of which one completed
+        deliverEntries();
+        readAhead();
+    }
+
+    private void readAhead() {
+        while (!done && nextEntryToRead <= endEntryId
+               && seq.size() < Math.min(numRequested, maxOutstandingEntries)) {
+            if (nextEntryToRead == nextEnsembleChange) {
+                ensemble = getLedgerMetadata().getEnsembleAt(nextEntryToRead);
+                nextEnsembleChange = LedgerMetadataUtils.getNextEnsembleChange(getLedgerMetadata(), nextEntryToRead);
+            }
+            LedgerEntryRequest entry = createEntryRequest(ensemble, nextEntryToRead);
+            nextEntryToRead++;
+            seq.add(entry);
+            readEntry(entry);
+        }
+    }
+
+    private void deliverEntries() {
+        while (!done && !seq.isEmpty()) {
+            LedgerEntryRequest request = seq.getFirst();
+            if (!request.isComplete()) {
+                return;
+            }
+            if (request.getRc() != BKException.Code.OK) {
+                failStream(BKException.create(request.getRc()));
+                return;
+            }
+            if (numRequested == 0) {
+                return;
+            }
+            seq.removeFirst();
+            if (numRequested != Long.MAX_VALUE) {
+                numRequested--;
+            }
+            nextEntryToDeliver++;
+            // the entry is owned by the listener from now on
+            request.releaseReservedMemory();
+            try {
+                listener.onEntry(request.entryImpl);
+            } catch (Throwable t) {
+                log.error("Streaming read listener of ledger {} failed on entry {}, closing the stream",
+                          lh.getId(), request.eId, t);
+                done = true;
+                cancelSpeculativeTask(true);
+                releaseEntries();
+                return;
+            }
+        }
+        if (!done && nextEntryToDeliver > endEntryId) {
+            done = true;
+            cancelSpeculativeTask(true);
+            clientCtx.getClientStats().getReadOpLogger()
+                .registerSuccessfulEvent(MathUtils.elapsedNanos(requestTimeNanos), TimeUnit.NANOSECONDS);
+            listener.onComplete();
+        }
+    }
+
+    private void failStream(Throwable cause) {
+        done = true;
+        cancelSpeculativeTask(true);
+        log.error("Streaming read of ledger {} failed at entry {} : {}", lh.getId(), nextEntryToDeliver,
+                  cause.getMessage());
+        clientCtx.getClientStats().getReadOpLogger()
+            .registerFailedEvent(MathUtils.elapsedNanos(requestTimeNanos), TimeUnit.NANOSECONDS);
+        releaseEntries();
+        listener.onError(cause);
+    }
+
+    private void releaseEntries() {
+        seq.forEach(LedgerEntryRequest::close);
+        seq.clear();
+    }
+}
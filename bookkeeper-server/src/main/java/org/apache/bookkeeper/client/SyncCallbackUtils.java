@@ -260,22 +260,6 @@ class SyncCallbackUtils {
 
     }
 
-    static class SyncReadLastConfirmedCallback implements AsyncCallback.ReadLastConfirmedCallback {
-        /**
-         * Implementation of  callback interface for synchronous read last confirmed method.
-         */
-        @Override
-        public void readLastConfirmedComplete(int rc, long lastConfirmed, Object ctx) {
-            LedgerHandle.LastConfirmedCtx lcCtx = (LedgerHandle.LastConfirmedCtx) ctx;
-
-            synchronized (lcCtx) {
-                lcCtx.setRC(rc);
-                lcCtx.setLastConfirmed(lastConfirmed);
-                lcCtx.notify();
-            }
-        }
-    }
-
     static class SyncCloseCallback implements AsyncCallback.CloseCallback {
 
         private final CompletableFuture<Void> future;
@@ -22,41 +22,67 @@
 package org.apache.bookkeeper.client;
 
 import java.util.Enumeration;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Implements objects to help with the synchronization of asynchronous calls.
  *
+ * <p>It uses a lock rather than the object monitor, so a virtual thread blocked on it doesn't
+ * pin its carrier thread.
  */
 
 class SyncCounter {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
     int i;
     int rc;
     int total;
     Enumeration<LedgerEntry> seq = null;
     LedgerHandle lh = null;
 
-    synchronized void inc() {
-        i++;
-        total++;
+    void inc() {
+        lock.lock();
+        try {
+            i++;
+            total++;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    synchronized void dec() {
-        i--;
-        notifyAll();
+    void dec() {
+        lock.lock();
+        try {
+            i--;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
     }
 
-    synchronized void block(int limit) throws InterruptedException {
-        while (i > limit) {
-            int prev = i;
-            wait();
-            if (i == prev) {
-                break;
+    void block(int limit) throws InterruptedException {
+        lock.lock();
+        try {
+            while (i > limit) {
+                int prev = i;
+                changed.await();
+                if (i == prev) {
+                    break;
+                }
             }
+        } finally {
+            lock.unlock();
         }
     }
 
-    synchronized int total() {
-        return total;
+    int total() {
+        lock.lock();
+        try {
+            return total;
+        } finally {
+            lock.unlock();
+        }
     }
 
     void setrc(int rc) {
@@ -22,6 +22,7 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIES_JOINED;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIES_LEFT;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.FAILED_TO_RESOLVE_NETWORK_LOCATION_COUNT;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -62,10 +63,18 @@ abstract class TopologyAwareEnsemblePlacementPolicy implements
     public static final String REPP_DNS_RESOLVER_CLASS = "reppDnsResolverClass";
     protected final Map<BookieId, BookieNode> knownBookies = new HashMap<BookieId, BookieNode>();
     protected final Map<BookieId, BookieNode> historyBookies = new HashMap<BookieId, BookieNode>();
+    // guards knownBookies, readOnlyBookies, the topology and the weighted selection. Ensemble selection and bookie
+    // replacement hold its readlock while they walk them; the per-read and per-add paths use 'topologySnapshot'.
+    // TODO: select ensembles and replacement bookies from 'topologySnapshot' too, which needs an immutable copy of
+    //       the NetworkTopology and of the weighted selection in the snapshot, used by the region and zone aware
+    //       policies as well. Until then newEnsemble and replaceBookie keep taking the readlock.
     protected final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
     protected Map<BookieNode, WeightedObject> bookieInfoMap = new HashMap<BookieNode, WeightedObject>();
     // Initialize to empty set
     protected ImmutableSet<BookieId> readOnlyBookies = ImmutableSet.of();
+    // immutable view of knownBookies and readOnlyBookies for the read sequence reordering and the placement
+    // adherence checks, republished in writelock scope of 'rwLock' on every change of the topology
+    protected volatile TopologySnapshot topologySnapshot = TopologySnapshot.EMPTY;
     boolean isWeighted;
     protected WeightedRandomSelection<BookieNode> weightedSelection;
     // for now, we just maintain the writable bookies' topology
@@ -83,6 +92,47 @@ abstract class TopologyAwareEnsemblePlacementPolicy implements
     )
     protected OpStatsLogger bookiesLeftCounter = null;
 
+    /**
+     * An immutable snapshot of the writable and read-only bookies known by the placement policy.
+     *
+     * <p>A new snapshot is built whenever the membership or the racks of the bookies change, and published with a
+     * volatile write. The read paths, such as the reordering of the read sequence, look the bookies up in the latest
+     * snapshot instead of taking the read lock, so they are neither blocked by nor racing with a topology change.
+     *
+     * <p>The snapshot holds no topology: ensemble selection and bookie replacement still choose bookies from the
+     * mutable {@link NetworkTopology} and weighted selection, in readlock scope of 'rwLock'.
+     */
+    protected static final class TopologySnapshot {
+        static final TopologySnapshot EMPTY = new TopologySnapshot(ImmutableMap.of(), ImmutableSet.of());
+
+        private final ImmutableMap<BookieId, BookieNode> writableBookies;
+        private final ImmutableSet<BookieId> readOnlyBookies;
+
+        TopologySnapshot(ImmutableMap<BookieId, BookieNode> writableBookies, ImmutableSet<BookieId> readOnlyBookies) {
+            this.writableBookies = writableBookies;
+            this.readOnlyBookies = readOnlyBookies;
+        }
+
+        /**
+         * @return the node of the bookie, or null if the bookie is not writable.
+         */
+        public BookieNode getWritableBookie(BookieId bookie) {
+            return writableBookies.get(bookie);
+        }
+
+        public boolean isWritable(BookieId bookie) {
+            return writableBookies.containsKey(bookie);
+        }
+
+        public boolean isReadOnly(BookieId bookie) {
+            return readOnlyBookies.contains(bookie);
+        }
+
+        public ImmutableMap<BookieId, BookieNode> getWritableBookies() {
+            return writableBookies;
+        }
+    }
+
     protected static class TruePredicate implements Predicate<BookieNode> {
         public static final TruePredicate INSTANCE = new TruePredicate();
 
@@ -669,6 +719,7 @@ abstract class TopologyAwareEnsemblePlacementPolicy implements
             }
             if (!readOnlyBookies.isEmpty()) {
                 this.readOnlyBookies = ImmutableSet.copyOf(readOnlyBookies);
+                publishTopologySnapshot();
             }
 
             return deadBookies;
@@ -706,6 +757,7 @@ abstract class TopologyAwareEnsemblePlacementPolicy implements
                 // exception anyways will be caught/logged/suppressed in the ZK's event handler
             }
         }
+        publishTopologySnapshot();
     }
 
     /*
@@ -738,6 +790,7 @@ abstract class TopologyAwareEnsemblePlacementPolicy implements
                 // exception anyways will be caught/logged/suppressed in the ZK's event handler
             }
         }
+        publishTopologySnapshot();
     }
 
     @Override
@@ -761,6 +814,7 @@ abstract class TopologyAwareEnsemblePlacementPolicy implements
                     LOG.error("Failed to update bookie rack info: {} ", bookieAddress, e);
                 }
             });
+            publishTopologySnapshot();
         } finally {
             rwLock.writeLock().unlock();
         }
@@ -807,6 +861,14 @@ abstract class TopologyAwareEnsemblePlacementPolicy implements
         }
     }
 
+    /*
+     * this method should be called in writelock scope of 'rwLock', after any change of 'knownBookies' or
+     * 'readOnlyBookies'
+     */
+    protected void publishTopologySnapshot() {
+        topologySnapshot = new TopologySnapshot(ImmutableMap.copyOf(knownBookies), readOnlyBookies);
+    }
+
     protected BookieNode createBookieNode(BookieId addr) {
         return new BookieNode(addr, resolveNetworkLocation(addr));
     }
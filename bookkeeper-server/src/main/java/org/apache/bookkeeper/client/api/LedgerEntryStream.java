@@ -0,0 +1,59 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client.api;
+
+import org.apache.bookkeeper.common.annotation.InterfaceAudience.Public;
+import org.apache.bookkeeper.common.annotation.InterfaceStability.Unstable;
+
+/**
+ * A streaming read of a range of entries, handed to its {@link LedgerEntryStreamListener}.
+ *
+ * <p>Entries are only read from the bookies once the application asked for them with
+ * {@link #request(long)}, so the application controls how many entries are held in memory.
+ *
+ * @since 4.16
+ * @see ReadHandle#readStream(long, long, LedgerEntryStreamListener)
+ */
+@Public
+@Unstable
+public interface LedgerEntryStream extends AutoCloseable {
+
+    /**
+     * Ask for the next <i>numEntries</i> entries of the stream.
+     *
+     * <p>The requests add up, and the entries are delivered, in order, as soon as they are read.
+     * Requesting {@link Long#MAX_VALUE} entries reads the whole range.
+     *
+     * @param numEntries
+     *          number of additional entries to deliver, must be positive
+     */
+    void request(long numEntries);
+
+    /**
+     * Cancel the stream.
+     *
+     * <p>The entries read but not yet delivered are released, and the listener is not
+     * called anymore.
+     */
+    @Override
+    void close();
+
+}
@@ -0,0 +1,71 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client.api;
+
+import org.apache.bookkeeper.common.annotation.InterfaceAudience.Public;
+import org.apache.bookkeeper.common.annotation.InterfaceStability.Unstable;
+
+/**
+ * Receives the entries of a {@link LedgerEntryStream}.
+ *
+ * <p>The methods are called from the client threads, one at a time, so they should not block.
+ *
+ * @since 4.16
+ * @see ReadHandle#readStream(long, long, LedgerEntryStreamListener)
+ */
+@Public
+@Unstable
+public interface LedgerEntryStreamListener {
+
+    /**
+     * Called once the read started, with the stream to request the entries from. It is not
+     * called if the read could not be started, e.g. for an invalid range.
+     *
+     * @param stream
+     *          the stream of entries
+     */
+    void onStart(LedgerEntryStream stream);
+
+    /**
+     * Called for each entry of the range, in order, once it was requested and read.
+     *
+     * <p>The listener owns the entry, and must close it once it is done with it to release
+     * its buffer.
+     *
+     * @param entry
+     *          the next entry of the range
+     */
+    void onEntry(LedgerEntry entry);
+
+    /**
+     * Called once all the entries of the range were delivered.
+     */
+    void onComplete();
+
+    /**
+     * Called if an entry of the range could not be read. No entry is delivered afterwards.
+     *
+     * @param cause
+     *          the reason the read failed
+     */
+    void onError(Throwable cause);
+
+}
@@ -59,6 +59,120 @@ public interface ReadHandle extends Handle {
                                                               BKException.HANDLER);
     }
 
+    /**
+     * Read a sequence of entries as a stream.
+     *
+     * <p>Unlike {@link #readAsync(long, long)}, which completes once all the entries of the range
+     * were read, the entries are handed to the listener one by one, in order, as soon as each of
+     * them is read, and only as many entries as the listener requested are read ahead. This
+     * bounds the memory held by large range reads, and lets the application process the first
+     * entries while the next ones are being read.
+     *
+     * @param firstEntry
+     *          id of first entry of sequence
+     * @param lastEntry
+     *          id of last entry of sequence, inclusive
+     * @param listener
+     *          listener receiving the entries
+     * @since 4.16
+     */
+    default void readStream(long firstEntry, long lastEntry, LedgerEntryStreamListener listener) {
+        // reads the requested entries with readAsync, up to maxEntriesPerRead at a time, one read
+        // after the other, so implementations without a streaming read still bound the entries held
+        final int maxEntriesPerRead = 100;
+
+        class RangeReadStream implements LedgerEntryStream {
+            // guarded by this
+            private long nextEntry = firstEntry;
+            private long numRequested = 0;
+            private boolean reading = false;
+            private boolean done = false;
+
+            @Override
+            public void request(long numEntries) {
+                if (numEntries <= 0) {
+                    fail(new IllegalArgumentException("Invalid number of requested entries : " + numEntries));
+                    return;
+                }
+                synchronized (this) {
+                    numRequested = numRequested + numEntries < 0 ? Long.MAX_VALUE : numRequested + numEntries;
+                }
+                readNext();
+            }
+
+            @Override
+            public synchronized void close() {
+                // the entries of the read in progress are released when it completes
+                done = true;
+            }
+
+            private void readNext() {
+                long first;
+                long last;
+                synchronized (this) {
+                    if (done || reading || numRequested == 0) {
+                        return;
+                    }
+                    reading = true;
+                    first = nextEntry;
+                    last = Math.min(lastEntry, first + Math.min(numRequested, maxEntriesPerRead) - 1);
+                }
+                readAsync(first, last).whenComplete((entries, cause) -> {
+                    if (cause != null) {
+                        fail(cause);
+                    } else {
+                        try {
+                            deliver(entries);
+                        } finally {
+                            entries.close();
+                        }
+                    }
+                });
+            }
+
+            private void deliver(LedgerEntries entries) {
+                for (LedgerEntry entry : entries) {
+                    synchronized (this) {
+                        if (done) {
+                            return;
+                        }
+                        nextEntry++;
+                        if (numRequested != Long.MAX_VALUE) {
+                            numRequested--;
+                        }
+                    }
+                    // the entries are released with the read, the listener owns a duplicate
+                    listener.onEntry(entry.duplicate());
+                }
+                boolean complete;
+                synchronized (this) {
+                    reading = false;
+                    complete = !done && nextEntry > lastEntry;
+                    if (complete) {
+                        done = true;
+                    }
+                }
+                if (complete) {
+                    listener.onComplete();
+                } else {
+                    readNext();
+                }
+            }
+
+            private void fail(Throwable cause) {
+                synchronized (this) {
+                    if (done) {
+                        return;
+                    }
+                    done = true;
+                }
+                listener.onError(cause);
+            }
+        }
+
+        listener.onStart(new RangeReadStream());
+    }
+
     /**
      * Read a sequence of entries asynchronously, allowing to read after the LastAddConfirmed range.
      * <br>This is the same of
@@ -120,6 +120,11 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
         help = "The number of ensemble changes"
     )
     private final Counter ensembleChangeCounter;
+    @StatsDoc(
+        name = SLOW_BOOKIE_ENSEMBLE_SWAPS,
+        help = "The number of ensemble changes replacing a bookie which was slower than the other bookies"
+    )
+    private final Counter slowBookieEnsembleSwapCounter;
     @StatsDoc(
         name = LAC_UPDATE_HITS,
         help = "The number of successful lac updates on piggybacked responses"
@@ -159,6 +164,18 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
     )
     private final Counter writeTimedOutDueToNotEnoughFaultDomains;
 
+    @StatsDoc(
+        name = CLIENT_MEMORY_WAIT,
+        help = "The time adds and reads waited for the client memory limit,"
+            + " failed if the memory was not available in time"
+    )
+    private final OpStatsLogger memoryWaitLogger;
+
+    @StatsDoc(
+        name = RECOVER_QUEUE_TIME,
+        help = "The time ledger recoveries waited for the recovery concurrency limits before being started"
+    )
+    private final OpStatsLogger recoverQueueTimeLogger;
 
     public BookKeeperClientStatsImpl(StatsLogger stats) {
         this.stats = stats;
@@ -179,6 +196,7 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
         this.recoverReadEntriesStats = stats.getOpStatsLogger(LEDGER_RECOVER_READ_ENTRIES);
 
         this.ensembleChangeCounter = stats.getCounter(ENSEMBLE_CHANGES);
+        this.slowBookieEnsembleSwapCounter = stats.getCounter(SLOW_BOOKIE_ENSEMBLE_SWAPS);
         this.lacUpdateHitsCounter = stats.getCounter(LAC_UPDATE_HITS);
         this.lacUpdateMissesCounter = stats.getCounter(LAC_UPDATE_MISSES);
         this.clientChannelWriteWaitStats = stats.getOpStatsLogger(CLIENT_CHANNEL_WRITE_WAIT);
@@ -190,6 +208,8 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
         this.writeDelayedDueToNotEnoughFaultDomains = stats.getCounter(WRITE_DELAYED_DUE_TO_NOT_ENOUGH_FAULT_DOMAINS);
         this.writeTimedOutDueToNotEnoughFaultDomains =
                 stats.getCounter(WRITE_TIMED_OUT_DUE_TO_NOT_ENOUGH_FAULT_DOMAINS);
+        this.memoryWaitLogger = stats.getOpStatsLogger(CLIENT_MEMORY_WAIT);
+        this.recoverQueueTimeLogger = stats.getOpStatsLogger(RECOVER_QUEUE_TIME);
     }
 
     @Override
@@ -261,6 +281,10 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
         return ensembleChangeCounter;
     }
     @Override
+    public Counter getSlowBookieEnsembleSwapCounter() {
+        return slowBookieEnsembleSwapCounter;
+    }
+    @Override
     public Counter getLacUpdateHitsCounter() {
         return lacUpdateHitsCounter;
     }
@@ -289,7 +313,31 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
         return writeTimedOutDueToNotEnoughFaultDomains;
     }
     @Override
+    public OpStatsLogger getMemoryWaitLogger() {
+        return memoryWaitLogger;
+    }
+    @Override
+    public OpStatsLogger getRecoverQueueTimeLogger() {
+        return recoverQueueTimeLogger;
+    }
+    @Override
     public void registerPendingAddsGauge(Gauge<Integer> gauge) {
         stats.registerGauge(PENDING_ADDS, gauge);
     }
+    @Override
+    public void registerMemoryUsedGauge(Gauge<Long> gauge) {
+        stats.registerGauge(CLIENT_MEMORY_USED, gauge);
+    }
+    @Override
+    public void registerMemoryLimitGauge(Gauge<Long> gauge) {
+        stats.registerGauge(CLIENT_MEMORY_LIMIT, gauge);
+    }
+    @Override
+    public void registerPendingRecoveriesGauge(Gauge<Integer> gauge) {
+        stats.registerGauge(PENDING_RECOVERIES, gauge);
+    }
+    @Override
+    public void registerRunningRecoveriesGauge(Gauge<Integer> gauge) {
+        stats.registerGauge(RUNNING_RECOVERIES, gauge);
+    }
 }
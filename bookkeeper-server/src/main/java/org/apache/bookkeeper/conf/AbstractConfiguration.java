@@ -86,6 +86,8 @@ public abstract class AbstractConfiguration<T extends AbstractConfiguration>
     protected static final String ZK_REQUEST_RATE_LIMIT = "zkRequestRateLimit";
     protected static final String AVAILABLE_NODE = "available";
     protected static final String REREPLICATION_ENTRY_BATCH_SIZE = "rereplicationEntryBatchSize";
+    protected static final String REREPLICATION_FRAGMENT_COPY_ENABLED = "rereplicationFragmentCopyEnabled";
+    protected static final String REREPLICATION_FRAGMENT_COPY_TIMEOUT_SEC = "rereplicationFragmentCopyTimeoutSec";
     protected static final String STORE_SYSTEMTIME_AS_LEDGER_UNDERREPLICATED_MARK_TIME =
             "storeSystemTimeAsLedgerUnderreplicatedMarkTime";
     protected static final String STORE_SYSTEMTIME_AS_LEDGER_CREATION_TIME = "storeSystemTimeAsLedgerCreationTime";
@@ -467,6 +469,10 @@ public abstract class AbstractConfiguration<T extends AbstractConfiguration>
     /**
      * Set Ledger metadata format version.
      *
+     * <p>Version 4 stores the ensembles compactly, but can only be read by clients and bookies
+     * which support it, so it should only be set once all of them are upgraded. Existing ledgers
+     * keep the format version they were created with.
+     *
      * @param metadataFormatVersion
      *          Ledger metadata format version. pass -1 to use default version
      */
@@ -623,6 +629,47 @@ public abstract class AbstractConfiguration<T extends AbstractConfiguration>
         return getLong(REREPLICATION_ENTRY_BATCH_SIZE, 10);
     }
 
+    /**
+     * Enable the re-replication of ledger fragments by the new bookies themselves.
+     * When enabled, each batch of entries of a fragment is copied by asking the new bookie
+     * to read the entries from the other bookies of the ensemble, instead of reading the
+     * entries and writing them to the new bookie. The new bookies must have
+     * {@link ServerConfiguration#setFragmentCopyEnabled(boolean)} set, the replication falls
+     * back to reading and writing the entries when a copy fails.
+     *
+     * @param enabled whether to re-replicate fragments by copy on the new bookies
+     * @return the configuration
+     */
+    public T setRereplicationFragmentCopyEnabled(boolean enabled) {
+        setProperty(REREPLICATION_FRAGMENT_COPY_ENABLED, enabled);
+        return getThis();
+    }
+
+    /**
+     * @see #setRereplicationFragmentCopyEnabled(boolean)
+     */
+    public boolean isRereplicationFragmentCopyEnabled() {
+        return getBoolean(REREPLICATION_FRAGMENT_COPY_ENABLED, false);
+    }
+
+    /**
+     * Set the timeout of the copy of a batch of entries of a fragment by a new bookie.
+     *
+     * @param timeoutSec the timeout in seconds
+     * @return the configuration
+     */
+    public T setRereplicationFragmentCopyTimeoutSec(int timeoutSec) {
+        setProperty(REREPLICATION_FRAGMENT_COPY_TIMEOUT_SEC, timeoutSec);
+        return getThis();
+    }
+
+    /**
+     * @see #setRereplicationFragmentCopyTimeoutSec(int)
+     */
+    public int getRereplicationFragmentCopyTimeoutSec() {
+        return getInt(REREPLICATION_FRAGMENT_COPY_TIMEOUT_SEC, 300);
+    }
+
     /**
      * Get metastore implementation class.
      *
@@ -43,6 +43,24 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     // Throttle value
     protected static final String THROTTLE = "throttle";
 
+    // Client memory limit
+    protected static final String CLIENT_MEMORY_LIMIT_BYTES = "clientMemoryLimitBytes";
+    protected static final String CLIENT_MEMORY_LIMIT_WAIT_TIMEOUT_MS = "clientMemoryLimitWaitTimeoutMs";
+
+    // Ledger metadata cache
+    protected static final String LEDGER_METADATA_CACHE_MAX_ENTRIES = "ledgerMetadataCacheMaxEntries";
+    protected static final String LEDGER_METADATA_CACHE_EXPIRY_SECONDS = "ledgerMetadataCacheExpirySeconds";
+
+    // Ledger id preallocation
+    protected static final String LEDGER_ID_PREALLOCATION_SIZE = "ledgerIdPreallocationSize";
+
+    // Client entry cache
+    protected static final String CLIENT_ENTRY_CACHE_SIZE_BYTES = "clientEntryCacheSizeBytes";
+
+    // Ledger recovery scheduling
+    protected static final String RECOVERY_MAX_CONCURRENT_LEDGERS = "recoveryMaxConcurrentLedgers";
+    protected static final String RECOVERY_MAX_CONCURRENT_LEDGERS_PER_BOOKIE = "recoveryMaxConcurrentLedgersPerBookie";
+
     // Digest Type
     protected static final String DIGEST_TYPE = "digestType";
     protected static final String ENABLE_DIGEST_TYPE_AUTODETECTION = "enableDigestTypeAutodetection";
@@ -113,11 +131,15 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         "speculativeReadLACTimeoutBackoffMultiplier";
     protected static final String ENABLE_PARALLEL_RECOVERY_READ = "enableParallelRecoveryRead";
     protected static final String RECOVERY_READ_BATCH_SIZE = "recoveryReadBatchSize";
+    protected static final String RECOVERY_READ_MAX_OUTSTANDING_BATCHES = "recoveryReadMaxOutstandingBatches";
+    protected static final String STREAMING_READ_MAX_OUTSTANDING_ENTRIES = "streamingReadMaxOutstandingEntries";
     protected static final String REORDER_READ_SEQUENCE_ENABLED = "reorderReadSequenceEnabled";
     protected static final String STICKY_READS_ENABLED = "stickyReadSEnabled";
+    protected static final String VIRTUAL_THREAD_DIRECT_DISPATCH_ENABLED = "virtualThreadDirectDispatchEnabled";
     // Add Parameters
     protected static final String OPPORTUNISTIC_STRIPING = "opportunisticStriping";
     protected static final String DELAY_ENSEMBLE_CHANGE = "delayEnsembleChange";
+    protected static final String SINGLE_WRITER_ADD_SEQUENCING_ENABLED = "singleWriterAddSequencingEnabled";
     protected static final String MAX_ALLOWED_ENSEMBLE_CHANGES = "maxNumEnsembleChanges";
     // Timeout Setting
     protected static final String ADD_ENTRY_TIMEOUT_SEC = "addEntryTimeoutSec";
@@ -126,6 +148,8 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     protected static final String TIMEOUT_MONITOR_INTERVAL_SEC = "timeoutMonitorIntervalSec";
     protected static final String TIMEOUT_TASK_INTERVAL_MILLIS = "timeoutTaskIntervalMillis";
     protected static final String EXPLICIT_LAC_INTERVAL = "explicitLacInterval";
+    protected static final String EXPLICIT_LAC_BATCH_ENABLED = "explicitLacBatchEnabled";
+    protected static final String EXPLICIT_LAC_MAX_BATCH_SIZE = "explicitLacMaxBatchSize";
     protected static final String PCBC_TIMEOUT_TIMER_TICK_DURATION_MS = "pcbcTimeoutTimerTickDurationMs";
     protected static final String PCBC_TIMEOUT_TIMER_NUM_TICKS = "pcbcTimeoutTimerNumTicks";
     protected static final String TIMEOUT_TIMER_TICK_DURATION_MS = "timeoutTimerTickDurationMs";
@@ -139,6 +163,10 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     protected static final String BOOKIE_ERROR_THRESHOLD_PER_INTERVAL = "bookieErrorThresholdPerInterval";
     protected static final String BOOKIE_QUARANTINE_TIME_SECONDS = "bookieQuarantineTimeSeconds";
     protected static final String BOOKIE_QUARANTINE_RATIO = "bookieQuarantineRatio";
+    protected static final String SLOW_BOOKIE_ENSEMBLE_SWAP_ENABLED = "slowBookieEnsembleSwapEnabled";
+    protected static final String SLOW_BOOKIE_LATENCY_MULTIPLIER = "slowBookieLatencyMultiplier";
+    protected static final String SLOW_BOOKIE_MIN_LATENCY_MILLIS = "slowBookieMinLatencyMillis";
+    protected static final String SLOW_BOOKIE_SWAP_INTERVAL_SECONDS = "slowBookieSwapIntervalSeconds";
 
     // Bookie info poll interval
     protected static final String DISK_WEIGHT_BASED_PLACEMENT_ENABLED = "diskWeightBasedPlacementEnabled";
@@ -147,6 +175,8 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     protected static final String BOOKIE_MAX_MULTIPLE_FOR_WEIGHTED_PLACEMENT =
         "bookieMaxMultipleForWeightBasedPlacement";
     protected static final String GET_BOOKIE_INFO_TIMEOUT_SECS = "getBookieInfoTimeoutSecs";
+    protected static final String LOAD_AWARE_PLACEMENT_ENABLED = "loadAwarePlacementEnabled";
+    protected static final String GET_BOOKIE_LOAD_INTERVAL_SECONDS = "getBookieLoadIntervalSeconds";
     protected static final String START_TLS_TIMEOUT_SECS = "startTLSTimeoutSecs";
     protected static final String TLS_HOSTNAME_VERIFICATION_ENABLED = "tlsHostnameVerificationEnabled";
 
@@ -246,6 +276,238 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Get the maximum bytes held by pending adds and in-flight read responses, across all the
+     * ledgers of the client.
+     *
+     * @return the client memory limit in bytes
+     * @see #setClientMemoryLimitBytes(long)
+     */
+    public long getClientMemoryLimitBytes() {
+        return this.getLong(CLIENT_MEMORY_LIMIT_BYTES, 0L);
+    }
+
+    /**
+     * Set the maximum bytes held by pending adds and in-flight read responses, across all the
+     * ledgers of the client.
+     *
+     * <p>Unlike the throttle value, which limits the rate of requests of each ledger, this limit
+     * caps the memory of the whole client. Once it is reached, new adds and reads fail with a
+     * TooManyRequestsException, or wait for memory to be released if
+     * {@link #getClientMemoryLimitWaitTimeoutMs()} is set.
+     *
+     * <p>Setting the limit to 0, will disable it.
+     *
+     * @param limitBytes
+     *          the client memory limit in bytes
+     * @return client configuration
+     */
+    public ClientConfiguration setClientMemoryLimitBytes(long limitBytes) {
+        this.setProperty(CLIENT_MEMORY_LIMIT_BYTES, limitBytes);
+        return this;
+    }
+
+    /**
+     * Get the time an add or read waits for memory once the client memory limit is reached.
+     * Default is 0, the operations fail at once.
+     *
+     * @return the wait timeout in milliseconds
+     * @see #setClientMemoryLimitWaitTimeoutMs(long)
+     */
+    public long getClientMemoryLimitWaitTimeoutMs() {
+        return this.getLong(CLIENT_MEMORY_LIMIT_WAIT_TIMEOUT_MS, 0L);
+    }
+
+    /**
+     * Set the time an add or read waits for memory once the client memory limit is reached.
+     * The calling thread is blocked while waiting, as with the throttle value, so only set it
+     * when the operations are issued from threads which are allowed to block. When the time
+     * elapses the operation fails with a TooManyRequestsException. Operations issued from the
+     * callback threads of the client never wait, they fail at once when the limit is reached.
+     * Recovery reads are not held back by the limit.
+     *
+     * <p>Setting the timeout to 0, the default, will fail operations immediately when the limit is reached.
+     *
+     * @param timeoutMs
+     *          the wait timeout in milliseconds
+     * @return client configuration
+     */
+    public ClientConfiguration setClientMemoryLimitWaitTimeoutMs(long timeoutMs) {
+        this.setProperty(CLIENT_MEMORY_LIMIT_WAIT_TIMEOUT_MS, timeoutMs);
+        return this;
+    }
+
+    /**
+     * Get the maximum number of ledgers whose metadata is cached by the client.
+     *
+     * @return the maximum number of cached ledger metadata
+     * @see #setLedgerMetadataCacheMaxEntries(long)
+     */
+    public long getLedgerMetadataCacheMaxEntries() {
+        return this.getLong(LEDGER_METADATA_CACHE_MAX_ENTRIES, 0L);
+    }
+
+    /**
+     * Set the maximum number of ledgers whose metadata is cached by the client.
+     *
+     * <p>When enabled, the metadata read when opening a ledger is kept by the client, so opening
+     * the same ledger again doesn't go to the metadata store. The metadata of closed ledgers is
+     * kept until evicted, the metadata of open ledgers is kept up to date by watching it on the
+     * metadata store. Updates done through this client are applied to the cache as well.
+     *
+     * <p>Setting it to 0, will disable the cache.
+     *
+     * @param maxEntries
+     *          the maximum number of cached ledger metadata
+     * @return client configuration
+     */
+    public ClientConfiguration setLedgerMetadataCacheMaxEntries(long maxEntries) {
+        this.setProperty(LEDGER_METADATA_CACHE_MAX_ENTRIES, maxEntries);
+        return this;
+    }
+
+    /**
+     * Get the time after which cached ledger metadata is read again from the metadata store.
+     *
+     * @return the ledger metadata cache expiry in seconds
+     * @see #setLedgerMetadataCacheExpirySeconds(long)
+     */
+    public long getLedgerMetadataCacheExpirySeconds() {
+        return this.getLong(LEDGER_METADATA_CACHE_EXPIRY_SECONDS, 0L);
+    }
+
+    /**
+     * Set the time after which cached ledger metadata is read again from the metadata store.
+     *
+     * <p>The ensembles of closed ledgers can still be changed by other clients, e.g. when the
+     * ledger is re-replicated by the autorecovery, and those changes are not watched. An expiry
+     * bounds how long such changes are missed.
+     *
+     * <p>Setting it to 0, will keep the metadata until evicted.
+     *
+     * @param expirySeconds
+     *          the ledger metadata cache expiry in seconds
+     * @return client configuration
+     */
+    public ClientConfiguration setLedgerMetadataCacheExpirySeconds(long expirySeconds) {
+        this.setProperty(LEDGER_METADATA_CACHE_EXPIRY_SECONDS, expirySeconds);
+        return this;
+    }
+
+    /**
+     * Get the number of ledger ids reserved at once by the client.
+     *
+     * @return the number of ledger ids reserved at once
+     * @see #setLedgerIdPreallocationSize(int)
+     */
+    public int getLedgerIdPreallocationSize() {
+        return this.getInt(LEDGER_ID_PREALLOCATION_SIZE, 0);
+    }
+
+    /**
+     * Set the number of ledger ids reserved at once by the client.
+     *
+     * <p>When set, the client reserves batches of ledger ids from the metadata store, in a
+     * single operation where the ledger id generator supports it, and creates ledgers with
+     * the reserved ids. Ids reserved but not used when the client is closed are skipped.
+     *
+     * <p>Setting it to 0, will generate an id for each ledger creation.
+     *
+     * @param preallocationSize
+     *          the number of ledger ids reserved at once
+     * @return client configuration
+     */
+    public ClientConfiguration setLedgerIdPreallocationSize(int preallocationSize) {
+        this.setProperty(LEDGER_ID_PREALLOCATION_SIZE, preallocationSize);
+        return this;
+    }
+
+    /**
+     * Get the size of the client-wide cache of entries read from the bookies.
+     *
+     * @return the size of the entry cache in bytes
+     * @see #setClientEntryCacheSizeBytes(long)
+     */
+    public long getClientEntryCacheSizeBytes() {
+        return this.getLong(CLIENT_ENTRY_CACHE_SIZE_BYTES, 0L);
+    }
+
+    /**
+     * Set the size of the client-wide cache of entries read from the bookies.
+     *
+     * <p>When enabled, the entries up to the last add confirmed read by any ledger handle of the
+     * client are kept off-heap, so other handles reading the same entries, e.g. many readers
+     * tailing the same ledger, are served without reading them from the bookies again. Handles
+     * reading an entry which is already being read wait for that read instead of sending another
+     * one. Entries still held by the application are not counted in the size.
+     *
+     * <p>Setting it to 0, will disable the cache.
+     *
+     * @param cacheSizeBytes
+     *          the size of the entry cache in bytes
+     * @return client configuration
+     */
+    public ClientConfiguration setClientEntryCacheSizeBytes(long cacheSizeBytes) {
+        this.setProperty(CLIENT_ENTRY_CACHE_SIZE_BYTES, cacheSizeBytes);
+        return this;
+    }
+
+    /**
+     * Get the maximum number of ledgers recovered concurrently by the client.
+     *
+     * @return the maximum number of ledgers recovered concurrently
+     * @see #setRecoveryMaxConcurrentLedgers(int)
+     */
+    public int getRecoveryMaxConcurrentLedgers() {
+        return this.getInt(RECOVERY_MAX_CONCURRENT_LEDGERS, 0);
+    }
+
+    /**
+     * Set the maximum number of ledgers recovered concurrently by the client.
+     *
+     * <p>When many ledgers are opened with recovery at once, e.g. when taking over the ledgers
+     * of a failed writer, the recoveries exceeding the limit wait in a queue and are started,
+     * in order, as the running ones complete.
+     *
+     * <p>Setting it to 0, will not limit the number of concurrent recoveries.
+     *
+     * @param maxConcurrentLedgers
+     *          the maximum number of ledgers recovered concurrently
+     * @return client configuration
+     */
+    public ClientConfiguration setRecoveryMaxConcurrentLedgers(int maxConcurrentLedgers) {
+        this.setProperty(RECOVERY_MAX_CONCURRENT_LEDGERS, maxConcurrentLedgers);
+        return this;
+    }
+
+    /**
+     * Get the maximum number of concurrent ledger recoveries involving the same bookie.
+     *
+     * @return the maximum number of concurrent ledger recoveries per bookie
+     * @see #setRecoveryMaxConcurrentLedgersPerBookie(int)
+     */
+    public int getRecoveryMaxConcurrentLedgersPerBookie() {
+        return this.getInt(RECOVERY_MAX_CONCURRENT_LEDGERS_PER_BOOKIE, 0);
+    }
+
+    /**
+     * Set the maximum number of concurrent ledger recoveries involving the same bookie.
+     *
+     * <p>A recovery reads from, and writes to, the bookies of the last ensemble of the ledger.
+     * A recovery is not started while any of those bookies is already serving this number of
+     * recoveries, recoveries on other bookies can be started ahead of it meanwhile.
+     *
+     * <p>Setting it to 0, will not limit the number of concurrent recoveries per bookie.
+     *
+     * @param maxConcurrentLedgersPerBookie
+     *          the maximum number of concurrent ledger recoveries per bookie
+     * @return client configuration
+     */
+    public ClientConfiguration setRecoveryMaxConcurrentLedgersPerBookie(int maxConcurrentLedgersPerBookie) {
+        this.setProperty(RECOVERY_MAX_CONCURRENT_LEDGERS_PER_BOOKIE, maxConcurrentLedgersPerBookie);
+        return this;
+    }
+
     /**
      * Get autodetection of digest type.
      *
@@ -770,6 +1032,58 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Whether the explicit LACs of all the ledgers written by the client are sent together.
+     *
+     * @return true if explicit LACs are batched
+     * @see #setExplicitLacBatchEnabled(boolean)
+     */
+    public boolean isExplicitLacBatchEnabled() {
+        return getBoolean(EXPLICIT_LAC_BATCH_ENABLED, false);
+    }
+
+    /**
+     * Enable or disable batching the explicit LACs of all the ledgers written by the client.
+     *
+     * <p>When enabled, the client checks all its ledgers at every explicit LAC interval, on a single
+     * timer, and sends the explicit LACs meant for the same bookie in a single request, instead of
+     * a request per ledger and bookie. It requires all the bookies to support batched explicit
+     * LACs, so it should only be enabled once all of them are upgraded.
+     *
+     * <p>It has no effect if explicit LACs are disabled, see {@link #setExplictLacInterval(int)}.
+     *
+     * @param enabled
+     *          whether to batch explicit LACs
+     * @return client configuration
+     */
+    public ClientConfiguration setExplicitLacBatchEnabled(boolean enabled) {
+        setProperty(EXPLICIT_LAC_BATCH_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the maximum number of ledgers whose explicit LACs are sent in a single request.
+     *
+     * @return the maximum number of ledgers per batched explicit LAC request
+     * @see #setExplicitLacMaxBatchSize(int)
+     */
+    public int getExplicitLacMaxBatchSize() {
+        return getInt(EXPLICIT_LAC_MAX_BATCH_SIZE, 1000);
+    }
+
+    /**
+     * Set the maximum number of ledgers whose explicit LACs are sent in a single request, when
+     * explicit LACs are batched. More ledgers are split over several requests.
+     *
+     * @param maxBatchSize
+     *          the maximum number of ledgers per batched explicit LAC request
+     * @return client configuration
+     */
+    public ClientConfiguration setExplicitLacMaxBatchSize(int maxBatchSize) {
+        setProperty(EXPLICIT_LAC_MAX_BATCH_SIZE, maxBatchSize);
+        return this;
+    }
+
     /**
      * Get the tick duration in milliseconds that used for the
      * HashedWheelTimer that used by PCBC to timeout
@@ -1139,6 +1453,60 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Get the maximum number of recovery read batches a ledger recovery has outstanding.
+     *
+     * @return the maximum number of outstanding recovery read batches.
+     * @see #setRecoveryReadMaxOutstandingBatches(int)
+     */
+    public int getRecoveryReadMaxOutstandingBatches() {
+        return getInt(RECOVERY_READ_MAX_OUTSTANDING_BATCHES, 1);
+    }
+
+    /**
+     * Set the maximum number of recovery read batches a ledger recovery has outstanding.
+     *
+     * <p>With 1, the next batch of the tail of the ledger is read once the previous batch has been
+     * read, while its entries are being written back. Higher values read the following batches
+     * ahead, so the recovery of a long tail doesn't wait for a read round trip per batch. The
+     * batches read past the end of the ledger only find no entry.
+     *
+     * @param maxOutstandingBatches
+     *          the maximum number of outstanding recovery read batches.
+     * @return client configuration.
+     */
+    public ClientConfiguration setRecoveryReadMaxOutstandingBatches(int maxOutstandingBatches) {
+        setProperty(RECOVERY_READ_MAX_OUTSTANDING_BATCHES, maxOutstandingBatches);
+        return this;
+    }
+
+    /**
+     * Get the maximum number of entries a streaming read has outstanding.
+     *
+     * @return the maximum number of outstanding entries of a streaming read.
+     * @see #setStreamingReadMaxOutstandingEntries(int)
+     */
+    public int getStreamingReadMaxOutstandingEntries() {
+        return getInt(STREAMING_READ_MAX_OUTSTANDING_ENTRIES, 100);
+    }
+
+    /**
+     * Set the maximum number of entries a streaming read has outstanding.
+     *
+     * <p>A streaming read only requests the entries the application asked for, and at most this
+     * number of entries which were requested from the bookies but not yet handed to the
+     * application. It bounds the memory and the bookie load of a streaming read when the
+     * application asks for the whole range at once.
+     *
+     * @param maxOutstandingEntries
+     *          the maximum number of outstanding entries of a streaming read.
+     * @return client configuration.
+     */
+    public ClientConfiguration setStreamingReadMaxOutstandingEntries(int maxOutstandingEntries) {
+        setProperty(STREAMING_READ_MAX_OUTSTANDING_ENTRIES, maxOutstandingEntries);
+        return this;
+    }
+
     /**
      * If reorder read sequence enabled or not.
      *
@@ -1197,6 +1565,70 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * If reads issued by virtual threads bypass the ordered executor or not.
+     *
+     * @return true if direct dispatch for virtual threads is enabled, otherwise false.
+     */
+    public boolean isVirtualThreadDirectDispatchEnabled() {
+        return getBoolean(VIRTUAL_THREAD_DIRECT_DISPATCH_ENABLED, false);
+    }
+
+    /**
+     * Enable/disable bypassing the ordered executor for the reads issued by virtual threads.
+     *
+     * <p>By default the reads of a writable ledger handle are started on the ordered executor
+     * thread of the ledger, and the callbacks of the callback based read API are run there as
+     * well. A virtual thread waiting for the read pays for these executor hops, while it can
+     * cheaply block on the result itself.
+     *
+     * <p>If this flag is enabled and the calling thread is a virtual thread (JDK 21 and later),
+     * the read is started in the calling thread, and the read callback is run by the thread
+     * completing the read, without a hop through the ordered executor. The callbacks of such
+     * reads are then not ordered with the other callbacks of the ledger.
+     *
+     * @param enabled
+     *          flag to enable/disable direct dispatch for virtual threads.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setVirtualThreadDirectDispatchEnabled(boolean enabled) {
+        setProperty(VIRTUAL_THREAD_DIRECT_DISPATCH_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * If adds to a ledger are sequenced by the ordered executor thread of the ledger or not.
+     *
+     * @return true if single writer add sequencing is enabled, otherwise false.
+     */
+    public boolean isSingleWriterAddSequencingEnabled() {
+        return getBoolean(SINGLE_WRITER_ADD_SEQUENCING_ENABLED, false);
+    }
+
+    /**
+     * Enable/disable sequencing the adds to a ledger on the ordered executor
+     * thread of the ledger.
+     *
+     * <p>By default the thread calling addEntry assigns the entry id and sends
+     * the entry, holding the ledger handle lock while sequencing. With many
+     * threads adding to the same ledger this lock becomes contended.
+     *
+     * <p>If this flag is enabled, adds are queued without locking and the
+     * ordered executor thread of the ledger, as the single writer, assigns the
+     * entry ids and sends the entries in batches. This trades an executor hop
+     * per add for throughput under concurrent adds. It has no effect when
+     * {@link #getWaitTimeoutOnBackpressureMillis()} is enabled, as that wait
+     * happens in the calling thread.
+     *
+     * @param enabled
+     *          flag to enable/disable single writer add sequencing.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setSingleWriterAddSequencingEnabled(boolean enabled) {
+        setProperty(SINGLE_WRITER_ADD_SEQUENCING_ENABLED, enabled);
+        return this;
+    }
+
     /**
      * Get Ensemble Placement Policy Class.
      *
@@ -1479,6 +1911,94 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Whether a writer replaces the bookies of its ensemble which are persistently slower than the other bookies of
+     * the ensemble at acknowledging adds, even though they don't fail. The slow bookie is quarantined and replaced
+     * with an ensemble change, so the writes no longer wait on it. Default is false.
+     *
+     * @return whether slow bookies are replaced in the ensembles of the writers
+     */
+    public boolean isSlowBookieEnsembleSwapEnabled() {
+        return getBoolean(SLOW_BOOKIE_ENSEMBLE_SWAP_ENABLED, false);
+    }
+
+    /**
+     * Enable or disable the replacement of slow bookies in the ensembles of the writers.
+     *
+     * @param enabled
+     * @return client configuration
+     * @see #isSlowBookieEnsembleSwapEnabled()
+     */
+    public ClientConfiguration setSlowBookieEnsembleSwapEnabled(boolean enabled) {
+        setProperty(SLOW_BOOKIE_ENSEMBLE_SWAP_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get how many times the median add latency of the other bookies of the ensemble the add latency of a bookie
+     * must be for the bookie to be considered slow. Default is 3.
+     *
+     * @return the slow bookie latency multiplier
+     */
+    public double getSlowBookieLatencyMultiplier() {
+        return getDouble(SLOW_BOOKIE_LATENCY_MULTIPLIER, 3.0);
+    }
+
+    /**
+     * Set how many times the median add latency of the other bookies of the ensemble the add latency of a bookie
+     * must be for the bookie to be considered slow.
+     *
+     * @param multiplier
+     * @return client configuration
+     */
+    public ClientConfiguration setSlowBookieLatencyMultiplier(double multiplier) {
+        setProperty(SLOW_BOOKIE_LATENCY_MULTIPLIER, multiplier);
+        return this;
+    }
+
+    /**
+     * Get the add latency below which a bookie is never considered slow, however slower it is than the other
+     * bookies of the ensemble. Default is 50 milliseconds.
+     *
+     * @return the minimum latency of a slow bookie, in milliseconds
+     */
+    public long getSlowBookieMinLatencyMillis() {
+        return getLong(SLOW_BOOKIE_MIN_LATENCY_MILLIS, 50);
+    }
+
+    /**
+     * Set the add latency below which a bookie is never considered slow.
+     *
+     * @param latencyMillis
+     * @return client configuration
+     */
+    public ClientConfiguration setSlowBookieMinLatencyMillis(long latencyMillis) {
+        setProperty(SLOW_BOOKIE_MIN_LATENCY_MILLIS, latencyMillis);
+        return this;
+    }
+
+    /**
+     * Get the minimum interval between two replacements of slow bookies in the ensemble of a ledger, so that a
+     * cluster wide slowdown doesn't cause a storm of ensemble changes. Default is 60 seconds.
+     *
+     * @return the minimum interval between slow bookie replacements, in seconds
+     */
+    public int getSlowBookieSwapIntervalSeconds() {
+        return getInt(SLOW_BOOKIE_SWAP_INTERVAL_SECONDS, 60);
+    }
+
+    /**
+     * Set the minimum interval between two replacements of slow bookies in the ensemble of a ledger.
+     *
+     * @param interval
+     * @param unit
+     * @return client configuration
+     */
+    public ClientConfiguration setSlowBookieSwapIntervalSeconds(int interval, TimeUnit unit) {
+        setProperty(SLOW_BOOKIE_SWAP_INTERVAL_SECONDS, unit.toSeconds(interval));
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1523,6 +2043,52 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return getInt(BOOKIE_MAX_MULTIPLE_FOR_WEIGHTED_PLACEMENT, 3);
     }
 
+    /**
+     * Return whether load aware placement is enabled. If enabled along with the disk weight based placement, the
+     * weights of the bookies are scaled down by their load (request rate, journal queue length and write cache
+     * usage), so that new ledgers avoid the busiest bookies. Default is false.
+     *
+     * @return whether load aware placement is enabled
+     */
+    public boolean getLoadAwarePlacementEnabled() {
+        return getBoolean(LOAD_AWARE_PLACEMENT_ENABLED, false);
+    }
+
+    /**
+     * Set whether or not load aware placement is enabled.
+     *
+     * @param enabled - boolean indicating enabled or not
+     * @return client configuration
+     * @see #getLoadAwarePlacementEnabled()
+     */
+    public ClientConfiguration setLoadAwarePlacementEnabled(boolean enabled) {
+        setProperty(LOAD_AWARE_PLACEMENT_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the time interval between successive calls for bookie get info when load aware placement is enabled,
+     * used instead of {@link #getGetBookieInfoIntervalSeconds()} since the load of the bookies changes much faster
+     * than their disk usage. Default is 30 seconds.
+     *
+     * @return the interval in seconds
+     */
+    public int getGetBookieLoadIntervalSeconds() {
+        return getInt(GET_BOOKIE_LOAD_INTERVAL_SECONDS, 30);
+    }
+
+    /**
+     * Set the time interval between successive calls for bookie get info when load aware placement is enabled.
+     *
+     * @param pollInterval
+     * @param unit
+     * @return client configuration
+     */
+    public ClientConfiguration setGetBookieLoadIntervalSeconds(int pollInterval, TimeUnit unit) {
+        setProperty(GET_BOOKIE_LOAD_INTERVAL_SECONDS, unit.toSeconds(pollInterval));
+        return this;
+    }
+
     /**
      * Return the timeout value for getBookieInfo request.
      * @return
@@ -105,6 +105,7 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String COMPACTION_RATE = "compactionRate";
     protected static final String COMPACTION_RATE_BY_ENTRIES = "compactionRateByEntries";
     protected static final String COMPACTION_RATE_BY_BYTES = "compactionRateByBytes";
+    protected static final String COMPACTION_WORKER_THREADS = "compactionWorkerThreads";
 
     // Gc Parameters
     protected static final String GC_WAIT_TIME = "gcWaitTime";
@@ -116,7 +117,11 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String VERIFY_METADATA_ON_GC = "verifyMetadataOnGC";
     protected static final String GC_ENTRYLOGMETADATA_CACHE_ENABLED = "gcEntryLogMetadataCacheEnabled";
     protected static final String GC_ENTRYLOG_METADATA_CACHE_PATH = "gcEntryLogMetadataCachePath";
+    protected static final String GC_ENTRYLOG_METADATA_EXTRACTION_THREADS = "gcEntryLogMetadataExtractionThreads";
+    protected static final String GC_ENTRYLOG_METADATA_SCAN_CHECKPOINT_BYTES =
+            "gcEntryLogMetadataScanCheckpointBytes";
     protected static final String USE_TARGET_ENTRYLOG_SIZE_FOR_GC = "useTargetEntryLogSizeForGc";
+    protected static final String USE_COST_BENEFIT_COMPACTION_SELECTION = "useCostBenefitCompactionSelection";
     // Scrub Parameters
     protected static final String LOCAL_SCRUB_PERIOD = "localScrubInterval";
     protected static final String LOCAL_SCRUB_RATE_LIMIT = "localScrubRateLimit";
@@ -211,9 +216,17 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String AUTO_RECOVERY_DAEMON_ENABLED = "autoRecoveryDaemonEnabled";
     protected static final String LOST_BOOKIE_RECOVERY_DELAY = "lostBookieRecoveryDelay";
     protected static final String RW_REREPLICATE_BACKOFF_MS = "rwRereplicateBackoffMs";
+    protected static final String RW_MAX_CONCURRENT_LEDGERS = "rwMaxConcurrentLedgers";
+    protected static final String RW_MAX_CONCURRENT_REPLICATIONS_PER_TARGET_BOOKIE =
+        "rwMaxConcurrentReplicationsPerTargetBookie";
     protected static final String UNDERREPLICATED_LEDGER_RECOVERY_GRACE_PERIOD =
             "underreplicatedLedgerRecoveryGracePeriod";
     protected static final String AUDITOR_REPLICAS_CHECK_INTERVAL = "auditorReplicasCheckInterval";
+    protected static final String AUDITOR_REPLICAS_CHECK_INCREMENTAL_ENABLED = "auditorReplicasCheckIncrementalEnabled";
+    protected static final String AUDITOR_REPLICAS_CHECK_STATE_DIR = "auditorReplicasCheckStateDir";
+    protected static final String AUDITOR_REPLICAS_CHECK_TTL = "auditorReplicasCheckTtl";
+    protected static final String AUDITOR_REPLICAS_CHECK_MAX_LEDGERS_PER_SECOND =
+        "auditorReplicasCheckMaxLedgersPerSecond";
     protected static final String AUDITOR_MAX_NUMBER_OF_CONCURRENT_OPEN_LEDGER_OPERATIONS =
         "auditorMaxNumberOfConcurrentOpenLedgerOperations";
     protected static final String AUDITOR_ACQUIRE_CONCURRENT_OPEN_LEDGER_OPERATIONS_TIMEOUT_MSEC =
@@ -229,6 +242,18 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String NUM_LONG_POLL_WORKER_THREADS = "numLongPollWorkerThreads";
     protected static final String NUM_HIGH_PRIORITY_WORKER_THREADS = "numHighPriorityWorkerThreads";
     protected static final String READ_WORKER_THREADS_THROTTLING_ENABLED = "readWorkerThreadsThrottlingEnabled";
+    protected static final String READ_WORKER_THREADS_WORK_STEALING_ENABLED = "readWorkerThreadsWorkStealingEnabled";
+    protected static final String READ_SCHEDULER_ENABLED = "readSchedulerEnabled";
+    protected static final String READ_SCHEDULER_TAILING_WEIGHT = "readSchedulerTailingWeight";
+    protected static final String READ_SCHEDULER_BACKLOG_WEIGHT = "readSchedulerBacklogWeight";
+    protected static final String READ_SCHEDULER_RECOVERY_WEIGHT = "readSchedulerRecoveryWeight";
+    protected static final String READ_SCHEDULER_TAILING_DISTANCE_ENTRIES = "readSchedulerTailingDistanceEntries";
+    protected static final String PRINCIPAL_QUOTAS_ENABLED = "principalQuotasEnabled";
+    protected static final String PRINCIPAL_QUOTA_ADD_BYTES_PER_SECOND = "principalQuotaAddBytesPerSecond";
+    protected static final String PRINCIPAL_QUOTA_READ_BYTES_PER_SECOND = "principalQuotaReadBytesPerSecond";
+    protected static final String PRINCIPAL_QUOTA_REQUESTS_PER_SECOND = "principalQuotaRequestsPerSecond";
+    protected static final String PRINCIPAL_QUOTA_CONTEXT_KEY = "principalQuotaContextKey";
+    protected static final String PRINCIPAL_QUOTA_MAX_PRINCIPALS = "principalQuotaMaxPrincipals";
 
     // Long poll parameters
     protected static final String REQUEST_TIMER_TICK_DURATION_MILLISEC = "requestTimerTickDurationMs";
@@ -330,6 +355,10 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String DATA_INTEGRITY_CHECKING_ENABLED = "dataIntegrityChecking";
     protected static final String DATA_INTEGRITY_COOKIE_STAMPING_ENABLED = "dataIntegrityStampMissingCookies";
 
+    // Copy of ledger fragments from other bookies, on behalf of the autorecovery
+    protected static final String FRAGMENT_COPY_ENABLED = "fragmentCopyEnabled";
+    protected static final String FRAGMENT_COPY_MAX_OUTSTANDING_ENTRIES = "fragmentCopyMaxOutstandingEntries";
+
     // Used for default,command until or test case
     protected static final String DEFAULT_ROCKSDB_CONF = "defaultRocksdbConf";
 
@@ -556,6 +585,58 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get the number of threads used to extract the metadata of entry logs concurrently. Default is 1.
+     *
+     * <p>Entry logs whose ledgers map index is missing, e.g. after a crash, have to be scanned entirely.
+     * Using more threads shortens the time until the garbage collector has the metadata of all entry logs,
+     * in particular on startup.
+     *
+     * @return number of entry log metadata extraction threads
+     */
+    public int getGcEntryLogMetadataExtractionThreads() {
+        return this.getInt(GC_ENTRYLOG_METADATA_EXTRACTION_THREADS, 1);
+    }
+
+    /**
+     * Set the number of threads used to extract the metadata of entry logs concurrently.
+     *
+     * @see #getGcEntryLogMetadataExtractionThreads()
+     * @param numThreads number of entry log metadata extraction threads
+     * @return server configuration
+     */
+    public ServerConfiguration setGcEntryLogMetadataExtractionThreads(int numThreads) {
+        this.setProperty(GC_ENTRYLOG_METADATA_EXTRACTION_THREADS, numThreads);
+        return this;
+    }
+
+    /**
+     * Get the number of bytes scanned between the checkpoints of the scan of an entry log without
+     * ledgers map index. Default is 0, which disables the checkpoints.
+     *
+     * <p>The checkpoint stores the metadata extracted so far next to the entry log, so that a scan
+     * interrupted by a crash resumes from the last checkpoint instead of the start of the entry log.
+     * While disabled, the checkpoints left by a previous run are deleted once their entry log is scanned.
+     *
+     * @return the number of bytes scanned between checkpoints
+     */
+    public long getGcEntryLogMetadataScanCheckpointBytes() {
+        return this.getLong(GC_ENTRYLOG_METADATA_SCAN_CHECKPOINT_BYTES, 0L);
+    }
+
+    /**
+     * Set the number of bytes scanned between the checkpoints of the scan of an entry log without
+     * ledgers map index.
+     *
+     * @see #getGcEntryLogMetadataScanCheckpointBytes()
+     * @param checkpointBytes the number of bytes scanned between checkpoints, 0 to disable them
+     * @return server configuration
+     */
+    public ServerConfiguration setGcEntryLogMetadataScanCheckpointBytes(long checkpointBytes) {
+        this.setProperty(GC_ENTRYLOG_METADATA_SCAN_CHECKPOINT_BYTES, checkpointBytes);
+        return this;
+    }
+
     public boolean isUseTargetEntryLogSizeForGc() {
         return getBoolean(USE_TARGET_ENTRYLOG_SIZE_FOR_GC, false);
     }
@@ -565,6 +646,31 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Whether to order compaction candidates by cost-benefit instead of by usage.
+     *
+     * <p>Entry logs below the compaction threshold are compacted in the order of
+     * reclaimable bytes * age / live bytes, deferring entry logs whose ledgers are still being
+     * deleted quickly. Default is false, which compacts the least used entry logs first.
+     *
+     * @return whether cost-benefit compaction selection is used
+     */
+    public boolean isUseCostBenefitCompactionSelection() {
+        return getBoolean(USE_COST_BENEFIT_COMPACTION_SELECTION, false);
+    }
+
+    /**
+     * Set whether to order compaction candidates by cost-benefit instead of by usage.
+     *
+     * @see #isUseCostBenefitCompactionSelection()
+     * @param useCostBenefitCompactionSelection
+     * @return server configuration.
+     */
+    public ServerConfiguration setUseCostBenefitCompactionSelection(boolean useCostBenefitCompactionSelection) {
+        this.setProperty(USE_COST_BENEFIT_COMPACTION_SELECTION, useCostBenefitCompactionSelection);
+        return this;
+    }
+
     /**
      * Get whether local scrub is enabled.
      *
@@ -2025,6 +2131,272 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return getBoolean(READ_WORKER_THREADS_THROTTLING_ENABLED, true);
     }
 
+    /**
+     * Let the idle read worker threads run the reads queued to the busy ones. The reads are then
+     * no longer executed in order per ledger, except the long poll reads.
+     *
+     * @param enabled
+     *          whether the read worker threads steal the queued reads
+     * @return server configuration
+     */
+    public ServerConfiguration setReadWorkerThreadsWorkStealingEnabled(boolean enabled) {
+        setProperty(READ_WORKER_THREADS_WORK_STEALING_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Whether the idle read worker threads run the reads queued to the busy ones.
+     *
+     * @return true if the read worker threads steal the queued reads
+     */
+    public boolean isReadWorkerThreadsWorkStealingEnabled() {
+        return getBoolean(READ_WORKER_THREADS_WORK_STEALING_ENABLED, false);
+    }
+
+    /**
+     * Enable the weighted-fair scheduling of the read requests. The reads are split in tailing reads,
+     * close to the last entry added to their ledger, backlog reads and recovery reads, each class with
+     * its own queue, and the read worker threads serve the classes in proportion to their weights
+     * rather than in FIFO order per ledger. This keeps the latency of the tailing reads low while a
+     * backlog is drained. Fencing reads are still executed by the high priority threads.
+     *
+     * @param enabled
+     *          whether to enable the read scheduler
+     * @return server configuration
+     */
+    public ServerConfiguration setReadSchedulerEnabled(boolean enabled) {
+        setProperty(READ_SCHEDULER_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Whether the read requests are scheduled by class, see {@link #setReadSchedulerEnabled(boolean)}.
+     *
+     * @return true if the read scheduler is enabled
+     */
+    public boolean isReadSchedulerEnabled() {
+        return getBoolean(READ_SCHEDULER_ENABLED, false);
+    }
+
+    /**
+     * Set the weight of the tailing reads in the read scheduler.
+     *
+     * @param weight
+     *          weight of the tailing reads
+     * @return server configuration
+     */
+    public ServerConfiguration setReadSchedulerTailingWeight(int weight) {
+        setProperty(READ_SCHEDULER_TAILING_WEIGHT, weight);
+        return this;
+    }
+
+    /**
+     * Get the weight of the tailing reads in the read scheduler (default: 8).
+     *
+     * @return weight of the tailing reads
+     */
+    public int getReadSchedulerTailingWeight() {
+        return getInt(READ_SCHEDULER_TAILING_WEIGHT, 8);
+    }
+
+    /**
+     * Set the weight of the backlog reads in the read scheduler.
+     *
+     * @param weight
+     *          weight of the backlog reads
+     * @return server configuration
+     */
+    public ServerConfiguration setReadSchedulerBacklogWeight(int weight) {
+        setProperty(READ_SCHEDULER_BACKLOG_WEIGHT, weight);
+        return this;
+    }
+
+    /**
+     * Get the weight of the backlog reads in the read scheduler (default: 1).
+     *
+     * @return weight of the backlog reads
+     */
+    public int getReadSchedulerBacklogWeight() {
+        return getInt(READ_SCHEDULER_BACKLOG_WEIGHT, 1);
+    }
+
+    /**
+     * Set the weight of the recovery reads in the read scheduler.
+     *
+     * @param weight
+     *          weight of the recovery reads
+     * @return server configuration
+     */
+    public ServerConfiguration setReadSchedulerRecoveryWeight(int weight) {
+        setProperty(READ_SCHEDULER_RECOVERY_WEIGHT, weight);
+        return this;
+    }
+
+    /**
+     * Get the weight of the recovery reads in the read scheduler (default: 16).
+     *
+     * @return weight of the recovery reads
+     */
+    public int getReadSchedulerRecoveryWeight() {
+        return getInt(READ_SCHEDULER_RECOVERY_WEIGHT, 16);
+    }
+
+    /**
+     * Set the max distance, in entries, between a read and the last entry added to its ledger on this
+     * bookie for the read to be scheduled as a tailing read.
+     *
+     * @param distance
+     *          max distance of a tailing read from the last added entry
+     * @return server configuration
+     */
+    public ServerConfiguration setReadSchedulerTailingDistanceEntries(int distance) {
+        setProperty(READ_SCHEDULER_TAILING_DISTANCE_ENTRIES, distance);
+        return this;
+    }
+
+    /**
+     * Get the max distance, in entries, between a tailing read and the last entry added to its ledger
+     * (default: 1000).
+     *
+     * @return max distance of a tailing read from the last added entry
+     */
+    public int getReadSchedulerTailingDistanceEntries() {
+        return getInt(READ_SCHEDULER_TAILING_DISTANCE_ENTRIES, 1000);
+    }
+
+    /**
+     * Enable the I/O quotas per principal. The add and read requests are accounted to the principal
+     * authenticated on their connection or, on the anonymous connections, to the principal set in
+     * the request context of the v3 requests, see {@link #setPrincipalQuotaContextKey(String)}. The
+     * requests over the quotas of their principal are rejected with ETOOMANYREQUESTS. High priority
+     * requests, such as recovery and fencing, aren't limited.
+     *
+     * @param enabled
+     *          whether to enable the quotas per principal
+     * @return server configuration
+     */
+    public ServerConfiguration setPrincipalQuotasEnabled(boolean enabled) {
+        setProperty(PRINCIPAL_QUOTAS_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Whether the I/O quotas per principal are enabled, see {@link #setPrincipalQuotasEnabled(boolean)}.
+     *
+     * @return true if the quotas per principal are enabled
+     */
+    public boolean isPrincipalQuotasEnabled() {
+        return getBoolean(PRINCIPAL_QUOTAS_ENABLED, false);
+    }
+
+    /**
+     * Set the bytes per second that each principal can add.
+     *
+     * @param bytesPerSecond
+     *          add bytes per second of a principal, 0 for no limit
+     * @return server configuration
+     */
+    public ServerConfiguration setPrincipalQuotaAddBytesPerSecond(long bytesPerSecond) {
+        setProperty(PRINCIPAL_QUOTA_ADD_BYTES_PER_SECOND, bytesPerSecond);
+        return this;
+    }
+
+    /**
+     * Get the bytes per second that each principal can add (default: 0, no limit).
+     *
+     * @return add bytes per second of a principal
+     */
+    public long getPrincipalQuotaAddBytesPerSecond() {
+        return getLong(PRINCIPAL_QUOTA_ADD_BYTES_PER_SECOND, 0L);
+    }
+
+    /**
+     * Set the bytes per second that each principal can read.
+     *
+     * @param bytesPerSecond
+     *          read bytes per second of a principal, 0 for no limit
+     * @return server configuration
+     */
+    public ServerConfiguration setPrincipalQuotaReadBytesPerSecond(long bytesPerSecond) {
+        setProperty(PRINCIPAL_QUOTA_READ_BYTES_PER_SECOND, bytesPerSecond);
+        return this;
+    }
+
+    /**
+     * Get the bytes per second that each principal can read (default: 0, no limit).
+     *
+     * @return read bytes per second of a principal
+     */
+    public long getPrincipalQuotaReadBytesPerSecond() {
+        return getLong(PRINCIPAL_QUOTA_READ_BYTES_PER_SECOND, 0L);
+    }
+
+    /**
+     * Set the add and read requests per second that each principal can send.
+     *
+     * @param requestsPerSecond
+     *          requests per second of a principal, 0 for no limit
+     * @return server configuration
+     */
+    public ServerConfiguration setPrincipalQuotaRequestsPerSecond(long requestsPerSecond) {
+        setProperty(PRINCIPAL_QUOTA_REQUESTS_PER_SECOND, requestsPerSecond);
+        return this;
+    }
+
+    /**
+     * Get the add and read requests per second that each principal can send (default: 0, no limit).
+     *
+     * @return requests per second of a principal
+     */
+    public long getPrincipalQuotaRequestsPerSecond() {
+        return getLong(PRINCIPAL_QUOTA_REQUESTS_PER_SECOND, 0L);
+    }
+
+    /**
+     * Set the key of the request context holding the principal of the requests sent on anonymous
+     * connections.
+     *
+     * @param contextKey
+     *          key of the principal in the request context
+     * @return server configuration
+     */
+    public ServerConfiguration setPrincipalQuotaContextKey(String contextKey) {
+        setProperty(PRINCIPAL_QUOTA_CONTEXT_KEY, contextKey);
+        return this;
+    }
+
+    /**
+     * Get the key of the request context holding the principal of the requests sent on anonymous
+     * connections (default: principal).
+     *
+     * @return key of the principal in the request context
+     */
+    public String getPrincipalQuotaContextKey() {
+        return getString(PRINCIPAL_QUOTA_CONTEXT_KEY, "principal");
+    }
+
+    /**
+     * Set the max number of principals with their own quotas and stats. The requests of the principals
+     * beyond it share the same quotas.
+     *
+     * @param maxPrincipals
+     *          max number of principals tracked
+     * @return server configuration
+     */
+    public ServerConfiguration setPrincipalQuotaMaxPrincipals(int maxPrincipals) {
+        setProperty(PRINCIPAL_QUOTA_MAX_PRINCIPALS, maxPrincipals);
+        return this;
+    }
+
+    /**
+     * Get the max number of principals with their own quotas and stats (default: 1000).
+     *
+     * @return max number of principals tracked
+     */
+    public int getPrincipalQuotaMaxPrincipals() {
+        return getInt(PRINCIPAL_QUOTA_MAX_PRINCIPALS, 1000);
+    }
+
 
 
     /**
@@ -2709,6 +3081,101 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return getLong(AUDITOR_REPLICAS_CHECK_INTERVAL, 0);
     }
 
+    /**
+     * Enable the incremental replicas check.
+     *
+     * <p>When enabled, the auditor keeps the last successful replicas check of each ledger in a
+     * local store, and a replicas check only checks the ledgers whose metadata changed since their
+     * last check, or whose last check is older than {@link #getAuditorReplicasCheckTtl()}. The
+     * checks are spread over the replicas check interval, see
+     * {@link #getAuditorReplicasCheckMaxLedgersPerSecond()}.
+     *
+     * @param enabled whether the incremental replicas check is enabled
+     * @return server configuration
+     */
+    public ServerConfiguration setAuditorReplicasCheckIncrementalEnabled(boolean enabled) {
+        setProperty(AUDITOR_REPLICAS_CHECK_INCREMENTAL_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Whether the incremental replicas check is enabled.
+     *
+     * @return true if the incremental replicas check is enabled. By default it is disabled.
+     */
+    public boolean isAuditorReplicasCheckIncrementalEnabled() {
+        return getBoolean(AUDITOR_REPLICAS_CHECK_INCREMENTAL_ENABLED, false);
+    }
+
+    /**
+     * Set the directory where the incremental replicas check keeps the last check of each ledger.
+     *
+     * @param dir the directory of the replicas check state
+     * @return server configuration
+     */
+    public ServerConfiguration setAuditorReplicasCheckStateDir(String dir) {
+        setProperty(AUDITOR_REPLICAS_CHECK_STATE_DIR, dir);
+        return this;
+    }
+
+    /**
+     * Get the directory where the incremental replicas check keeps the last check of each ledger.
+     *
+     * @return the directory of the replicas check state. By default it is the {@code auditor}
+     *         directory under the first ledger directory.
+     */
+    public String getAuditorReplicasCheckStateDir() {
+        String dir = getString(AUDITOR_REPLICAS_CHECK_STATE_DIR, null);
+        if (dir == null) {
+            dir = getLedgerDirNames()[0] + File.separator + "auditor";
+        }
+        return dir;
+    }
+
+    /**
+     * Set how long the last successful replicas check of a ledger remains valid, when the
+     * incremental replicas check is enabled. A ledger whose metadata didn't change is checked
+     * again once its last check is older than this.
+     *
+     * @param ttl the time to live in seconds
+     * @return server configuration
+     */
+    public ServerConfiguration setAuditorReplicasCheckTtl(long ttl) {
+        setProperty(AUDITOR_REPLICAS_CHECK_TTL, ttl);
+        return this;
+    }
+
+    /**
+     * Get how long the last successful replicas check of a ledger remains valid.
+     *
+     * @return the time to live in seconds. By default it is 604800 (1 week).
+     */
+    public long getAuditorReplicasCheckTtl() {
+        return getLong(AUDITOR_REPLICAS_CHECK_TTL, 604800);
+    }
+
+    /**
+     * Set the maximum number of ledgers checked per second by the incremental replicas check.
+     * Setting this to 0 spreads the ledgers to check evenly over the replicas check interval,
+     * based on the number of ledgers checked by the previous replicas check.
+     *
+     * @param maxLedgersPerSecond the maximum number of ledgers checked per second
+     * @return server configuration
+     */
+    public ServerConfiguration setAuditorReplicasCheckMaxLedgersPerSecond(double maxLedgersPerSecond) {
+        setProperty(AUDITOR_REPLICAS_CHECK_MAX_LEDGERS_PER_SECOND, maxLedgersPerSecond);
+        return this;
+    }
+
+    /**
+     * Get the maximum number of ledgers checked per second by the incremental replicas check.
+     *
+     * @return the maximum number of ledgers checked per second. By default it is 0.
+     */
+    public double getAuditorReplicasCheckMaxLedgersPerSecond() {
+        return getDouble(AUDITOR_REPLICAS_CHECK_MAX_LEDGERS_PER_SECOND, 0);
+    }
+
     /**
      * Get the semaphore limit value of getting ledger from zookeeper in auto recovery.
      *
@@ -2824,6 +3291,58 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         setProperty(RW_REREPLICATE_BACKOFF_MS, backoffMs);
     }
 
+    /**
+     * Get the maximum number of ledgers the replication worker replicates concurrently.
+     *
+     * @return the maximum number of ledgers replicated concurrently
+     * @see #setRwMaxConcurrentLedgers(int)
+     */
+    public int getRwMaxConcurrentLedgers() {
+        return getInt(RW_MAX_CONCURRENT_LEDGERS, 1);
+    }
+
+    /**
+     * Set the maximum number of ledgers the replication worker replicates concurrently.
+     *
+     * <p>The worker holds the under replication lock of each ledger it replicates. All the ledgers
+     * share the replication rate limit, see {@link #setReplicationRateByBytes(int)}.
+     *
+     * <p>The default, 1, replicates one ledger at a time.
+     *
+     * @param maxConcurrentLedgers the maximum number of ledgers replicated concurrently
+     * @return server configuration
+     */
+    public ServerConfiguration setRwMaxConcurrentLedgers(int maxConcurrentLedgers) {
+        setProperty(RW_MAX_CONCURRENT_LEDGERS, maxConcurrentLedgers);
+        return this;
+    }
+
+    /**
+     * Get the maximum number of fragments the replication worker replicates concurrently to the
+     * same bookie.
+     *
+     * @return the maximum number of concurrent fragment replications per target bookie
+     * @see #setRwMaxConcurrentReplicationsPerTargetBookie(int)
+     */
+    public int getRwMaxConcurrentReplicationsPerTargetBookie() {
+        return getInt(RW_MAX_CONCURRENT_REPLICATIONS_PER_TARGET_BOOKIE, 0);
+    }
+
+    /**
+     * Set the maximum number of fragments the replication worker replicates concurrently to the
+     * same bookie, when several ledgers are replicated concurrently. It keeps the replicated
+     * ledgers from all landing on the few bookies chosen first.
+     *
+     * <p>Setting it to 0, will not limit the number of concurrent replications per bookie.
+     *
+     * @param maxReplicationsPerBookie the maximum number of concurrent fragment replications per target bookie
+     * @return server configuration
+     */
+    public ServerConfiguration setRwMaxConcurrentReplicationsPerTargetBookie(int maxReplicationsPerBookie) {
+        setProperty(RW_MAX_CONCURRENT_REPLICATIONS_PER_TARGET_BOOKIE, maxReplicationsPerBookie);
+        return this;
+    }
+
     /**
      * Sets that whether force start a bookie in readonly mode.
      *
@@ -2965,6 +3484,33 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get the number of worker threads used to compact entry logs concurrently. Default is 1.
+     *
+     * <p>With a single worker, entry logs are compacted one at a time on the garbage collector
+     * thread. With more workers, independent entry logs are compacted in parallel, while all
+     * workers still share the rate configured by {@link #getCompactionRateByBytes()} or
+     * {@link #getCompactionRateByEntries()}.
+     *
+     * @return number of compaction worker threads
+     */
+    public int getCompactionWorkerThreads() {
+        return getInt(COMPACTION_WORKER_THREADS, 1);
+    }
+
+    /**
+     * Set the number of worker threads used to compact entry logs concurrently.
+     *
+     * @see #getCompactionWorkerThreads()
+     * @param numThreads number of compaction worker threads
+     *
+     * @return ServerConfiguration
+     */
+    public ServerConfiguration setCompactionWorkerThreads(int numThreads) {
+        setProperty(COMPACTION_WORKER_THREADS, numThreads);
+        return this;
+    }
+
     /**
      * Should we remove pages from page cache after force write.
      *
@@ -3205,6 +3751,9 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         if (getMajorCompactionInterval() > 0 && getMajorCompactionInterval() * SECOND < getGcWaitTime()) {
             throw new ConfigurationException("majorCompactionInterval should be >= gcWaitTime.");
         }
+        if (getCompactionWorkerThreads() < 1) {
+            throw new ConfigurationException("compactionWorkerThreads should be >= 1.");
+        }
     }
 
     /**
@@ -4010,6 +4559,41 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this.getBoolean(DATA_INTEGRITY_COOKIE_STAMPING_ENABLED, false);
     }
 
+    /**
+     * Enable the copy of ledger fragments requested by the autorecovery.
+     * When enabled, the replication worker can ask the bookie to read the entries of a
+     * fragment directly from the other bookies of the ensemble, instead of reading them
+     * itself and writing them back to the bookie. The copied entries are verified against
+     * their digest and written to the ledger storage, which is flushed before replying.
+     */
+    public ServerConfiguration setFragmentCopyEnabled(boolean enabled) {
+        this.setProperty(FRAGMENT_COPY_ENABLED, Boolean.toString(enabled));
+        return this;
+    }
+
+    /**
+     * @see #setFragmentCopyEnabled
+     */
+    public boolean isFragmentCopyEnabled() {
+        return this.getBoolean(FRAGMENT_COPY_ENABLED, false);
+    }
+
+    /**
+     * Set the max number of entries read from other bookies and not yet stored, for each
+     * ledger fragment being copied.
+     */
+    public ServerConfiguration setFragmentCopyMaxOutstandingEntries(int maxOutstandingEntries) {
+        this.setProperty(FRAGMENT_COPY_MAX_OUTSTANDING_ENTRIES, maxOutstandingEntries);
+        return this;
+    }
+
+    /**
+     * @see #setFragmentCopyMaxOutstandingEntries
+     */
+    public int getFragmentCopyMaxOutstandingEntries() {
+        return this.getInt(FRAGMENT_COPY_MAX_OUTSTANDING_ENTRIES, 64);
+    }
+
     /**
      * Get default rocksdb conf.
      *
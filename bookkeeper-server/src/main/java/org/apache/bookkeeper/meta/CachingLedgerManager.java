@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.meta;
+
+import static org.apache.bookkeeper.client.BookKeeperClientStats.CATEGORY_CLIENT;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.LEDGER_METADATA_CACHE_EVICTION;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.LEDGER_METADATA_CACHE_HIT;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.LEDGER_METADATA_CACHE_MISS;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.LEDGER_METADATA_CACHE_SIZE;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.LedgerMetadataListener;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.Processor;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.stats.annotations.StatsDoc;
+import org.apache.bookkeeper.versioning.Version;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.apache.zookeeper.AsyncCallback;
+
+/**
+ * A ledger manager that caches the ledger metadata read through it.
+ *
+ * <p>The metadata of closed ledgers only changes when their ensembles are updated, e.g. by the
+ * autorecovery, so it is kept until evicted or expired. The metadata of open ledgers is kept up
+ * to date by a metadata listener, registered on the underlying ledger manager while the ledger
+ * is cached. Updates and removals done through this ledger manager are applied to the cache.
+ */
+@StatsDoc(
+    name = "ledger_metadata_cache",
+    category = CATEGORY_CLIENT,
+    help = "Client ledger metadata cache stats"
+)
+@Slf4j
+public class CachingLedgerManager implements LedgerManager {
+
+    private final LedgerManager underlying;
+    private final Cache<Long, Versioned<LedgerMetadata>> cache;
+    // the listeners keeping the metadata of cached open ledgers up to date
+    private final ConcurrentMap<Long, LedgerMetadataListener> watches = new ConcurrentHashMap<>();
+
+    @StatsDoc(
+        name = LEDGER_METADATA_CACHE_HIT,
+        help = "Number of ledger metadata reads served by the cache"
+    )
+    private final Counter hitCounter;
+    @StatsDoc(
+        name = LEDGER_METADATA_CACHE_MISS,
+        help = "Number of ledger metadata reads sent to the metadata store"
+    )
+    private final Counter missCounter;
+    @StatsDoc(
+        name = LEDGER_METADATA_CACHE_EVICTION,
+        help = "Number of ledger metadata evicted from the cache, because of its size or expiry"
+    )
+    private final Counter evictionCounter;
+
+    public CachingLedgerManager(LedgerManager underlying, long maxEntries, long expirySeconds,
+                                StatsLogger statsLogger) {
+        this.underlying = underlying;
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+            .maximumSize(maxEntries);
+        if (expirySeconds > 0) {
+            builder.expireAfterWrite(expirySeconds, TimeUnit.SECONDS);
+        }
+        this.cache = builder.removalListener(this::onRemoval).build();
+        this.hitCounter = statsLogger.getCounter(LEDGER_METADATA_CACHE_HIT);
+        this.missCounter = statsLogger.getCounter(LEDGER_METADATA_CACHE_MISS);
+        this.evictionCounter = statsLogger.getCounter(LEDGER_METADATA_CACHE_EVICTION);
+        statsLogger.registerGauge(LEDGER_METADATA_CACHE_SIZE, new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return cache.size();
+            }
+        });
+    }
+
+    @VisibleForTesting
+    public LedgerManager getUnderlying() {
+        return underlying;
+    }
+
+    @Override
+    public CompletableFuture<Versioned<LedgerMetadata>> createLedgerMetadata(long ledgerId, LedgerMetadata metadata) {
+        // a new ledger is only cached once opened
+        return underlying.createLedgerMetadata(ledgerId, metadata);
+    }
+
+    @Override
+    public CompletableFuture<Void> removeLedgerMetadata(long ledgerId, Version version) {
+        return underlying.removeLedgerMetadata(ledgerId, version)
+            .whenComplete((result, exception) -> cache.invalidate(ledgerId));
+    }
+
+    @Override
+    public CompletableFuture<Versioned<LedgerMetadata>> readLedgerMetadata(long ledgerId) {
+        Versioned<LedgerMetadata> cached = cache.getIfPresent(ledgerId);
+        if (cached != null) {
+            hitCounter.inc();
+            return CompletableFuture.completedFuture(cached);
+        }
+        missCounter.inc();
+        return underlying.readLedgerMetadata(ledgerId)
+            .whenComplete((metadata, exception) -> {
+                if (exception == null) {
+                    cacheMetadata(ledgerId, metadata);
+                }
+            });
+    }
+
+    @Override
+    public CompletableFuture<Versioned<LedgerMetadata>> writeLedgerMetadata(long ledgerId, LedgerMetadata metadata,
+                                                                            Version currentVersion) {
+        return underlying.writeLedgerMetadata(ledgerId, metadata, currentVersion)
+            .whenComplete((written, exception) -> {
+                if (exception == null) {
+                    updateIfCached(ledgerId, written);
+                } else {
+                    // e.g. a version conflict, the cached metadata can't be trusted
+                    cache.invalidate(ledgerId);
+                }
+            });
+    }
+
+    @Override
+    public void registerLedgerMetadataListener(long ledgerId, LedgerMetadataListener listener) {
+        underlying.registerLedgerMetadataListener(ledgerId, listener);
+    }
+
+    @Override
+    public void unregisterLedgerMetadataListener(long ledgerId, LedgerMetadataListener listener) {
+        underlying.unregisterLedgerMetadataListener(ledgerId, listener);
+    }
+
+    @Override
+    public void asyncProcessLedgers(Processor<Long> processor, AsyncCallback.VoidCallback finalCb,
+                                    Object context, int successRc, int failureRc) {
+        underlying.asyncProcessLedgers(processor, finalCb, context, successRc, failureRc);
+    }
+
+    @Override
+    public LedgerRangeIterator getLedgerRanges(long zkOpTimeOutMs) {
+        return underlying.getLedgerRanges(zkOpTimeOutMs);
+    }
+
+    @Override
+    public void close() throws IOException {
+        cache.invalidateAll();
+        underlying.close();
+    }
+
+    private void cacheMetadata(long ledgerId, Versioned<LedgerMetadata> metadata) {
+        // the watch is registered along with the entry, under the lock of the entry, so it can't
+        // be missed by a concurrent removal of the entry
+        cache.asMap().compute(ledgerId, (id, current) -> {
+            if (!metadata.getValue().isClosed() && !watches.containsKey(ledgerId)) {
+                // the listener is notified of the current metadata once registered, asynchronously,
+                // so updates done since the read are not missed
+                LedgerMetadataListener listener = (lid, updated) -> onMetadataChanged(lid, updated);
+                watches.put(ledgerId, listener);
+                underlying.registerLedgerMetadataListener(ledgerId, listener);
+            }
+            return current == null ? metadata : newer(current, metadata);
+        });
+    }
+
+    private void updateIfCached(long ledgerId, Versioned<LedgerMetadata> metadata) {
+        cache.asMap().computeIfPresent(ledgerId, (id, current) -> newer(current, metadata));
+    }
+
+    private void onMetadataChanged(long ledgerId, Versioned<LedgerMetadata> metadata) {
+        if (metadata == null) {
+            // the ledger is deleted, and the underlying ledger manager already dropped its listeners
+            watches.remove(ledgerId);
+            cache.invalidate(ledgerId);
+        } else {
+            updateIfCached(ledgerId, metadata);
+        }
+    }
+
+    private void onRemoval(RemovalNotification<Long, Versioned<LedgerMetadata>> notification) {
+        if (notification.getCause() == RemovalCause.REPLACED) {
+            return;
+        }
+        if (notification.wasEvicted()) {
+            evictionCounter.inc();
+        }
+        long ledgerId = notification.getKey();
+        // the notification is delivered after the removal, by when the ledger may have been
+        // cached again, along with the watch it needs
+        cache.asMap().computeIfAbsent(ledgerId, id -> {
+            LedgerMetadataListener listener = watches.remove(ledgerId);
+            if (listener != null) {
+                underlying.unregisterLedgerMetadataListener(ledgerId, listener);
+            }
+            return null;
+        });
+    }
+
+    private static Versioned<LedgerMetadata> newer(Versioned<LedgerMetadata> current,
+                                                   Versioned<LedgerMetadata> updated) {
+        return updated.getVersion().compare(current.getVersion()) == Version.Occurred.AFTER ? updated : current;
+    }
+}
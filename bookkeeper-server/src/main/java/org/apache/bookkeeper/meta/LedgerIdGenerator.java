@@ -18,6 +18,11 @@
 package org.apache.bookkeeper.meta;
 
 import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
 
 /**
@@ -36,4 +41,40 @@ public interface LedgerIdGenerator extends Closeable {
      */
     void generateLedgerId(GenericCallback<Long> cb);
 
+    /**
+     * Generate a batch of global unique ledger ids.
+     *
+     * <p>The default implementation generates the ids concurrently, one by one. Generators which can
+     * reserve several ids in a single metadata store operation override it.
+     *
+     * @param count
+     *            the number of ids to generate
+     * @param cb
+     *            Callback when the ids are generated, with the same return codes as
+     *            {@link #generateLedgerId(GenericCallback)}. No id is returned if any failed.
+     */
+    default void generateLedgerIds(int count, GenericCallback<List<Long>> cb) {
+        if (count <= 0) {
+            cb.operationComplete(BKException.Code.OK, Collections.emptyList());
+            return;
+        }
+        Long[] ids = new Long[count];
+        AtomicInteger remaining = new AtomicInteger(count);
+        AtomicInteger firstError = new AtomicInteger(BKException.Code.OK);
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            generateLedgerId((rc, ledgerId) -> {
+                if (rc == BKException.Code.OK) {
+                    ids[index] = ledgerId;
+                } else {
+                    firstError.compareAndSet(BKException.Code.OK, rc);
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    int result = firstError.get();
+                    cb.operationComplete(result, result == BKException.Code.OK ? Arrays.asList(ids) : null);
+                }
+            });
+        }
+    }
+
 }
@@ -35,9 +35,11 @@ import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 import org.apache.bookkeeper.client.LedgerMetadataBuilder;
 import org.apache.bookkeeper.client.LedgerMetadataUtils;
@@ -74,7 +76,15 @@ public class LedgerMetadataSerDe {
      */
     public static final int METADATA_FORMAT_VERSION_3 = 3;
 
-    public static final int MAXIMUM_METADATA_FORMAT_VERSION = METADATA_FORMAT_VERSION_3;
+    /**
+     * Protobuf based, serialized in binary format, with compact ensembles: the bookie ids are
+     * stored once in a dictionary, and the ensembles are parsed lazily.
+     * Not used by default, as older clients and bookies can't parse it. Ledgers are created with
+     * it once all of them are upgraded and the ledgerMetadataVersion setting is set to 4.
+     */
+    public static final int METADATA_FORMAT_VERSION_4 = 4;
+
+    public static final int MAXIMUM_METADATA_FORMAT_VERSION = METADATA_FORMAT_VERSION_4;
     public static final int CURRENT_METADATA_FORMAT_VERSION = METADATA_FORMAT_VERSION_3;
     private static final int LOWEST_COMPAT_METADATA_FORMAT_VERSION = METADATA_FORMAT_VERSION_1;
 
@@ -128,8 +138,11 @@ public class LedgerMetadataSerDe {
         int formatVersion = metadata.getMetadataFormatVersion();
         final byte[] serialized;
         switch (formatVersion) {
+        case METADATA_FORMAT_VERSION_4:
+            serialized = serializeBinary(metadata, METADATA_FORMAT_VERSION_4);
+            break;
         case METADATA_FORMAT_VERSION_3:
-            serialized = serializeVersion3(metadata);
+            serialized = serializeBinary(metadata, METADATA_FORMAT_VERSION_3);
             break;
         case METADATA_FORMAT_VERSION_2:
             serialized = serializeVersion2(metadata);
@@ -152,9 +165,9 @@ public class LedgerMetadataSerDe {
         return serialized;
     }
 
-    private static byte[] serializeVersion3(LedgerMetadata metadata) throws IOException {
+    private static byte[] serializeBinary(LedgerMetadata metadata, int formatVersion) throws IOException {
         try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-            writeHeader(os, METADATA_FORMAT_VERSION_3);
+            writeHeader(os, formatVersion);
             LedgerMetadataFormat.Builder builder = LedgerMetadataFormat.newBuilder();
             builder.setQuorumSize(metadata.getWriteQuorumSize())
                 .setAckQuorumSize(metadata.getAckQuorumSize())
@@ -198,13 +211,17 @@ public class LedgerMetadataSerDe {
                 }
             }
 
-            for (Map.Entry<Long, ? extends List<BookieId>> entry : metadata.getAllEnsembles().entrySet()) {
-                LedgerMetadataFormat.Segment.Builder segmentBuilder = LedgerMetadataFormat.Segment.newBuilder();
-                segmentBuilder.setFirstEntryId(entry.getKey());
-                for (BookieId addr : entry.getValue()) {
-                    segmentBuilder.addEnsembleMember(addr.toString());
+            if (formatVersion >= METADATA_FORMAT_VERSION_4) {
+                serializeCompactEnsembles(metadata, builder);
+            } else {
+                for (Map.Entry<Long, ? extends List<BookieId>> entry : metadata.getAllEnsembles().entrySet()) {
+                    LedgerMetadataFormat.Segment.Builder segmentBuilder = LedgerMetadataFormat.Segment.newBuilder();
+                    segmentBuilder.setFirstEntryId(entry.getKey());
+                    for (BookieId addr : entry.getValue()) {
+                        segmentBuilder.addEnsembleMember(addr.toString());
+                    }
+                    builder.addSegment(segmentBuilder.build());
                 }
-                builder.addSegment(segmentBuilder.build());
             }
 
             builder.setCToken(metadata.getCToken());
@@ -214,6 +231,24 @@ public class LedgerMetadataSerDe {
         }
     }
 
+    private static void serializeCompactEnsembles(LedgerMetadata metadata, LedgerMetadataFormat.Builder builder) {
+        Map<BookieId, Integer> dictionary = new HashMap<>();
+        long previousFirstEntryId = 0L;
+        for (Map.Entry<Long, ? extends List<BookieId>> entry : metadata.getAllEnsembles().entrySet()) {
+            builder.addSegmentFirstEntryIdDelta(entry.getKey() - previousFirstEntryId);
+            previousFirstEntryId = entry.getKey();
+            for (BookieId addr : entry.getValue()) {
+                Integer index = dictionary.get(addr);
+                if (index == null) {
+                    index = dictionary.size();
+                    dictionary.put(addr, index);
+                    builder.addBookieDictionary(addr.toString());
+                }
+                builder.addSegmentEnsembleMember(index);
+            }
+        }
+    }
+
     private static byte[] serializeVersion2(LedgerMetadata metadata) throws IOException {
         try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
             writeHeader(os, METADATA_FORMAT_VERSION_2);
@@ -353,6 +388,8 @@ public class LedgerMetadataSerDe {
             }
 
             switch (metadataFormatVersion) {
+            case METADATA_FORMAT_VERSION_4:
+                return parseVersion4Config(ledgerId, is, metadataStoreCtime);
             case METADATA_FORMAT_VERSION_3:
                 return parseVersion3Config(ledgerId, is, metadataStoreCtime);
             case METADATA_FORMAT_VERSION_2:
@@ -362,7 +399,7 @@ public class LedgerMetadataSerDe {
             default:
                 throw new IOException(
                         String.format("Metadata version not compatible. Expected between %d and %d, but got %d",
-                                      LOWEST_COMPAT_METADATA_FORMAT_VERSION, CURRENT_METADATA_FORMAT_VERSION,
+                                      LOWEST_COMPAT_METADATA_FORMAT_VERSION, MAXIMUM_METADATA_FORMAT_VERSION,
                                       metadataFormatVersion));
             }
         }
@@ -385,6 +422,69 @@ public class LedgerMetadataSerDe {
         return builder.build();
     }
 
+    private static LedgerMetadata parseVersion4Config(long ledgerId, InputStream is, Optional<Long> metadataStoreCtime)
+            throws IOException {
+        LedgerMetadataBuilder builder = LedgerMetadataBuilder.create()
+                .withId(ledgerId)
+                .withMetadataFormatVersion(METADATA_FORMAT_VERSION_4);
+        LedgerMetadataFormat.Builder formatBuilder = LedgerMetadataFormat.newBuilder();
+        formatBuilder.mergeDelimitedFrom(is);
+        LedgerMetadataFormat data = formatBuilder.build();
+        decodeFormat(data, builder);
+        checkCompactEnsembles(data);
+        BookieId[] bookies = new BookieId[data.getBookieDictionaryCount()];
+        for (int i = 0; i < bookies.length; i++) {
+            bookies[i] = BookieId.parse(data.getBookieDictionary(i));
+        }
+        // the ensembles are validated, only materializing them is deferred
+        builder.withLazyEnsembles(() -> decodeCompactEnsembles(data, bookies));
+        if (data.hasCtime()) {
+            builder.storingCreationTime(true);
+        } else if (metadataStoreCtime.isPresent()) {
+            builder.withCreationTime(metadataStoreCtime.get()).storingCreationTime(false);
+        }
+        return builder.build();
+    }
+
+    private static void checkCompactEnsembles(LedgerMetadataFormat data) throws IOException {
+        int numSegments = data.getSegmentFirstEntryIdDeltaCount();
+        if (numSegments == 0) {
+            throw new IOException("There must be at least one ensemble in the ledger");
+        }
+        if (data.getSegmentEnsembleMemberCount() != (long) numSegments * data.getEnsembleSize()) {
+            throw new IOException(String.format("%d ensemble members found for %d ensembles of size %d",
+                    data.getSegmentEnsembleMemberCount(), numSegments, data.getEnsembleSize()));
+        }
+        for (int i = 0; i < numSegments; i++) {
+            long delta = data.getSegmentFirstEntryIdDelta(i);
+            if (delta < 0 || (i > 0 && delta == 0)) {
+                throw new IOException("Ensemble first entry ids must be increasing, found delta " + delta);
+            }
+        }
+        int dictionarySize = data.getBookieDictionaryCount();
+        for (int index : data.getSegmentEnsembleMemberList()) {
+            if (index < 0 || index >= dictionarySize) {
+                throw new IOException(String.format("Ensemble member %d out of the %d bookies dictionary",
+                        index, dictionarySize));
+            }
+        }
+    }
+
+    private static Map<Long, List<BookieId>> decodeCompactEnsembles(LedgerMetadataFormat data, BookieId[] bookies) {
+        Map<Long, List<BookieId>> ensembles = new TreeMap<>();
+        int ensembleSize = data.getEnsembleSize();
+        long firstEntryId = 0L;
+        for (int i = 0; i < data.getSegmentFirstEntryIdDeltaCount(); i++) {
+            firstEntryId += data.getSegmentFirstEntryIdDelta(i);
+            List<BookieId> ensemble = new ArrayList<>(ensembleSize);
+            for (int j = 0; j < ensembleSize; j++) {
+                ensemble.add(bookies[data.getSegmentEnsembleMember(i * ensembleSize + j)]);
+            }
+            ensembles.put(firstEntryId, ensemble);
+        }
+        return ensembles;
+    }
+
     private static LedgerMetadata parseVersion2Config(long ledgerId, InputStream is, Optional<Long> metadataStoreCtime)
             throws IOException {
         LedgerMetadataBuilder builder = LedgerMetadataBuilder.create()
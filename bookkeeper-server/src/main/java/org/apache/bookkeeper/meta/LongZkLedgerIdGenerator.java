@@ -56,6 +56,7 @@ import org.slf4j.LoggerFactory;
  */
 public class LongZkLedgerIdGenerator implements LedgerIdGenerator {
     private static final Logger LOG = LoggerFactory.getLogger(LongZkLedgerIdGenerator.class);
+    private static final String HOB_PREFIX = "HOB-";
     private ZooKeeper zk;
     private String ledgerIdGenPath;
     private ZkLedgerIdGenerator shortIdGen;
@@ -154,7 +155,7 @@ public class LongZkLedgerIdGenerator implements LedgerIdGenerator {
 
     private void generateLongLedgerId(final GenericCallback<Long> cb) throws KeeperException, InterruptedException,
             IOException {
-        final String hobPrefix = "HOB-";
+        final String hobPrefix = HOB_PREFIX;
         final String ledgerPrefix = this.ledgerIdGenPath + "/" + hobPrefix;
 
         // Only pull the directories from zk if we don't have any cached.
@@ -328,6 +329,79 @@ public class LongZkLedgerIdGenerator implements LedgerIdGenerator {
         }
     }
 
+    @Override
+    public void generateLedgerIds(int count, GenericCallback<List<Long>> cb) {
+        if (count <= 1) {
+            generateLedgerIdsOneByOne(count, cb);
+            return;
+        }
+        try {
+            if (!ledgerIdGenPathPresent(zk)) {
+                shortIdGen.generateLedgerIds(count, (rc, ledgerIds) -> {
+                    if (rc == BKException.Code.LedgerIdOverflowException) {
+                        // 31-bit IDs overflowed. The single id generation moves to 63-bit ids.
+                        generateLedgerIdsOneByOne(count, cb);
+                    } else {
+                        cb.operationComplete(rc, ledgerIds);
+                    }
+                });
+            } else {
+                // The first id finds the current high order bits, creating their directory if needed,
+                // and the others are generated at once under it.
+                generateLongLedgerId((rc, firstId) -> {
+                    if (rc != BKException.Code.OK) {
+                        cb.operationComplete(rc, null);
+                        return;
+                    }
+                    generateLongLedgerIdsLowBits(firstId, count - 1, cb);
+                });
+            }
+        } catch (KeeperException e) {
+            LOG.error("Failed to create long ledger ID path", e);
+            cb.operationComplete(BKException.Code.ZKException, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.error("Failed to create long ledger ID path", e);
+            cb.operationComplete(BKException.Code.InterruptedException, null);
+        } catch (IOException e) {
+            LOG.error("Failed to create long ledger ID path", e);
+            cb.operationComplete(BKException.Code.IllegalOpException, null);
+        }
+    }
+
+    private void generateLongLedgerIdsLowBits(long firstId, int count, GenericCallback<List<Long>> cb) {
+        final long highBits = firstId >>> 32;
+        String highPath = this.ledgerIdGenPath + "/" + HOB_PREFIX + formatHalfId((int) highBits);
+        GenericCallback<List<Long>> withFirstId = (rc, ledgerIds) -> {
+            if (rc == BKException.Code.OK) {
+                List<Long> allIds = new ArrayList<>(ledgerIds.size() + 1);
+                allIds.add(firstId);
+                allIds.addAll(ledgerIds);
+                cb.operationComplete(rc, allIds);
+            } else {
+                cb.operationComplete(rc, null);
+            }
+        };
+        ZkLedgerIdGenerator.generateLedgerIdsImpl((rc, lowBits) -> {
+            if (rc == BKException.Code.OK) {
+                List<Long> ledgerIds = new ArrayList<>(lowBits.size());
+                for (long low : lowBits) {
+                    ledgerIds.add((highBits << 32) | low);
+                }
+                withFirstId.operationComplete(rc, ledgerIds);
+            } else if (rc == BKException.Code.LedgerIdOverflowException) {
+                // Lower bits are full. The single id generation moves to the next HOB node.
+                generateLedgerIdsOneByOne(count, withFirstId);
+            } else {
+                withFirstId.operationComplete(rc, null);
+            }
+        }, zk, ZkLedgerIdGenerator.createLedgerPrefix(highPath, null), zkAcls, count);
+    }
+
+    private void generateLedgerIdsOneByOne(int count, GenericCallback<List<Long>> cb) {
+        LedgerIdGenerator.super.generateLedgerIds(count, cb);
+    }
+
     @Override
     public void close() throws IOException {
         shortIdGen.close();
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.meta;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
+
+/**
+ * A ledger id generator which reserves ledger ids in batches from the underlying generator,
+ * and hands them out one by one, so most ledger creations don't wait for a metadata store
+ * operation to get their id.
+ *
+ * <p>The ids reserved but not used when the generator is closed are lost, which only leaves
+ * gaps in the ledger id space. The requests still waiting for an id when the generator is
+ * closed fail with {@link BKException.Code#ClientClosedException}.
+ */
+public class PreallocatingLedgerIdGenerator implements LedgerIdGenerator {
+
+    private final LedgerIdGenerator underlying;
+    private final int batchSize;
+    private final Queue<Long> preallocatedIds = new ArrayDeque<>();
+    private final Queue<GenericCallback<Long>> waiters = new ArrayDeque<>();
+    private boolean refilling = false;
+    private boolean closed = false;
+
+    public PreallocatingLedgerIdGenerator(LedgerIdGenerator underlying, int batchSize) {
+        this.underlying = underlying;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void generateLedgerId(GenericCallback<Long> cb) {
+        Long ledgerId = null;
+        boolean refill = false;
+        boolean isClosed;
+        synchronized (this) {
+            isClosed = closed;
+            if (!isClosed) {
+                ledgerId = preallocatedIds.poll();
+                if (ledgerId == null) {
+                    waiters.add(cb);
+                    if (!refilling) {
+                        refilling = true;
+                        refill = true;
+                    }
+                }
+            }
+        }
+        if (isClosed) {
+            cb.operationComplete(BKException.Code.ClientClosedException, null);
+        } else if (ledgerId != null) {
+            cb.operationComplete(BKException.Code.OK, ledgerId);
+        } else if (refill) {
+            underlying.generateLedgerIds(batchSize, this::refillComplete);
+        }
+    }
+
+    @Override
+    public void generateLedgerIds(int count, GenericCallback<List<Long>> cb) {
+        underlying.generateLedgerIds(count, cb);
+    }
+
+    private void refillComplete(int rc, List<Long> ledgerIds) {
+        List<GenericCallback<Long>> served = new ArrayList<>();
+        List<Long> servedIds = new ArrayList<>();
+        List<GenericCallback<Long>> failed = new ArrayList<>();
+        boolean refill = false;
+        synchronized (this) {
+            if (closed) {
+                // the waiters were failed on close
+                refilling = false;
+                return;
+            }
+            if (rc == BKException.Code.OK) {
+                preallocatedIds.addAll(ledgerIds);
+                while (!waiters.isEmpty() && !preallocatedIds.isEmpty()) {
+                    served.add(waiters.poll());
+                    servedIds.add(preallocatedIds.poll());
+                }
+                // more waiters arrived than ids reserved, reserve another batch for them
+                refill = !waiters.isEmpty();
+            } else {
+                failed.addAll(waiters);
+                waiters.clear();
+            }
+            refilling = refill;
+        }
+        for (int i = 0; i < served.size(); i++) {
+            served.get(i).operationComplete(BKException.Code.OK, servedIds.get(i));
+        }
+        for (GenericCallback<Long> cb : failed) {
+            cb.operationComplete(rc, null);
+        }
+        if (refill) {
+            underlying.generateLedgerIds(batchSize, this::refillComplete);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        List<GenericCallback<Long>> failed;
+        synchronized (this) {
+            closed = true;
+            preallocatedIds.clear();
+            failed = new ArrayList<>(waiters);
+            waiters.clear();
+        }
+        for (GenericCallback<Long> cb : failed) {
+            cb.operationComplete(BKException.Code.ClientClosedException, null);
+        }
+        underlying.close();
+    }
+}
@@ -18,6 +18,7 @@
 package org.apache.bookkeeper.meta;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
@@ -27,6 +28,8 @@ import org.apache.zookeeper.AsyncCallback;
 import org.apache.zookeeper.AsyncCallback.StringCallback;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.OpResult;
 import org.apache.zookeeper.ZooKeeper;
 import org.apache.zookeeper.data.ACL;
 import org.slf4j.Logger;
@@ -44,6 +47,9 @@ public class ZkLedgerIdGenerator implements LedgerIdGenerator {
 
     static final String LEDGER_ID_GEN_PREFIX = "ID-";
 
+    // bounds the size of a multi request, far below the zookeeper packet limit
+    static final int MAX_IDS_PER_MULTI = 1000;
+
     final ZooKeeper zk;
     final String ledgerPrefix;
     final List<ACL> zkAcls;
@@ -72,6 +78,104 @@ public class ZkLedgerIdGenerator implements LedgerIdGenerator {
         generateLedgerIdImpl(cb, zk, ledgerPrefix, zkAcls);
     }
 
+    @Override
+    public void generateLedgerIds(int count, GenericCallback<List<Long>> cb) {
+        generateLedgerIdsImpl(cb, zk, ledgerPrefix, zkAcls, count);
+    }
+
+    /**
+     * Generate ledger ids in batches, creating (and deleting) the sequential znodes of a batch
+     * in a single multi operation.
+     */
+    public static void generateLedgerIdsImpl(final GenericCallback<List<Long>> cb, ZooKeeper zk,
+            String ledgerPrefix, List<ACL> zkAcls, int count) {
+        if (count <= 0) {
+            cb.operationComplete(BKException.Code.OK, new ArrayList<>());
+            return;
+        }
+        int batchSize = Math.min(count, MAX_IDS_PER_MULTI);
+        List<Op> creates = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            creates.add(Op.create(ledgerPrefix, new byte[0], zkAcls, CreateMode.EPHEMERAL_SEQUENTIAL));
+        }
+        zk.multi(creates, (rc, path, ctx, opResults) -> {
+            if (rc == KeeperException.Code.NONODE.intValue()) {
+                // the id generation path doesn't exist yet, the single id generation creates it
+                generateLedgerIdImpl((firstRc, firstId) -> {
+                    if (firstRc != BKException.Code.OK) {
+                        cb.operationComplete(firstRc, null);
+                        return;
+                    }
+                    generateLedgerIdsImpl(prependId(firstId, cb), zk, ledgerPrefix, zkAcls, count - 1);
+                }, zk, ledgerPrefix, zkAcls);
+                return;
+            } else if (rc != KeeperException.Code.OK.intValue()) {
+                LOG.error("Could not generate new ledger ids",
+                        KeeperException.create(KeeperException.Code.get(rc), path));
+                cb.operationComplete(BKException.Code.ZKException, null);
+                return;
+            }
+
+            List<Long> ledgerIds = new ArrayList<>(count);
+            List<Op> deletes = new ArrayList<>(batchSize);
+            boolean overflow = false;
+            boolean invalid = false;
+            for (OpResult result : opResults) {
+                String idPathName = ((OpResult.CreateResult) result).getPath();
+                deletes.add(Op.delete(idPathName, -1));
+                try {
+                    long ledgerId = getLedgerIdFromGenPath(idPathName, ledgerPrefix);
+                    if (ledgerId < 0 || ledgerId >= Integer.MAX_VALUE) {
+                        overflow = true;
+                    } else {
+                        ledgerIds.add(ledgerId);
+                    }
+                } catch (IOException e) {
+                    LOG.error("Could not extract ledger-id from id gen path:" + idPathName, e);
+                    invalid = true;
+                }
+            }
+
+            // delete the znodes for id generation
+            zk.multi(deletes, (deleteRc, deletePath, deleteCtx, deleteResults) -> {
+                if (deleteRc != KeeperException.Code.OK.intValue()) {
+                    LOG.warn("Exception during deleting znodes for id generation : ",
+                            KeeperException.create(KeeperException.Code.get(deleteRc), deletePath));
+                }
+            }, null);
+
+            if (invalid) {
+                cb.operationComplete(BKException.Code.ZKException, null);
+            } else if (overflow) {
+                cb.operationComplete(BKException.Code.LedgerIdOverflowException, null);
+            } else if (ledgerIds.size() < count) {
+                generateLedgerIdsImpl((restRc, restIds) -> {
+                    if (restRc == BKException.Code.OK) {
+                        ledgerIds.addAll(restIds);
+                        cb.operationComplete(restRc, ledgerIds);
+                    } else {
+                        cb.operationComplete(restRc, null);
+                    }
+                }, zk, ledgerPrefix, zkAcls, count - ledgerIds.size());
+            } else {
+                cb.operationComplete(BKException.Code.OK, ledgerIds);
+            }
+        }, null);
+    }
+
+    private static GenericCallback<List<Long>> prependId(long ledgerId, GenericCallback<List<Long>> cb) {
+        return (rc, ledgerIds) -> {
+            if (rc == BKException.Code.OK) {
+                List<Long> allIds = new ArrayList<>(ledgerIds.size() + 1);
+                allIds.add(ledgerId);
+                allIds.addAll(ledgerIds);
+                cb.operationComplete(rc, allIds);
+            } else {
+                cb.operationComplete(rc, null);
+            }
+        };
+    }
+
     public static void generateLedgerIdImpl(final GenericCallback<Long> cb, ZooKeeper zk, String ledgerPrefix,
             List<ACL> zkAcls) {
         ZkUtils.asyncCreateFullPathOptimistic(zk, ledgerPrefix, new byte[0], zkAcls,
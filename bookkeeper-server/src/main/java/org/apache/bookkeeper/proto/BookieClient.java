@@ -23,9 +23,12 @@ package org.apache.bookkeeper.proto;
 import io.netty.util.ReferenceCounted;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.api.WriteFlag;
 import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.CopyLedgerFragmentCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ForceLedgerCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GetBookieInfoCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
@@ -123,6 +126,24 @@ public interface BookieClient {
     void writeLac(BookieId address, long ledgerId, byte[] masterKey,
                   long lac, ByteBufList toSend, WriteLacCallback cb, Object ctx);
 
+    /**
+     * Explicitly write the last add confirmed of several ledgers to the bookie at
+     * {@code address}, in a single request.
+     *
+     * <p>The bookie must support batched explicit LACs. The default implementation
+     * sends a request per ledger.
+     *
+     * @param address the address of the bookie
+     * @param lacs the last add confirmed we wish to write, for each ledger
+     * @param cb the callback notified once for each ledger of the batch
+     * @param ctx a context object passed to the callback on completion
+     */
+    default void batchWriteLac(BookieId address, List<ExplicitLac> lacs, WriteLacCallback cb, Object ctx) {
+        for (ExplicitLac lac : lacs) {
+            writeLac(address, lac.getLedgerId(), lac.getMasterKey(), lac.getLac(), lac.getToSend(), cb, ctx);
+        }
+    }
+
     /**
      * Add an entry for ledger {@code ledgerId} on the bookie at address {@code address}.
      *
@@ -230,11 +251,70 @@ public interface BookieClient {
     CompletableFuture<AvailabilityOfEntriesOfLedger> getListOfEntriesOfLedger(BookieId address,
             long ledgerId);
 
+    /**
+     * Ask the bookie at {@code address} to copy a range of entries of a ledger from the other
+     * bookies of the ensemble, and to store them. The bookie reads the metadata of the ledger
+     * from the metadata store, verifies the digest of the entries and makes them durable before
+     * replying.
+     *
+     * @param address the address of the bookie copying the entries
+     * @param ledgerId the ledger of the entries
+     * @param masterKey the master key of the ledger, checked against the one derived from its metadata
+     * @param firstEntryId the first entry to copy
+     * @param lastEntryId the last entry to copy
+     * @param unavailableBookies bookies of the ensemble to only read from as a last resort
+     * @param cb the callback notified when the copy completes
+     * @param ctx a context object passed to the callback on completion
+     */
+    default void copyLedgerFragment(BookieId address, long ledgerId, byte[] masterKey,
+                                    long firstEntryId, long lastEntryId,
+                                    Set<BookieId> unavailableBookies,
+                                    CopyLedgerFragmentCallback cb, Object ctx) {
+        cb.copyLedgerFragmentComplete(BKException.Code.IllegalOpException, ledgerId, 0L, 0L, ctx);
+    }
+
     /**
      * @return whether bookie client object has been closed
      */
     boolean isClosed();
 
+    /**
+     * The explicit last add confirmed of a ledger, sent in a batch by
+     * {@link #batchWriteLac(BookieId, List, WriteLacCallback, Object)}.
+     */
+    final class ExplicitLac {
+        private final long ledgerId;
+        private final byte[] masterKey;
+        private final long lac;
+        private final ByteBufList toSend;
+
+        public ExplicitLac(long ledgerId, byte[] masterKey, long lac, ByteBufList toSend) {
+            this.ledgerId = ledgerId;
+            this.masterKey = masterKey;
+            this.lac = lac;
+            this.toSend = toSend;
+        }
+
+        public long getLedgerId() {
+            return ledgerId;
+        }
+
+        public byte[] getMasterKey() {
+            return masterKey;
+        }
+
+        public long getLac() {
+            return lac;
+        }
+
+        /**
+         * @return a buffer containing the lac, along with a digest
+         */
+        public ByteBufList getToSend() {
+            return toSend;
+        }
+    }
+
     /**
      * Close the bookie client object.
      */
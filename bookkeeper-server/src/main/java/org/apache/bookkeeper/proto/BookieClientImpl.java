@@ -37,6 +37,7 @@ import io.netty.util.concurrent.DefaultThreadFactory;
 import java.io.IOException;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
@@ -54,6 +55,7 @@ import org.apache.bookkeeper.common.util.OrderedExecutor;
 import org.apache.bookkeeper.conf.ClientConfiguration;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.CopyLedgerFragmentCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ForceLedgerCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.FutureGetListOfEntriesOfLedger;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
@@ -275,6 +277,44 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
         }, ledgerId, useV3Enforced);
     }
 
+    @Override
+    public void batchWriteLac(final BookieId addr, final List<ExplicitLac> lacs,
+                              final WriteLacCallback cb, final Object ctx) {
+        if (lacs.isEmpty()) {
+            return;
+        }
+        final long firstLedgerId = lacs.get(0).getLedgerId();
+        final PerChannelBookieClientPool client = lookupClient(addr);
+        if (client == null) {
+            for (ExplicitLac lac : lacs) {
+                cb.writeLacComplete(getRc(BKException.Code.BookieHandleNotAvailableException),
+                                    lac.getLedgerId(), addr, ctx);
+            }
+            return;
+        }
+
+        lacs.forEach(lac -> lac.getToSend().retain());
+        client.obtain((rc, pcbc) -> {
+            if (rc != BKException.Code.OK) {
+                try {
+                    executor.executeOrdered(firstLedgerId, () -> {
+                        for (ExplicitLac lac : lacs) {
+                            cb.writeLacComplete(rc, lac.getLedgerId(), addr, ctx);
+                        }
+                    });
+                } catch (RejectedExecutionException re) {
+                    for (ExplicitLac lac : lacs) {
+                        cb.writeLacComplete(getRc(BKException.Code.InterruptedException), lac.getLedgerId(), addr, ctx);
+                    }
+                }
+            } else {
+                pcbc.batchWriteLac(lacs, cb, ctx);
+            }
+
+            lacs.forEach(lac -> ReferenceCountUtil.release(lac.getToSend()));
+        }, firstLedgerId, useV3Enforced);
+    }
+
     private void completeAdd(final int rc,
                              final long ledgerId,
                              final long entryId,
@@ -339,6 +379,32 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
         return futureResult;
     }
 
+    @Override
+    public void copyLedgerFragment(final BookieId address, final long ledgerId, final byte[] masterKey,
+                                   final long firstEntryId, final long lastEntryId,
+                                   final Set<BookieId> unavailableBookies,
+                                   final CopyLedgerFragmentCallback cb, final Object ctx) {
+        final PerChannelBookieClientPool client = lookupClient(address);
+        if (client == null) {
+            cb.copyLedgerFragmentComplete(getRc(BKException.Code.BookieHandleNotAvailableException),
+                                          ledgerId, 0L, 0L, ctx);
+            return;
+        }
+        client.obtain((rc, pcbc) -> {
+            if (rc != BKException.Code.OK) {
+                try {
+                    executor.executeOrdered(ledgerId, () ->
+                            cb.copyLedgerFragmentComplete(rc, ledgerId, 0L, 0L, ctx));
+                } catch (RejectedExecutionException re) {
+                    cb.copyLedgerFragmentComplete(getRc(BKException.Code.InterruptedException), ledgerId, 0L, 0L, ctx);
+                }
+            } else {
+                pcbc.copyLedgerFragment(ledgerId, masterKey, firstEntryId, lastEntryId,
+                                        unavailableBookies, cb, ctx);
+            }
+        }, ledgerId, useV3Enforced);
+    }
+
     private void completeRead(final int rc,
                               final long ledgerId,
                               final long entryId,
@@ -350,7 +350,8 @@ class BookieNettyServer {
                                 contextHandler.getConnectionPeer(), authProviderFactory));
 
                     ChannelInboundHandler requestHandler = isRunning.get()
-                            ? new BookieRequestHandler(conf, requestProcessor, allChannels)
+                            ? new BookieRequestHandler(conf, requestProcessor, allChannels,
+                                    contextHandler.getConnectionPeer())
                             : new RejectRequestHandler();
                     pipeline.addLast("bookieRequestHandler", requestHandler);
 
@@ -416,7 +417,8 @@ class BookieNettyServer {
                                 contextHandler.getConnectionPeer(), authProviderFactory));
 
                     ChannelInboundHandler requestHandler = isRunning.get()
-                            ? new BookieRequestHandler(conf, requestProcessor, allChannels)
+                            ? new BookieRequestHandler(conf, requestProcessor, allChannels,
+                                    contextHandler.getConnectionPeer())
                             : new RejectRequestHandler();
                     pipeline.addLast("bookieRequestHandler", requestHandler);
 
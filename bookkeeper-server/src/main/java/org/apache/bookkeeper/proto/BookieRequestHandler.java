@@ -26,6 +26,7 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.group.ChannelGroup;
 import java.nio.channels.ClosedChannelException;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.auth.BookKeeperPrincipal;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.processor.RequestProcessor;
 
@@ -39,21 +40,31 @@ public class BookieRequestHandler extends ChannelInboundHandlerAdapter {
 
     private final RequestProcessor requestProcessor;
     private final ChannelGroup allChannels;
+    private final BookieConnectionPeer connectionPeer;
 
     private ChannelHandlerContext ctx;
 
     private ByteBuf pendingSendResponses = null;
     private int maxPendingResponsesSize = DEFAULT_PENDING_RESPONSE_SIZE;
 
-    BookieRequestHandler(ServerConfiguration conf, RequestProcessor processor, ChannelGroup allChannels) {
+    BookieRequestHandler(ServerConfiguration conf, RequestProcessor processor, ChannelGroup allChannels,
+                         BookieConnectionPeer connectionPeer) {
         this.requestProcessor = processor;
         this.allChannels = allChannels;
+        this.connectionPeer = connectionPeer;
     }
 
     public ChannelHandlerContext ctx() {
         return ctx;
     }
 
+    /**
+     * @return the principal authenticated on the connection, or {@link BookKeeperPrincipal#ANONYMOUS}
+     */
+    BookKeeperPrincipal getAuthorizedId() {
+        return connectionPeer != null ? connectionPeer.getAuthorizedId() : BookKeeperPrincipal.ANONYMOUS;
+    }
+
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
         log.info("Channel connected {}", ctx.channel());
@@ -46,9 +46,12 @@ import lombok.Getter;
 import org.apache.bookkeeper.auth.AuthProviderFactoryFactory;
 import org.apache.bookkeeper.auth.AuthToken;
 import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.bookie.datainteg.EntryCopier;
 import org.apache.bookkeeper.common.util.MathUtils;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.common.util.WorkStealingOrderedExecutor;
 import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.meta.LedgerManager;
 import org.apache.bookkeeper.processor.RequestProcessor;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.tls.SecurityException;
@@ -85,6 +88,11 @@ public class BookieRequestProcessor implements RequestProcessor {
      */
     private final OrderedExecutor readThreadPool;
 
+    /**
+     * Whether the reads run by the readThreadPool can be executed by any of its threads.
+     */
+    private final boolean readWorkStealingEnabled;
+
     /**
      * The threadpool used to execute all add entry requests issued to this server.
      */
@@ -106,6 +114,16 @@ public class BookieRequestProcessor implements RequestProcessor {
      */
     private final OrderedExecutor highPriorityThreadPool;
 
+    /**
+     * Schedules the entry reads by class instead of the readThreadPool, null if not enabled.
+     */
+    private final ReadRequestScheduler readScheduler;
+
+    /**
+     * I/O quotas of the principals, null if not enabled.
+     */
+    private final PrincipalQuotas principalQuotas;
+
     /**
      * The Timer used to time out requests for long polling.
      */
@@ -130,6 +148,12 @@ public class BookieRequestProcessor implements RequestProcessor {
 
     private final boolean throttleReadResponses;
 
+    /**
+     * Copies the ledger fragments requested by the autorecovery, null if not enabled.
+     */
+    private volatile EntryCopier fragmentCopier = null;
+    private volatile LedgerManager fragmentCopyLedgerManager = null;
+
     public BookieRequestProcessor(ServerConfiguration serverCfg, Bookie bookie, StatsLogger statsLogger,
                                   SecurityHandlerFactory shFactory, ByteBufAllocator allocator,
                                   ChannelGroup allChannels) throws SecurityException {
@@ -140,11 +164,13 @@ public class BookieRequestProcessor implements RequestProcessor {
         this.preserveMdcForTaskExecution = serverCfg.getPreserveMdcForTaskExecution();
         this.bookie = bookie;
         this.throttleReadResponses = serverCfg.isReadWorkerThreadsThrottlingEnabled();
+        this.readWorkStealingEnabled = serverCfg.isReadWorkerThreadsWorkStealingEnabled();
         this.readThreadPool = createExecutor(
                 this.serverCfg.getNumReadWorkerThreads(),
                 "BookieReadThreadPool",
                 serverCfg.getMaxPendingReadRequestPerThread(),
-                statsLogger);
+                statsLogger,
+                readWorkStealingEnabled);
         this.writeThreadPool = createExecutor(
                 this.serverCfg.getNumAddWorkerThreads(),
                 "BookieWriteThreadPool",
@@ -204,6 +230,14 @@ public class BookieRequestProcessor implements RequestProcessor {
 
         int maxReads = serverCfg.getMaxReadsInProgressLimit();
         readsSemaphore = maxReads > 0 ? new Semaphore(maxReads, true) : null;
+
+        if (serverCfg.isReadSchedulerEnabled() && readThreadPool != null) {
+            this.readScheduler = new ReadRequestScheduler(serverCfg, requestStats);
+        } else {
+            this.readScheduler = null;
+        }
+        this.principalQuotas = serverCfg.isPrincipalQuotasEnabled()
+                ? new PrincipalQuotas(serverCfg, statsLogger) : null;
     }
 
     protected void onAddRequestStart(Channel channel) {
@@ -269,6 +303,9 @@ public class BookieRequestProcessor implements RequestProcessor {
         LOG.info("Closing RequestProcessor");
         shutdownExecutor(writeThreadPool);
         shutdownExecutor(readThreadPool);
+        if (readScheduler != null) {
+            readScheduler.shutdown();
+        }
         if (serverCfg.getNumLongPollWorkerThreads() > 0 || readThreadPool == null) {
             shutdownExecutor(longPollThreadPool);
         }
@@ -282,10 +319,21 @@ public class BookieRequestProcessor implements RequestProcessor {
             String nameFormat,
             int maxTasksInQueue,
             StatsLogger statsLogger) {
+        return createExecutor(numThreads, nameFormat, maxTasksInQueue, statsLogger, false);
+    }
+
+    private OrderedExecutor createExecutor(
+            int numThreads,
+            String nameFormat,
+            int maxTasksInQueue,
+            StatsLogger statsLogger,
+            boolean workStealing) {
         if (numThreads <= 0) {
             return null;
         } else {
-            return OrderedExecutor.newBuilder()
+            OrderedExecutor.AbstractBuilder<? extends OrderedExecutor> builder = workStealing
+                    ? WorkStealingOrderedExecutor.newWorkStealingBuilder() : OrderedExecutor.newBuilder();
+            return builder
                     .numThreads(numThreads)
                     .name(nameFormat)
                     .traceTaskExecution(serverCfg.getEnableTaskExecutionStats())
@@ -297,6 +345,18 @@ public class BookieRequestProcessor implements RequestProcessor {
         }
     }
 
+    /**
+     * @param unordered whether the read may run on any thread of the pool, as the plain reads do
+     */
+    private void executeRead(OrderedExecutor threadPool, long ledgerId, Runnable read, boolean unordered) {
+        if (readWorkStealingEnabled && unordered) {
+            // the reads of a ledger don't depend on each other, any idle read thread can run them
+            threadPool.execute(read);
+        } else {
+            threadPool.executeOrdered(ledgerId, read);
+        }
+    }
+
     private void shutdownExecutor(OrderedExecutor service) {
         if (null != service) {
             service.shutdown();
@@ -339,6 +399,7 @@ public class BookieRequestProcessor implements RequestProcessor {
                         writeAndFlush(channel, authResponse);
                         break;
                     case WRITE_LAC:
+                    case BATCH_WRITE_LAC:
                         processWriteLacRequestV3(r, requestHandler);
                         break;
                     case READ_LAC:
@@ -353,6 +414,9 @@ public class BookieRequestProcessor implements RequestProcessor {
                     case GET_LIST_OF_ENTRIES_OF_LEDGER:
                         processGetListOfEntriesOfLedgerProcessorV3(r, requestHandler);
                         break;
+                    case COPY_LEDGER_FRAGMENT:
+                        processCopyLedgerFragmentRequestV3(r, requestHandler);
+                        break;
                     default:
                         LOG.info("Unknown operation type {}", header.getOperation());
                         final BookkeeperProtocol.Response response =
@@ -445,31 +509,57 @@ public class BookieRequestProcessor implements RequestProcessor {
             threadPool = writeThreadPool;
         }
 
-        if (null == threadPool) {
+        PrincipalQuotas.PrincipalQuota quota = null;
+        long retryAfterMillis = 0;
+        if (principalQuotas != null && !RequestUtils.isHighPriority(r)) {
+            quota = principalQuotas.getQuota(requestHandler.getAuthorizedId(), r.getRequestContextList());
+            retryAfterMillis = quota.tryAcquireAdd(r.getAddRequest().getBody().size());
+        }
+
+        if (retryAfterMillis > 0) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Rejecting request to add entry at {}:{}. Over the quota of the principal",
+                          r.getAddRequest().getLedgerId(), r.getAddRequest().getEntryId());
+            }
+            rejectAddRequestV3(r, write, retryAfterMillis);
+        } else if (null == threadPool) {
+            onEntryAdded(r.getAddRequest().getLedgerId(), r.getAddRequest().getEntryId());
             write.run();
         } else {
             try {
                 threadPool.executeOrdered(r.getAddRequest().getLedgerId(), write);
+                onEntryAdded(r.getAddRequest().getLedgerId(), r.getAddRequest().getEntryId());
             } catch (RejectedExecutionException e) {
+                if (quota != null) {
+                    quota.releaseAdd(r.getAddRequest().getBody().size());
+                }
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("Failed to process request to add entry at {}:{}. Too many pending requests",
                               r.getAddRequest().getLedgerId(), r.getAddRequest().getEntryId());
                 }
-                getRequestStats().getAddEntryRejectedCounter().inc();
-                BookkeeperProtocol.AddResponse.Builder addResponse = BookkeeperProtocol.AddResponse.newBuilder()
-                        .setLedgerId(r.getAddRequest().getLedgerId())
-                        .setEntryId(r.getAddRequest().getEntryId())
-                        .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
-                BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
-                        .setHeader(write.getHeader())
-                        .setStatus(addResponse.getStatus())
-                        .setAddResponse(addResponse);
-                BookkeeperProtocol.Response resp = response.build();
-                write.sendResponse(addResponse.getStatus(), resp, requestStats.getAddRequestStats());
+                rejectAddRequestV3(r, write, 0L);
             }
         }
     }
 
+    private void rejectAddRequestV3(BookkeeperProtocol.Request r, WriteEntryProcessorV3 write,
+                                    long retryAfterMillis) {
+        getRequestStats().getAddEntryRejectedCounter().inc();
+        BookkeeperProtocol.AddResponse.Builder addResponse = BookkeeperProtocol.AddResponse.newBuilder()
+                .setLedgerId(r.getAddRequest().getLedgerId())
+                .setEntryId(r.getAddRequest().getEntryId())
+                .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
+        BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
+                .setHeader(write.getHeader())
+                .setStatus(addResponse.getStatus())
+                .setAddResponse(addResponse);
+        if (retryAfterMillis > 0) {
+            response.setRetryAfterMillis(retryAfterMillis);
+        }
+        BookkeeperProtocol.Response resp = response.build();
+        write.sendResponse(addResponse.getStatus(), resp, requestStats.getAddRequestStats());
+    }
+
     private void processForceLedgerRequestV3(final BookkeeperProtocol.Request r,
                                              final BookieRequestHandler requestHandler) {
         ForceLedgerProcessorV3 forceLedger = new ForceLedgerProcessorV3(r, requestHandler, this);
@@ -514,6 +604,9 @@ public class BookieRequestProcessor implements RequestProcessor {
 
         final ReadEntryProcessorV3 read;
         final OrderedExecutor threadPool;
+        // only the plain reads, not the long poll, fencing and recovery reads, may run on any thread
+        boolean unordered = false;
+        ReadRequestScheduler.ReadClass readClass = null;
         if (RequestUtils.isLongPollReadRequest(r.getReadRequest())) {
             ExecutorService lpThread = longPollThreadPool.chooseThread(requestHandler.ctx());
 
@@ -526,41 +619,77 @@ public class BookieRequestProcessor implements RequestProcessor {
             // If it's a high priority read (fencing or as part of recovery process), we want to make sure it
             // gets executed as fast as possible, so bypass the normal readThreadPool
             // and execute in highPriorityThreadPool
-            boolean isHighPriority = RequestUtils.isHighPriority(r)
-                || hasFlag(r.getReadRequest(), BookkeeperProtocol.ReadRequest.Flag.FENCE_LEDGER);
-            if (isHighPriority) {
+            boolean isFencing = hasFlag(r.getReadRequest(), BookkeeperProtocol.ReadRequest.Flag.FENCE_LEDGER);
+            boolean isHighPriority = RequestUtils.isHighPriority(r) || isFencing;
+            if (readScheduler != null && !isFencing) {
+                // the fencing reads are never queued behind other reads
+                readClass = readScheduler.classify(r.getReadRequest().getLedgerId(),
+                        r.getReadRequest().getEntryId(), isHighPriority);
+                threadPool = null;
+            } else if (isHighPriority) {
                 threadPool = highPriorityThreadPool;
             } else {
                 threadPool = readThreadPool;
+                unordered = true;
             }
         }
 
-        if (null == threadPool) {
+        PrincipalQuotas.PrincipalQuota quota = null;
+        long retryAfterMillis = 0;
+        if (principalQuotas != null && !RequestUtils.isHighPriority(r)
+                && !hasFlag(r.getReadRequest(), BookkeeperProtocol.ReadRequest.Flag.FENCE_LEDGER)) {
+            quota = principalQuotas.getQuota(requestHandler.getAuthorizedId(), r.getRequestContextList());
+            retryAfterMillis = quota.tryAcquireRead();
+            read.setQuota(quota);
+        }
+
+        if (retryAfterMillis > 0) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Rejecting request to read entry at {}:{}. Over the quota of the principal",
+                          r.getReadRequest().getLedgerId(), r.getReadRequest().getEntryId());
+            }
+            rejectReadRequestV3(r, read, retryAfterMillis);
+        } else if (null == threadPool && null == readClass) {
             read.run();
         } else {
             try {
-                threadPool.executeOrdered(r.getReadRequest().getLedgerId(), read);
+                if (readClass != null) {
+                    readScheduler.submit(readClass, read);
+                } else {
+                    executeRead(threadPool, r.getReadRequest().getLedgerId(), read, unordered);
+                }
             } catch (RejectedExecutionException e) {
+                if (quota != null) {
+                    quota.releaseRead();
+                }
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("Failed to process request to read entry at {}:{}. Too many pending requests",
                               r.getReadRequest().getLedgerId(), r.getReadRequest().getEntryId());
                 }
-                getRequestStats().getReadEntryRejectedCounter().inc();
-                BookkeeperProtocol.ReadResponse.Builder readResponse = BookkeeperProtocol.ReadResponse.newBuilder()
-                    .setLedgerId(r.getReadRequest().getLedgerId())
-                    .setEntryId(r.getReadRequest().getEntryId())
-                    .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
-                BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
-                    .setHeader(read.getHeader())
-                    .setStatus(readResponse.getStatus())
-                    .setReadResponse(readResponse);
-                BookkeeperProtocol.Response resp = response.build();
-                read.sendResponse(readResponse.getStatus(), resp, requestStats.getReadRequestStats());
-                onReadRequestFinish();
+                rejectReadRequestV3(r, read, 0L);
             }
         }
     }
 
+    private void rejectReadRequestV3(BookkeeperProtocol.Request r, ReadEntryProcessorV3 read,
+                                     long retryAfterMillis) {
+        getRequestStats().getReadEntryRejectedCounter().inc();
+        BookkeeperProtocol.ReadResponse.Builder readResponse = BookkeeperProtocol.ReadResponse.newBuilder()
+            .setLedgerId(r.getReadRequest().getLedgerId())
+            .setEntryId(r.getReadRequest().getEntryId())
+            .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
+        BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
+            .setHeader(read.getHeader())
+            .setStatus(readResponse.getStatus())
+            .setReadResponse(readResponse);
+        if (retryAfterMillis > 0) {
+            response.setRetryAfterMillis(retryAfterMillis);
+        }
+        BookkeeperProtocol.Response resp = response.build();
+        read.sendResponse(readResponse.getStatus(), resp, requestStats.getReadRequestStats());
+        onReadRequestFinish();
+    }
+
     private void processStartTLSRequestV3(final BookkeeperProtocol.Request r,
                                           final BookieRequestHandler requestHandler) {
         BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder();
@@ -639,7 +768,50 @@ public class BookieRequestProcessor implements RequestProcessor {
         }
     }
 
+    private void processCopyLedgerFragmentRequestV3(final BookkeeperProtocol.Request r,
+                                                    final BookieRequestHandler requestHandler) {
+        CopyLedgerFragmentProcessorV3 copyLedgerFragment = new CopyLedgerFragmentProcessorV3(r, requestHandler, this);
+        if (null == writeThreadPool) {
+            copyLedgerFragment.run();
+        } else {
+            try {
+                writeThreadPool.executeOrdered(r.getCopyLedgerFragmentRequest().getLedgerId(), copyLedgerFragment);
+            } catch (RejectedExecutionException e) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Failed to process request to copy a fragment of ledger {}. Too many pending requests",
+                              r.getCopyLedgerFragmentRequest().getLedgerId());
+                }
+                BookkeeperProtocol.CopyLedgerFragmentResponse.Builder copyResponse =
+                        BookkeeperProtocol.CopyLedgerFragmentResponse.newBuilder()
+                        .setLedgerId(r.getCopyLedgerFragmentRequest().getLedgerId())
+                        .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
+                BookkeeperProtocol.Response resp = BookkeeperProtocol.Response.newBuilder()
+                        .setHeader(copyLedgerFragment.getHeader())
+                        .setStatus(copyResponse.getStatus())
+                        .setCopyLedgerFragmentResponse(copyResponse)
+                        .build();
+                copyLedgerFragment.sendResponse(copyResponse.getStatus(), resp,
+                        requestStats.getCopyLedgerFragmentRequestStats());
+            }
+        }
+    }
+
+    /**
+     * Set the copier of the ledger fragments requested by the autorecovery, and the ledger manager
+     * the metadata of the copied ledgers is read from.
+     * Fragment copy requests are rejected until it is set.
+     */
+    public void setFragmentCopier(EntryCopier fragmentCopier, LedgerManager ledgerManager) {
+        // the ledger manager is set first, a request seeing the copier sees it too
+        this.fragmentCopyLedgerManager = ledgerManager;
+        this.fragmentCopier = fragmentCopier;
+    }
+
     private void processAddRequest(final BookieProtocol.ParsedAddRequest r, final BookieRequestHandler requestHandler) {
+        // the request is recycled once the add is done, possibly before it is submitted
+        final long ledgerId = r.getLedgerId();
+        final long entryId = r.getEntryId();
+        final int addBytes = r.getData().readableBytes();
         WriteEntryProcessor write = WriteEntryProcessor.create(r, requestHandler, this);
 
         // If it's a high priority add (usually as part of recovery process), we want to make sure it gets
@@ -651,12 +823,37 @@ public class BookieRequestProcessor implements RequestProcessor {
             threadPool = writeThreadPool;
         }
 
-        if (null == threadPool) {
+        PrincipalQuotas.PrincipalQuota quota = null;
+        long retryAfterMillis = 0;
+        if (principalQuotas != null && !r.isHighPriority()) {
+            quota = principalQuotas.getQuota(requestHandler.getAuthorizedId(), null);
+            retryAfterMillis = quota.tryAcquireAdd(addBytes);
+        }
+
+        if (retryAfterMillis > 0) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Rejecting request to add entry at {}:{}. Over the quota of the principal", r.ledgerId,
+                        r.entryId);
+            }
+            getRequestStats().getAddEntryRejectedCounter().inc();
+            write.sendWriteReqResponse(
+                BookieProtocol.ETOOMANYREQUESTS,
+                ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, r),
+                requestStats.getAddRequestStats());
+            r.release();
+            r.recycle();
+            write.recycle();
+        } else if (null == threadPool) {
+            onEntryAdded(ledgerId, entryId);
             write.run();
         } else {
             try {
-                threadPool.executeOrdered(r.getLedgerId(), write);
+                threadPool.executeOrdered(ledgerId, write);
+                onEntryAdded(ledgerId, entryId);
             } catch (RejectedExecutionException e) {
+                if (quota != null) {
+                    quota.releaseAdd(addBytes);
+                }
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("Failed to process request to add entry at {}:{}. Too many pending requests", r.ledgerId,
                             r.entryId);
@@ -671,6 +868,13 @@ public class BookieRequestProcessor implements RequestProcessor {
         }
     }
 
+    // only the adds admitted by the quotas and the write thread pool make the reads close to them tailing reads
+    private void onEntryAdded(long ledgerId, long entryId) {
+        if (readScheduler != null) {
+            readScheduler.onEntryAdded(ledgerId, entryId);
+        }
+    }
+
     private void processReadRequest(final BookieProtocol.ReadRequest r, final BookieRequestHandler requestHandler) {
         ExecutorService fenceThreadPool =
                 null == highPriorityThreadPool ? null : highPriorityThreadPool.chooseThread(requestHandler.ctx());
@@ -681,18 +885,52 @@ public class BookieRequestProcessor implements RequestProcessor {
         // gets executed as fast as possible, so bypass the normal readThreadPool
         // and execute in highPriorityThreadPool
         final OrderedExecutor threadPool;
-        if (r.isHighPriority() || r.isFencing()) {
+        // only the plain reads, not the fencing and recovery reads, may run on any thread
+        boolean unordered = false;
+        ReadRequestScheduler.ReadClass readClass = null;
+        if (readScheduler != null && !r.isFencing()) {
+            // the fencing reads are never queued behind other reads
+            readClass = readScheduler.classify(r.getLedgerId(), r.getEntryId(), r.isHighPriority());
+            threadPool = null;
+        } else if (r.isHighPriority() || r.isFencing()) {
             threadPool = highPriorityThreadPool;
         } else {
             threadPool = readThreadPool;
+            unordered = true;
         }
 
-        if (null == threadPool) {
+        PrincipalQuotas.PrincipalQuota quota = null;
+        long retryAfterMillis = 0;
+        if (principalQuotas != null && !r.isHighPriority() && !r.isFencing()) {
+            quota = principalQuotas.getQuota(requestHandler.getAuthorizedId(), null);
+            retryAfterMillis = quota.tryAcquireRead();
+            read.setQuota(quota);
+        }
+
+        if (retryAfterMillis > 0) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Rejecting request to read entry at {}:{}. Over the quota of the principal", r.ledgerId,
+                        r.entryId);
+            }
+            getRequestStats().getReadEntryRejectedCounter().inc();
+            read.sendResponse(
+                BookieProtocol.ETOOMANYREQUESTS,
+                ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, r),
+                requestStats.getReadRequestStats());
+            onReadRequestFinish();
+        } else if (null == threadPool && null == readClass) {
             read.run();
         } else {
             try {
-                threadPool.executeOrdered(r.getLedgerId(), read);
+                if (readClass != null) {
+                    readScheduler.submit(readClass, read);
+                } else {
+                    executeRead(threadPool, r.getLedgerId(), read, unordered);
+                }
             } catch (RejectedExecutionException e) {
+                if (quota != null) {
+                    quota.releaseRead();
+                }
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("Failed to process request to read entry at {}:{}. Too many pending requests", r.ledgerId,
                             r.entryId);
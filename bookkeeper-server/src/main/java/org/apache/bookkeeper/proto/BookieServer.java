@@ -36,8 +36,10 @@ import org.apache.bookkeeper.bookie.BookieException;
 import org.apache.bookkeeper.bookie.BookieImpl;
 import org.apache.bookkeeper.bookie.ExitCode;
 import org.apache.bookkeeper.bookie.UncleanShutdownDetection;
+import org.apache.bookkeeper.bookie.datainteg.EntryCopier;
 import org.apache.bookkeeper.common.util.JsonUtil.ParseJsonException;
 import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.meta.LedgerManager;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.net.BookieSocketAddress;
 import org.apache.bookkeeper.processor.RequestProcessor;
@@ -160,6 +162,14 @@ public class BookieServer {
         return bookie;
     }
 
+    /**
+     * Set the copier of the ledger fragments requested by the autorecovery, and the ledger manager
+     * the metadata of the copied ledgers is read from.
+     */
+    public void setFragmentCopier(EntryCopier fragmentCopier, LedgerManager ledgerManager) {
+        getBookieRequestProcessor().setFragmentCopier(fragmentCopier, ledgerManager);
+    }
+
     @VisibleForTesting
     public BookieRequestProcessor getBookieRequestProcessor() {
         return (BookieRequestProcessor) requestProcessor;
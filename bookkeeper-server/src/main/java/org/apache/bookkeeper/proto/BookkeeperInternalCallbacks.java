@@ -106,6 +106,13 @@ public class BookkeeperInternalCallbacks {
         void startTLSComplete(int rc, Object ctx);
     }
 
+    /**
+     * A callback interface for a CopyLedgerFragment command.
+     */
+    public interface CopyLedgerFragmentCallback {
+        void copyLedgerFragmentComplete(int rc, long ledgerId, long entriesCopied, long bytesCopied, Object ctx);
+    }
+
     /**
      * A callback interface for GetListOfEntriesOfLedger command.
      */
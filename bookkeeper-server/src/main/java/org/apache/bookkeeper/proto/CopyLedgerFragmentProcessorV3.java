@@ -0,0 +1,281 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.apache.bookkeeper.bookie.BookieException;
+import org.apache.bookkeeper.bookie.LedgerStorage;
+import org.apache.bookkeeper.bookie.datainteg.EntryCopier;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.CopyLedgerFragmentRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.CopyLedgerFragmentResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.proto.checksum.DigestManager;
+import org.apache.bookkeeper.util.MathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A processor class for v3 copy ledger fragment packets.
+ *
+ * <p>The metadata of the ledger is read from the metadata store, and the master key of the request
+ * must be the one derived from its password. The entries of the fragment are read from the other
+ * bookies of the ensemble with the
+ * {@link EntryCopier} of the bookie, at most
+ * {@link org.apache.bookkeeper.conf.ServerConfiguration#getFragmentCopyMaxOutstandingEntries()}
+ * at a time. As the copier writes to the ledger storage directly, bypassing the journal, the
+ * ledger storage is flushed before the response is sent.
+ */
+public class CopyLedgerFragmentProcessorV3 extends PacketProcessorBaseV3 implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CopyLedgerFragmentProcessorV3.class);
+
+    private final CopyLedgerFragmentRequest copyRequest;
+    private final long ledgerId;
+    private final long lastEntryId;
+    private final int maxOutstandingEntries;
+
+    private long startTimeNanos;
+    private EntryCopier.Batch batch;
+    // the state of the copy, guarded by this
+    private long nextEntryId;
+    private int outstandingEntries = 0;
+    private long entriesCopied = 0;
+    private long bytesCopied = 0;
+    private Throwable failure = null;
+    private boolean finished = false;
+    private boolean dispatching = false;
+
+    public CopyLedgerFragmentProcessorV3(Request request, BookieRequestHandler requestHandler,
+                                         BookieRequestProcessor requestProcessor) {
+        super(request, requestHandler, requestProcessor);
+        this.copyRequest = request.getCopyLedgerFragmentRequest();
+        this.ledgerId = copyRequest.getLedgerId();
+        this.nextEntryId = copyRequest.getFirstEntryId();
+        this.lastEntryId = copyRequest.getLastEntryId();
+        this.maxOutstandingEntries =
+            Math.max(1, requestProcessor.getServerCfg().getFragmentCopyMaxOutstandingEntries());
+    }
+
+    @Override
+    public void run() {
+        startTimeNanos = MathUtils.nowInNano();
+
+        if (!isVersionCompatible()) {
+            sendResponse(StatusCode.EBADVERSION);
+            return;
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Received new copy ledger fragment request: {}", RequestUtils.toSafeString(request));
+        }
+        EntryCopier copier = requestProcessor.getFragmentCopier();
+        if (copier == null) {
+            LOG.warn("Fragment copy is not enabled on this bookie, rejecting the copy of ledger {}", ledgerId);
+            sendResponse(StatusCode.EBADREQ);
+            return;
+        }
+        if (nextEntryId < 0 || lastEntryId < nextEntryId) {
+            LOG.error("Invalid entry range [{}, {}] to copy for ledger {}", nextEntryId, lastEntryId, ledgerId);
+            sendResponse(StatusCode.EBADREQ);
+            return;
+        }
+
+        LedgerManager ledgerManager = requestProcessor.getFragmentCopyLedgerManager();
+        // the metadata, and the master key derived from it, are read from the metadata store, so that
+        // a copy request can't set the master key of a ledger, or choose the bookies read from
+        ledgerManager.readLedgerMetadata(ledgerId).whenComplete((versionedMetadata, exception) -> {
+            if (exception != null) {
+                LOG.error("Failed to read the metadata of ledger {} to copy entries [{}, {}]",
+                          ledgerId, nextEntryId, lastEntryId, exception);
+                sendResponse(BKException.getExceptionCode(exception) == BKException.Code.NoSuchLedgerExistsException
+                        ? StatusCode.ENOLEDGER : StatusCode.EIO);
+                return;
+            }
+            startCopy(copier, versionedMetadata.getValue());
+        });
+    }
+
+    private void startCopy(EntryCopier copier, LedgerMetadata metadata) {
+        try {
+            if (metadata.isClosed() && lastEntryId > metadata.getLastEntryId()) {
+                LOG.error("Entry range [{}, {}] to copy is beyond the last entry {} of ledger {}",
+                          nextEntryId, lastEntryId, metadata.getLastEntryId(), ledgerId);
+                sendResponse(StatusCode.EBADREQ);
+                return;
+            }
+
+            byte[] masterKey = DigestManager.generateMasterKey(metadata.getPassword());
+            LedgerStorage storage = requestProcessor.getBookie().getLedgerStorage();
+            if (!Arrays.equals(copyRequest.getMasterKey().toByteArray(), masterKey)
+                    || (storage.ledgerExists(ledgerId) && !Arrays.equals(storage.readMasterKey(ledgerId), masterKey))) {
+                LOG.error("Master key mismatch copying a fragment of ledger {}", ledgerId);
+                sendResponse(StatusCode.EUA);
+                return;
+            }
+
+            Set<BookieId> unavailableBookies = copyRequest.getUnavailableBookiesList().stream()
+                .map(BookieId::parse)
+                .collect(Collectors.toSet());
+            batch = copier.newFragmentBatch(ledgerId, metadata, masterKey, unavailableBookies);
+        } catch (IOException | BookieException | NoSuchAlgorithmException | IllegalArgumentException e) {
+            LOG.error("Failed to start copying entries [{}, {}] of ledger {}", nextEntryId, lastEntryId, ledgerId, e);
+            sendResponse(StatusCode.EIO);
+            return;
+        }
+
+        copyEntries();
+    }
+
+    private void copyEntries() {
+        synchronized (this) {
+            if (dispatching) {
+                // the thread dispatching the copies picks up the completed ones when it loops
+                return;
+            }
+            dispatching = true;
+        }
+        // copies completed synchronously come back here through entryCopied(), so they are dispatched
+        // by this loop rather than by recursing
+        while (true) {
+            List<Long> toCopy = new ArrayList<>();
+            boolean done = false;
+            synchronized (this) {
+                while (failure == null && nextEntryId <= lastEntryId && outstandingEntries < maxOutstandingEntries) {
+                    toCopy.add(nextEntryId++);
+                    outstandingEntries++;
+                }
+                if (toCopy.isEmpty()) {
+                    dispatching = false;
+                    if (outstandingEntries == 0 && !finished) {
+                        finished = true;
+                        done = true;
+                    }
+                }
+            }
+            if (toCopy.isEmpty()) {
+                if (done) {
+                    finishCopy();
+                }
+                return;
+            }
+            for (long entryId : toCopy) {
+                try {
+                    batch.copyFromAvailable(entryId)
+                        .whenComplete((bytes, cause) -> entryCopied(entryId, bytes, cause));
+                } catch (Throwable t) {
+                    entryCopied(entryId, 0L, t);
+                }
+            }
+        }
+    }
+
+    private void entryCopied(long entryId, Long bytes, Throwable cause) {
+        synchronized (this) {
+            outstandingEntries--;
+            if (cause != null) {
+                if (failure == null) {
+                    LOG.error("Failed to copy entry {}@{}", ledgerId, entryId, cause);
+                    failure = cause;
+                }
+            } else {
+                entriesCopied++;
+                bytesCopied += bytes;
+            }
+        }
+        copyEntries();
+    }
+
+    private void finishCopy() {
+        // the flush blocks, so it isn't run on the threads of the bookie client
+        OrderedExecutor threadPool = requestProcessor.getWriteThreadPool();
+        if (threadPool == null) {
+            flushAndRespond();
+        } else {
+            try {
+                threadPool.executeOrdered(ledgerId, this::flushAndRespond);
+            } catch (RejectedExecutionException e) {
+                flushAndRespond();
+            }
+        }
+    }
+
+    private void flushAndRespond() {
+        StatusCode status = StatusCode.EOK;
+        synchronized (this) {
+            if (failure != null) {
+                status = StatusCode.EIO;
+            }
+        }
+        if (status == StatusCode.EOK) {
+            try {
+                requestProcessor.getBookie().getLedgerStorage().flush();
+            } catch (IOException e) {
+                LOG.error("Failed to flush the entries copied for ledger {}", ledgerId, e);
+                status = StatusCode.EIO;
+            }
+        }
+        if (status == StatusCode.EOK) {
+            LOG.info("Copied entries [{}, {}] of ledger {} ({} entries, {} bytes) in {} ms",
+                     copyRequest.getFirstEntryId(), lastEntryId, ledgerId, entriesCopied, bytesCopied,
+                     MathUtils.elapsedMSec(startTimeNanos));
+        }
+        sendResponse(status);
+    }
+
+    private void sendResponse(StatusCode status) {
+        RequestStats requestStats = requestProcessor.getRequestStats();
+        if (status == StatusCode.EOK) {
+            requestStats.getCopyLedgerFragmentStats()
+                .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+        } else {
+            requestStats.getCopyLedgerFragmentStats()
+                .registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+        }
+
+        CopyLedgerFragmentResponse.Builder copyResponse = CopyLedgerFragmentResponse.newBuilder()
+            .setLedgerId(ledgerId)
+            .setStatus(status);
+        synchronized (this) {
+            requestStats.getCopyLedgerFragmentBytesCounter().addCount(bytesCopied);
+            copyResponse.setEntriesCopied(entriesCopied).setBytesCopied(bytesCopied);
+        }
+        Response response = Response.newBuilder()
+            .setHeader(getHeader())
+            .setStatus(status)
+            .setCopyLedgerFragmentResponse(copyResponse)
+            .build();
+        sendResponse(status, response, requestStats.getCopyLedgerFragmentRequestStats());
+    }
+}
@@ -70,6 +70,9 @@ public class GetBookieInfoProcessorV3 extends PacketProcessorBaseV3 implements R
                 totalDiskSpace = requestProcessor.getBookie().getTotalDiskSpace();
                 getBookieInfoResponse.setTotalDiskCapacity(totalDiskSpace);
             }
+            if ((requested & GetBookieInfoRequest.Flags.LOAD_VALUE) != 0) {
+                setLoad(getBookieInfoResponse);
+            }
             if (LOG.isDebugEnabled()) {
                 LOG.debug("FreeDiskSpace info is " + freeDiskSpace + " totalDiskSpace is: " + totalDiskSpace);
             }
@@ -86,6 +89,19 @@ public class GetBookieInfoProcessorV3 extends PacketProcessorBaseV3 implements R
         return getBookieInfoResponse.build();
     }
 
+    private void setLoad(GetBookieInfoResponse.Builder getBookieInfoResponse) {
+        RequestStats requestStats = requestProcessor.getRequestStats();
+        requestStats.sampleRequestRates();
+        getBookieInfoResponse
+            .setJournalQueueLength(requestProcessor.getBookie().getJournalQueueLength())
+            .setAddRequestsPerSecond(requestStats.getAddRequestsPerSecond())
+            .setReadRequestsPerSecond(requestStats.getReadRequestsPerSecond());
+        int writeCacheUsagePercent = requestProcessor.getBookie().getLedgerStorage().getWriteCacheUsagePercent();
+        if (writeCacheUsagePercent >= 0) {
+            getBookieInfoResponse.setWriteCacheUsagePercent(writeCacheUsagePercent);
+        }
+    }
+
     @Override
     public void run() {
         GetBookieInfoResponse getBookieInfoResponse = getGetBookieInfoResponse();
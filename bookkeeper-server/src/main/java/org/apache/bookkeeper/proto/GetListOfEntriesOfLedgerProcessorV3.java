@@ -73,7 +73,8 @@ public class GetListOfEntriesOfLedgerProcessorV3 extends PacketProcessorBaseV3 i
             availabilityOfEntriesOfLedger = new AvailabilityOfEntriesOfLedger(
                     requestProcessor.bookie.getListOfEntriesOfLedger(ledgerId));
             getListOfEntriesOfLedgerResponse.setAvailabilityOfEntriesOfLedger(
-                    ByteString.copyFrom(availabilityOfEntriesOfLedger.serializeStateOfEntriesOfLedger()));
+                    ByteString.copyFrom(availabilityOfEntriesOfLedger.serializeStateOfEntriesOfLedger(
+                            getListOfEntriesOfLedgerRequest.getMaxAvailabilityHeaderVersion())));
 
         } catch (Bookie.NoLedgerException e) {
             status = StatusCode.ENOLEDGER;
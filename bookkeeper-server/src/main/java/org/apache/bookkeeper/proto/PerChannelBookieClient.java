@@ -102,6 +102,8 @@ import org.apache.bookkeeper.common.util.OrderedExecutor;
 import org.apache.bookkeeper.conf.ClientConfiguration;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.proto.BookieClient.ExplicitLac;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.CopyLedgerFragmentCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ForceLedgerCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GetBookieInfoCallback;
@@ -115,6 +117,10 @@ import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteLacCallback;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.AddRequest;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.AddResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchWriteLacRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchWriteLacResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.CopyLedgerFragmentRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.CopyLedgerFragmentResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ForceLedgerRequest;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ForceLedgerResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.GetBookieInfoRequest;
@@ -184,6 +190,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     final long readEntryTimeoutNanos;
     final int maxFrameSize;
     final long getBookieInfoTimeoutNanos;
+    final long copyLedgerFragmentTimeoutNanos;
     final int startTLSTimeout;
 
     private final ConcurrentOpenHashMap<CompletionKey, CompletionValue> completionObjects =
@@ -215,6 +222,16 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         help = "channel stats of write_lac requests"
     )
     private final OpStatsLogger writeLacOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.CHANNEL_BATCH_WRITE_LAC_OP,
+        help = "channel stats of batched write_lac requests"
+    )
+    private final OpStatsLogger batchWriteLacOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.CHANNEL_COPY_LEDGER_FRAGMENT_OP,
+        help = "channel stats of copy_ledger_fragment requests"
+    )
+    private final OpStatsLogger copyLedgerFragmentOpLogger;
     @StatsDoc(
         name = BookKeeperClientStats.CHANNEL_FORCE_OP,
         help = "channel stats of force requests"
@@ -235,6 +252,16 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         help = "timeout stats of write_lac requests"
     )
     private final OpStatsLogger writeLacTimeoutOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.CHANNEL_TIMEOUT_BATCH_WRITE_LAC,
+        help = "timeout stats of batched write_lac requests"
+    )
+    private final OpStatsLogger batchWriteLacTimeoutOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.CHANNEL_TIMEOUT_COPY_LEDGER_FRAGMENT,
+        help = "timeout stats of copy_ledger_fragment requests"
+    )
+    private final OpStatsLogger copyLedgerFragmentTimeoutOpLogger;
     @StatsDoc(
         name = BookKeeperClientStats.CHANNEL_TIMEOUT_FORCE,
         help = "timeout stats of force requests"
@@ -400,6 +427,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         this.addEntryTimeoutNanos = TimeUnit.SECONDS.toNanos(conf.getAddEntryTimeout());
         this.readEntryTimeoutNanos = TimeUnit.SECONDS.toNanos(conf.getReadEntryTimeout());
         this.getBookieInfoTimeoutNanos = TimeUnit.SECONDS.toNanos(conf.getBookieInfoTimeout());
+        this.copyLedgerFragmentTimeoutNanos = TimeUnit.SECONDS.toNanos(conf.getRereplicationFragmentCopyTimeoutSec());
         this.startTLSTimeout = conf.getStartTLSTimeout();
         this.useV2WireProtocol = conf.getUseV2WireProtocol();
         this.preserveMdcForTaskExecution = conf.getPreserveMdcForTaskExecution();
@@ -417,6 +445,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         readEntryOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_READ_OP);
         addEntryOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_ADD_OP);
         writeLacOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_WRITE_LAC_OP);
+        batchWriteLacOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_BATCH_WRITE_LAC_OP);
+        copyLedgerFragmentOpLogger =
+            statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_COPY_LEDGER_FRAGMENT_OP);
         forceLedgerOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_FORCE_OP);
         readLacOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_READ_LAC_OP);
         getBookieInfoOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.GET_BOOKIE_INFO_OP);
@@ -425,6 +456,10 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         readTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_READ);
         addTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_ADD);
         writeLacTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_WRITE_LAC);
+        batchWriteLacTimeoutOpLogger =
+            statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_BATCH_WRITE_LAC);
+        copyLedgerFragmentTimeoutOpLogger =
+            statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_COPY_LEDGER_FRAGMENT);
         forceLedgerTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_FORCE);
         readLacTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_READ_LAC);
         getBookieInfoTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.TIMEOUT_GET_BOOKIE_INFO);
@@ -699,19 +734,11 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 .setVersion(ProtocolVersion.VERSION_THREE)
                 .setOperation(OperationType.WRITE_LAC)
                 .setTxnId(txnId);
-        ByteString body;
-        if (toSend.hasArray()) {
-            body = UnsafeByteOperations.unsafeWrap(toSend.array(), toSend.arrayOffset(), toSend.readableBytes());
-        } else if (toSend.size() == 1) {
-            body = UnsafeByteOperations.unsafeWrap(toSend.getBuffer(0).nioBuffer());
-        } else {
-            body = UnsafeByteOperations.unsafeWrap(toSend.toArray());
-        }
         WriteLacRequest.Builder writeLacBuilder = WriteLacRequest.newBuilder()
                 .setLedgerId(ledgerId)
                 .setLac(lac)
                 .setMasterKey(UnsafeByteOperations.unsafeWrap(masterKey))
-                .setBody(body);
+                .setBody(lacBody(toSend));
 
         final Request writeLacRequest = withRequestContext(Request.newBuilder())
                 .setHeader(headerBuilder)
@@ -720,6 +747,44 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         writeAndFlush(channel, completionKey, writeLacRequest);
     }
 
+    void batchWriteLac(final List<ExplicitLac> lacs, WriteLacCallback cb, Object ctx) {
+        final long txnId = getTxnId();
+        final CompletionKey completionKey = new V3CompletionKey(txnId,
+                                                                OperationType.BATCH_WRITE_LAC);
+        completionObjects.put(completionKey,
+                              new BatchWriteLacCompletion(completionKey, cb, ctx, lacs));
+
+        // Build the request
+        BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
+                .setVersion(ProtocolVersion.VERSION_THREE)
+                .setOperation(OperationType.BATCH_WRITE_LAC)
+                .setTxnId(txnId);
+        BatchWriteLacRequest.Builder batchWriteLacBuilder = BatchWriteLacRequest.newBuilder();
+        for (ExplicitLac lac : lacs) {
+            batchWriteLacBuilder.addWriteLacRequests(WriteLacRequest.newBuilder()
+                    .setLedgerId(lac.getLedgerId())
+                    .setLac(lac.getLac())
+                    .setMasterKey(UnsafeByteOperations.unsafeWrap(lac.getMasterKey()))
+                    .setBody(lacBody(lac.getToSend())));
+        }
+
+        final Request batchWriteLacRequest = withRequestContext(Request.newBuilder())
+                .setHeader(headerBuilder)
+                .setBatchWriteLacRequest(batchWriteLacBuilder)
+                .build();
+        writeAndFlush(channel, completionKey, batchWriteLacRequest);
+    }
+
+    private static ByteString lacBody(ByteBufList toSend) {
+        if (toSend.hasArray()) {
+            return UnsafeByteOperations.unsafeWrap(toSend.array(), toSend.arrayOffset(), toSend.readableBytes());
+        } else if (toSend.size() == 1) {
+            return UnsafeByteOperations.unsafeWrap(toSend.getBuffer(0).nioBuffer());
+        } else {
+            return UnsafeByteOperations.unsafeWrap(toSend.toArray());
+        }
+    }
+
     void forceLedger(final long ledgerId, ForceLedgerCallback cb, Object ctx) {
         if (useV2WireProtocol) {
                 LOG.error("force is not allowed with v2 protocol");
@@ -891,7 +956,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 .setOperation(OperationType.GET_LIST_OF_ENTRIES_OF_LEDGER).setTxnId(txnId);
 
         GetListOfEntriesOfLedgerRequest.Builder getListOfEntriesOfLedgerRequestBuilder =
-                GetListOfEntriesOfLedgerRequest.newBuilder().setLedgerId(ledgerId);
+                GetListOfEntriesOfLedgerRequest.newBuilder().setLedgerId(ledgerId)
+                        .setMaxAvailabilityHeaderVersion(AvailabilityOfEntriesOfLedger.CURRENT_HEADER_VERSION);
 
         final Request getListOfEntriesOfLedgerRequest = Request.newBuilder().setHeader(headerBuilder)
                 .setGetListOfEntriesOfLedgerRequest(getListOfEntriesOfLedgerRequestBuilder).build();
@@ -899,6 +965,32 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         writeAndFlush(channel, completionKey, getListOfEntriesOfLedgerRequest);
     }
 
+    void copyLedgerFragment(final long ledgerId, final byte[] masterKey, final long firstEntryId,
+                            final long lastEntryId, final Set<BookieId> unavailableBookies,
+                            CopyLedgerFragmentCallback cb, Object ctx) {
+        final long txnId = getTxnId();
+        final CompletionKey completionKey = new V3CompletionKey(txnId, OperationType.COPY_LEDGER_FRAGMENT);
+        completionObjects.put(completionKey, new CopyLedgerFragmentCompletion(completionKey, cb, ctx, ledgerId));
+
+        // Build the request.
+        BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder().setVersion(ProtocolVersion.VERSION_THREE)
+                .setOperation(OperationType.COPY_LEDGER_FRAGMENT).setTxnId(txnId);
+        CopyLedgerFragmentRequest.Builder copyLedgerFragmentBuilder = CopyLedgerFragmentRequest.newBuilder()
+                .setLedgerId(ledgerId)
+                .setMasterKey(UnsafeByteOperations.unsafeWrap(masterKey))
+                .setFirstEntryId(firstEntryId)
+                .setLastEntryId(lastEntryId);
+        for (BookieId bookie : unavailableBookies) {
+            copyLedgerFragmentBuilder.addUnavailableBookies(bookie.toString());
+        }
+
+        final Request copyLedgerFragmentRequest = withRequestContext(Request.newBuilder())
+                .setHeader(headerBuilder)
+                .setCopyLedgerFragmentRequest(copyLedgerFragmentBuilder)
+                .build();
+        writeAndFlush(channel, completionKey, copyLedgerFragmentRequest);
+    }
+
     /**
      * Long Poll Reads.
      */
@@ -1755,6 +1847,65 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
     }
 
+    class BatchWriteLacCompletion extends CompletionValue {
+        final WriteLacCallback cb;
+        final List<ExplicitLac> lacs;
+        final CompletionKey key;
+
+        public BatchWriteLacCompletion(final CompletionKey key,
+                                       final WriteLacCallback cb,
+                                       final Object originalCtx,
+                                       final List<ExplicitLac> lacs) {
+            super("BatchWriteLAC",
+                  originalCtx, lacs.get(0).getLedgerId(), BookieProtocol.LAST_ADD_CONFIRMED,
+                  batchWriteLacOpLogger, batchWriteLacTimeoutOpLogger);
+            this.cb = cb;
+            this.lacs = lacs;
+            this.key = key;
+        }
+
+        @Override
+        public void errorOut() {
+            errorOut(BKException.Code.BookieHandleNotAvailableException);
+        }
+
+        @Override
+        public void errorOut(final int rc) {
+            errorOutAndRunCallback(() -> {
+                logOpResult(rc);
+                for (ExplicitLac lac : lacs) {
+                    cb.writeLacComplete(rc, lac.getLedgerId(), bookieId, ctx);
+                }
+                key.release();
+            });
+        }
+
+        @Override
+        public void handleV3Response(BookkeeperProtocol.Response response) {
+            if (response.getStatus() != StatusCode.EOK) {
+                if (LOG.isDebugEnabled()) {
+                    logResponse(response.getStatus(), "ledgers", lacs.size());
+                }
+                int rc = convertStatus(response.getStatus(), BKException.Code.WriteException);
+                logOpResult(rc);
+                for (ExplicitLac lac : lacs) {
+                    cb.writeLacComplete(rc, lac.getLedgerId(), bookieId, ctx);
+                }
+            } else {
+                logOpResult(BKException.Code.OK);
+                BatchWriteLacResponse batchWriteLacResponse = response.getBatchWriteLacResponse();
+                for (WriteLacResponse writeLacResponse : batchWriteLacResponse.getWriteLacResponsesList()) {
+                    if (LOG.isDebugEnabled()) {
+                        logResponse(writeLacResponse.getStatus(), "ledger", writeLacResponse.getLedgerId());
+                    }
+                    int rc = convertStatus(writeLacResponse.getStatus(), BKException.Code.WriteException);
+                    cb.writeLacComplete(rc, writeLacResponse.getLedgerId(), bookieId, ctx);
+                }
+            }
+            key.release();
+        }
+    }
+
     class ForceLedgerCompletion extends CompletionValue {
         final ForceLedgerCallback cb;
 
@@ -2072,10 +2223,20 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 logResponse(status, "freeDisk", freeDiskSpace, "totalDisk", totalDiskSpace);
             }
 
+            BookieInfo bookieInfo;
+            if (getBookieInfoResponse.hasJournalQueueLength()) {
+                bookieInfo = new BookieInfo(totalDiskSpace, freeDiskSpace,
+                        getBookieInfoResponse.getJournalQueueLength(),
+                        getBookieInfoResponse.hasWriteCacheUsagePercent()
+                            ? getBookieInfoResponse.getWriteCacheUsagePercent() : -1,
+                        getBookieInfoResponse.getAddRequestsPerSecond(),
+                        getBookieInfoResponse.getReadRequestsPerSecond());
+            } else {
+                bookieInfo = new BookieInfo(totalDiskSpace, freeDiskSpace);
+            }
+
             int rc = convertStatus(status, BKException.Code.ReadException);
-            cb.getBookieInfoComplete(rc,
-                                     new BookieInfo(totalDiskSpace,
-                                                    freeDiskSpace), ctx);
+            cb.getBookieInfoComplete(rc, bookieInfo, ctx);
         }
     }
 
@@ -2134,6 +2295,65 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
     }
 
+    class CopyLedgerFragmentCompletion extends CompletionValue {
+        final CopyLedgerFragmentCallback cb;
+
+        public CopyLedgerFragmentCompletion(final CompletionKey key,
+                                            final CopyLedgerFragmentCallback origCallback,
+                                            final Object origCtx,
+                                            final long ledgerId) {
+            super("CopyLedgerFragment", origCtx, ledgerId, BookieProtocol.INVALID_ENTRY_ID,
+                  copyLedgerFragmentOpLogger, copyLedgerFragmentTimeoutOpLogger);
+            this.cb = new CopyLedgerFragmentCallback() {
+                @Override
+                public void copyLedgerFragmentComplete(int rc, long ledgerId, long entriesCopied,
+                                                       long bytesCopied, Object ctx) {
+                    logOpResult(rc);
+                    origCallback.copyLedgerFragmentComplete(rc, ledgerId, entriesCopied, bytesCopied, ctx);
+                    key.release();
+                }
+            };
+        }
+
+        @Override
+        boolean maybeTimeout() {
+            // the bookie replies once all the entries are copied
+            if (MathUtils.elapsedNanos(startTime) >= copyLedgerFragmentTimeoutNanos) {
+                timeout();
+                return true;
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public void errorOut() {
+            errorOut(BKException.Code.BookieHandleNotAvailableException);
+        }
+
+        @Override
+        public void errorOut(final int rc) {
+            errorOutAndRunCallback(() -> cb.copyLedgerFragmentComplete(rc, ledgerId, 0L, 0L, ctx));
+        }
+
+        @Override
+        public void handleV3Response(BookkeeperProtocol.Response response) {
+            CopyLedgerFragmentResponse copyLedgerFragmentResponse = response.getCopyLedgerFragmentResponse();
+            StatusCode status = response.getStatus() == StatusCode.EOK ? copyLedgerFragmentResponse.getStatus()
+                    : response.getStatus();
+
+            if (LOG.isDebugEnabled()) {
+                logResponse(status, "ledgerId", ledgerId,
+                            "entriesCopied", copyLedgerFragmentResponse.getEntriesCopied());
+            }
+
+            int rc = status == StatusCode.EBADREQ ? BKException.Code.IllegalOpException
+                    : convertStatus(status, BKException.Code.ReplicationException);
+            cb.copyLedgerFragmentComplete(rc, ledgerId, copyLedgerFragmentResponse.getEntriesCopied(),
+                                          copyLedgerFragmentResponse.getBytesCopied(), ctx);
+        }
+    }
+
     private final Recycler<AddCompletion> addCompletionRecycler = new Recycler<AddCompletion>() {
             @Override
             protected AddCompletion newObject(Recycler.Handle<AddCompletion> handle) {
@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.PRINCIPAL_ADD_BYTES;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.PRINCIPAL_LABEL;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.PRINCIPAL_READ_BYTES;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.PRINCIPAL_REQUESTS;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.PRINCIPAL_THROTTLED_REQUESTS;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.SERVER_SCOPE;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.auth.BookKeeperPrincipal;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.stats.annotations.StatsDoc;
+
+/**
+ * I/O quotas of the principals sending requests to a bookie.
+ *
+ * <p>The requests are accounted to the principal authenticated on their connection or, for the
+ * anonymous connections, to the principal set by the client in the request context of the v3
+ * requests. Each principal has token buckets for the add bytes, the read bytes and the requests
+ * per second, which can hold up to a second of quota. A request is rejected when a bucket it needs
+ * is empty, with a hint of when it may be retried. The read bytes aren't known before the read,
+ * so they are charged once read and a principal in debt has its reads rejected until the bucket
+ * is refilled. The requests admitted but then rejected by the thread pools get their quota back.
+ */
+class PrincipalQuotas {
+
+    // principals accounted together once the max number of principals is tracked
+    static final String OTHER_PRINCIPALS = "__other__";
+
+    private final long addBytesPerSecond;
+    private final long readBytesPerSecond;
+    private final long requestsPerSecond;
+    private final String contextKey;
+    private final int maxPrincipals;
+    private final StatsLogger statsLogger;
+
+    private final ConcurrentHashMap<String, PrincipalQuota> quotas = new ConcurrentHashMap<>();
+
+    PrincipalQuotas(ServerConfiguration conf, StatsLogger statsLogger) {
+        this.addBytesPerSecond = conf.getPrincipalQuotaAddBytesPerSecond();
+        this.readBytesPerSecond = conf.getPrincipalQuotaReadBytesPerSecond();
+        this.requestsPerSecond = conf.getPrincipalQuotaRequestsPerSecond();
+        this.contextKey = conf.getPrincipalQuotaContextKey();
+        this.maxPrincipals = conf.getPrincipalQuotaMaxPrincipals();
+        this.statsLogger = statsLogger;
+    }
+
+    /**
+     * Get the quota of the principal of a request.
+     *
+     * @param authorizedId the principal authenticated on the connection of the request
+     * @param requestContext the context of the request, null for the v2 requests
+     */
+    PrincipalQuota getQuota(BookKeeperPrincipal authorizedId,
+                            List<BookkeeperProtocol.ContextPair> requestContext) {
+        String principal = authorizedId != null ? authorizedId.getName() : BookKeeperPrincipal.ANONYMOUS.getName();
+        if (requestContext != null && BookKeeperPrincipal.ANONYMOUS.getName().equals(principal)) {
+            for (BookkeeperProtocol.ContextPair pair : requestContext) {
+                if (contextKey.equals(pair.getKey())) {
+                    principal = pair.getValue();
+                    break;
+                }
+            }
+        }
+        PrincipalQuota quota = quotas.get(principal);
+        if (quota != null) {
+            return quota;
+        }
+        if (quotas.size() >= maxPrincipals) {
+            principal = OTHER_PRINCIPALS;
+        }
+        return quotas.computeIfAbsent(principal,
+                name -> new PrincipalQuota(addBytesPerSecond, readBytesPerSecond, requestsPerSecond,
+                        statsLogger.scopeLabel(PRINCIPAL_LABEL, name)));
+    }
+
+    /**
+     * Token bucket which can hold up to a second of its rate, and can go in debt. Guarded by the
+     * quota of its principal.
+     */
+    static final class TokenBucket {
+        private final long ratePerSecond;
+        private double tokens;
+        private long lastRefillNanos;
+
+        TokenBucket(long ratePerSecond) {
+            this.ratePerSecond = ratePerSecond;
+            this.tokens = ratePerSecond;
+            this.lastRefillNanos = MathUtils.nowInNano();
+        }
+
+        private void refill() {
+            long nowNanos = MathUtils.nowInNano();
+            tokens = Math.min(ratePerSecond,
+                    tokens + (double) ratePerSecond * (nowNanos - lastRefillNanos) / TimeUnit.SECONDS.toNanos(1));
+            lastRefillNanos = nowNanos;
+        }
+
+        /**
+         * @return 0 if the permits are available, the nanos until they are available otherwise. The
+         *         permits above the capacity of the bucket only need a full bucket.
+         */
+        long nanosUntilAvailable(long permits) {
+            refill();
+            double missing = Math.min(permits, ratePerSecond) - tokens;
+            if (missing <= 0) {
+                return 0;
+            }
+            return Math.max(1, (long) (missing * TimeUnit.SECONDS.toNanos(1) / ratePerSecond));
+        }
+
+        void charge(long permits) {
+            tokens -= permits;
+        }
+
+        void release(long permits) {
+            tokens = Math.min(ratePerSecond, tokens + permits);
+        }
+    }
+
+    /**
+     * Quota and stats of a principal.
+     */
+    @StatsDoc(
+        name = SERVER_SCOPE,
+        category = CATEGORY_SERVER,
+        help = "Bookie request stats per principal, labelled by principal"
+    )
+    static class PrincipalQuota {
+        // null if not limited
+        private final TokenBucket addBytes;
+        private final TokenBucket readBytes;
+        private final TokenBucket requests;
+
+        @StatsDoc(
+            name = PRINCIPAL_REQUESTS,
+            help = "Add and read requests of the principal admitted by the quotas"
+        )
+        private final Counter requestsCounter;
+        @StatsDoc(
+            name = PRINCIPAL_ADD_BYTES,
+            help = "Bytes added by the principal"
+        )
+        private final Counter addBytesCounter;
+        @StatsDoc(
+            name = PRINCIPAL_READ_BYTES,
+            help = "Bytes read by the principal"
+        )
+        private final Counter readBytesCounter;
+        @StatsDoc(
+            name = PRINCIPAL_THROTTLED_REQUESTS,
+            help = "Add and read requests of the principal rejected by the quotas"
+        )
+        private final Counter throttledRequestsCounter;
+
+        private PrincipalQuota(long addBytesPerSecond, long readBytesPerSecond, long requestsPerSecond,
+                               StatsLogger principalStatsLogger) {
+            this.addBytes = addBytesPerSecond > 0 ? new TokenBucket(addBytesPerSecond) : null;
+            this.readBytes = readBytesPerSecond > 0 ? new TokenBucket(readBytesPerSecond) : null;
+            this.requests = requestsPerSecond > 0 ? new TokenBucket(requestsPerSecond) : null;
+            this.requestsCounter = principalStatsLogger.getCounter(PRINCIPAL_REQUESTS);
+            this.addBytesCounter = principalStatsLogger.getCounter(PRINCIPAL_ADD_BYTES);
+            this.readBytesCounter = principalStatsLogger.getCounter(PRINCIPAL_READ_BYTES);
+            this.throttledRequestsCounter = principalStatsLogger.getCounter(PRINCIPAL_THROTTLED_REQUESTS);
+        }
+
+        /**
+         * Try to admit an add of the given size.
+         *
+         * @return 0 if the add is admitted, otherwise the millis after which it may be retried
+         */
+        synchronized long tryAcquireAdd(long bytes) {
+            long waitNanos = Math.max(nanosUntilAvailable(requests, 1), nanosUntilAvailable(addBytes, bytes));
+            if (waitNanos > 0) {
+                throttledRequestsCounter.inc();
+                return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+            }
+            charge(requests, 1);
+            charge(addBytes, bytes);
+            requestsCounter.inc();
+            addBytesCounter.addCount(bytes);
+            return 0;
+        }
+
+        /**
+         * Give back the quota of an add admitted by {@link #tryAcquireAdd(long)}, which was rejected
+         * before it was executed.
+         */
+        synchronized void releaseAdd(long bytes) {
+            release(requests, 1);
+            release(addBytes, bytes);
+            requestsCounter.dec();
+            addBytesCounter.addCount(-bytes);
+        }
+
+        /**
+         * Try to admit a read, whose bytes are charged by {@link #chargeReadBytes(long)} once read.
+         *
+         * @return 0 if the read is admitted, otherwise the millis after which it may be retried
+         */
+        synchronized long tryAcquireRead() {
+            long waitNanos = Math.max(nanosUntilAvailable(requests, 1), nanosUntilAvailable(readBytes, 1));
+            if (waitNanos > 0) {
+                throttledRequestsCounter.inc();
+                return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+            }
+            charge(requests, 1);
+            requestsCounter.inc();
+            return 0;
+        }
+
+        /**
+         * Give back the quota of a read admitted by {@link #tryAcquireRead()}, which was rejected
+         * before it was executed.
+         */
+        synchronized void releaseRead() {
+            release(requests, 1);
+            requestsCounter.dec();
+        }
+
+        synchronized void chargeReadBytes(long bytes) {
+            charge(readBytes, bytes);
+            readBytesCounter.addCount(bytes);
+        }
+
+        private static long nanosUntilAvailable(TokenBucket bucket, long permits) {
+            return bucket != null ? bucket.nanosUntilAvailable(permits) : 0;
+        }
+
+        private static void charge(TokenBucket bucket, long permits) {
+            if (bucket != null) {
+                bucket.charge(permits);
+            }
+        }
+
+        private static void release(TokenBucket bucket, long permits) {
+            if (bucket != null) {
+                bucket.release(permits);
+            }
+        }
+    }
+}
@@ -41,6 +41,8 @@ class ReadEntryProcessor extends PacketProcessorBase<ReadRequest> {
 
     private ExecutorService fenceThreadPool;
     private boolean throttleReadResponses;
+    // charged with the bytes read, null if the read isn't under a quota
+    private volatile PrincipalQuotas.PrincipalQuota quota;
 
     public static ReadEntryProcessor create(ReadRequest request,
                                             BookieRequestHandler requestHandler,
@@ -86,6 +88,10 @@ class ReadEntryProcessor extends PacketProcessorBase<ReadRequest> {
                 }
             }
             data = requestProcessor.getBookie().readEntry(request.getLedgerId(), request.getEntryId());
+            PrincipalQuotas.PrincipalQuota readQuota = quota;
+            if (readQuota != null) {
+                readQuota.chargeReadBytes(data.readableBytes());
+            }
             if (LOG.isDebugEnabled()) {
                 LOG.debug("##### Read entry ##### {} -- ref-count: {}", data.readableBytes(), data.refCnt());
             }
@@ -189,8 +195,13 @@ class ReadEntryProcessor extends PacketProcessorBase<ReadRequest> {
         return String.format("ReadEntry(%d, %d)", request.getLedgerId(), request.getEntryId());
     }
 
+    void setQuota(PrincipalQuotas.PrincipalQuota quota) {
+        this.quota = quota;
+    }
+
     private void recycle() {
         request.recycle();
+        quota = null;
         super.reset();
         this.recyclerHandle.recycle(this);
     }
@@ -48,6 +48,9 @@ class ReadEntryProcessorV3 extends PacketProcessorBaseV3 {
 
     private CompletableFuture<Boolean> fenceResult = null;
 
+    // charged with the bytes read, null if the read isn't under a quota
+    private volatile PrincipalQuotas.PrincipalQuota quota = null;
+
     protected final ReadRequest readRequest;
     protected final long ledgerId;
     protected final long entryId;
@@ -171,6 +174,10 @@ class ReadEntryProcessorV3 extends PacketProcessorBaseV3 {
                                      Stopwatch startTimeSw)
         throws IOException, BookieException {
         ByteBuf entryBody = requestProcessor.getBookie().readEntry(ledgerId, entryId);
+        PrincipalQuotas.PrincipalQuota readQuota = quota;
+        if (readQuota != null) {
+            readQuota.chargeReadBytes(entryBody.readableBytes());
+        }
         if (null != fenceResult) {
             handleReadResultForFenceRead(entryBody, readResponseBuilder, entryId, startTimeSw);
             return null;
@@ -192,6 +199,10 @@ class ReadEntryProcessorV3 extends PacketProcessorBaseV3 {
         }
     }
 
+    void setQuota(PrincipalQuotas.PrincipalQuota quota) {
+        this.quota = quota;
+    }
+
     protected ReadResponse getReadResponse() {
         final Stopwatch startTimeSw = Stopwatch.createStarted();
         final Channel channel = requestHandler.ctx().channel();
@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.proto;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Schedules the read requests of a bookie by class, instead of the FIFO queues per ledger of the
+ * read thread pool.
+ *
+ * <p>Each class of reads has its own bounded queue, and the worker threads pick the next read with
+ * stride scheduling: every class advances by the inverse of its weight each time one of its reads
+ * is picked, and the non-empty class which advanced the least is served first. The classes get a
+ * share of the threads proportional to their weights when they are all busy, a burst of backlog
+ * reads can't delay the tailing reads by more than its share, and the reads of a hot ledger are
+ * spread across all the threads rather than pinned to one.
+ *
+ * <p>A read is a tailing read when it is close to the last entry added to its ledger on this
+ * bookie, as reported by {@link #onEntryAdded(long, long)}.
+ */
+class ReadRequestScheduler {
+    private static final Logger LOG = LoggerFactory.getLogger(ReadRequestScheduler.class);
+
+    // the ledgers least recently added to or read are no longer tracked past this many ledgers, the
+    // ledgers being written are tracked again with their next add
+    static final int MAX_TRACKED_LEDGERS = 100_000;
+
+    /**
+     * Class of a read request.
+     */
+    enum ReadClass {
+        TAILING("tailing"),
+        BACKLOG("backlog"),
+        RECOVERY("recovery");
+
+        private final String label;
+
+        ReadClass(String label) {
+            this.label = label;
+        }
+
+        String getLabel() {
+            return label;
+        }
+    }
+
+    private static final class QueuedRead {
+        final Runnable read;
+        final long enqueueNanos;
+
+        QueuedRead(Runnable read, long enqueueNanos) {
+            this.read = read;
+            this.enqueueNanos = enqueueNanos;
+        }
+    }
+
+    private static final class ClassQueue {
+        final ReadClass readClass;
+        final ArrayDeque<QueuedRead> reads = new ArrayDeque<>();
+        final double stride;
+        double pass = 0;
+
+        ClassQueue(ReadClass readClass, int weight) {
+            this.readClass = readClass;
+            this.stride = 1.0 / Math.max(1, weight);
+        }
+    }
+
+    private final RequestStats requestStats;
+    private final int maxPendingReadsPerClass;
+    private final long tailingDistanceEntries;
+    private final Cache<Long, AtomicLong> lastAddedEntries;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    // guarded by lock
+    private final ClassQueue[] queues;
+    private double virtualTime = 0;
+    private boolean shutdown = false;
+
+    private final ExecutorService workers;
+
+    ReadRequestScheduler(ServerConfiguration conf, RequestStats requestStats) {
+        this.requestStats = requestStats;
+        int numThreads = conf.getNumReadWorkerThreads();
+        int maxPendingPerThread = conf.getMaxPendingReadRequestPerThread();
+        this.maxPendingReadsPerClass = maxPendingPerThread > 0 ? maxPendingPerThread * numThreads : 0;
+        this.tailingDistanceEntries = conf.getReadSchedulerTailingDistanceEntries();
+        this.lastAddedEntries = CacheBuilder.newBuilder().maximumSize(MAX_TRACKED_LEDGERS).build();
+
+        this.queues = new ClassQueue[ReadClass.values().length];
+        queues[ReadClass.TAILING.ordinal()] = new ClassQueue(ReadClass.TAILING, conf.getReadSchedulerTailingWeight());
+        queues[ReadClass.BACKLOG.ordinal()] = new ClassQueue(ReadClass.BACKLOG, conf.getReadSchedulerBacklogWeight());
+        queues[ReadClass.RECOVERY.ordinal()] =
+                new ClassQueue(ReadClass.RECOVERY, conf.getReadSchedulerRecoveryWeight());
+
+        this.workers = Executors.newFixedThreadPool(numThreads,
+                new ThreadFactoryBuilder().setNameFormat("BookieReadSchedulerThread-%d").build());
+        for (int i = 0; i < numThreads; i++) {
+            workers.execute(this::runReads);
+        }
+    }
+
+    /**
+     * Record an entry added to a ledger, to classify the reads of the ledger close to it as tailing
+     * reads.
+     */
+    void onEntryAdded(long ledgerId, long entryId) {
+        if (ledgerId < 0 || entryId < 0) {
+            return;
+        }
+        AtomicLong lastAdded = lastAddedEntries.getIfPresent(ledgerId);
+        if (lastAdded == null) {
+            lastAdded = lastAddedEntries.asMap().computeIfAbsent(ledgerId, id -> new AtomicLong(-1L));
+        }
+        // entries can be added out of order
+        lastAdded.accumulateAndGet(entryId, Math::max);
+    }
+
+    ReadClass classify(long ledgerId, long entryId, boolean recovery) {
+        if (recovery) {
+            return ReadClass.RECOVERY;
+        }
+        AtomicLong lastAddedEntry = lastAddedEntries.getIfPresent(ledgerId);
+        long lastAdded = lastAddedEntry == null ? -1L : lastAddedEntry.get();
+        // a negative entry id reads the last entry of the ledger
+        if (lastAdded >= 0 && (entryId < 0 || entryId >= lastAdded - tailingDistanceEntries)) {
+            return ReadClass.TAILING;
+        }
+        return ReadClass.BACKLOG;
+    }
+
+    /**
+     * Queue a read in the queue of its class.
+     *
+     * @throws RejectedExecutionException if the queue of the class is full or the scheduler is shut down
+     */
+    void submit(ReadClass readClass, Runnable read) {
+        QueuedRead queuedRead = new QueuedRead(read, MathUtils.nowInNano());
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new RejectedExecutionException("Read scheduler is shut down");
+            }
+            ClassQueue queue = queues[readClass.ordinal()];
+            if (maxPendingReadsPerClass > 0 && queue.reads.size() >= maxPendingReadsPerClass) {
+                throw new RejectedExecutionException("Too many pending " + readClass.getLabel() + " reads");
+            }
+            if (queue.reads.isEmpty()) {
+                // an idle class doesn't accumulate credit while it has nothing to read
+                queue.pass = Math.max(queue.pass, virtualTime);
+            }
+            queue.reads.add(queuedRead);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runReads() {
+        while (true) {
+            QueuedRead queuedRead;
+            ReadClass readClass;
+            lock.lock();
+            try {
+                ClassQueue next;
+                while ((next = nextQueue()) == null) {
+                    if (shutdown) {
+                        return;
+                    }
+                    notEmpty.awaitUninterruptibly();
+                }
+                virtualTime = next.pass;
+                next.pass += next.stride;
+                queuedRead = next.reads.poll();
+                readClass = next.readClass;
+            } finally {
+                lock.unlock();
+            }
+
+            requestStats.getReadSchedulerQueueTimeStats(readClass)
+                    .registerSuccessfulEvent(MathUtils.elapsedNanos(queuedRead.enqueueNanos), TimeUnit.NANOSECONDS);
+            try {
+                queuedRead.read.run();
+            } catch (Throwable t) {
+                LOG.error("Unexpected failure of a {} read", readClass.getLabel(), t);
+            }
+        }
+    }
+
+    // must be called with the lock held
+    private ClassQueue nextQueue() {
+        ClassQueue next = null;
+        for (ClassQueue queue : queues) {
+            if (!queue.reads.isEmpty() && (next == null || queue.pass < next.pass)) {
+                next = queue;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Stop accepting reads, and wait for the queued reads to be executed.
+     */
+    void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.shutdownNow();
+        }
+    }
+}
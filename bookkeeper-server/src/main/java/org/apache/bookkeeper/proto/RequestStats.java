@@ -27,6 +27,9 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ADD_ENTRY_REJEC
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ADD_ENTRY_REQUEST;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CHANNEL_WRITE;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.COPY_LEDGER_FRAGMENT;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.COPY_LEDGER_FRAGMENT_BYTES;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.COPY_LEDGER_FRAGMENT_REQUEST;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.FORCE_LEDGER;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.FORCE_LEDGER_REQUEST;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.GET_BOOKIE_INFO;
@@ -50,6 +53,8 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_ENTRY_SCHE
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_LAC;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_LAC_REQUEST;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_LAST_ENTRY_NOENTRY_ERROR;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_SCHEDULER_CLASS_LABEL;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_SCHEDULER_QUEUE_TIME;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.SERVER_SCOPE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.WRITE_LAC;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.WRITE_LAC_REQUEST;
@@ -57,12 +62,15 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.WRITE_THREAD_QU
 
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.AccessLevel;
 import lombok.Getter;
 import org.apache.bookkeeper.stats.Counter;
 import org.apache.bookkeeper.stats.Gauge;
 import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.stats.annotations.StatsDoc;
+import org.apache.bookkeeper.util.MathUtils;
 
 /**
  * A umbrella class for request related stats.
@@ -82,6 +90,15 @@ public class RequestStats {
     final AtomicInteger readsBlocked = new AtomicInteger(0);
     final AtomicInteger maxReadsInProgress = new AtomicInteger(0);
 
+    // request rates reported to the clients in the bookie info, sampled by sampleRequestRates()
+    final LongAdder addsReceived = new LongAdder();
+    final LongAdder readsReceived = new LongAdder();
+    private long ratesSampleTimeNanos = MathUtils.nowInNano();
+    private long addsAtRatesSample = 0;
+    private long readsAtRatesSample = 0;
+    private volatile long addRequestsPerSecond = 0;
+    private volatile long readRequestsPerSecond = 0;
+
     @StatsDoc(
         name = ADD_ENTRY_REQUEST,
         help = "request stats of AddEntry on a bookie"
@@ -158,6 +175,12 @@ public class RequestStats {
         help = "operation stats of ReadEntry scheduling delays on a bookie"
     )
     final OpStatsLogger readEntrySchedulingDelayStats;
+    @StatsDoc(
+        name = READ_SCHEDULER_QUEUE_TIME,
+        help = "operation stats of the time spent by reads in the queues of the read scheduler, labelled by read class"
+    )
+    @Getter(AccessLevel.NONE)
+    private final OpStatsLogger[] readSchedulerQueueTimeStats;
     @StatsDoc(
         name = READ_ENTRY_LONG_POLL_PRE_WAIT,
         help = "operation stats of LongPoll Reads pre wait time on a bookie",
@@ -246,6 +269,22 @@ public class RequestStats {
             parent = GET_LIST_OF_ENTRIES_OF_LEDGER_REQUEST
     )
     final OpStatsLogger getListOfEntriesOfLedgerStats;
+    @StatsDoc(
+            name = COPY_LEDGER_FRAGMENT_REQUEST,
+            help = "request stats of CopyLedgerFragment on a bookie"
+    )
+    final OpStatsLogger copyLedgerFragmentRequestStats;
+    @StatsDoc(
+            name = COPY_LEDGER_FRAGMENT,
+            help = "operation stats of CopyLedgerFragment",
+            parent = COPY_LEDGER_FRAGMENT_REQUEST
+    )
+    final OpStatsLogger copyLedgerFragmentStats;
+    @StatsDoc(
+            name = COPY_LEDGER_FRAGMENT_BYTES,
+            help = "Bytes of the entries copied from other bookies by CopyLedgerFragment"
+    )
+    final Counter copyLedgerFragmentBytesCounter;
 
     public RequestStats(StatsLogger statsLogger) {
         this.addEntryStats = statsLogger.getThreadScopedOpStatsLogger(ADD_ENTRY);
@@ -261,6 +300,13 @@ public class RequestStats {
         this.fenceReadRequestStats = statsLogger.getOpStatsLogger(READ_ENTRY_FENCE_REQUEST);
         this.fenceReadWaitStats = statsLogger.getOpStatsLogger(READ_ENTRY_FENCE_WAIT);
         this.readEntrySchedulingDelayStats = statsLogger.getOpStatsLogger(READ_ENTRY_SCHEDULING_DELAY);
+        ReadRequestScheduler.ReadClass[] readClasses = ReadRequestScheduler.ReadClass.values();
+        this.readSchedulerQueueTimeStats = new OpStatsLogger[readClasses.length];
+        for (ReadRequestScheduler.ReadClass readClass : readClasses) {
+            this.readSchedulerQueueTimeStats[readClass.ordinal()] = statsLogger
+                    .scopeLabel(READ_SCHEDULER_CLASS_LABEL, readClass.getLabel())
+                    .getOpStatsLogger(READ_SCHEDULER_QUEUE_TIME);
+        }
         this.longPollPreWaitStats = statsLogger.getOpStatsLogger(READ_ENTRY_LONG_POLL_PRE_WAIT);
         this.longPollWaitStats = statsLogger.getOpStatsLogger(READ_ENTRY_LONG_POLL_WAIT);
         this.longPollReadStats = statsLogger.getOpStatsLogger(READ_ENTRY_LONG_POLL_READ);
@@ -280,6 +326,9 @@ public class RequestStats {
         this.getListOfEntriesOfLedgerStats = statsLogger.getOpStatsLogger(GET_LIST_OF_ENTRIES_OF_LEDGER);
         this.getListOfEntriesOfLedgerRequestStats =
                 statsLogger.getOpStatsLogger(GET_LIST_OF_ENTRIES_OF_LEDGER_REQUEST);
+        this.copyLedgerFragmentStats = statsLogger.getOpStatsLogger(COPY_LEDGER_FRAGMENT);
+        this.copyLedgerFragmentRequestStats = statsLogger.getOpStatsLogger(COPY_LEDGER_FRAGMENT_REQUEST);
+        this.copyLedgerFragmentBytesCounter = statsLogger.getCounter(COPY_LEDGER_FRAGMENT_BYTES);
 
         statsLogger.registerGauge(ADD_ENTRY_IN_PROGRESS, new Gauge<Number>() {
             @Override
@@ -344,6 +393,7 @@ public class RequestStats {
     }
 
     void trackAddRequest() {
+        addsReceived.increment();
         final int curr = addsInProgress.incrementAndGet();
         maxAddsInProgress.accumulateAndGet(curr, Integer::max);
     }
@@ -370,6 +420,7 @@ public class RequestStats {
     }
 
     void trackReadRequest() {
+        readsReceived.increment();
         final int curr = readsInProgress.incrementAndGet();
         maxReadsInProgress.accumulateAndGet(curr, Integer::max);
     }
@@ -382,4 +433,26 @@ public class RequestStats {
         return maxReadsInProgress.get();
     }
 
+    OpStatsLogger getReadSchedulerQueueTimeStats(ReadRequestScheduler.ReadClass readClass) {
+        return readSchedulerQueueTimeStats[readClass.ordinal()];
+    }
+
+    /**
+     * Update the add and read request rates, averaged since the previous update. The rates are only updated if the
+     * previous update is at least a second old, so frequent samples don't make them noisy.
+     */
+    synchronized void sampleRequestRates() {
+        long elapsedNanos = MathUtils.elapsedNanos(ratesSampleTimeNanos);
+        if (elapsedNanos < TimeUnit.SECONDS.toNanos(1)) {
+            return;
+        }
+        long adds = addsReceived.sum();
+        long reads = readsReceived.sum();
+        addRequestsPerSecond = (adds - addsAtRatesSample) * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        readRequestsPerSecond = (reads - readsAtRatesSample) * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        addsAtRatesSample = adds;
+        readsAtRatesSample = reads;
+        ratesSampleTimeNanos += elapsedNanos;
+    }
+
 }
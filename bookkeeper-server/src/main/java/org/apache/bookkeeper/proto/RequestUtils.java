@@ -89,11 +89,24 @@ class RequestUtils {
             stringHelper.add("ledgerId", writeLacRequest.getLedgerId());
             stringHelper.add("lac", writeLacRequest.getLac());
             return stringHelper.toString();
+        } else if (request.hasBatchWriteLacRequest()) {
+            BookkeeperProtocol.BatchWriteLacRequest batchWriteLacRequest = request.getBatchWriteLacRequest();
+            includeHeaderFields(stringHelper, header);
+            stringHelper.add("numLedgers", batchWriteLacRequest.getWriteLacRequestsCount());
+            return stringHelper.toString();
         } else if (request.hasForceLedgerRequest()) {
             BookkeeperProtocol.ForceLedgerRequest forceLedgerRequest = request.getForceLedgerRequest();
             includeHeaderFields(stringHelper, header);
             stringHelper.add("ledgerId", forceLedgerRequest.getLedgerId());
             return stringHelper.toString();
+        } else if (request.hasCopyLedgerFragmentRequest()) {
+            // the master key is left out
+            BookkeeperProtocol.CopyLedgerFragmentRequest copyRequest = request.getCopyLedgerFragmentRequest();
+            includeHeaderFields(stringHelper, header);
+            stringHelper.add("ledgerId", copyRequest.getLedgerId());
+            stringHelper.add("firstEntryId", copyRequest.getFirstEntryId());
+            stringHelper.add("lastEntryId", copyRequest.getLastEntryId());
+            return stringHelper.toString();
         } else {
             return request.toString();
         }
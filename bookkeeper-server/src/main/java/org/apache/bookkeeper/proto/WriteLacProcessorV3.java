@@ -23,9 +23,14 @@ package org.apache.bookkeeper.proto;
 import io.netty.buffer.Unpooled;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import org.apache.bookkeeper.bookie.BookieException;
 import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchWriteLacResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
@@ -44,25 +49,61 @@ class WriteLacProcessorV3 extends PacketProcessorBaseV3 implements Runnable {
         super(request, requestHandler, requestProcessor);
     }
 
+    // Returns null if the request can be processed
+    private StatusCode checkRequest() {
+        if (!isVersionCompatible()) {
+            return StatusCode.EBADVERSION;
+        }
+
+        if (requestProcessor.getBookie().isReadOnly()) {
+            logger.warn("BookieServer is running as readonly mode, so rejecting the request from the client!");
+            return StatusCode.EREADONLY;
+        }
+        return null;
+    }
+
     // Returns null if there is no exception thrown
     private WriteLacResponse getWriteLacResponse() {
         final long startTimeNanos = MathUtils.nowInNano();
         WriteLacRequest writeLacRequest = request.getWriteLacRequest();
-        long lac = writeLacRequest.getLac();
         long ledgerId = writeLacRequest.getLedgerId();
 
         final WriteLacResponse.Builder writeLacResponse = WriteLacResponse.newBuilder().setLedgerId(ledgerId);
 
-        if (!isVersionCompatible()) {
-            writeLacResponse.setStatus(StatusCode.EBADVERSION);
+        StatusCode status = checkRequest();
+        if (null != status) {
+            writeLacResponse.setStatus(status);
             return writeLacResponse.build();
         }
 
-        if (requestProcessor.bookie.isReadOnly()) {
-            logger.warn("BookieServer is running as readonly mode, so rejecting the request from the client!");
-            writeLacResponse.setStatus(StatusCode.EREADONLY);
+        status = writeLac(writeLacRequest, startTimeNanos, writeStatus -> {
+            writeLacResponse.setStatus(writeStatus);
+            Response.Builder response = Response.newBuilder()
+                    .setHeader(getHeader())
+                    .setStatus(writeLacResponse.getStatus())
+                    .setWriteLacResponse(writeLacResponse);
+            Response resp = response.build();
+            sendResponse(writeStatus, resp, requestProcessor.getRequestStats().getWriteLacRequestStats());
+        });
+
+        // If everything is okay, we return null so that the calling function
+        // dosn't return a response back to the caller.
+        if (!status.equals(StatusCode.EOK)) {
+            writeLacResponse.setStatus(status);
             return writeLacResponse.build();
         }
+        return null;
+    }
+
+    /**
+     * Save the explicit lac of a ledger.
+     *
+     * @param cb notified with the status of the write, only if EOK is returned
+     * @return EOK if the lac is being written, otherwise the error status
+     */
+    private StatusCode writeLac(WriteLacRequest writeLacRequest, long startTimeNanos, Consumer<StatusCode> cb) {
+        long lac = writeLacRequest.getLac();
+        long ledgerId = writeLacRequest.getLedgerId();
 
         BookkeeperInternalCallbacks.WriteCallback writeCallback = new BookkeeperInternalCallbacks.WriteCallback() {
             @Override
@@ -87,13 +128,7 @@ class WriteLacProcessorV3 extends PacketProcessorBaseV3 implements Runnable {
                     status = StatusCode.EUA;
                     break;
                 }
-                writeLacResponse.setStatus(status);
-                Response.Builder response = Response.newBuilder()
-                        .setHeader(getHeader())
-                        .setStatus(writeLacResponse.getStatus())
-                        .setWriteLacResponse(writeLacResponse);
-                Response resp = response.build();
-                sendResponse(status, resp, requestProcessor.getRequestStats().getWriteLacRequestStats());
+                cb.accept(status);
             }
         };
 
@@ -102,7 +137,7 @@ class WriteLacProcessorV3 extends PacketProcessorBaseV3 implements Runnable {
         byte[] masterKey = writeLacRequest.getMasterKey().toByteArray();
 
         try {
-            requestProcessor.bookie.setExplicitLac(Unpooled.wrappedBuffer(lacToAdd),
+            requestProcessor.getBookie().setExplicitLac(Unpooled.wrappedBuffer(lacToAdd),
                     writeCallback, requestHandler, masterKey);
             status = StatusCode.EOK;
         } catch (IOException e) {
@@ -125,19 +160,73 @@ class WriteLacProcessorV3 extends PacketProcessorBaseV3 implements Runnable {
             status = StatusCode.EBADREQ;
         }
 
-        // If everything is okay, we return null so that the calling function
-        // dosn't return a response back to the caller.
         if (!status.equals(StatusCode.EOK)) {
             requestProcessor.getRequestStats().getWriteLacStats()
                 .registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
-            writeLacResponse.setStatus(status);
-            return writeLacResponse.build();
         }
-        return null;
+        return status;
+    }
+
+    /**
+     * Save the explicit lacs of all the ledgers of a batch request, and send a single response once
+     * all of them are written, with the status of each ledger.
+     */
+    private void processBatchWriteLacRequest() {
+        final long startTimeNanos = MathUtils.nowInNano();
+        StatusCode status = checkRequest();
+        if (null != status) {
+            Response resp = Response.newBuilder()
+                    .setHeader(getHeader())
+                    .setStatus(status)
+                    .build();
+            sendResponse(status, resp, requestProcessor.getRequestStats().getWriteLacRequestStats());
+            return;
+        }
+
+        final List<WriteLacRequest> writeLacRequests = request.getBatchWriteLacRequest().getWriteLacRequestsList();
+        final StatusCode[] statuses = new StatusCode[writeLacRequests.size()];
+        final AtomicInteger pendingWrites = new AtomicInteger(writeLacRequests.size());
+        if (writeLacRequests.isEmpty()) {
+            sendBatchWriteLacResponse(writeLacRequests, statuses);
+            return;
+        }
+
+        for (int i = 0; i < writeLacRequests.size(); i++) {
+            final int index = i;
+            Consumer<StatusCode> cb = writeStatus -> {
+                statuses[index] = writeStatus;
+                if (pendingWrites.decrementAndGet() == 0) {
+                    sendBatchWriteLacResponse(writeLacRequests, statuses);
+                }
+            };
+            StatusCode writeStatus = writeLac(writeLacRequests.get(i), startTimeNanos, cb);
+            if (!writeStatus.equals(StatusCode.EOK)) {
+                cb.accept(writeStatus);
+            }
+        }
+    }
+
+    private void sendBatchWriteLacResponse(List<WriteLacRequest> writeLacRequests, StatusCode[] statuses) {
+        BatchWriteLacResponse.Builder batchResponse = BatchWriteLacResponse.newBuilder();
+        for (int i = 0; i < statuses.length; i++) {
+            batchResponse.addWriteLacResponses(WriteLacResponse.newBuilder()
+                    .setLedgerId(writeLacRequests.get(i).getLedgerId())
+                    .setStatus(statuses[i]));
+        }
+        Response resp = Response.newBuilder()
+                .setHeader(getHeader())
+                .setStatus(StatusCode.EOK)
+                .setBatchWriteLacResponse(batchResponse)
+                .build();
+        sendResponse(StatusCode.EOK, resp, requestProcessor.getRequestStats().getWriteLacRequestStats());
     }
 
     @Override
     public void run() {
+        if (request.getHeader().getOperation() == OperationType.BATCH_WRITE_LAC) {
+            processBatchWriteLacRequest();
+            return;
+        }
         WriteLacResponse writeLacResponse = getWriteLacResponse();
         if (null != writeLacResponse) {
             Response.Builder response = Response.newBuilder()
@@ -162,5 +251,3 @@ class WriteLacProcessorV3 extends PacketProcessorBaseV3 implements Runnable {
         return RequestUtils.toSafeString(request);
     }
 }
-
-
@@ -78,6 +78,9 @@ public class Auditor implements AutoCloseable {
     private LedgerManager ledgerManager;
     private LedgerUnderreplicationManager ledgerUnderreplicationManager;
     private final ScheduledExecutorService executor;
+    // the incremental replicas check is rate limited, so it waits on its own thread rather than
+    // delaying the other checks queued on the executor. The full check runs on the executor.
+    private final ScheduledExecutorService replicasCheckExecutor;
     private List<String> knownBookies = new ArrayList<String>();
     private final String bookieIdentifier;
     protected volatile Future<?> auditTask;
@@ -192,6 +195,18 @@ public class Auditor implements AutoCloseable {
                 return t;
             }
         });
+        if (conf.isAuditorReplicasCheckIncrementalEnabled()) {
+            replicasCheckExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "AuditorReplicasCheck-" + bookieIdentifier);
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        } else {
+            replicasCheckExecutor = executor;
+        }
     }
 
     private void initialize(ServerConfiguration conf, BookKeeper bkc)
@@ -235,6 +250,7 @@ public class Auditor implements AutoCloseable {
                 synchronized (Auditor.this) {
                     LOG.info("Shutting down Auditor's Executor");
                     executor.shutdown();
+                    replicasCheckExecutor.shutdown();
                 }
             });
         }
@@ -555,7 +571,7 @@ public class Auditor implements AutoCloseable {
                         + "durationSinceLastExecutionInSecs: {} initialDelay: {} interval: {}",
                 replicasCheckLastExecutedCTime, durationSinceLastExecutionInSecs, initialDelay, interval);
 
-        executor.scheduleAtFixedRate(auditorReplicasCheckTask, initialDelay, interval, TimeUnit.SECONDS);
+        replicasCheckExecutor.scheduleAtFixedRate(auditorReplicasCheckTask, initialDelay, interval, TimeUnit.SECONDS);
     }
 
     private class UnderReplicatedLedgersChangedCb implements GenericCallback<Void> {
@@ -619,11 +635,17 @@ public class Auditor implements AutoCloseable {
     public void shutdown() {
         LOG.info("Shutting down auditor");
         executor.shutdown();
+        replicasCheckExecutor.shutdown();
         try {
             while (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
                 LOG.warn("Executor not shutting down, interrupting");
                 executor.shutdownNow();
             }
+            while (replicasCheckExecutor != executor
+                    && !replicasCheckExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                LOG.warn("Replicas check executor not shutting down, interrupting");
+                replicasCheckExecutor.shutdownNow();
+            }
 
             // shutdown all auditorTasks to clean some resource
             allAuditorTasks.forEach(AuditorTask::shutdown);
@@ -20,6 +20,7 @@ package org.apache.bookkeeper.replication;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.HashMultiset;
 import com.google.common.collect.Multiset;
+import com.google.common.util.concurrent.RateLimiter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.BitSet;
@@ -46,13 +47,26 @@ import org.apache.bookkeeper.meta.LedgerManager;
 import org.apache.bookkeeper.meta.LedgerUnderreplicationManager;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.MultiCallback;
+import org.apache.bookkeeper.replication.ReplicasCheckStateStore.LedgerCheckState;
 import org.apache.bookkeeper.util.AvailabilityOfEntriesOfLedger;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Version;
 import org.apache.bookkeeper.versioning.Versioned;
 import org.apache.zookeeper.AsyncCallback;
 import org.apache.zookeeper.AsyncCallback.VoidCallback;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Checks that the entries of all the closed ledgers are available on the bookies they are
+ * supposed to be stored on.
+ *
+ * <p>With {@link ServerConfiguration#isAuditorReplicasCheckIncrementalEnabled()}, the last
+ * successful check of each ledger is kept in a {@link ReplicasCheckStateStore}, and a ledger is
+ * only checked again when its metadata changed or its last check expired. The checks are rate
+ * limited to spread them over the replicas check interval, and a check is interrupted when a
+ * bookie audit is pending, the ledgers not checked yet being checked by the next run.
+ */
 public class AuditorReplicasCheckTask extends AuditorTask {
     private static final Logger LOG = LoggerFactory.getLogger(AuditorReplicasCheckTask.class);
 
@@ -61,7 +75,15 @@ public class AuditorReplicasCheckTask extends AuditorTask {
     private static final BitSet EMPTY_BITSET = new BitSet();
 
     private final int zkOpTimeoutMs;
+    private final boolean incremental;
+    private final long checkTtlMillis;
+
+    // only accessed from the auditor thread
+    private ReplicasCheckStateStore stateStore;
+    private long numLedgersDueInLastCheck = 0;
 
+    private final AtomicInteger numLedgersChecked;
+    private final AtomicInteger numLedgersSkipped;
     private final AtomicInteger numLedgersFoundHavingNoReplicaOfAnEntry;
     private final AtomicInteger numLedgersFoundHavingLessThanAQReplicasOfAnEntry;
     private final AtomicInteger numLedgersFoundHavingLessThanWQReplicasOfAnEntry;
@@ -75,6 +97,10 @@ public class AuditorReplicasCheckTask extends AuditorTask {
         super(conf, auditorStats, admin, ledgerManager,
                 ledgerUnderreplicationManager, shutdownTaskHandler, hasAuditCheckTask);
         this.zkOpTimeoutMs = conf.getZkTimeout() * 2;
+        this.incremental = conf.isAuditorReplicasCheckIncrementalEnabled();
+        this.checkTtlMillis = TimeUnit.SECONDS.toMillis(conf.getAuditorReplicasCheckTtl());
+        this.numLedgersChecked = new AtomicInteger(0);
+        this.numLedgersSkipped = new AtomicInteger(0);
         this.numLedgersFoundHavingNoReplicaOfAnEntry = new AtomicInteger(0);
         this.numLedgersFoundHavingLessThanAQReplicasOfAnEntry = new AtomicInteger(0);
         this.numLedgersFoundHavingLessThanWQReplicasOfAnEntry = new AtomicInteger(0);
@@ -160,7 +186,80 @@ public class AuditorReplicasCheckTask extends AuditorTask {
 
     @Override
     public void shutdown() {
+        if (stateStore != null) {
+            try {
+                stateStore.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close the replicas check state store", e);
+            }
+            stateStore = null;
+        }
+    }
+
+    private ReplicasCheckStateStore getStateStore() {
+        if (stateStore == null) {
+            try {
+                stateStore = new ReplicasCheckStateStore(conf.getAuditorReplicasCheckStateDir(), conf);
+            } catch (IOException e) {
+                LOG.error("Failed to open the replicas check state store, checking all the ledgers", e);
+            }
+        }
+        return stateStore;
+    }
 
+    private RateLimiter newRateLimiter() {
+        double maxLedgersPerSecond = conf.getAuditorReplicasCheckMaxLedgersPerSecond();
+        if (maxLedgersPerSecond <= 0) {
+            // spread the ledgers to check evenly over the interval, assuming about as many
+            // ledgers are due as in the last check
+            long interval = conf.getAuditorPeriodicReplicasCheckInterval();
+            if (interval <= 0 || numLedgersDueInLastCheck <= 0) {
+                return null;
+            }
+            maxLedgersPerSecond = Math.max(1.0, (double) numLedgersDueInLastCheck / interval);
+        }
+        LOG.info("Checking at most {} ledgers per second", maxLedgersPerSecond);
+        return RateLimiter.create(maxLedgersPerSecond);
+    }
+
+    private LedgerCheckState getLastCheck(ReplicasCheckStateStore store, long ledgerId) {
+        if (store == null) {
+            return null;
+        }
+        try {
+            return store.get(ledgerId);
+        } catch (IOException e) {
+            LOG.warn("Failed to read the last replicas check of ledger {}", ledgerId, e);
+            return null;
+        }
+    }
+
+    private boolean isCheckValid(LedgerCheckState lastCheck, long nowMillis) {
+        return lastCheck != null && nowMillis - lastCheck.getCheckTimeMillis() < checkTtlMillis;
+    }
+
+    private void updateStateStore(ReplicasCheckStateStore store, Map<Long, Long> checkedLedgers,
+                                  Set<Long> deletedLedgers,
+                                  Map<Long, MissingEntriesInfoOfLedger> ledgersWithMissingEntries,
+                                  Map<Long, MissingEntriesInfoOfLedger> ledgersWithUnavailableBookies) {
+        long nowMillis = System.currentTimeMillis();
+        try {
+            for (Map.Entry<Long, Long> checkedLedger : checkedLedgers.entrySet()) {
+                long ledgerId = checkedLedger.getKey();
+                // ledgers with missing replicas, or not fully checked, are checked again next time
+                if (ledgersWithMissingEntries.containsKey(ledgerId)
+                        || ledgersWithUnavailableBookies.containsKey(ledgerId)) {
+                    store.remove(ledgerId);
+                } else {
+                    store.markChecked(ledgerId, checkedLedger.getValue(), nowMillis);
+                }
+            }
+            for (long ledgerId : deletedLedgers) {
+                store.remove(ledgerId);
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to update the replicas check state", e);
+        }
     }
 
     void replicasCheck() throws ReplicationException.BKAuditException {
@@ -168,9 +267,17 @@ public class AuditorReplicasCheckTask extends AuditorTask {
                 new ConcurrentHashMap<Long, MissingEntriesInfoOfLedger>();
         ConcurrentHashMap<Long, MissingEntriesInfoOfLedger> ledgersWithUnavailableBookies =
                 new ConcurrentHashMap<Long, MissingEntriesInfoOfLedger>();
+        ConcurrentHashMap<Long, Long> checkedLedgers = new ConcurrentHashMap<Long, Long>();
+        Set<Long> deletedLedgers = ConcurrentHashMap.newKeySet();
+        ReplicasCheckStateStore store = incremental ? getStateStore() : null;
+        RateLimiter rateLimiter = store != null ? newRateLimiter() : null;
+        long numLedgersDue = 0;
+        boolean interrupted = false;
+        numLedgersChecked.set(0);
+        numLedgersSkipped.set(0);
         LedgerManager.LedgerRangeIterator ledgerRangeIterator = ledgerManager.getLedgerRanges(zkOpTimeoutMs);
         final Semaphore maxConcurrentSemaphore = new Semaphore(MAX_CONCURRENT_REPLICAS_CHECK_LEDGER_REQUESTS);
-        while (true) {
+        while (!interrupted) {
             LedgerManager.LedgerRange ledgerRange = null;
             try {
                 if (ledgerRangeIterator.hasNext()) {
@@ -185,6 +292,8 @@ public class AuditorReplicasCheckTask extends AuditorTask {
             }
             ledgersWithMissingEntries.clear();
             ledgersWithUnavailableBookies.clear();
+            checkedLedgers.clear();
+            deletedLedgers.clear();
             numLedgersFoundHavingNoReplicaOfAnEntry.set(0);
             numLedgersFoundHavingLessThanAQReplicasOfAnEntry.set(0);
             numLedgersFoundHavingLessThanWQReplicasOfAnEntry.set(0);
@@ -211,6 +320,21 @@ public class AuditorReplicasCheckTask extends AuditorTask {
                         numOfLedgersInRange);
             }
             for (Long ledgerInRange : ledgersInRange) {
+                LedgerCheckState lastCheck = null;
+                if (store != null && !interrupted) {
+                    if (hasBookieCheckTask()) {
+                        LOG.info("Audit bookie task pending, interrupting the replicas check");
+                        interrupted = true;
+                    } else {
+                        lastCheck = getLastCheck(store, ledgerInRange);
+                        if (!isCheckValid(lastCheck, System.currentTimeMillis())) {
+                            numLedgersDue++;
+                            if (rateLimiter != null) {
+                                rateLimiter.acquire();
+                            }
+                        }
+                    }
+                }
                 try {
                     if (!maxConcurrentSemaphore.tryAcquire(REPLICAS_CHECK_TIMEOUT_IN_SECS, TimeUnit.SECONDS)) {
                         LOG.error("Timedout ({} secs) while waiting for acquiring semaphore",
@@ -224,6 +348,11 @@ public class AuditorReplicasCheckTask extends AuditorTask {
                     throw new ReplicationException.BKAuditException(
                             "Got InterruptedException while acquiring semaphore for replicascheck", ie);
                 }
+                if (interrupted) {
+                    // the ledgers left are checked by the next run
+                    mcbForThisLedgerRange.processResult(BKException.Code.OK, null, null);
+                    continue;
+                }
                 if (checkUnderReplicationForReplicasCheck(ledgerInRange, mcbForThisLedgerRange)) {
                     /*
                      * if ledger is marked underreplicated, then ignore this
@@ -232,8 +361,9 @@ public class AuditorReplicasCheckTask extends AuditorTask {
                     continue;
                 }
                 ledgerManager.readLedgerMetadata(ledgerInRange)
-                        .whenComplete(new ReadLedgerMetadataCallbackForReplicasCheck(ledgerInRange,
-                                mcbForThisLedgerRange, ledgersWithMissingEntries, ledgersWithUnavailableBookies));
+                        .whenComplete(new ReadLedgerMetadataCallbackForReplicasCheck(ledgerInRange, lastCheck,
+                                mcbForThisLedgerRange, ledgersWithMissingEntries, ledgersWithUnavailableBookies,
+                                checkedLedgers, deletedLedgers));
             }
             try {
                 /*
@@ -264,7 +394,25 @@ public class AuditorReplicasCheckTask extends AuditorTask {
                 throw new ReplicationException.BKAuditException("Exception while doing replicas check",
                         BKException.create(resultCodeIntValue));
             }
+            if (store != null) {
+                updateStateStore(store, checkedLedgers, deletedLedgers, ledgersWithMissingEntries,
+                        ledgersWithUnavailableBookies);
+            }
+        }
+        if (store != null) {
+            try {
+                store.sync();
+            } catch (IOException e) {
+                LOG.warn("Failed to sync the replicas check state", e);
+            }
+        }
+        LOG.info("ReplicasCheck checked {} ledgers, skipped {} ledgers checked recently",
+                numLedgersChecked.get(), numLedgersSkipped.get());
+        if (interrupted) {
+            // the next run continues from the ledgers not checked yet
+            return;
         }
+        numLedgersDueInLastCheck = numLedgersDue;
         try {
             ledgerUnderreplicationManager.setReplicasCheckCTime(System.currentTimeMillis());
         } catch (ReplicationException.NonRecoverableReplicationException nre) {
@@ -355,19 +503,28 @@ public class AuditorReplicasCheckTask extends AuditorTask {
     private class ReadLedgerMetadataCallbackForReplicasCheck
             implements BiConsumer<Versioned<LedgerMetadata>, Throwable> {
         private final long ledgerInRange;
+        private final LedgerCheckState lastCheck;
         private final MultiCallback mcbForThisLedgerRange;
         private final ConcurrentHashMap<Long, MissingEntriesInfoOfLedger> ledgersWithMissingEntries;
         private final ConcurrentHashMap<Long, MissingEntriesInfoOfLedger> ledgersWithUnavailableBookies;
+        private final ConcurrentHashMap<Long, Long> checkedLedgers;
+        private final Set<Long> deletedLedgers;
 
         ReadLedgerMetadataCallbackForReplicasCheck(
                 long ledgerInRange,
+                LedgerCheckState lastCheck,
                 MultiCallback mcbForThisLedgerRange,
                 ConcurrentHashMap<Long, MissingEntriesInfoOfLedger> ledgersWithMissingEntries,
-                ConcurrentHashMap<Long, MissingEntriesInfoOfLedger> ledgersWithUnavailableBookies) {
+                ConcurrentHashMap<Long, MissingEntriesInfoOfLedger> ledgersWithUnavailableBookies,
+                ConcurrentHashMap<Long, Long> checkedLedgers,
+                Set<Long> deletedLedgers) {
             this.ledgerInRange = ledgerInRange;
+            this.lastCheck = lastCheck;
             this.mcbForThisLedgerRange = mcbForThisLedgerRange;
             this.ledgersWithMissingEntries = ledgersWithMissingEntries;
             this.ledgersWithUnavailableBookies = ledgersWithUnavailableBookies;
+            this.checkedLedgers = checkedLedgers;
+            this.deletedLedgers = deletedLedgers;
         }
 
         @Override
@@ -379,6 +536,9 @@ public class AuditorReplicasCheckTask extends AuditorTask {
                         LOG.debug("Ignoring replicas check of already deleted ledger {}",
                                 ledgerInRange);
                     }
+                    if (lastCheck != null) {
+                        deletedLedgers.add(ledgerInRange);
+                    }
                     mcbForThisLedgerRange.processResult(BKException.Code.OK, null, null);
                     return;
                 } else {
@@ -409,6 +569,25 @@ public class AuditorReplicasCheckTask extends AuditorTask {
                 return;
             }
 
+            Version version = metadataVer.getVersion();
+            if (version instanceof LongVersion) {
+                long metadataVersion = ((LongVersion) version).getLongVersion();
+                if (isCheckValid(lastCheck, System.currentTimeMillis())
+                        && lastCheck.getMetadataVersion() == metadataVersion) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Ledger: {} didn't change since its last replicas check, skipping it",
+                                ledgerInRange);
+                    }
+                    numLedgersSkipped.incrementAndGet();
+                    auditorStats.getNumLedgersReplicasCheckSkipped().inc();
+                    mcbForThisLedgerRange.processResult(BKException.Code.OK, null, null);
+                    return;
+                }
+                checkedLedgers.put(ledgerInRange, metadataVersion);
+            }
+            numLedgersChecked.incrementAndGet();
+            auditorStats.getNumLedgersReplicasChecked().inc();
+
             int writeQuorumSize = metadata.getWriteQuorumSize();
             int ackQuorumSize = metadata.getAckQuorumSize();
             int ensembleSize = metadata.getEnsembleSize();
@@ -30,6 +30,8 @@ import static org.apache.bookkeeper.replication.ReplicationStats.NUM_LEDGERS_HAV
 import static org.apache.bookkeeper.replication.ReplicationStats.NUM_LEDGERS_HAVING_LESS_THAN_WQ_REPLICAS_OF_AN_ENTRY;
 import static org.apache.bookkeeper.replication.ReplicationStats.NUM_LEDGERS_HAVING_NO_REPLICA_OF_AN_ENTRY;
 import static org.apache.bookkeeper.replication.ReplicationStats.NUM_LEDGERS_NOT_ADHERING_TO_PLACEMENT_POLICY;
+import static org.apache.bookkeeper.replication.ReplicationStats.NUM_LEDGERS_REPLICAS_CHECKED;
+import static org.apache.bookkeeper.replication.ReplicationStats.NUM_LEDGERS_REPLICAS_CHECK_SKIPPED;
 import static org.apache.bookkeeper.replication.ReplicationStats.NUM_LEDGERS_SOFTLY_ADHERING_TO_PLACEMENT_POLICY;
 import static org.apache.bookkeeper.replication.ReplicationStats.NUM_REPLICATED_LEDGERS;
 import static org.apache.bookkeeper.replication.ReplicationStats.NUM_SKIPPING_CHECK_TASK_TIMES;
@@ -177,6 +179,16 @@ public class AuditorStats {
             help = "the times of auditor check task skipped"
     )
     private final Counter numSkippingCheckTaskTimes;
+    @StatsDoc(
+            name = NUM_LEDGERS_REPLICAS_CHECKED,
+            help = "the number of ledgers whose replicas were checked by the replicas check"
+    )
+    private final Counter numLedgersReplicasChecked;
+    @StatsDoc(
+            name = NUM_LEDGERS_REPLICAS_CHECK_SKIPPED,
+            help = "the number of ledgers skipped by the incremental replicas check, as their last check is still valid"
+    )
+    private final Counter numLedgersReplicasCheckSkipped;
 
     public AuditorStats(StatsLogger statsLogger) {
         this.statsLogger = statsLogger;
@@ -205,6 +217,8 @@ public class AuditorStats {
                 .getCounter(ReplicationStats.NUM_DELAYED_BOOKIE_AUDITS_DELAYES_CANCELLED);
         numReplicatedLedgers = this.statsLogger.getCounter(NUM_REPLICATED_LEDGERS);
         numSkippingCheckTaskTimes = this.statsLogger.getCounter(NUM_SKIPPING_CHECK_TASK_TIMES);
+        numLedgersReplicasChecked = this.statsLogger.getCounter(NUM_LEDGERS_REPLICAS_CHECKED);
+        numLedgersReplicasCheckSkipped = this.statsLogger.getCounter(NUM_LEDGERS_REPLICAS_CHECK_SKIPPED);
         numLedgersNotAdheringToPlacementPolicy = new Gauge<Integer>() {
             @Override
             public Integer getDefaultValue() {
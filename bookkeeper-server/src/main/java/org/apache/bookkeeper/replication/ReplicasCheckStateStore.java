@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.replication;
+
+import com.google.common.primitives.Longs;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageFactory.DbConfigType;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageRocksDB;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local store of the last successful replicas check of each ledger, used by the incremental
+ * replicas check of the Auditor.
+ *
+ * <p>For each ledger, the store keeps the version of the ledger metadata which was checked and
+ * the time of the check. A ledger doesn't need to be checked again as long as its metadata
+ * didn't change and the check isn't older than the configured TTL. The store is local to the
+ * auditor, so a newly elected auditor starts with an empty store and checks all the ledgers.
+ */
+class ReplicasCheckStateStore implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(ReplicasCheckStateStore.class);
+
+    private static final String SUB_PATH = "replicas-check-state";
+
+    private final KeyValueStorage db;
+
+    ReplicasCheckStateStore(String basePath, ServerConfiguration conf) throws IOException {
+        File dir = new File(basePath);
+        if (!dir.mkdirs() && !dir.exists()) {
+            throw new IOException("Unable to create directory " + dir);
+        }
+        LOG.info("Loading the replicas check state from {}/{}", basePath, SUB_PATH);
+        this.db = new KeyValueStorageRocksDB(basePath, SUB_PATH, DbConfigType.Default, conf);
+    }
+
+    /**
+     * @return the last check of the ledger, or null if the ledger was never checked.
+     */
+    LedgerCheckState get(long ledgerId) throws IOException {
+        byte[] value = db.get(Longs.toByteArray(ledgerId));
+        if (value == null) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(value);
+        return new LedgerCheckState(buffer.getLong(), buffer.getLong());
+    }
+
+    void markChecked(long ledgerId, long metadataVersion, long checkTimeMillis) throws IOException {
+        byte[] value = ByteBuffer.allocate(2 * Long.BYTES)
+                .putLong(metadataVersion)
+                .putLong(checkTimeMillis)
+                .array();
+        db.put(Longs.toByteArray(ledgerId), value);
+    }
+
+    void remove(long ledgerId) throws IOException {
+        db.delete(Longs.toByteArray(ledgerId));
+    }
+
+    void sync() throws IOException {
+        db.sync();
+    }
+
+    @Override
+    public void close() throws IOException {
+        db.close();
+    }
+
+    /**
+     * The last successful replicas check of a ledger.
+     */
+    static class LedgerCheckState {
+        private final long metadataVersion;
+        private final long checkTimeMillis;
+
+        LedgerCheckState(long metadataVersion, long checkTimeMillis) {
+            this.metadataVersion = metadataVersion;
+            this.checkTimeMillis = checkTimeMillis;
+        }
+
+        long getMetadataVersion() {
+            return metadataVersion;
+        }
+
+        long getCheckTimeMillis() {
+            return checkTimeMillis;
+        }
+    }
+}
@@ -51,6 +51,8 @@ public interface ReplicationStats {
             "NUM_LEDGERS_HAVING_LESS_THAN_AQ_REPLICAS_OF_AN_ENTRY";
     String NUM_LEDGERS_HAVING_LESS_THAN_WQ_REPLICAS_OF_AN_ENTRY =
             "NUM_LEDGERS_HAVING_LESS_THAN_WQ_REPLICAS_OF_AN_ENTRY";
+    String NUM_LEDGERS_REPLICAS_CHECKED = "NUM_LEDGERS_REPLICAS_CHECKED";
+    String NUM_LEDGERS_REPLICAS_CHECK_SKIPPED = "NUM_LEDGERS_REPLICAS_CHECK_SKIPPED";
 
     String REPLICATION_WORKER_SCOPE = "replication_worker";
     String REREPLICATE_OP = "rereplicate";
@@ -61,11 +63,14 @@ public interface ReplicationStats {
     String NUM_BYTES_WRITTEN = "NUM_BYTES_WRITTEN";
     String READ_DATA_LATENCY = "READ_DATA_LATENCY";
     String WRITE_DATA_LATENCY = "WRITE_DATA_LATENCY";
+    String NUM_FRAGMENT_COPY_FALLBACKS = "NUM_FRAGMENT_COPY_FALLBACKS";
     String REPLICATE_EXCEPTION = "exceptions";
     String NUM_DEFER_LEDGER_LOCK_RELEASE_OF_FAILED_LEDGER = "NUM_DEFER_LEDGER_LOCK_RELEASE_OF_FAILED_LEDGER";
     String NUM_ENTRIES_UNABLE_TO_READ_FOR_REPLICATION = "NUM_ENTRIES_UNABLE_TO_READ_FOR_REPLICATION";
     String NUM_UNDER_REPLICATED_LEDGERS_GUAGE = "NUM_UNDER_REPLICATED_LEDGERS_GUAGE";
     String NUM_REPLICATED_LEDGERS = "NUM_REPLICATED_LEDGERS";
     String NUM_NOT_ADHERING_PLACEMENT_LEDGERS_REPLICATED = "NUM_NOT_ADHERING_PLACEMENT_LEDGERS_REPLICATED";
+    String NUM_LEDGERS_BEING_REPLICATED = "NUM_LEDGERS_BEING_REPLICATED";
+    String TARGET_BOOKIE_WAIT_TIME = "TARGET_BOOKIE_WAIT_TIME";
     String NUM_SKIPPING_CHECK_TASK_TIMES = "NUM_SKIPPING_CHECK_TASK_TIMES";
 }
@@ -22,21 +22,23 @@ package org.apache.bookkeeper.replication;
 import static org.apache.bookkeeper.replication.ReplicationStats.NUM_DEFER_LEDGER_LOCK_RELEASE_OF_FAILED_LEDGER;
 import static org.apache.bookkeeper.replication.ReplicationStats.NUM_ENTRIES_UNABLE_TO_READ_FOR_REPLICATION;
 import static org.apache.bookkeeper.replication.ReplicationStats.NUM_FULL_OR_PARTIAL_LEDGERS_REPLICATED;
+import static org.apache.bookkeeper.replication.ReplicationStats.NUM_LEDGERS_BEING_REPLICATED;
 import static org.apache.bookkeeper.replication.ReplicationStats.NUM_NOT_ADHERING_PLACEMENT_LEDGERS_REPLICATED;
 import static org.apache.bookkeeper.replication.ReplicationStats.REPLICATE_EXCEPTION;
 import static org.apache.bookkeeper.replication.ReplicationStats.REPLICATION_WORKER_SCOPE;
 import static org.apache.bookkeeper.replication.ReplicationStats.REREPLICATE_OP;
+import static org.apache.bookkeeper.replication.ReplicationStats.TARGET_BOOKIE_WAIT_TIME;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Stopwatch;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -46,8 +48,12 @@ import java.util.SortedMap;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
@@ -72,10 +78,12 @@ import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
 import org.apache.bookkeeper.replication.ReplicationException.CompatibilityException;
 import org.apache.bookkeeper.replication.ReplicationException.UnavailableException;
 import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.Gauge;
 import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.stats.annotations.StatsDoc;
+import org.apache.bookkeeper.util.MathUtils;
 import org.apache.bookkeeper.versioning.Versioned;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -83,6 +91,9 @@ import org.slf4j.LoggerFactory;
 /**
  * ReplicationWorker will take the fragments one by one from
  * ZKLedgerUnderreplicationManager and replicates to it.
+ *
+ * <p>With {@link ServerConfiguration#getRwMaxConcurrentLedgers()} above 1, the worker takes new
+ * ledgers while others are still being replicated, and replicates them on a pool of threads.
  */
 @StatsDoc(
     name = REPLICATION_WORKER_SCOPE,
@@ -109,6 +120,10 @@ public class ReplicationWorker implements Runnable {
     private final long baseBackoffForLockReleaseOfFailedLedger;
     private final BiConsumer<Long, Long> onReadEntryFailureCallback;
     private final LedgerManager ledgerManager;
+    private final ExecutorService replicationExecutor; // null if replicating a ledger at a time
+    private final Semaphore concurrentLedgers;
+    private final TargetBookieLimiter targetBookieLimiter; // null if not limited
+    private final AtomicInteger numLedgersBeingReplicated = new AtomicInteger(0);
 
     // Expose Stats
     private final StatsLogger statsLogger;
@@ -142,6 +157,16 @@ public class ReplicationWorker implements Runnable {
             help = "the number of not adhering placement policy ledgers re-replicated"
     )
     private final Counter numNotAdheringPlacementLedgersReplicated;
+    @StatsDoc(
+            name = NUM_LEDGERS_BEING_REPLICATED,
+            help = "the number of ledgers being re-replicated"
+    )
+    private final Gauge<Integer> numLedgersBeingReplicatedGauge;
+    @StatsDoc(
+            name = TARGET_BOOKIE_WAIT_TIME,
+            help = "time a fragment replication waited for its target bookies to be below their replication limit"
+    )
+    private final OpStatsLogger targetBookieWaitTime;
     private final Map<String, Counter> exceptionCounters;
     final LoadingCache<Long, AtomicInteger> replicationFailedLedgers;
     final LoadingCache<Long, ConcurrentSkipListSet<Long>> unableToReadEntriesForReplication;
@@ -197,6 +222,16 @@ public class ReplicationWorker implements Runnable {
         this.baseBackoffForLockReleaseOfFailedLedger = this.lockReleaseOfFailedLedgerGracePeriod
                 / (long) (Math.pow(2, NUM_OF_EXPONENTIAL_BACKOFF_RETRIALS));
         this.rwRereplicateBackoffMs = conf.getRwRereplicateBackoffMs();
+        if (conf.getRwMaxConcurrentLedgers() > 1) {
+            this.replicationExecutor = Executors.newFixedThreadPool(conf.getRwMaxConcurrentLedgers(),
+                    new ThreadFactoryBuilder().setNameFormat("ReplicationWorker-%d").build());
+            this.concurrentLedgers = new Semaphore(conf.getRwMaxConcurrentLedgers());
+        } else {
+            this.replicationExecutor = null;
+            this.concurrentLedgers = null;
+        }
+        this.targetBookieLimiter = conf.getRwMaxConcurrentReplicationsPerTargetBookie() > 0
+                ? new TargetBookieLimiter(conf.getRwMaxConcurrentReplicationsPerTargetBookie()) : null;
         this.pendingReplicationTimer = new Timer("PendingReplicationTimer");
         this.replicationFailedLedgers = CacheBuilder.newBuilder().maximumSize(REPLICATED_FAILED_LEDGERS_MAXSIZE)
                 .build(new CacheLoader<Long, AtomicInteger>() {
@@ -225,7 +260,20 @@ public class ReplicationWorker implements Runnable {
                 .getCounter(NUM_ENTRIES_UNABLE_TO_READ_FOR_REPLICATION);
         this.numNotAdheringPlacementLedgersReplicated = this.statsLogger
                 .getCounter(NUM_NOT_ADHERING_PLACEMENT_LEDGERS_REPLICATED);
-        this.exceptionCounters = new HashMap<String, Counter>();
+        this.targetBookieWaitTime = this.statsLogger.getOpStatsLogger(TARGET_BOOKIE_WAIT_TIME);
+        this.numLedgersBeingReplicatedGauge = new Gauge<Integer>() {
+            @Override
+            public Integer getDefaultValue() {
+                return 0;
+            }
+
+            @Override
+            public Integer getSample() {
+                return numLedgersBeingReplicated.get();
+            }
+        };
+        this.statsLogger.registerGauge(NUM_LEDGERS_BEING_REPLICATED, numLedgersBeingReplicatedGauge);
+        this.exceptionCounters = new ConcurrentHashMap<String, Counter>();
         this.onReadEntryFailureCallback = (ledgerid, entryid) -> {
             numEntriesUnableToReadForReplication.inc();
             unableToReadEntriesForReplication.getUnchecked(ledgerid).add(entryid);
@@ -244,7 +292,9 @@ public class ReplicationWorker implements Runnable {
         workerRunning = true;
         while (workerRunning) {
             try {
-                if (!rereplicate()) {
+                if (replicationExecutor != null) {
+                    rereplicateConcurrently();
+                } else if (!rereplicate()) {
                     LOG.warn("failed while replicating fragments");
                     waitBackOffTime(rwRereplicateBackoffMs);
                 }
@@ -292,12 +342,52 @@ public class ReplicationWorker implements Runnable {
             UnavailableException {
         long ledgerIdToReplicate = underreplicationManager
                 .getLedgerToRereplicate();
+        return rereplicateAndRecordStats(ledgerIdToReplicate);
+    }
+
+    /**
+     * Takes an under replicated ledger once there is room for one more concurrent replication,
+     * and replicates it on the replication executor.
+     */
+    private void rereplicateConcurrently() throws InterruptedException, UnavailableException {
+        concurrentLedgers.acquire();
+        boolean submitted = false;
+        try {
+            long ledgerIdToReplicate = underreplicationManager.getLedgerToRereplicate();
+            replicationExecutor.execute(() -> {
+                try {
+                    if (!rereplicateAndRecordStats(ledgerIdToReplicate)) {
+                        LOG.warn("failed while replicating fragments of ledger {}", ledgerIdToReplicate);
+                        waitBackOffTime(rwRereplicateBackoffMs);
+                    }
+                } catch (InterruptedException e) {
+                    LOG.info("Interrupted while replicating fragments of ledger {}", ledgerIdToReplicate);
+                    Thread.currentThread().interrupt();
+                } catch (BKException | UnavailableException e) {
+                    LOG.error("{} while replicating fragments of ledger {}",
+                            e.getClass().getSimpleName(), ledgerIdToReplicate, e);
+                    waitBackOffTime(rwRereplicateBackoffMs);
+                } finally {
+                    concurrentLedgers.release();
+                }
+            });
+            submitted = true;
+        } finally {
+            if (!submitted) {
+                concurrentLedgers.release();
+            }
+        }
+    }
 
+    private boolean rereplicateAndRecordStats(long ledgerIdToReplicate) throws InterruptedException, BKException,
+            UnavailableException {
         Stopwatch stopwatch = Stopwatch.createStarted();
         boolean success = false;
+        numLedgersBeingReplicated.incrementAndGet();
         try {
             success = rereplicate(ledgerIdToReplicate);
         } finally {
+            numLedgersBeingReplicated.decrementAndGet();
             long latencyMillis = stopwatch.stop().elapsed(TimeUnit.MILLISECONDS);
             if (success) {
                 rereplicateOpStats.registerSuccessfulEvent(latencyMillis, TimeUnit.MILLISECONDS);
@@ -468,7 +558,7 @@ public class ReplicationWorker implements Runnable {
                     continue;
                 }
                 try {
-                    admin.replicateLedgerFragment(lh, ledgerFragment, onReadEntryFailureCallback);
+                    replicateLedgerFragment(lh, ledgerFragment);
                     numFragsReplicated++;
                     if (ledgerFragment.getReplicateType() == LedgerFragment
                             .ReplicateType.DATA_NOT_ADHERING_PLACEMENT) {
@@ -541,6 +631,24 @@ public class ReplicationWorker implements Runnable {
     }
 
 
+    private void replicateLedgerFragment(LedgerHandle lh, LedgerFragment ledgerFragment)
+            throws InterruptedException, BKException {
+        if (targetBookieLimiter == null) {
+            admin.replicateLedgerFragment(lh, ledgerFragment, onReadEntryFailureCallback);
+            return;
+        }
+        Map<Integer, BookieId> targetBookieAddresses = admin.getReplacementBookiesOfFragment(lh, ledgerFragment);
+        Set<BookieId> targetBookies = new HashSet<>(targetBookieAddresses.values());
+        long startTimeNanos = MathUtils.nowInNano();
+        targetBookieLimiter.acquire(targetBookies);
+        targetBookieWaitTime.registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+        try {
+            admin.replicateLedgerFragment(lh, ledgerFragment, targetBookieAddresses, onReadEntryFailureCallback);
+        } finally {
+            targetBookieLimiter.release(targetBookies);
+        }
+    }
+
     /**
      * When checking the fragments of a ledger, there is a corner case
      * where if the last segment/ensemble is open, but nothing has been written to
@@ -754,6 +862,12 @@ public class ReplicationWorker implements Runnable {
         try {
             this.workerThread.interrupt();
             this.workerThread.join();
+            if (replicationExecutor != null) {
+                replicationExecutor.shutdownNow();
+                if (!replicationExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    LOG.warn("The replication executor did not shutdown cleanly");
+                }
+            }
         } catch (InterruptedException e) {
             LOG.error("Interrupted during shutting down replication worker : ",
                     e);
@@ -810,12 +924,7 @@ public class ReplicationWorker implements Runnable {
     }
 
     private Counter getExceptionCounter(String name) {
-        Counter counter = this.exceptionCounters.get(name);
-        if (counter == null) {
-            counter = this.exceptionLogger.getCounter(name);
-            this.exceptionCounters.put(name, counter);
-        }
-        return counter;
+        return this.exceptionCounters.computeIfAbsent(name, exceptionLogger::getCounter);
     }
 
 }
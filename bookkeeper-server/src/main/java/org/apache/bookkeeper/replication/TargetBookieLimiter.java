@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.replication;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.bookkeeper.net.BookieId;
+
+/**
+ * Limits the number of fragments replicated concurrently to the same bookie.
+ *
+ * <p>A replication takes a slot on each of its target bookies at once, or waits until all of
+ * them have a free slot, so replications to several bookies never hold some slots while waiting
+ * for the others.
+ */
+class TargetBookieLimiter {
+    private final int maxReplicationsPerBookie;
+    private final Map<BookieId, Integer> replicationsPerBookie = new HashMap<>();
+
+    TargetBookieLimiter(int maxReplicationsPerBookie) {
+        this.maxReplicationsPerBookie = maxReplicationsPerBookie;
+    }
+
+    /**
+     * Wait until all the bookies can take one more replication, and take a slot on each of them.
+     */
+    synchronized void acquire(Collection<BookieId> bookies) throws InterruptedException {
+        while (!available(bookies)) {
+            wait();
+        }
+        for (BookieId bookie : bookies) {
+            replicationsPerBookie.merge(bookie, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Free the slots taken by {@link #acquire(Collection)}.
+     */
+    synchronized void release(Collection<BookieId> bookies) {
+        for (BookieId bookie : bookies) {
+            replicationsPerBookie.computeIfPresent(bookie, (b, count) -> count > 1 ? count - 1 : null);
+        }
+        notifyAll();
+    }
+
+    private boolean available(Collection<BookieId> bookies) {
+        for (BookieId bookie : bookies) {
+            if (replicationsPerBookie.getOrDefault(bookie, 0) >= maxReplicationsPerBookie) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
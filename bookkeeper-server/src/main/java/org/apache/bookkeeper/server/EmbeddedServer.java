@@ -362,6 +362,7 @@ public class EmbeddedServer {
             // bookie takes ownership of storage, so shuts it down
             LedgerStorage storage = null;
             DataIntegrityCheck integCheck = null;
+            EntryCopier fragmentCopier = null;
 
             if (conf.getServerConf().isDataIntegrityCheckingEnabled()) {
                 StatsLogger clientStats = bookieStats.scope(CLIENT_SCOPE);
@@ -388,6 +389,9 @@ public class EmbeddedServer {
                         ((org.apache.bookkeeper.client.BookKeeper) bkc).getClientCtx().getBookieClient(),
                         storage, Ticker.systemTicker());
 
+                if (conf.getServerConf().isFragmentCopyEnabled()) {
+                    fragmentCopier = copier;
+                }
                 integCheck = new DataIntegrityCheckImpl(bookieId,
                         ledgerManager, storage, copier,
                         new BookKeeperAdmin(bkc, clientStats, clientConfiguration),
@@ -409,6 +413,16 @@ public class EmbeddedServer {
                 // storage should be created after legacy validation or it will fail (it would find ledger dirs)
                 storage = BookieResources.createLedgerStorage(conf.getServerConf(), ledgerManager,
                         ledgerDirsManager, indexDirsManager, bookieStats, allocator);
+
+                if (conf.getServerConf().isFragmentCopyEnabled()) {
+                    ClientConfiguration clientConfiguration = new ClientConfiguration(conf.getServerConf());
+                    clientConfiguration.setClientRole(ClientConfiguration.CLIENT_ROLE_SYSTEM);
+                    BookKeeper bkc = BookKeeper.forConfig(clientConfiguration)
+                            .statsLogger(bookieStats.scope(CLIENT_SCOPE)).build();
+                    serverBuilder.addComponent(new AutoCloseableLifecycleComponent("bkc", bkc));
+                    fragmentCopier = new EntryCopierImpl(BookieImpl.getBookieId(conf.getServerConf()),
+                            bkc.getClientCtx().getBookieClient(), storage, Ticker.systemTicker());
+                }
             }
 
             Bookie bookie;
@@ -433,6 +447,10 @@ public class EmbeddedServer {
             serverBuilder.addComponent(bookieService);
             log.info("Load lifecycle component : {}", BookieService.class.getName());
 
+            if (fragmentCopier != null) {
+                bookieService.getServer().setFragmentCopier(fragmentCopier, ledgerManager);
+            }
+
             if (conf.getServerConf().isLocalScrubEnabled()) {
                 serverBuilder.addComponent(
                         new ScrubberService(
@@ -21,6 +21,8 @@ package org.apache.bookkeeper.server.http.service;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.List;
+import java.util.Map;
+import org.apache.bookkeeper.bookie.CompactionCandidate;
 import org.apache.bookkeeper.bookie.GarbageCollectionStatus;
 import org.apache.bookkeeper.common.util.JsonUtil;
 import org.apache.bookkeeper.conf.ServerConfiguration;
@@ -45,6 +47,20 @@ import org.slf4j.LoggerFactory;
  *           "majorCompactionCounter" : 1,
  *           "minorCompactionCounter" : 0
  *         } ]
+ *
+ * <p>With the {@code compactionCandidates=true} parameter, report the entry logs that a compaction
+ * would pick, in the order they would be compacted, without compacting anything. The optional
+ * {@code threshold} parameter, between 0 and 1, defaults to the major compaction threshold. The
+ * output would be like:
+ *        [ {
+ *           "entryLogId" : 12,
+ *           "totalSize" : 1073741824,
+ *           "remainingSize" : 107374182,
+ *           "usage" : 0.1,
+ *           "age" : 40,
+ *           "decayRate" : 0.0,
+ *           "score" : 360.0
+ *         } ]
  */
 public class GCDetailsService implements HttpEndpointService {
 
@@ -65,6 +81,29 @@ public class GCDetailsService implements HttpEndpointService {
         HttpServiceResponse response = new HttpServiceResponse();
 
         if (HttpServer.Method.GET == request.getMethod()) {
+            Map<String, String> params = request.getParams();
+            if (params != null && Boolean.parseBoolean(params.get("compactionCandidates"))) {
+                double threshold = conf.getMajorCompactionThreshold();
+                if (params.containsKey("threshold")) {
+                    try {
+                        threshold = Double.parseDouble(params.get("threshold"));
+                    } catch (NumberFormatException e) {
+                        threshold = Double.NaN;
+                    }
+                    // also rejects NaN
+                    if (!(threshold >= 0.0 && threshold <= 1.0)) {
+                        return new HttpServiceResponse("Invalid threshold " + params.get("threshold")
+                            + ", it must be a number between 0 and 1", HttpServer.StatusCode.BAD_REQUEST);
+                    }
+                }
+                List<CompactionCandidate> candidates = bookieServer.getBookie()
+                    .getLedgerStorage().getCompactionCandidates(threshold);
+
+                response.setBody(JsonUtil.toJson(candidates));
+                response.setCode(HttpServer.StatusCode.OK);
+                return response;
+            }
+
             List<GarbageCollectionStatus> details = bookieServer.getBookie()
                 .getLedgerStorage().getGarbageCollectionStatus();
 
@@ -18,6 +18,7 @@
 package org.apache.bookkeeper.util;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -26,6 +27,7 @@ import java.util.List;
 import java.util.Map.Entry;
 import java.util.PrimitiveIterator;
 import java.util.TreeMap;
+import java.util.stream.LongStream;
 import org.apache.commons.lang3.mutable.MutableInt;
 import org.apache.commons.lang3.mutable.MutableLong;
 import org.apache.commons.lang3.mutable.MutableObject;
@@ -42,6 +44,12 @@ import org.apache.commons.lang3.mutable.MutableObject;
  * the reserved space will be 0's. The encoded format will be represented after
  * the first 64 bytes. The ordered collection of SequenceGroups will be appended
  * sequentially to this byte array, with each SequenceGroup taking 24 bytes.
+ *
+ * <p>In the V1 encoding, the second four bytes of the header specify the number of
+ * containers of a {@link CompressedEntryBitmap}, and the containers follow the header. The
+ * SequenceGroups compress regular patterns of entries very well, but not irregular ones, for
+ * which the bitmap is much smaller and faster to query. The V1 encoding is only sent to the
+ * clients supporting it, and only when it is smaller.
  */
 public class AvailabilityOfEntriesOfLedger {
     public static final long INVALID_ENTRYID = -1;
@@ -167,14 +175,17 @@ public class AvailabilityOfEntriesOfLedger {
 
     public static final int HEADER_SIZE = 64;
     public static final int V0 = 0;
-    // current version of AvailabilityOfEntriesOfLedger header is V0
-    public static final int CURRENT_HEADER_VERSION = V0;
+    public static final int V1 = 1;
+    // current version of AvailabilityOfEntriesOfLedger header is V1
+    public static final int CURRENT_HEADER_VERSION = V1;
     private final TreeMap<Long, SequenceGroup> sortedSequenceGroups = new TreeMap<Long, SequenceGroup>();
     private MutableObject<SequenceGroup> curSequenceGroup = new MutableObject<SequenceGroup>(null);
     private MutableLong curSequenceStartEntryId = new MutableLong(INVALID_ENTRYID);
     private MutableInt curSequenceSize = new MutableInt(0);
     private boolean availabilityOfEntriesOfLedgerClosed = false;
     private long totalNumOfAvailableEntries = 0;
+    // the entries, when read from the V1 encoding, in place of the sequence groups
+    private CompressedEntryBitmap entryBitmap = null;
 
     public AvailabilityOfEntriesOfLedger(PrimitiveIterator.OfLong entriesOfLedgerItr) {
         while (entriesOfLedgerItr.hasNext()) {
@@ -200,6 +211,12 @@ public class AvailabilityOfEntriesOfLedger {
         if (headerVersion > CURRENT_HEADER_VERSION) {
             throw new IllegalArgumentException("Unsupported Header Version: " + headerVersion);
         }
+        if (headerVersion == V1) {
+            entryBitmap = CompressedEntryBitmap.deserialize(Unpooled.wrappedBuffer(serializeStateOfEntriesOfLedger,
+                    HEADER_SIZE, serializeStateOfEntriesOfLedger.length - HEADER_SIZE), headerByteBuf.getInt());
+            setAvailabilityOfEntriesOfLedgerClosed();
+            return;
+        }
         int numOfSequenceGroups = headerByteBuf.getInt();
         SequenceGroup newSequenceGroup;
         for (int i = 0; i < numOfSequenceGroups; i++) {
@@ -223,6 +240,12 @@ public class AvailabilityOfEntriesOfLedger {
         if (headerVersion > CURRENT_HEADER_VERSION) {
             throw new IllegalArgumentException("Unsupported Header Version: " + headerVersion);
         }
+        if (headerVersion == V1) {
+            entryBitmap = CompressedEntryBitmap.deserialize(byteBuf.duplicate().readerIndex(readerIndex + HEADER_SIZE),
+                    headerByteBuf.getInt());
+            setAvailabilityOfEntriesOfLedgerClosed();
+            return;
+        }
         int numOfSequenceGroups = headerByteBuf.getInt();
         SequenceGroup newSequenceGroup;
         for (int i = 0; i < numOfSequenceGroups; i++) {
@@ -345,20 +368,29 @@ public class AvailabilityOfEntriesOfLedger {
         for (Entry<Long, SequenceGroup> seqGroupEntry : sortedSequenceGroups.entrySet()) {
             totalNumOfAvailableEntries += seqGroupEntry.getValue().getNumOfEntriesInSequenceGroup();
         }
+        if (entryBitmap != null) {
+            totalNumOfAvailableEntries += entryBitmap.getCardinality();
+        }
     }
 
+    /**
+     * Serialize in the encoding this was read from, V0 unless read from the V1 encoding.
+     */
     public byte[] serializeStateOfEntriesOfLedger() {
         if (!isAvailabilityOfEntriesOfLedgerClosed()) {
             throw new IllegalStateException("AvailabilityOfEntriesOfLedger is not yet closed,"
                     + "it is illegal to call serializeStateOfEntriesOfLedger");
         }
+        if (entryBitmap != null) {
+            return serializeEntryBitmap(entryBitmap);
+        }
         byte[] header = new byte[HEADER_SIZE];
         ByteBuffer headerByteBuf = ByteBuffer.wrap(header);
         byte[] serializedSequenceGroupByteArray = new byte[SequenceGroup.SEQUENCEGROUP_BYTES];
         byte[] serializedStateByteArray = new byte[HEADER_SIZE
                 + (sortedSequenceGroups.size() * SequenceGroup.SEQUENCEGROUP_BYTES)];
         final int numOfSequenceGroups = sortedSequenceGroups.size();
-        headerByteBuf.putInt(CURRENT_HEADER_VERSION);
+        headerByteBuf.putInt(V0);
         headerByteBuf.putInt(numOfSequenceGroups);
         System.arraycopy(header, 0, serializedStateByteArray, 0, HEADER_SIZE);
         int seqNum = 0;
@@ -372,11 +404,67 @@ public class AvailabilityOfEntriesOfLedger {
         return serializedStateByteArray;
     }
 
+    /**
+     * Serialize in the smallest encoding whose version is at most <i>maxHeaderVersion</i>.
+     *
+     * @param maxHeaderVersion the highest header version the reader supports
+     */
+    public byte[] serializeStateOfEntriesOfLedger(int maxHeaderVersion) {
+        if (!isAvailabilityOfEntriesOfLedgerClosed()) {
+            throw new IllegalStateException("AvailabilityOfEntriesOfLedger is not yet closed,"
+                    + "it is illegal to call serializeStateOfEntriesOfLedger");
+        }
+        // read from the V1 encoding, the sequence groups are rebuilt from the bitmap
+        AvailabilityOfEntriesOfLedger sequenceGroups = entryBitmap != null ? fromEntryBitmap(entryBitmap) : this;
+        if (maxHeaderVersion < V1) {
+            return sequenceGroups.serializeStateOfEntriesOfLedger();
+        }
+        CompressedEntryBitmap bitmap = entryBitmap != null ? entryBitmap : toEntryBitmap();
+        if (bitmap.getSerializedSize()
+                < sequenceGroups.sortedSequenceGroups.size() * SequenceGroup.SEQUENCEGROUP_BYTES) {
+            return serializeEntryBitmap(bitmap);
+        }
+        return sequenceGroups.serializeStateOfEntriesOfLedger();
+    }
+
+    private static AvailabilityOfEntriesOfLedger fromEntryBitmap(CompressedEntryBitmap bitmap) {
+        LongStream.Builder entries = LongStream.builder();
+        bitmap.forEach(entries::add);
+        return new AvailabilityOfEntriesOfLedger(entries.build().iterator());
+    }
+
+    private CompressedEntryBitmap toEntryBitmap() {
+        CompressedEntryBitmap.Builder builder = new CompressedEntryBitmap.Builder();
+        for (SequenceGroup seqGroup : sortedSequenceGroups.values()) {
+            long sequenceStart = seqGroup.getFirstSequenceStart();
+            while (true) {
+                builder.addRange(sequenceStart, sequenceStart + seqGroup.sequenceSize);
+                if (seqGroup.getSequencePeriod() == 0 || sequenceStart >= seqGroup.getLastSequenceStart()) {
+                    break;
+                }
+                sequenceStart += seqGroup.getSequencePeriod();
+            }
+        }
+        return builder.build();
+    }
+
+    private static byte[] serializeEntryBitmap(CompressedEntryBitmap bitmap) {
+        byte[] serializedStateByteArray = new byte[HEADER_SIZE + bitmap.getSerializedSize()];
+        ByteBuffer headerByteBuf = ByteBuffer.wrap(serializedStateByteArray);
+        headerByteBuf.putInt(V1);
+        headerByteBuf.putInt(bitmap.getNumOfContainers());
+        bitmap.serialize(Unpooled.wrappedBuffer(serializedStateByteArray).writerIndex(HEADER_SIZE));
+        return serializedStateByteArray;
+    }
+
     public boolean isEntryAvailable(long entryId) {
         if (!isAvailabilityOfEntriesOfLedgerClosed()) {
             throw new IllegalStateException(
                     "AvailabilityOfEntriesOfLedger is not yet closed, it is illegal to call isEntryAvailable");
         }
+        if (entryBitmap != null) {
+            return entryBitmap.contains(entryId);
+        }
         Entry<Long, SequenceGroup> seqGroup = sortedSequenceGroups.floorEntry(entryId);
         if (seqGroup == null) {
             return false;
@@ -389,6 +477,9 @@ public class AvailabilityOfEntriesOfLedger {
             throw new IllegalStateException(
                     "AvailabilityOfEntriesOfLedger is not yet closed, it is illegal to call getUnavailableEntries");
         }
+        if (entryBitmap != null) {
+            return entryBitmap.getMissingEntries(startEntryId, lastEntryId, availabilityOfEntries);
+        }
         List<Long> unavailableEntries = new ArrayList<Long>();
         SequenceGroup curSeqGroup = null;
         boolean noSeqGroupRemaining = false;
@@ -0,0 +1,541 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.util;
+
+import io.netty.buffer.ByteBuf;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongConsumer;
+
+/**
+ * A compressed bitmap of entry ids, organized like a Roaring bitmap.
+ *
+ * <p>The entry ids are split in chunks of 2^16 entries, keyed by the high bits of the entry ids.
+ * Each chunk is stored in the smallest of three containers: a sorted array of the low bits of
+ * its entries, a plain bitmap, or a sorted list of runs of consecutive entries. Contiguous and
+ * striped ledgers end up in run or bitmap containers, sparse ledgers in array containers.
+ *
+ * <p>Each container is serialized as its chunk key (long), its type (byte), its number of
+ * entries (int) and its content: the low bits of the entries (short each) for an array
+ * container, the 1024 words (long each) of a bitmap container, or the number of runs (int)
+ * followed by the start and length minus one (short each) of the runs of a run container.
+ */
+class CompressedEntryBitmap {
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int BITMAP_WORDS = CHUNK_SIZE / Long.SIZE;
+
+    private static final byte ARRAY_CONTAINER = 0;
+    private static final byte BITMAP_CONTAINER = 1;
+    private static final byte RUN_CONTAINER = 2;
+    private static final int CONTAINER_HEADER_BYTES = Long.BYTES + 1 + Integer.BYTES;
+
+    // sorted chunk keys, and the containers of the chunks
+    private final long[] keys;
+    private final Container[] containers;
+    private final long cardinality;
+
+    private CompressedEntryBitmap(long[] keys, Container[] containers) {
+        this.keys = keys;
+        this.containers = containers;
+        long total = 0;
+        for (Container container : containers) {
+            total += container.cardinality();
+        }
+        this.cardinality = total;
+    }
+
+    /**
+     * Parse a bitmap serialized by {@link #serialize(ByteBuf)}.
+     *
+     * <p>The counts read are checked against the bytes left in <i>buf</i> before anything is
+     * allocated, so a corrupted or truncated bitmap fails with an IllegalArgumentException.
+     */
+    static CompressedEntryBitmap deserialize(ByteBuf buf, int numOfContainers) {
+        checkCount(numOfContainers, Integer.MAX_VALUE, "containers");
+        checkReadable(buf, (long) numOfContainers * CONTAINER_HEADER_BYTES, "containers");
+        long[] keys = new long[numOfContainers];
+        Container[] containers = new Container[numOfContainers];
+        for (int i = 0; i < numOfContainers; i++) {
+            checkReadable(buf, CONTAINER_HEADER_BYTES, "container header");
+            keys[i] = buf.readLong();
+            byte type = buf.readByte();
+            int containerCardinality = buf.readInt();
+            checkCount(containerCardinality, CHUNK_SIZE, "entries in a container");
+            switch (type) {
+            case ARRAY_CONTAINER:
+                checkReadable(buf, (long) containerCardinality * Short.BYTES, "array container");
+                short[] values = new short[containerCardinality];
+                for (int j = 0; j < containerCardinality; j++) {
+                    values[j] = buf.readShort();
+                }
+                containers[i] = new ArrayContainer(values);
+                break;
+            case BITMAP_CONTAINER:
+                checkReadable(buf, (long) BITMAP_WORDS * Long.BYTES, "bitmap container");
+                long[] words = new long[BITMAP_WORDS];
+                for (int j = 0; j < BITMAP_WORDS; j++) {
+                    words[j] = buf.readLong();
+                }
+                containers[i] = new BitmapContainer(words, containerCardinality);
+                break;
+            case RUN_CONTAINER:
+                checkReadable(buf, Integer.BYTES, "run container");
+                int numRuns = buf.readInt();
+                // runs are separated by at least one entry
+                checkCount(numRuns, CHUNK_SIZE / 2, "runs in a container");
+                checkReadable(buf, (long) numRuns * 2 * Short.BYTES, "run container");
+                short[] starts = new short[numRuns];
+                short[] lengths = new short[numRuns];
+                for (int j = 0; j < numRuns; j++) {
+                    starts[j] = buf.readShort();
+                    lengths[j] = buf.readShort();
+                }
+                containers[i] = new RunContainer(starts, lengths, containerCardinality);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown container type: " + type);
+            }
+            if (i > 0 && keys[i] <= keys[i - 1]) {
+                throw new IllegalArgumentException("Containers are not sorted by chunk key");
+            }
+        }
+        return new CompressedEntryBitmap(keys, containers);
+    }
+
+    private static void checkCount(int count, int maxCount, String what) {
+        if (count < 0 || count > maxCount) {
+            throw new IllegalArgumentException("Invalid number of " + what + ": " + count);
+        }
+    }
+
+    private static void checkReadable(ByteBuf buf, long numBytes, String what) {
+        if (numBytes > buf.readableBytes()) {
+            throw new IllegalArgumentException("Truncated " + what + ": " + numBytes + " bytes expected, "
+                    + buf.readableBytes() + " left");
+        }
+    }
+
+    int getNumOfContainers() {
+        return containers.length;
+    }
+
+    long getCardinality() {
+        return cardinality;
+    }
+
+    int getSerializedSize() {
+        int size = 0;
+        for (Container container : containers) {
+            size += CONTAINER_HEADER_BYTES + container.serializedSize();
+        }
+        return size;
+    }
+
+    void serialize(ByteBuf buf) {
+        for (int i = 0; i < containers.length; i++) {
+            buf.writeLong(keys[i]);
+            containers[i].serialize(buf);
+        }
+    }
+
+    /**
+     * Pass the entries of the bitmap to <i>consumer</i>, in ascending order.
+     */
+    void forEach(LongConsumer consumer) {
+        for (int i = 0; i < containers.length; i++) {
+            long chunkStart = keys[i] << CHUNK_BITS;
+            for (int wordIndex = 0; wordIndex < BITMAP_WORDS; wordIndex++) {
+                long word = containers[i].word(wordIndex);
+                while (word != 0) {
+                    consumer.accept(chunkStart + ((long) wordIndex << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+
+    boolean contains(long entryId) {
+        int index = Arrays.binarySearch(keys, entryId >>> CHUNK_BITS);
+        return index >= 0 && containers[index].contains((int) (entryId & CHUNK_MASK));
+    }
+
+    /**
+     * Get the entries between <i>startEntryId</i> and <i>lastEntryId</i> which are expected,
+     * but not in the bitmap. The entries are compared 64 at a time.
+     *
+     * @param expectedEntries the expected entries, bit i standing for entry startEntryId + i
+     */
+    List<Long> getMissingEntries(long startEntryId, long lastEntryId, BitSet expectedEntries) {
+        List<Long> missingEntries = new ArrayList<>();
+        long[] expectedWords = expectedEntries.toLongArray();
+        long lastExpectedEntryId = Math.min(lastEntryId, startEntryId + (long) expectedWords.length * Long.SIZE - 1);
+        long chunkKey = -1;
+        Container container = null;
+        for (long wordStart = startEntryId & ~(Long.SIZE - 1); wordStart <= lastExpectedEntryId;
+             wordStart += Long.SIZE) {
+            long expected = bitsAt(expectedWords, wordStart - startEntryId);
+            if (lastExpectedEntryId - wordStart < Long.SIZE - 1) {
+                expected &= (1L << (lastExpectedEntryId - wordStart + 1)) - 1;
+            }
+            if (expected == 0) {
+                continue;
+            }
+            long key = wordStart >>> CHUNK_BITS;
+            if (key != chunkKey) {
+                chunkKey = key;
+                int index = Arrays.binarySearch(keys, key);
+                container = index >= 0 ? containers[index] : null;
+            }
+            long available = container == null ? 0 : container.word((int) (wordStart & CHUNK_MASK) >>> 6);
+            long missing = expected & ~available;
+            while (missing != 0) {
+                missingEntries.add(wordStart + Long.numberOfTrailingZeros(missing));
+                missing &= missing - 1;
+            }
+        }
+        return missingEntries;
+    }
+
+    /**
+     * Get the 64 bits of <i>words</i> starting at <i>fromBit</i>, which may be negative.
+     * The bits out of <i>words</i> are 0.
+     */
+    private static long bitsAt(long[] words, long fromBit) {
+        if (fromBit <= -Long.SIZE) {
+            return 0;
+        } else if (fromBit < 0) {
+            return bitsAt(words, 0) << -fromBit;
+        }
+        long wordIndex = fromBit >>> 6;
+        int shift = (int) (fromBit & (Long.SIZE - 1));
+        if (wordIndex >= words.length) {
+            return 0;
+        }
+        long bits = words[(int) wordIndex] >>> shift;
+        if (shift != 0 && wordIndex + 1 < words.length) {
+            bits |= words[(int) wordIndex + 1] << (Long.SIZE - shift);
+        }
+        return bits;
+    }
+
+    private abstract static class Container {
+        abstract int cardinality();
+
+        abstract boolean contains(int low);
+
+        /**
+         * Get the word of the bitmap of the chunk at <i>wordIndex</i>.
+         */
+        abstract long word(int wordIndex);
+
+        abstract int serializedSize();
+
+        abstract void serialize(ByteBuf buf);
+    }
+
+    private static class ArrayContainer extends Container {
+        // sorted, compared as unsigned
+        private final short[] values;
+
+        ArrayContainer(short[] values) {
+            this.values = values;
+        }
+
+        @Override
+        int cardinality() {
+            return values.length;
+        }
+
+        @Override
+        boolean contains(int low) {
+            return indexOf(low) >= 0;
+        }
+
+        // binary search, returns -(insertion point) - 1 if low is not in the array
+        private int indexOf(int low) {
+            int from = 0;
+            int to = values.length - 1;
+            while (from <= to) {
+                int mid = (from + to) >>> 1;
+                int value = values[mid] & CHUNK_MASK;
+                if (value < low) {
+                    from = mid + 1;
+                } else if (value > low) {
+                    to = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(from + 1);
+        }
+
+        @Override
+        long word(int wordIndex) {
+            int wordStart = wordIndex << 6;
+            int index = indexOf(wordStart);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            long word = 0;
+            for (; index < values.length; index++) {
+                int offset = (values[index] & CHUNK_MASK) - wordStart;
+                if (offset >= Long.SIZE) {
+                    break;
+                }
+                word |= 1L << offset;
+            }
+            return word;
+        }
+
+        @Override
+        int serializedSize() {
+            return values.length * Short.BYTES;
+        }
+
+        @Override
+        void serialize(ByteBuf buf) {
+            buf.writeByte(ARRAY_CONTAINER);
+            buf.writeInt(values.length);
+            for (short value : values) {
+                buf.writeShort(value);
+            }
+        }
+    }
+
+    private static class BitmapContainer extends Container {
+        private final long[] words;
+        private final int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(int low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        long word(int wordIndex) {
+            return words[wordIndex];
+        }
+
+        @Override
+        int serializedSize() {
+            return BITMAP_WORDS * Long.BYTES;
+        }
+
+        @Override
+        void serialize(ByteBuf buf) {
+            buf.writeByte(BITMAP_CONTAINER);
+            buf.writeInt(cardinality);
+            for (long word : words) {
+                buf.writeLong(word);
+            }
+        }
+    }
+
+    private static class RunContainer extends Container {
+        // sorted, non overlapping runs, compared as unsigned
+        private final short[] starts;
+        private final short[] lengths;
+        private final int cardinality;
+
+        RunContainer(short[] starts, short[] lengths, int cardinality) {
+            this.starts = starts;
+            this.lengths = lengths;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        // index of the last run starting at or before low, -1 if none
+        private int floorRun(int low) {
+            int from = 0;
+            int to = starts.length - 1;
+            int floor = -1;
+            while (from <= to) {
+                int mid = (from + to) >>> 1;
+                if ((starts[mid] & CHUNK_MASK) <= low) {
+                    floor = mid;
+                    from = mid + 1;
+                } else {
+                    to = mid - 1;
+                }
+            }
+            return floor;
+        }
+
+        @Override
+        boolean contains(int low) {
+            int run = floorRun(low);
+            return run >= 0 && low <= (starts[run] & CHUNK_MASK) + (lengths[run] & CHUNK_MASK);
+        }
+
+        @Override
+        long word(int wordIndex) {
+            int wordStart = wordIndex << 6;
+            int wordEnd = wordStart + Long.SIZE - 1;
+            int run = Math.max(0, floorRun(wordStart));
+            long word = 0;
+            for (; run < starts.length; run++) {
+                int runStart = starts[run] & CHUNK_MASK;
+                int runEnd = runStart + (lengths[run] & CHUNK_MASK);
+                if (runStart > wordEnd) {
+                    break;
+                }
+                if (runEnd < wordStart) {
+                    continue;
+                }
+                int from = Math.max(runStart, wordStart) - wordStart;
+                int to = Math.min(runEnd, wordEnd) - wordStart;
+                word |= (-1L >>> (Long.SIZE - 1 - to + from)) << from;
+            }
+            return word;
+        }
+
+        @Override
+        int serializedSize() {
+            return Integer.BYTES + starts.length * 2 * Short.BYTES;
+        }
+
+        @Override
+        void serialize(ByteBuf buf) {
+            buf.writeByte(RUN_CONTAINER);
+            buf.writeInt(cardinality);
+            buf.writeInt(starts.length);
+            for (int i = 0; i < starts.length; i++) {
+                buf.writeShort(starts[i]);
+                buf.writeShort(lengths[i]);
+            }
+        }
+    }
+
+    /**
+     * Builds a bitmap from entries and ranges of entries added in any order.
+     */
+    static class Builder {
+        private final TreeMap<Long, long[]> chunks = new TreeMap<>();
+
+        Builder add(long entryId) {
+            long[] words = chunks.computeIfAbsent(entryId >>> CHUNK_BITS, k -> new long[BITMAP_WORDS]);
+            int low = (int) (entryId & CHUNK_MASK);
+            words[low >>> 6] |= 1L << low;
+            return this;
+        }
+
+        /**
+         * Add the entries from <i>fromEntryId</i> (inclusive) to <i>toEntryId</i> (exclusive).
+         */
+        Builder addRange(long fromEntryId, long toEntryId) {
+            long entryId = fromEntryId;
+            while (entryId < toEntryId) {
+                long chunkEnd = ((entryId >>> CHUNK_BITS) + 1) << CHUNK_BITS;
+                long end = Math.min(toEntryId, chunkEnd);
+                long[] words = chunks.computeIfAbsent(entryId >>> CHUNK_BITS, k -> new long[BITMAP_WORDS]);
+                int low = (int) (entryId & CHUNK_MASK);
+                int lowEnd = (int) (end - 1 - (entryId - low));
+                for (int bit = low; bit <= lowEnd; ) {
+                    int wordIndex = bit >>> 6;
+                    int wordLast = Math.min(lowEnd, (wordIndex << 6) + Long.SIZE - 1);
+                    int from = bit & (Long.SIZE - 1);
+                    int to = wordLast & (Long.SIZE - 1);
+                    words[wordIndex] |= (-1L >>> (Long.SIZE - 1 - to + from)) << from;
+                    bit = wordLast + 1;
+                }
+                entryId = end;
+            }
+            return this;
+        }
+
+        CompressedEntryBitmap build() {
+            long[] keys = new long[chunks.size()];
+            Container[] containers = new Container[chunks.size()];
+            int i = 0;
+            for (Map.Entry<Long, long[]> chunk : chunks.entrySet()) {
+                keys[i] = chunk.getKey();
+                containers[i] = compact(chunk.getValue());
+                i++;
+            }
+            return new CompressedEntryBitmap(keys, containers);
+        }
+
+        private static Container compact(long[] words) {
+            int cardinality = 0;
+            int numRuns = 0;
+            long previousTopBit = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+                // a run starts at each set bit whose previous bit isn't set
+                numRuns += Long.bitCount(word & ~((word << 1) | previousTopBit));
+                previousTopBit = word >>> (Long.SIZE - 1);
+            }
+            int arraySize = cardinality * Short.BYTES;
+            int bitmapSize = BITMAP_WORDS * Long.BYTES;
+            int runSize = Integer.BYTES + numRuns * 2 * Short.BYTES;
+            if (runSize <= arraySize && runSize <= bitmapSize) {
+                short[] starts = new short[numRuns];
+                short[] lengths = new short[numRuns];
+                int run = -1;
+                boolean inRun = false;
+                for (int bit = 0; bit < CHUNK_SIZE; bit++) {
+                    boolean set = (words[bit >>> 6] & (1L << bit)) != 0;
+                    if (set && !inRun) {
+                        starts[++run] = (short) bit;
+                    }
+                    if (!set && inRun) {
+                        lengths[run] = (short) (bit - 1 - (starts[run] & CHUNK_MASK));
+                    }
+                    inRun = set;
+                }
+                if (inRun) {
+                    lengths[run] = (short) (CHUNK_SIZE - 1 - (starts[run] & CHUNK_MASK));
+                }
+                return new RunContainer(starts, lengths, cardinality);
+            } else if (arraySize <= bitmapSize) {
+                short[] values = new short[cardinality];
+                int index = 0;
+                for (int wordIndex = 0; wordIndex < BITMAP_WORDS; wordIndex++) {
+                    long word = words[wordIndex];
+                    while (word != 0) {
+                        values[index++] = (short) ((wordIndex << 6) + Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+                return new ArrayContainer(values);
+            } else {
+                return new BitmapContainer(words, cardinality);
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the class {@link CostBenefitCompactionSelector}.
+ */
+public class TestCostBenefitCompactionSelector {
+
+    private static CompactionCandidate candidate(long entryLogId, long totalSize, long remainingSize) {
+        return CompactionCandidate.builder()
+                .entryLogId(entryLogId)
+                .totalSize(totalSize)
+                .remainingSize(remainingSize)
+                .usage((double) remainingSize / totalSize)
+                .build();
+    }
+
+    private static List<Long> rankedIds(List<CompactionCandidate> candidates) {
+        List<Long> ids = new ArrayList<>();
+        for (CompactionCandidate candidate : candidates) {
+            ids.add(candidate.getEntryLogId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testScore() {
+        CostBenefitCompactionSelector selector = new CostBenefitCompactionSelector();
+        List<CompactionCandidate> candidates = new ArrayList<>(Arrays.asList(candidate(6, 1000, 250)));
+
+        selector.score(candidates, 10);
+
+        CompactionCandidate scored = candidates.get(0);
+        assertEquals(5, scored.getAge());
+        assertEquals(0.0, scored.getDecayRate(), 0.0);
+        // 750 reclaimable bytes, 5 entry logs old, for 250 live bytes
+        assertEquals(750.0 * 5 / 250, scored.getScore(), 1e-9);
+    }
+
+    @Test
+    public void testRankByReclaimedSpaceAndAge() {
+        CostBenefitCompactionSelector selector = new CostBenefitCompactionSelector();
+        List<CompactionCandidate> candidates = new ArrayList<>(Arrays.asList(
+                candidate(9, 1000, 500),
+                candidate(8, 1000, 100),
+                candidate(1, 1000, 500)));
+
+        selector.rank(candidates, 10);
+
+        assertEquals(Arrays.asList(8L, 1L, 9L), rankedIds(candidates));
+    }
+
+    @Test
+    public void testDecayRate() {
+        CostBenefitCompactionSelector selector = new CostBenefitCompactionSelector();
+        selector.recordRemainingSize(1, 1000);
+        assertEquals(0.0, selector.getDecayRate(1), 0.0);
+
+        // half of the remaining bytes deleted in this cycle
+        selector.recordRemainingSize(1, 500);
+        assertEquals(0.25, selector.getDecayRate(1), 1e-9);
+
+        // nothing deleted in this cycle
+        selector.recordRemainingSize(1, 500);
+        assertEquals(0.125, selector.getDecayRate(1), 1e-9);
+
+        selector.remove(1);
+        assertEquals(0.0, selector.getDecayRate(1), 0.0);
+    }
+
+    @Test
+    public void testDecayingEntryLogRankedAfterStableOne() {
+        CostBenefitCompactionSelector selector = new CostBenefitCompactionSelector();
+        selector.recordRemainingSize(1, 1000);
+        selector.recordRemainingSize(1, 500);
+        selector.recordRemainingSize(2, 500);
+        selector.recordRemainingSize(2, 500);
+        List<CompactionCandidate> candidates = new ArrayList<>(Arrays.asList(
+                candidate(1, 1000, 500),
+                candidate(2, 1000, 500)));
+
+        selector.rank(candidates, 10);
+
+        assertEquals(Arrays.asList(2L, 1L), rankedIds(candidates));
+    }
+}
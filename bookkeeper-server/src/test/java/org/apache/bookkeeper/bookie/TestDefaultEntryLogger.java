@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.bookie;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.bookkeeper.bookie.storage.CompactionEntryLog;
+import org.apache.bookkeeper.bookie.storage.EntryLogScanner;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit test for the class {@link DefaultEntryLogger}.
+ */
+public class TestDefaultEntryLogger {
+
+    @TempDir
+    File ledgerDir;
+
+    static ByteBuf entry(long ledgerId, long entryId) {
+        ByteBuf entry = Unpooled.buffer();
+        entry.writeLong(ledgerId);
+        entry.writeLong(entryId);
+        entry.writeBytes(("ledger-" + ledgerId + "-entry-" + entryId).getBytes(UTF_8));
+        return entry;
+    }
+
+    static void assertEntry(long ledgerId, long entryId, ByteBuf entry) {
+        try {
+            assertEquals(entry(ledgerId, entryId), entry);
+        } finally {
+            entry.release();
+        }
+    }
+
+    private ServerConfiguration conf() {
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration();
+        conf.setLedgerDirNames(new String[] { ledgerDir.getAbsolutePath() });
+        return conf;
+    }
+
+    private int countFiles(String suffix) {
+        File[] files = BookieImpl.getCurrentDirectory(ledgerDir).listFiles((dir, name) -> name.endsWith(suffix));
+        return files == null ? 0 : files.length;
+    }
+
+    @Test
+    public void testConcurrentCompactionLogs() throws Exception {
+        DefaultEntryLogger entryLogger = new DefaultEntryLogger(conf());
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CompactionEntryLog first = entryLogger.newCompactionLog(1L);
+            CompactionEntryLog second = entryLogger.newCompactionLog(2L);
+            assertNotEquals(first.getDstLogId(), second.getDstLogId());
+
+            // both compactions write at the same time, each to its own log
+            int numEntries = 1000;
+            long[] firstLocations = new long[numEntries];
+            long[] secondLocations = new long[numEntries];
+            List<Future<?>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < numEntries; i++) {
+                    firstLocations[i] = first.addEntry(1L, entry(1L, i));
+                }
+                return null;
+            }));
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < numEntries; i++) {
+                    secondLocations[i] = second.addEntry(2L, entry(2L, i));
+                }
+                return null;
+            }));
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            first.flush();
+            second.flush();
+            first.markCompacted();
+            // aborting one compaction leaves the other one alone
+            second.abort();
+            assertThrows(IOException.class, () -> second.addEntry(2L, entry(2L, numEntries)));
+            assertEquals(0, countFiles(".compacting"));
+            assertEquals(1, countFiles(".compacted"));
+
+            first.makeAvailable();
+            for (int i = 0; i < numEntries; i++) {
+                assertEquals(first.getDstLogId(), firstLocations[i] >> 32L);
+                assertEntry(1L, i, entryLogger.readEntry(1L, i, firstLocations[i]));
+            }
+            List<Long> scannedEntryIds = new ArrayList<>();
+            first.scan(new EntryLogScanner() {
+                @Override
+                public boolean accept(long ledgerId) {
+                    return true;
+                }
+
+                @Override
+                public void process(long ledgerId, long offset, ByteBuf entry) {
+                    assertEquals(1L, ledgerId);
+                    scannedEntryIds.add(entry.getLong(entry.readerIndex() + 8));
+                }
+            });
+            assertEquals(numEntries, scannedEntryIds.size());
+            for (int i = 0; i < numEntries; i++) {
+                assertEquals(i, scannedEntryIds.get(i).longValue());
+            }
+
+            first.finalizeAndCleanup();
+            assertEquals(0, countFiles(".compacted"));
+        } finally {
+            executor.shutdownNow();
+            entryLogger.close();
+        }
+    }
+
+    /**
+     * Write two entries to an entry log without ledgers map index, and a scan checkpoint after the
+     * first one holding a ledger which isn't in the entry log.
+     *
+     * @return the id of the entry log
+     */
+    private long writeEntryLogWithCheckpoint(DefaultEntryLogger entryLogger) throws IOException {
+        long location = entryLogger.addEntry(1L, entry(1L, 0L));
+        entryLogger.addEntry(2L, entry(2L, 0L));
+        // flushed without rolling, the ledgers map index is only written when the entry log is rolled
+        entryLogger.flush();
+
+        long entryLogId = location >> 32L;
+        EntryLogMetadata checkpointed = new EntryLogMetadata(entryLogId);
+        checkpointed.addLedgerSize(3L, 100);
+        new EntryLogScanCheckpoint(BookieImpl.getCurrentDirectory(ledgerDir), entryLogId, 1)
+                .scanned((location & 0xffffffffL) + entry(1L, 0L).readableBytes(), checkpointed);
+        assertEquals(1, countFiles(EntryLogScanCheckpoint.SCAN_CHECKPOINT_SUFFIX));
+        return entryLogId;
+    }
+
+    @Test
+    public void testScanResumesFromCheckpoint() throws Exception {
+        DefaultEntryLogger entryLogger = new DefaultEntryLogger(conf().setGcEntryLogMetadataScanCheckpointBytes(1));
+        try {
+            long entryLogId = writeEntryLogWithCheckpoint(entryLogger);
+
+            EntryLogMetadata meta = entryLogger.getEntryLogMetadata(entryLogId, null);
+            assertTrue(meta.containsLedger(3L));
+            assertFalse(meta.containsLedger(1L));
+            assertTrue(meta.containsLedger(2L));
+            assertEquals(0, countFiles(EntryLogScanCheckpoint.SCAN_CHECKPOINT_SUFFIX));
+        } finally {
+            entryLogger.close();
+        }
+    }
+
+    @Test
+    public void testStaleCheckpointDeletedWhenDisabled() throws Exception {
+        DefaultEntryLogger entryLogger = new DefaultEntryLogger(conf());
+        try {
+            long entryLogId = writeEntryLogWithCheckpoint(entryLogger);
+
+            // the whole entry log is scanned, and the checkpoint of a previous run dropped
+            EntryLogMetadata meta = entryLogger.getEntryLogMetadata(entryLogId, null);
+            assertFalse(meta.containsLedger(3L));
+            assertTrue(meta.containsLedger(1L));
+            assertTrue(meta.containsLedger(2L));
+            assertEquals(0, countFiles(EntryLogScanCheckpoint.SCAN_CHECKPOINT_SUFFIX));
+        } finally {
+            entryLogger.close();
+        }
+    }
+
+    @Test
+    public void testReadEntries() throws Exception {
+        int largeEntrySize = 64 * 1024;
+        DefaultEntryLogger entryLogger = new DefaultEntryLogger(
+                conf().setEntryLogSizeLimit(DefaultEntryLogger.LOGFILE_HEADER_SIZE + largeEntrySize));
+        try {
+            // the entries of two ledgers interleaved in an entry log
+            int numEntries = 100;
+            long[] locations = new long[2 * numEntries];
+            for (int i = 0; i < numEntries; i++) {
+                locations[2 * i] = entryLogger.addEntry(1L, entry(1L, i));
+                locations[2 * i + 1] = entryLogger.addEntry(2L, entry(2L, i));
+            }
+            // a large entry rolls the entry log
+            ByteBuf largeEntry = entry(3L, 0L).writeZero(largeEntrySize);
+            long largeEntryLocation = entryLogger.addEntry(3L, largeEntry.copy());
+            long entryLogId = locations[0] >> 32L;
+            assertNotEquals(entryLogId, largeEntryLocation >> 32L);
+            entryLogger.flush();
+
+            // the entries of the second ledger backwards, then the entry of the current entry log
+            long[] requested = new long[numEntries + 1];
+            for (int i = 0; i < numEntries; i++) {
+                requested[i] = locations[2 * (numEntries - 1 - i) + 1];
+            }
+            requested[numEntries] = largeEntryLocation;
+
+            // the read channels are cached per thread, spy on the one of this thread
+            assertEntry(1L, 0L, entryLogger.readEntry(locations[0]));
+            BufferedReadChannel channel = spy(entryLogger.getFromChannels(entryLogId));
+            entryLogger.putInReadChannels(entryLogId, channel);
+
+            ByteBuf[] entries = entryLogger.readEntries(requested);
+            assertEquals(requested.length, entries.length);
+            for (int i = 0; i < numEntries; i++) {
+                assertEntry(2L, numEntries - 1 - i, entries[i]);
+            }
+            try {
+                assertEquals(largeEntry, entries[numEntries]);
+            } finally {
+                entries[numEntries].release();
+            }
+            // the entries of the rotated entry log came from a single read of the region spanning them
+            verify(channel, times(1)).readBypassingBuffer(any(), anyLong(), anyInt());
+
+            // an entry on its own is read as usual
+            entries = entryLogger.readEntries(new long[] { locations[1] });
+            assertEntry(2L, 0L, entries[0]);
+            verify(channel, times(1)).readBypassingBuffer(any(), anyLong(), anyInt());
+        } finally {
+            entryLogger.close();
+        }
+    }
+}
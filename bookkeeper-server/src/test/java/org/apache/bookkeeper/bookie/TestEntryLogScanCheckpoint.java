@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit test for the class {@link EntryLogScanCheckpoint}.
+ */
+public class TestEntryLogScanCheckpoint {
+
+    private static final long ENTRY_LOG_ID = 1L;
+    private static final long START_OFFSET = 1024L;
+    private static final long LOG_SIZE = 1024L * 1024L;
+
+    @TempDir
+    File dir;
+
+    private static EntryLogMetadata meta(long... ledgerIds) {
+        EntryLogMetadata meta = new EntryLogMetadata(ENTRY_LOG_ID);
+        for (long ledgerId : ledgerIds) {
+            meta.addLedgerSize(ledgerId, 100);
+        }
+        return meta;
+    }
+
+    private File checkpointFile() {
+        return EntryLogScanCheckpoint.checkpointFile(dir, ENTRY_LOG_ID);
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        assertEquals(0L, new ServerConfiguration().getGcEntryLogMetadataScanCheckpointBytes());
+    }
+
+    @Test
+    public void testWriteAndResume() {
+        EntryLogScanCheckpoint checkpoint = new EntryLogScanCheckpoint(dir, ENTRY_LOG_ID, 1000);
+        assertEquals(START_OFFSET, checkpoint.resume(meta(), START_OFFSET, LOG_SIZE));
+
+        // not written before the interval is scanned
+        checkpoint.scanned(START_OFFSET + 999, meta(1L));
+        assertFalse(checkpointFile().exists());
+        checkpoint.scanned(START_OFFSET + 1000, meta(1L, 2L));
+        assertTrue(checkpointFile().exists());
+        // the interval counts from the last checkpoint
+        checkpoint.scanned(START_OFFSET + 1999, meta(1L, 2L, 3L));
+
+        EntryLogMetadata resumed = meta();
+        assertEquals(START_OFFSET + 1000,
+                new EntryLogScanCheckpoint(dir, ENTRY_LOG_ID, 1000).resume(resumed, START_OFFSET, LOG_SIZE));
+        assertTrue(resumed.containsLedger(1L));
+        assertTrue(resumed.containsLedger(2L));
+        assertFalse(resumed.containsLedger(3L));
+        assertEquals(200L, resumed.getTotalSize());
+
+        checkpoint.complete();
+        assertFalse(checkpointFile().exists());
+    }
+
+    @Test
+    public void testInvalidCheckpointIgnored() throws Exception {
+        new EntryLogScanCheckpoint(dir, ENTRY_LOG_ID, 1).scanned(START_OFFSET + 1000, meta(1L));
+
+        // the entry log is shorter than the checkpoint
+        EntryLogMetadata resumed = meta();
+        assertEquals(START_OFFSET,
+                new EntryLogScanCheckpoint(dir, ENTRY_LOG_ID, 1).resume(resumed, START_OFFSET, START_OFFSET + 999));
+        assertTrue(resumed.isEmpty());
+
+        // the checkpoint of another entry log
+        File otherCheckpointFile = EntryLogScanCheckpoint.checkpointFile(dir, ENTRY_LOG_ID + 1);
+        Files.copy(checkpointFile().toPath(), otherCheckpointFile.toPath());
+        assertEquals(START_OFFSET,
+                new EntryLogScanCheckpoint(dir, ENTRY_LOG_ID + 1, 1).resume(meta(), START_OFFSET, LOG_SIZE));
+
+        // a corrupted checkpoint
+        Files.write(checkpointFile().toPath(), new byte[] { 0, 0, 0 });
+        assertEquals(START_OFFSET,
+                new EntryLogScanCheckpoint(dir, ENTRY_LOG_ID, 1).resume(meta(), START_OFFSET, LOG_SIZE));
+    }
+
+    @Test
+    public void testDeleteStaleCheckpoint() throws Exception {
+        new EntryLogScanCheckpoint(dir, ENTRY_LOG_ID, 1).scanned(START_OFFSET + 1000, meta(1L));
+        // a checkpoint left half written by a crash
+        File tmpFile = new File(dir, checkpointFile().getName() + ".tmp");
+        assertTrue(tmpFile.createNewFile());
+
+        EntryLogScanCheckpoint.delete(dir, ENTRY_LOG_ID);
+        assertFalse(checkpointFile().exists());
+        assertFalse(tmpFile.exists());
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.bookie;
+
+import static org.apache.bookkeeper.bookie.TestDefaultEntryLogger.assertEntry;
+import static org.apache.bookkeeper.bookie.TestDefaultEntryLogger.entry;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.apache.commons.configuration.ConfigurationException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit test for the class {@link GarbageCollectorThread}.
+ */
+public class TestGarbageCollectorThread {
+
+    @TempDir
+    File ledgerDir;
+
+    private ServerConfiguration conf(int compactionWorkerThreads) {
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration();
+        conf.setLedgerDirNames(new String[] { ledgerDir.getAbsolutePath() });
+        conf.setCompactionWorkerThreads(compactionWorkerThreads);
+        return conf;
+    }
+
+    private static LedgerDirsManager ledgerDirsManager(ServerConfiguration conf) throws IOException {
+        return new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
+    }
+
+    private static GarbageCollectorThread gcThread(ServerConfiguration conf, LedgerDirsManager ledgerDirsManager,
+                                                   CompactableLedgerStorage ledgerStorage, EntryLogger entryLogger)
+            throws IOException {
+        return new GarbageCollectorThread(conf, mock(LedgerManager.class), ledgerDirsManager, ledgerStorage,
+                entryLogger, NullStatsLogger.INSTANCE, mock(ScheduledExecutorService.class));
+    }
+
+    @Test
+    public void testInvalidCompactionWorkerThreads() throws Exception {
+        new ServerConfiguration().setCompactionWorkerThreads(2).validate();
+        assertThrows(ConfigurationException.class,
+                () -> new ServerConfiguration().setCompactionWorkerThreads(0).validate());
+
+        ServerConfiguration conf = conf(0);
+        assertThrows(IOException.class, () -> gcThread(conf, ledgerDirsManager(conf),
+                mock(CompactableLedgerStorage.class), mock(EntryLogger.class)));
+    }
+
+    @Test
+    public void testConcurrentTransactionalCompaction() throws Exception {
+        int numEntryLogs = 8;
+        ServerConfiguration conf = conf(2);
+        conf.setUseTransactionalCompaction(true);
+        // room for two entries per entry log
+        conf.setEntryLogSizeLimit(DefaultEntryLogger.LOGFILE_HEADER_SIZE + 2 * (entry(0L, 0L).readableBytes() + 4)
+                + 10);
+        LedgerDirsManager ledgerDirsManager = ledgerDirsManager(conf);
+        DefaultEntryLogger entryLogger = new DefaultEntryLogger(conf, ledgerDirsManager);
+
+        List<EntryLocation> updatedLocations = Collections.synchronizedList(new ArrayList<>());
+        CompactableLedgerStorage ledgerStorage = mock(CompactableLedgerStorage.class);
+        doAnswer(invocation -> {
+            // the compactor clears its offsets once the index is updated
+            Iterable<EntryLocation> locations = invocation.getArgument(0);
+            locations.forEach(updatedLocations::add);
+            return null;
+        }).when(ledgerStorage).updateEntriesLocations(any());
+
+        GarbageCollectorThread gcThread = gcThread(conf, ledgerDirsManager, ledgerStorage, entryLogger);
+        try {
+            // each entry log holds an entry of a live ledger and an entry of a deleted one
+            Set<Long> entryLogIds = new HashSet<>();
+            for (int i = 0; i < numEntryLogs; i++) {
+                long liveLedgerId = i;
+                long deletedLedgerId = 100 + i;
+                long entryLogId = entryLogger.addEntry(liveLedgerId, entry(liveLedgerId, 0L)) >> 32L;
+                assertEquals(entryLogId, entryLogger.addEntry(deletedLedgerId, entry(deletedLedgerId, 0L)) >> 32L);
+
+                EntryLogMetadata meta = new EntryLogMetadata(entryLogId);
+                meta.addLedgerSize(liveLedgerId, 100);
+                meta.addLedgerSize(deletedLedgerId, 100);
+                meta.removeLedgerIf(ledgerId -> ledgerId == deletedLedgerId);
+                gcThread.getEntryLogMetaMap().put(entryLogId, meta);
+                entryLogIds.add(entryLogId);
+            }
+            assertEquals(numEntryLogs, entryLogIds.size());
+            // roll past the last entry log, so every entry log to compact is complete
+            entryLogger.addEntry(200L, entry(200L, 0L));
+            entryLogger.flush();
+
+            gcThread.doCompactEntryLogs(0.9, 0);
+
+            // the live entries moved to distinct compaction logs, and the compacted entry logs are gone
+            assertEquals(numEntryLogs, updatedLocations.size());
+            Set<Long> compactionLogIds = new HashSet<>();
+            for (EntryLocation location : updatedLocations) {
+                assertEntry(location.getLedger(), 0L,
+                        entryLogger.readEntry(location.getLedger(), 0L, location.getLocation()));
+                compactionLogIds.add(location.getLocation() >> 32L);
+            }
+            assertEquals(numEntryLogs, compactionLogIds.size());
+            for (long entryLogId : entryLogIds) {
+                assertFalse(compactionLogIds.contains(entryLogId));
+                assertFalse(entryLogger.logExists(entryLogId));
+            }
+            assertTrue(gcThread.getEntryLogMetaMap().isEmpty());
+        } finally {
+            gcThread.shutdown();
+            entryLogger.close();
+        }
+    }
+}
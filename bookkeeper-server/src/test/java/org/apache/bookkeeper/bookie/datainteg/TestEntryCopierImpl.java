@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.bookie.datainteg;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Ticker;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.LedgerStorage;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.LedgerMetadataBuilder;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookieClient;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
+import org.apache.bookkeeper.proto.DataFormats.LedgerMetadataFormat;
+import org.apache.bookkeeper.proto.checksum.DigestManager;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the class {@link EntryCopierImpl}.
+ */
+public class TestEntryCopierImpl {
+
+    private static final long WAIT_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
+    private static final long LEDGER_ID = 1L;
+    private static final long ENTRY_ID = 0L;
+    private static final byte[] PASSWORD = "password".getBytes(UTF_8);
+    private static final BookieId FAILED_BOOKIE = BookieId.parse("127.0.0.1:3181");
+    private static final BookieId NEW_BOOKIE = BookieId.parse("127.0.0.4:3181");
+
+    private final BookieClient bookieClient = mock(BookieClient.class);
+    private final LedgerStorage storage = mock(LedgerStorage.class);
+    // the bookies read from, in order
+    private final List<BookieId> bookiesRead = Collections.synchronizedList(new ArrayList<>());
+    private final List<byte[]> entriesStored = Collections.synchronizedList(new ArrayList<>());
+
+    public TestEntryCopierImpl() throws Exception {
+        doAnswer(invocation -> {
+            ByteBuf entry = invocation.getArgument(0);
+            entriesStored.add(ByteBufUtil.getBytes(entry));
+            return ENTRY_ID;
+        }).when(storage).addEntry(any());
+    }
+
+    private static LedgerMetadata metadata() {
+        return LedgerMetadataBuilder.create()
+            .withId(LEDGER_ID)
+            .withEnsembleSize(3).withWriteQuorumSize(3).withAckQuorumSize(2)
+            .withPassword(PASSWORD).withDigestType(DigestType.CRC32C)
+            .newEnsembleEntry(0L, Arrays.asList(FAILED_BOOKIE,
+                    BookieId.parse("127.0.0.2:3181"),
+                    BookieId.parse("127.0.0.3:3181")))
+            .withClosedState().withLastEntryId(ENTRY_ID).withLength(5L)
+            .build();
+    }
+
+    private static byte[] packagedEntry() throws Exception {
+        DigestManager digestManager = DigestManager.instantiate(LEDGER_ID, PASSWORD,
+                LedgerMetadataFormat.DigestType.CRC32C, UnpooledByteBufAllocator.DEFAULT, false);
+        ByteBuf entry = ByteBufList.coalesce((ByteBufList) digestManager.computeDigestAndPackageForSending(
+                ENTRY_ID, -1L, 5L, Unpooled.wrappedBuffer("entry".getBytes(UTF_8)), new byte[0], 0));
+        return ByteBufUtil.getBytes(entry);
+    }
+
+    /**
+     * The bookies answer the reads with a corrupted entry until {@code numCorruptReads} reads were made.
+     */
+    private void mockReads(byte[] entry, int numCorruptReads) {
+        doAnswer(invocation -> {
+            bookiesRead.add(invocation.getArgument(0));
+            byte[] data = entry.clone();
+            if (bookiesRead.size() <= numCorruptReads) {
+                data[data.length - 1] ^= 0xFF;
+            }
+            ReadEntryCallback cb = invocation.getArgument(3);
+            cb.readEntryComplete(BKException.Code.OK, LEDGER_ID, ENTRY_ID, Unpooled.wrappedBuffer(data),
+                    invocation.getArgument(4));
+            return null;
+        }).when(bookieClient).readEntry(any(), anyLong(), anyLong(), any(), any(), anyInt());
+    }
+
+    private EntryCopier.Batch fragmentBatch() throws Exception {
+        EntryCopier copier = new EntryCopierImpl(NEW_BOOKIE, bookieClient, storage, Ticker.systemTicker());
+        return copier.newFragmentBatch(LEDGER_ID, metadata(), DigestManager.generateMasterKey(PASSWORD),
+                Collections.singleton(FAILED_BOOKIE));
+    }
+
+    @Test
+    public void testCorruptEntryReadAgain() throws Exception {
+        byte[] entry = packagedEntry();
+        mockReads(entry, 1);
+        long bytesCopied = fragmentBatch().copyFromAvailable(ENTRY_ID).get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        // the entry failing its digest is read again from another bookie, and only the valid one is stored
+        assertEquals(2, bookiesRead.size());
+        assertNotEquals(bookiesRead.get(0), bookiesRead.get(1));
+        assertEquals(1, entriesStored.size());
+        assertArrayEquals(entry, entriesStored.get(0));
+        assertEquals(entry.length, bytesCopied);
+        // the bookie known to be unavailable isn't read from while the others may have the entry
+        assertNotEquals(FAILED_BOOKIE, bookiesRead.get(0));
+        assertNotEquals(FAILED_BOOKIE, bookiesRead.get(1));
+        verify(storage).setMasterKey(LEDGER_ID, DigestManager.generateMasterKey(PASSWORD));
+    }
+
+    @Test
+    public void testAllReplicasCorrupt() throws Exception {
+        mockReads(packagedEntry(), Integer.MAX_VALUE);
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> fragmentBatch().copyFromAvailable(ENTRY_ID).get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+        assertTrue(e.getCause() instanceof BKException.BKDigestMatchException);
+        // every bookie of the write set was tried, the failed one last
+        assertEquals(3, bookiesRead.size());
+        assertEquals(FAILED_BOOKIE, bookiesRead.get(2));
+        verify(storage, never()).addEntry(any());
+    }
+
+    @Test
+    public void testMasterKeyOfExistingLedgerKept() throws Exception {
+        when(storage.ledgerExists(LEDGER_ID)).thenReturn(true);
+        mockReads(packagedEntry(), 0);
+        fragmentBatch().copyFromAvailable(ENTRY_ID).get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        assertEquals(1, bookiesRead.size());
+        assertEquals(1, entriesStored.size());
+        verify(storage, never()).setMasterKey(anyLong(), any());
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.bookie.storage.directentrylogger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.bookkeeper.stats.Counter;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the class {@link DirectBlockCache}.
+ */
+public class TestDirectBlockCache {
+
+    private static final int BLOCK_SIZE = Buffer.ALIGNMENT;
+    private static final int MAX_SANE_ENTRY_SIZE = 4 * BLOCK_SIZE;
+
+    private final Counter hitCounter = mock(Counter.class);
+    private final Counter missCounter = mock(Counter.class);
+    private final Counter evictionCounter = mock(Counter.class);
+    private final List<ByteBuf> directBuffers = new ArrayList<>();
+    private final UnpooledByteBufAllocator allocator = new UnpooledByteBufAllocator(false) {
+        @Override
+        public ByteBuf directBuffer(int initialCapacity, int maxCapacity) {
+            ByteBuf buffer = super.directBuffer(initialCapacity, maxCapacity);
+            directBuffers.add(buffer);
+            return buffer;
+        }
+    };
+
+    private DirectBlockCache cache(int numBlocks) {
+        DirectEntryLoggerStats stats = mock(DirectEntryLoggerStats.class);
+        when(stats.getBlockCacheHitCounter()).thenReturn(hitCounter);
+        when(stats.getBlockCacheMissCounter()).thenReturn(missCounter);
+        when(stats.getBlockCacheEvictionCounter()).thenReturn(evictionCounter);
+        // log 2 is still being written
+        return new DirectBlockCache(allocator, (long) numBlocks * BLOCK_SIZE, BLOCK_SIZE, logId -> logId != 2, stats);
+    }
+
+    /**
+     * A block filled with a byte, holding an entry of the given size at the given offset.
+     */
+    private static ByteBuf block(int fill, int entryOffset, int entrySize) {
+        ByteBuf block = Unpooled.buffer(BLOCK_SIZE);
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            block.writeByte(fill);
+        }
+        block.setInt(entryOffset - Integer.BYTES, entrySize);
+        return block;
+    }
+
+    @Test
+    public void testBlockReusedAcrossReads() {
+        DirectBlockCache cache = cache(64);
+        try {
+            assertTrue(cache.isCacheable(1));
+            assertFalse(cache.isCacheable(2));
+            cache.put(1, 0, block(7, 100, 200), BLOCK_SIZE);
+
+            // the same block serves the reads of several entries, and raw reads
+            for (int i = 0; i < 3; i++) {
+                ByteBuf entry = cache.readEntryAt(1, 100, MAX_SANE_ENTRY_SIZE);
+                try {
+                    assertEquals(200, entry.readableBytes());
+                    assertEquals(7, entry.getByte(0));
+                } finally {
+                    entry.release();
+                }
+            }
+            verify(hitCounter, times(3)).inc();
+            verify(missCounter, never()).inc();
+
+            ByteBuf dest = Unpooled.buffer();
+            assertEquals(10, cache.read(1, BLOCK_SIZE - 10, dest, 100));
+            assertEquals(-1, cache.read(1, BLOCK_SIZE, dest, 100));
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testMissCountedOnce() {
+        DirectBlockCache cache = cache(64);
+        try {
+            // the entry spans two blocks, only the first one is cached
+            cache.put(1, 0, block(7, BLOCK_SIZE - 100, 200), BLOCK_SIZE);
+            assertNull(cache.readEntryAt(1, BLOCK_SIZE - 100, MAX_SANE_ENTRY_SIZE));
+            verify(missCounter, times(1)).inc();
+
+            // the size isn't cached either
+            assertNull(cache.readEntryAt(3, 100, MAX_SANE_ENTRY_SIZE));
+            verify(missCounter, times(2)).inc();
+
+            // an invalid size is left to the reader
+            cache.put(1, 2 * BLOCK_SIZE, block(7, 100, MAX_SANE_ENTRY_SIZE + 1), BLOCK_SIZE);
+            assertNull(cache.readEntryAt(1, 2 * BLOCK_SIZE + 100, MAX_SANE_ENTRY_SIZE));
+            verify(missCounter, times(3)).inc();
+            verify(hitCounter, never()).inc();
+
+            // once the second block is cached, the entry spanning both is a hit
+            cache.put(1, BLOCK_SIZE, block(8, 100, 200), BLOCK_SIZE);
+            ByteBuf entry = cache.readEntryAt(1, BLOCK_SIZE - 100, MAX_SANE_ENTRY_SIZE);
+            try {
+                assertEquals(7, entry.getByte(99));
+                assertEquals(8, entry.getByte(150));
+            } finally {
+                entry.release();
+            }
+            verify(hitCounter, times(1)).inc();
+            verify(missCounter, times(3)).inc();
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testEviction() {
+        DirectBlockCache cache = cache(1);
+        try {
+            cache.put(1, 0, block(7, 100, 200), BLOCK_SIZE);
+            cache.put(1, BLOCK_SIZE, block(8, 100, 200), BLOCK_SIZE);
+            verify(evictionCounter, times(1)).inc();
+
+            ByteBuf dest = Unpooled.buffer();
+            assertEquals(-1, cache.read(1, 0, dest, 10));
+            assertEquals(10, cache.read(1, BLOCK_SIZE, dest, 10));
+            assertEquals(8, dest.getByte(0));
+            // the slot of the evicted block is reused
+            assertEquals(1, directBuffers.size());
+
+            cache.invalidate(1);
+            assertEquals(-1, cache.read(1, BLOCK_SIZE, dest, 10));
+            verify(evictionCounter, times(1)).inc();
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testCloseReleasesBlocks() {
+        DirectBlockCache cache = cache(64);
+        for (int i = 0; i < 4; i++) {
+            cache.put(1, (long) i * BLOCK_SIZE, block(i, 100, 200), BLOCK_SIZE);
+        }
+        assertEquals(4, directBuffers.size());
+
+        cache.close();
+        for (ByteBuf buffer : directBuffers) {
+            assertEquals(0, buffer.refCnt());
+        }
+        assertEquals(-1, cache.read(1, 0, Unpooled.buffer(), 10));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.bookkeeper.client.BookieInfoReader.BookieInfo;
+import org.apache.bookkeeper.net.BookieId;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the class {@link BookieInfoReader}.
+ */
+public class TestBookieInfoReader {
+
+    private static final double DELTA = 1e-9;
+    private static final long FREE_DISK_SPACE = 1000000L;
+    private static final BookieId BOOKIE1 = BookieId.parse("127.0.0.1:3181");
+    private static final BookieId BOOKIE2 = BookieId.parse("127.0.0.2:3181");
+    private static final BookieId BOOKIE3 = BookieId.parse("127.0.0.3:3181");
+    private static final BookieId BOOKIE4 = BookieId.parse("127.0.0.4:3181");
+
+    private static BookieInfo load(long journalQueueLength, int writeCacheUsagePercent, long requestsPerSecond) {
+        // the add and read requests count the same
+        return new BookieInfo(2 * FREE_DISK_SPACE, FREE_DISK_SPACE, journalQueueLength, writeCacheUsagePercent,
+                requestsPerSecond / 2, requestsPerSecond - requestsPerSecond / 2);
+    }
+
+    private static void assertLoadFactor(double expected, BookieInfo info) {
+        assertEquals(expected, info.getLoadFactor(), DELTA);
+        assertEquals((long) (FREE_DISK_SPACE * expected), info.getWeight());
+    }
+
+    @Test
+    public void testRequestRateAboveAverage() {
+        Map<BookieId, BookieInfo> infos = new HashMap<>();
+        infos.put(BOOKIE1, load(0L, 0, 100L));
+        infos.put(BOOKIE2, load(0L, 0, 100L));
+        infos.put(BOOKIE3, load(0L, 0, 200L));
+        infos.put(BOOKIE4, load(0L, 0, 400L));
+
+        // the average is 200 requests per second
+        Map<BookieId, BookieInfo> weighted = BookieInfoReader.applyLoadFactors(infos);
+        assertLoadFactor(1.0, weighted.get(BOOKIE1));
+        assertLoadFactor(1.0, weighted.get(BOOKIE2));
+        assertLoadFactor(1.0, weighted.get(BOOKIE3));
+        assertLoadFactor(0.5, weighted.get(BOOKIE4));
+    }
+
+    @Test
+    public void testJournalQueueAboveAverage() {
+        Map<BookieId, BookieInfo> infos = new HashMap<>();
+        infos.put(BOOKIE1, load(0L, 0, 100L));
+        infos.put(BOOKIE2, load(3L, 0, 100L));
+        infos.put(BOOKIE3, load(9L, 0, 100L));
+
+        // the average is 4 entries queued
+        Map<BookieId, BookieInfo> weighted = BookieInfoReader.applyLoadFactors(infos);
+        assertLoadFactor(1.0, weighted.get(BOOKIE1));
+        assertLoadFactor(1.0, weighted.get(BOOKIE2));
+        assertLoadFactor(0.5, weighted.get(BOOKIE3));
+    }
+
+    @Test
+    public void testWriteCacheAboveHalf() {
+        Map<BookieId, BookieInfo> infos = new HashMap<>();
+        infos.put(BOOKIE1, load(0L, 30, 100L));
+        infos.put(BOOKIE2, load(0L, 50, 100L));
+        infos.put(BOOKIE3, load(0L, 75, 100L));
+        infos.put(BOOKIE4, load(0L, 90, 100L));
+
+        Map<BookieId, BookieInfo> weighted = BookieInfoReader.applyLoadFactors(infos);
+        assertLoadFactor(1.0, weighted.get(BOOKIE1));
+        assertLoadFactor(1.0, weighted.get(BOOKIE2));
+        assertLoadFactor(0.5, weighted.get(BOOKIE3));
+        assertLoadFactor(0.2, weighted.get(BOOKIE4));
+    }
+
+    @Test
+    public void testLoadFactorFloor() {
+        Map<BookieId, BookieInfo> infos = new HashMap<>();
+        infos.put(BOOKIE1, load(0L, 0, 0L));
+        // a full write cache, and the factors multiplied below the floor
+        infos.put(BOOKIE2, load(0L, 100, 100L));
+        infos.put(BOOKIE3, load(1000L, 80, 10000L));
+
+        Map<BookieId, BookieInfo> weighted = BookieInfoReader.applyLoadFactors(infos);
+        assertLoadFactor(1.0, weighted.get(BOOKIE1));
+        assertLoadFactor(BookieInfoReader.MIN_LOAD_FACTOR, weighted.get(BOOKIE2));
+        assertLoadFactor(BookieInfoReader.MIN_LOAD_FACTOR, weighted.get(BOOKIE3));
+    }
+
+    @Test
+    public void testUnknownLoad() {
+        Map<BookieId, BookieInfo> infos = new HashMap<>();
+        // e.g. bookies not reporting their load
+        infos.put(BOOKIE1, new BookieInfo(2 * FREE_DISK_SPACE, FREE_DISK_SPACE));
+        infos.put(BOOKIE2, new BookieInfo(2 * FREE_DISK_SPACE, FREE_DISK_SPACE));
+        assertFalse(infos.get(BOOKIE1).hasLoad());
+        assertSame(infos, BookieInfoReader.applyLoadFactors(infos));
+
+        // the bookies with an unknown load keep their weight, and don't count in the averages
+        infos.put(BOOKIE3, load(0L, 0, 100L));
+        infos.put(BOOKIE4, load(0L, 0, 300L));
+        Map<BookieId, BookieInfo> weighted = BookieInfoReader.applyLoadFactors(infos);
+        assertSame(infos.get(BOOKIE1), weighted.get(BOOKIE1));
+        assertLoadFactor(1.0, weighted.get(BOOKIE1));
+        assertLoadFactor(1.0, weighted.get(BOOKIE2));
+        assertLoadFactor(1.0, weighted.get(BOOKIE3));
+        assertLoadFactor(200.0 / 300.0, weighted.get(BOOKIE4));
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.client;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.ENTRY_CACHE_EVICTION;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.ENTRY_CACHE_HIT;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.ENTRY_CACHE_MISS;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.ENTRY_CACHE_SHARED_READ;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookieClient;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the class {@link ClientEntryCache}.
+ */
+public class TestClientEntryCache {
+
+    private static final long WAIT_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
+    private static final long LEDGER_ID = 1L;
+    private static final long LAST_ENTRY_ID = 9L;
+    private static final byte[] PASSWORD = new byte[0];
+    private static final int NUM_SEGMENTS = ClientEntryCache.NUM_SEGMENTS;
+
+    private final Counter hitCounter = mock(Counter.class);
+    private final Counter missCounter = mock(Counter.class);
+    private final Counter sharedReadCounter = mock(Counter.class);
+    private final Counter evictionCounter = mock(Counter.class);
+    private final List<ByteBuf> directBuffers = Collections.synchronizedList(new ArrayList<>());
+    private final UnpooledByteBufAllocator allocator = new UnpooledByteBufAllocator(false) {
+        @Override
+        public ByteBuf directBuffer(int initialCapacity, int maxCapacity) {
+            ByteBuf buffer = super.directBuffer(initialCapacity, maxCapacity);
+            directBuffers.add(buffer);
+            return buffer;
+        }
+    };
+
+    private final List<Long> bookieReads = Collections.synchronizedList(new ArrayList<>());
+    private final Map<Long, Runnable> heldResponses = new ConcurrentHashMap<>();
+    private volatile boolean holdResponses = false;
+    private volatile LedgerHandle packager;
+
+    private ClientEntryCache cache(long maxSizeBytes) {
+        StatsLogger statsLogger = mock(StatsLogger.class);
+        when(statsLogger.getCounter(ENTRY_CACHE_HIT)).thenReturn(hitCounter);
+        when(statsLogger.getCounter(ENTRY_CACHE_MISS)).thenReturn(missCounter);
+        when(statsLogger.getCounter(ENTRY_CACHE_SHARED_READ)).thenReturn(sharedReadCounter);
+        when(statsLogger.getCounter(ENTRY_CACHE_EVICTION)).thenReturn(evictionCounter);
+        return new ClientEntryCache(allocator, maxSizeBytes, statsLogger);
+    }
+
+    private static byte[] data(long entryId) {
+        return ("entry-" + entryId).getBytes(UTF_8);
+    }
+
+    private static LedgerEntryImpl get(ClientEntryCache cache, long entryId) {
+        LedgerEntryImpl entry = LedgerEntryImpl.create(LEDGER_ID, entryId);
+        if (cache.get(entry)) {
+            return entry;
+        }
+        entry.close();
+        return null;
+    }
+
+    private long liveDirectBuffers() {
+        synchronized (directBuffers) {
+            return directBuffers.stream().filter(buffer -> buffer.refCnt() > 0).count();
+        }
+    }
+
+    @Test
+    public void testEntriesCopiedAndReleased() {
+        ClientEntryCache cache = cache(NUM_SEGMENTS * 1024);
+        ByteBuf content = Unpooled.wrappedBuffer(data(0L));
+        cache.put(LEDGER_ID, 0L, 100L, content);
+        // the cache holds its own copy
+        content.release();
+        assertEquals(data(0L).length, cache.size());
+        // an entry already cached isn't added again
+        cache.put(LEDGER_ID, 0L, 100L, Unpooled.wrappedBuffer(data(0L)));
+        assertEquals(1, directBuffers.size());
+
+        LedgerEntryImpl entry = get(cache, 0L);
+        assertNotNull(entry);
+        assertEquals(100L, entry.getLength());
+        assertEquals(new String(data(0L), UTF_8), new String(entry.getEntryBytes(), UTF_8));
+        verify(hitCounter, times(1)).inc();
+        assertNull(get(cache, 1L));
+        verify(missCounter, times(1)).inc();
+
+        // a reader still holding the entry keeps its data alive once the cache is closed
+        cache.close();
+        assertEquals(0, cache.size());
+        assertEquals(1, liveDirectBuffers());
+        entry.close();
+        assertEquals(0, liveDirectBuffers());
+        assertNull(get(cache, 0L));
+    }
+
+    @Test
+    public void testEviction() {
+        int entrySize = 60;
+        // a segment holds a single entry
+        ClientEntryCache cache = cache(NUM_SEGMENTS * entrySize);
+        int numEntries = 1000;
+        for (long entryId = 0; entryId < numEntries; entryId++) {
+            cache.put(LEDGER_ID, entryId, entrySize, Unpooled.wrappedBuffer(new byte[entrySize]));
+            assertTrue(cache.size() <= NUM_SEGMENTS * entrySize);
+        }
+        // the evicted entries are released
+        long cached = liveDirectBuffers();
+        assertTrue(cached > 0 && cached <= NUM_SEGMENTS);
+        assertEquals(cached * entrySize, cache.size());
+        verify(evictionCounter, times(numEntries - (int) cached)).inc();
+        // the last entry is the most recent one of its segment
+        LedgerEntryImpl last = get(cache, numEntries - 1);
+        assertNotNull(last);
+        last.close();
+
+        // an entry larger than a segment isn't cached
+        cache.put(LEDGER_ID, numEntries, entrySize + 1, Unpooled.wrappedBuffer(new byte[entrySize + 1]));
+        assertEquals(cached, liveDirectBuffers());
+
+        cache.close();
+        assertEquals(0, liveDirectBuffers());
+    }
+
+    @Test
+    public void testSharedInflightReads() throws Exception {
+        ClientEntryCache cache = cache(NUM_SEGMENTS * 1024);
+        assertNull(cache.startRead(LEDGER_ID, 0L));
+        CompletableFuture<Void> inflight = cache.startRead(LEDGER_ID, 0L);
+        assertNotNull(inflight);
+        verify(sharedReadCounter, times(1)).inc();
+        assertFalse(inflight.isDone());
+
+        cache.put(LEDGER_ID, 0L, 100L, Unpooled.wrappedBuffer(data(0L)));
+        cache.finishRead(LEDGER_ID, 0L);
+        assertTrue(inflight.isDone());
+        // the waiting reader finds the entry, without another miss
+        LedgerEntryImpl entry = LedgerEntryImpl.create(LEDGER_ID, 0L);
+        assertTrue(cache.recheck(entry));
+        entry.close();
+        verify(hitCounter, never()).inc();
+        verify(missCounter, never()).inc();
+        cache.close();
+    }
+
+    /**
+     * A client whose bookies answer the reads on the ordered thread of the ledger, like the real
+     * client does with the responses.
+     */
+    private ClientContext clientContext(ClientEntryCache cache, OrderedExecutor mainWorkerPool) {
+        ClientConfiguration conf = new ClientConfiguration().setFirstSpeculativeReadTimeout(0);
+        ClientContext clientCtx = mock(ClientContext.class);
+        BookieClient bookieClient = mock(BookieClient.class);
+        doAnswer(invocation -> {
+            long entryId = invocation.getArgument(2);
+            ReadEntryCallback cb = invocation.getArgument(3);
+            Object ctx = invocation.getArgument(4);
+            bookieReads.add(entryId);
+            Runnable response = () -> {
+                ByteBuf buffer = packagedEntry(entryId);
+                cb.readEntryComplete(BKException.Code.OK, LEDGER_ID, entryId, buffer, ctx);
+                buffer.release();
+            };
+            if (holdResponses) {
+                heldResponses.put(entryId, response);
+            } else {
+                mainWorkerPool.executeOrdered(LEDGER_ID, response);
+            }
+            return null;
+        }).when(bookieClient).readEntry(any(), anyLong(), anyLong(), any(), any(), anyInt());
+
+        when(clientCtx.getConf()).thenReturn(ClientInternalConf.fromConfig(conf));
+        when(clientCtx.getBookieClient()).thenReturn(bookieClient);
+        when(clientCtx.getByteBufAllocator()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        when(clientCtx.getMainWorkerPool()).thenReturn(mainWorkerPool);
+        when(clientCtx.getClientStats()).thenReturn(BookKeeperClientStats.newInstance(NullStatsLogger.INSTANCE));
+        when(clientCtx.getEntryCache()).thenReturn(cache);
+        return clientCtx;
+    }
+
+    private static LedgerHandle ledgerHandle(ClientContext clientCtx) throws Exception {
+        LedgerMetadata metadata = LedgerMetadataBuilder.create()
+            .withId(LEDGER_ID)
+            .withEnsembleSize(3).withWriteQuorumSize(3).withAckQuorumSize(2)
+            .withPassword(PASSWORD).withDigestType(DigestType.CRC32C)
+            .newEnsembleEntry(0L, Arrays.asList(
+                    BookieId.parse("127.0.0.1:3181"),
+                    BookieId.parse("127.0.0.2:3181"),
+                    BookieId.parse("127.0.0.3:3181")))
+            .withClosedState().withLastEntryId(LAST_ENTRY_ID).withLength(1000L)
+            .build();
+        return new LedgerHandle(clientCtx, LEDGER_ID, new Versioned<>(metadata, new LongVersion(0L)),
+                BookKeeper.DigestType.CRC32C, PASSWORD, EnumSet.noneOf(WriteFlag.class));
+    }
+
+    private ByteBuf packagedEntry(long entryId) {
+        ByteBufList packaged = (ByteBufList) packager.macManager.computeDigestAndPackageForSending(entryId,
+                LAST_ENTRY_ID, 100L * (entryId + 1), Unpooled.wrappedBuffer(data(entryId)), packager.ledgerKey, 0);
+        ByteBuf buffer = ByteBufList.coalesce(packaged);
+        packaged.release();
+        return buffer;
+    }
+
+    private static void assertEntries(long firstEntryId, long lastEntryId, LedgerEntries entries) {
+        try {
+            long entryId = firstEntryId;
+            for (LedgerEntry entry : entries) {
+                assertEquals(entryId, entry.getEntryId());
+                assertEquals(new String(data(entryId), UTF_8), new String(entry.getEntryBytes(), UTF_8));
+                entryId++;
+            }
+            assertEquals(lastEntryId + 1, entryId);
+        } finally {
+            entries.close();
+        }
+    }
+
+    @Test
+    public void testEntriesSharedBetweenHandles() throws Exception {
+        ClientEntryCache cache = cache(NUM_SEGMENTS * 1024);
+        OrderedExecutor mainWorkerPool = OrderedExecutor.newBuilder().numThreads(1).build();
+        ClientContext clientCtx = clientContext(cache, mainWorkerPool);
+        try {
+            LedgerHandle first = ledgerHandle(clientCtx);
+            LedgerHandle second = ledgerHandle(clientCtx);
+            packager = first;
+
+            assertEntries(0L, 4L, first.readAsync(0L, 4L).get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L), bookieReads);
+            // each entry missed once
+            verify(missCounter, times(5)).inc();
+            verify(hitCounter, never()).inc();
+
+            // the other handle reads the entries from the cache
+            assertEntries(0L, 4L, second.readAsync(0L, 4L).get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            assertEquals(5, bookieReads.size());
+            verify(hitCounter, times(5)).inc();
+            verify(missCounter, times(5)).inc();
+
+            // a handle reading an entry being read by another one waits for its read
+            holdResponses = true;
+            CompletableFuture<LedgerEntries> firstRead = first.readAsync(5L, 5L);
+            CompletableFuture<LedgerEntries> secondRead = second.readAsync(5L, 5L);
+            mainWorkerPool.submitOrdered(LEDGER_ID, () -> null).get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            assertEquals(6, bookieReads.size());
+            verify(sharedReadCounter, times(1)).inc();
+            mainWorkerPool.executeOrdered(LEDGER_ID, heldResponses.remove(5L));
+            assertEntries(5L, 5L, firstRead.get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            assertEntries(5L, 5L, secondRead.get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            assertEquals(6, bookieReads.size());
+            // the lookups once the read finished aren't counted as misses
+            verify(missCounter, times(7)).inc();
+            verify(hitCounter, times(5)).inc();
+        } finally {
+            mainWorkerPool.shutdown();
+            cache.close();
+        }
+        assertEquals(0, liveDirectBuffers());
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.netty.buffer.UnpooledByteBufAllocator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.common.util.OrderedScheduler;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookieClient;
+import org.apache.bookkeeper.proto.BookieClient.ExplicitLac;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Unit test for the class {@link ExplicitLacFlusher}.
+ */
+public class TestExplicitLacFlusher {
+
+    private static final int EXPLICIT_LAC_INTERVAL_MS = 100;
+    private static final byte[] PASSWORD = new byte[0];
+    private static final BookieId BOOKIE1 = BookieId.parse("127.0.0.1:3181");
+    private static final BookieId BOOKIE2 = BookieId.parse("127.0.0.2:3181");
+    private static final BookieId BOOKIE3 = BookieId.parse("127.0.0.3:3181");
+    private static final BookieId BOOKIE4 = BookieId.parse("127.0.0.4:3181");
+
+    private final BookieClient bookieClient = mock(BookieClient.class);
+    private final OrderedScheduler scheduler = mock(OrderedScheduler.class);
+    private final ScheduledFuture<?> scheduledFuture = mock(ScheduledFuture.class);
+    // the lacs sent by the flusher, by bookie, one list per request
+    private final Map<BookieId, List<Map<Long, Long>>> sentLacs = new HashMap<>();
+    private final List<ByteBufList> sentBuffers = new ArrayList<>();
+
+    public TestExplicitLacFlusher() {
+        doReturn(scheduledFuture).when(scheduler).scheduleAtFixedRate(any(), anyLong(), anyLong(), any());
+        doReturn(scheduledFuture).when(scheduler).scheduleAtFixedRateOrdered(any(), any(), anyLong(), anyLong(),
+                any());
+        doAnswer(invocation -> {
+            BookieId bookie = invocation.getArgument(0);
+            List<ExplicitLac> lacs = invocation.getArgument(1);
+            Map<Long, Long> request = new HashMap<>();
+            for (ExplicitLac lac : lacs) {
+                request.put(lac.getLedgerId(), lac.getLac());
+                sentBuffers.add(lac.getToSend());
+            }
+            sentLacs.computeIfAbsent(bookie, b -> new ArrayList<>()).add(request);
+            return null;
+        }).when(bookieClient).batchWriteLac(any(), any(), any(), any());
+    }
+
+    private ExplicitLacFlusher flusher(int maxBatchSize) {
+        ExplicitLacFlusher flusher = new ExplicitLacFlusher(bookieClient, scheduler, EXPLICIT_LAC_INTERVAL_MS,
+                maxBatchSize);
+        // flushed by the tests rather than by the timer
+        verify(scheduler).scheduleAtFixedRate(any(), eq((long) EXPLICIT_LAC_INTERVAL_MS),
+                eq((long) EXPLICIT_LAC_INTERVAL_MS), eq(TimeUnit.MILLISECONDS));
+        return flusher;
+    }
+
+    /**
+     * A handle of an open ledger, written with explicit LACs, batched by <i>flusher</i> unless it is null.
+     */
+    private LedgerHandle ledgerHandle(long ledgerId, ExplicitLacFlusher flusher, OrderedExecutor mainWorkerPool,
+                                      BookieId... ensemble) throws Exception {
+        ClientConfiguration conf = new ClientConfiguration().setExplictLacInterval(EXPLICIT_LAC_INTERVAL_MS);
+        ClientContext clientCtx = mock(ClientContext.class);
+        when(clientCtx.getConf()).thenReturn(ClientInternalConf.fromConfig(conf));
+        when(clientCtx.getBookieClient()).thenReturn(bookieClient);
+        when(clientCtx.getByteBufAllocator()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        when(clientCtx.getMainWorkerPool()).thenReturn(mainWorkerPool);
+        when(clientCtx.getScheduler()).thenReturn(scheduler);
+        when(clientCtx.getClientStats()).thenReturn(BookKeeperClientStats.newInstance(NullStatsLogger.INSTANCE));
+        when(clientCtx.getExplicitLacFlusher()).thenReturn(flusher);
+
+        LedgerMetadata metadata = LedgerMetadataBuilder.create()
+            .withId(ledgerId)
+            .withEnsembleSize(ensemble.length).withWriteQuorumSize(ensemble.length).withAckQuorumSize(2)
+            .withPassword(PASSWORD).withDigestType(DigestType.CRC32C)
+            .newEnsembleEntry(0L, Arrays.asList(ensemble))
+            .build();
+        return new LedgerHandle(clientCtx, ledgerId, new Versioned<>(metadata, new LongVersion(0L)),
+                BookKeeper.DigestType.CRC32C, PASSWORD, EnumSet.noneOf(WriteFlag.class));
+    }
+
+    private LedgerHandle ledgerHandle(long ledgerId, ExplicitLacFlusher flusher, BookieId... ensemble)
+            throws Exception {
+        return ledgerHandle(ledgerId, flusher, null, ensemble);
+    }
+
+    private static Map<Long, Long> lacs(long... ledgerIdsAndLacs) {
+        Map<Long, Long> lacs = new HashMap<>();
+        for (int i = 0; i < ledgerIdsAndLacs.length; i += 2) {
+            lacs.put(ledgerIdsAndLacs[i], ledgerIdsAndLacs[i + 1]);
+        }
+        return lacs;
+    }
+
+    private void assertBuffersReleased() {
+        for (ByteBufList buffer : sentBuffers) {
+            assertEquals(0, buffer.refCnt());
+        }
+    }
+
+    @Test
+    public void testLacsBatchedPerBookie() throws Exception {
+        ExplicitLacFlusher flusher = flusher(100);
+        LedgerHandle lh1 = ledgerHandle(1L, flusher, BOOKIE1, BOOKIE2, BOOKIE3);
+        LedgerHandle lh2 = ledgerHandle(2L, flusher, BOOKIE2, BOOKIE3, BOOKIE4);
+        // nothing was added to the third ledger
+        ledgerHandle(3L, flusher, BOOKIE1, BOOKIE2, BOOKIE3);
+        lh1.lastAddConfirmed = 5L;
+        lh2.lastAddConfirmed = 7L;
+
+        flusher.flush();
+        assertEquals(Collections.singletonList(lacs(1L, 5L)), sentLacs.get(BOOKIE1));
+        assertEquals(Collections.singletonList(lacs(1L, 5L, 2L, 7L)), sentLacs.get(BOOKIE2));
+        assertEquals(Collections.singletonList(lacs(1L, 5L, 2L, 7L)), sentLacs.get(BOOKIE3));
+        assertEquals(Collections.singletonList(lacs(2L, 7L)), sentLacs.get(BOOKIE4));
+        // the digests of the lacs are shared by the requests, and released once they are sent
+        assertEquals(6, sentBuffers.size());
+        assertBuffersReleased();
+        verify(bookieClient, never()).writeLac(any(), anyLong(), any(), anyLong(), any(), any(), any());
+    }
+
+    @Test
+    public void testOnlyAdvancedLacsSent() throws Exception {
+        ExplicitLacFlusher flusher = flusher(100);
+        LedgerHandle lh = ledgerHandle(1L, flusher, BOOKIE1, BOOKIE2, BOOKIE3);
+        lh.lastAddConfirmed = 5L;
+        flusher.flush();
+        verify(bookieClient, times(3)).batchWriteLac(any(), any(), any(), any());
+
+        // the bookies already know the lac
+        flusher.flush();
+        verify(bookieClient, times(3)).batchWriteLac(any(), any(), any(), any());
+
+        // the lac was piggybacked on an add
+        lh.lastAddConfirmed = 7L;
+        lh.explicitLacFlushPolicy.updatePiggyBackedLac(7L);
+        flusher.flush();
+        verify(bookieClient, times(3)).batchWriteLac(any(), any(), any(), any());
+
+        lh.lastAddConfirmed = 8L;
+        flusher.flush();
+        verify(bookieClient, times(6)).batchWriteLac(any(), any(), any(), any());
+        assertEquals(Arrays.asList(lacs(1L, 5L), lacs(1L, 8L)), sentLacs.get(BOOKIE1));
+        assertBuffersReleased();
+    }
+
+    @Test
+    public void testMaxBatchSize() throws Exception {
+        ExplicitLacFlusher flusher = flusher(2);
+        for (long ledgerId = 1L; ledgerId <= 5L; ledgerId++) {
+            ledgerHandle(ledgerId, flusher, BOOKIE1, BOOKIE2, BOOKIE3).lastAddConfirmed = 10L;
+        }
+        flusher.flush();
+
+        for (BookieId bookie : Arrays.asList(BOOKIE1, BOOKIE2, BOOKIE3)) {
+            List<Map<Long, Long>> requests = sentLacs.get(bookie);
+            assertEquals(Arrays.asList(2, 2, 1), requests.stream().map(Map::size).collect(Collectors.toList()));
+            // each ledger is sent once to each bookie
+            Map<Long, Long> sent = new HashMap<>();
+            requests.forEach(sent::putAll);
+            assertEquals(lacs(1L, 10L, 2L, 10L, 3L, 10L, 4L, 10L, 5L, 10L), sent);
+        }
+        assertBuffersReleased();
+    }
+
+    @Test
+    public void testClosedLedgersNotSent() throws Exception {
+        ExplicitLacFlusher flusher = flusher(100);
+        LedgerHandle lh = ledgerHandle(1L, flusher, BOOKIE1, BOOKIE2, BOOKIE3);
+        lh.lastAddConfirmed = 5L;
+        lh.explicitLacFlushPolicy.stopExplicitLacFlush();
+        flusher.flush();
+        verify(bookieClient, never()).batchWriteLac(any(), any(), any(), any());
+
+        flusher.close();
+        verify(scheduledFuture).cancel(false);
+    }
+
+    @Test
+    public void testWriteLacPerLedgerWithoutBatchSupport() throws Exception {
+        // the requests of a bookie client which can't batch the lacs
+        doCallRealMethod().when(bookieClient).batchWriteLac(any(), any(), any(), any());
+        ExplicitLacFlusher flusher = flusher(100);
+        ledgerHandle(1L, flusher, BOOKIE1, BOOKIE2, BOOKIE3).lastAddConfirmed = 5L;
+        ledgerHandle(2L, flusher, BOOKIE1, BOOKIE2, BOOKIE3).lastAddConfirmed = 7L;
+        flusher.flush();
+
+        for (BookieId bookie : Arrays.asList(BOOKIE1, BOOKIE2, BOOKIE3)) {
+            verify(bookieClient).writeLac(eq(bookie), eq(1L), any(), eq(5L), any(), any(), any());
+            verify(bookieClient).writeLac(eq(bookie), eq(2L), any(), eq(7L), any(), any(), any());
+        }
+        verify(bookieClient, times(6)).writeLac(any(), anyLong(), any(), anyLong(), any(), any(), any());
+    }
+
+    @Test
+    public void testWriteLacPerLedgerWhenBatchingDisabled() throws Exception {
+        OrderedExecutor mainWorkerPool = OrderedExecutor.newBuilder().numThreads(1).build();
+        try {
+            LedgerHandle lh = ledgerHandle(1L, null, mainWorkerPool, BOOKIE1, BOOKIE2, BOOKIE3);
+            // the ledger has its own flush task
+            ArgumentCaptor<Runnable> flushTask = ArgumentCaptor.forClass(Runnable.class);
+            verify(scheduler).scheduleAtFixedRateOrdered(eq(1L), flushTask.capture(),
+                    eq((long) EXPLICIT_LAC_INTERVAL_MS), eq((long) EXPLICIT_LAC_INTERVAL_MS),
+                    eq(TimeUnit.MILLISECONDS));
+
+            lh.lastAddConfirmed = 5L;
+            flushTask.getValue().run();
+            mainWorkerPool.submit(() -> null).get();
+
+            for (BookieId bookie : Arrays.asList(BOOKIE1, BOOKIE2, BOOKIE3)) {
+                verify(bookieClient).writeLac(eq(bookie), eq(1L), any(), eq(5L), any(), any(), any());
+            }
+            verify(bookieClient, never()).batchWriteLac(any(), any(), any(), any());
+            assertTrue(sentLacs.isEmpty());
+        } finally {
+            mainWorkerPool.shutdown();
+        }
+    }
+}
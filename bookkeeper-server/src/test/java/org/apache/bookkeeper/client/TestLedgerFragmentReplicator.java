@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.client;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.bookkeeper.replication.ReplicationStats.NUM_FRAGMENT_COPY_FALLBACKS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.Lists;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.AsyncCallback.ReadCallback;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookieClient;
+import org.apache.bookkeeper.proto.BookieProtocol;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.CopyLedgerFragmentCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.proto.DataFormats.LedgerMetadataFormat;
+import org.apache.bookkeeper.proto.checksum.DigestManager;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the class {@link LedgerFragmentReplicator}.
+ */
+public class TestLedgerFragmentReplicator {
+
+    private static final long WAIT_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
+    private static final long LEDGER_ID = 1L;
+    private static final long LAST_ENTRY_ID = 9L;
+    private static final byte[] PASSWORD = "password".getBytes(UTF_8);
+    private static final List<BookieId> ENSEMBLE = Lists.newArrayList(
+            BookieId.parse("127.0.0.1:3181"),
+            BookieId.parse("127.0.0.2:3181"),
+            BookieId.parse("127.0.0.3:3181"));
+    private static final BookieId NEW_BOOKIE = BookieId.parse("127.0.0.4:3181");
+
+    private final BookieClient bookieClient = mock(BookieClient.class);
+    private final Counter numFragmentCopyFallbacks = mock(Counter.class);
+    private final LedgerHandle lh = mock(LedgerHandle.class);
+    // the entries written by the replicator to the new bookie
+    private final Set<Long> entriesWritten = new ConcurrentSkipListSet<>();
+
+    public TestLedgerFragmentReplicator() throws Exception {
+        LedgerMetadata metadata = LedgerMetadataBuilder.create()
+            .withId(LEDGER_ID)
+            .withEnsembleSize(3).withWriteQuorumSize(3).withAckQuorumSize(2)
+            .withPassword(PASSWORD).withDigestType(DigestType.CRC32C)
+            .newEnsembleEntry(0L, ENSEMBLE)
+            .withClosedState().withLastEntryId(LAST_ENTRY_ID).withLength(50L)
+            .build();
+        when(lh.getId()).thenReturn(LEDGER_ID);
+        when(lh.getLedgerKey()).thenReturn(DigestManager.generateMasterKey(PASSWORD));
+        when(lh.getLedgerMetadata()).thenReturn(metadata);
+        when(lh.getDistributionSchedule()).thenReturn(new RoundRobinDistributionSchedule(3, 2, 3));
+        when(lh.getLastAddConfirmed()).thenReturn(LAST_ENTRY_ID);
+        when(lh.getDigestManager()).thenReturn(DigestManager.instantiate(LEDGER_ID, PASSWORD,
+                LedgerMetadataFormat.DigestType.CRC32C, UnpooledByteBufAllocator.DEFAULT, false));
+        doAnswer(invocation -> {
+            long entryId = invocation.getArgument(0);
+            ReadCallback cb = invocation.getArgument(2);
+            LedgerEntry entry = new LedgerEntry(LedgerEntryImpl.create(LEDGER_ID, entryId, 5L,
+                    Unpooled.wrappedBuffer("entry".getBytes(UTF_8))));
+            cb.readComplete(BKException.Code.OK, lh, Collections.enumeration(Collections.singletonList(entry)),
+                    invocation.getArgument(3));
+            return null;
+        }).when(lh).asyncReadEntries(anyLong(), anyLong(), any(), any());
+
+        doAnswer(invocation -> {
+            long entryId = invocation.getArgument(3);
+            entriesWritten.add(entryId);
+            WriteCallback cb = invocation.getArgument(5);
+            cb.writeComplete(BKException.Code.OK, LEDGER_ID, entryId, invocation.getArgument(0),
+                    invocation.getArgument(6));
+            return null;
+        }).when(bookieClient).addEntry(any(), anyLong(), any(), anyLong(), any(), any(), any(), anyInt(),
+                anyBoolean(), any());
+    }
+
+    private LedgerFragmentReplicator replicator(boolean fragmentCopyEnabled) {
+        ClientConfiguration conf = new ClientConfiguration()
+            .setRereplicationFragmentCopyEnabled(fragmentCopyEnabled);
+        conf.setRereplicationEntryBatchSize(3L);
+        BookKeeper bkc = mock(BookKeeper.class);
+        when(bkc.getBookieClient()).thenReturn(bookieClient);
+        when(bkc.getConf()).thenReturn(conf);
+
+        StatsLogger statsLogger = mock(StatsLogger.class);
+        when(statsLogger.getCounter(anyString())).thenReturn(NullStatsLogger.INSTANCE.getCounter("counter"));
+        when(statsLogger.getCounter(NUM_FRAGMENT_COPY_FALLBACKS)).thenReturn(numFragmentCopyFallbacks);
+        when(statsLogger.getOpStatsLogger(anyString())).thenReturn(NullStatsLogger.INSTANCE.getOpStatsLogger("op"));
+        return new LedgerFragmentReplicator(bkc, statsLogger, conf);
+    }
+
+    /**
+     * The new bookie answers the copy of a fragment with {@code rc}.
+     */
+    private void mockCopy(int rc) {
+        doAnswer(invocation -> {
+            long firstEntryId = invocation.getArgument(3);
+            long lastEntryId = invocation.getArgument(4);
+            CopyLedgerFragmentCallback cb = invocation.getArgument(6);
+            long entriesCopied = rc == BKException.Code.OK ? lastEntryId - firstEntryId + 1 : 0L;
+            cb.copyLedgerFragmentComplete(rc, LEDGER_ID, entriesCopied, 100L * entriesCopied,
+                    invocation.getArgument(7));
+            return null;
+        }).when(bookieClient).copyLedgerFragment(any(), anyLong(), any(), anyLong(), anyLong(), any(), any(), any());
+    }
+
+    private int replicate(LedgerFragmentReplicator replicator) throws Exception {
+        // the fragment of the first bookie of the ensemble
+        LedgerFragment fragment = new LedgerFragment(lh, 0L, LAST_ENTRY_ID, Collections.singleton(0));
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        replicator.replicate(lh, fragment, (rc, path, ctx) -> result.complete(rc),
+                Collections.singleton(NEW_BOOKIE), (ledgerId, entryId) -> { });
+        return result.get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void testFragmentCopiedByNewBookie() throws Exception {
+        mockCopy(BKException.Code.OK);
+        assertEquals(BKException.Code.OK, replicate(replicator(true)));
+
+        // a single request copies the whole fragment, avoiding the bookie which lost it
+        verify(bookieClient).copyLedgerFragment(eq(NEW_BOOKIE), eq(LEDGER_ID), eq(lh.getLedgerKey()),
+                eq(0L), eq(LAST_ENTRY_ID), eq(Collections.singleton(ENSEMBLE.get(0))), any(), any());
+        verify(lh, never()).asyncReadEntries(anyLong(), anyLong(), any(), any());
+        assertEquals(Collections.emptySet(), entriesWritten);
+        verify(numFragmentCopyFallbacks, never()).inc();
+    }
+
+    @Test
+    public void testFallbackWhenCopyFails() throws Exception {
+        // e.g. a bookie client or a bookie which doesn't support the copy
+        mockCopy(BKException.Code.IllegalOpException);
+        assertEquals(BKException.Code.OK, replicate(replicator(true)));
+
+        // every entry of the fragment is read and written to the new bookie instead
+        verify(numFragmentCopyFallbacks).inc();
+        Set<Long> expected = new TreeSet<>();
+        for (long entryId = 0L; entryId <= LAST_ENTRY_ID; entryId++) {
+            expected.add(entryId);
+            verify(bookieClient).addEntry(eq(NEW_BOOKIE), eq(LEDGER_ID), any(), eq(entryId), any(), any(), any(),
+                    eq(BookieProtocol.FLAG_RECOVERY_ADD), eq(false), eq(WriteFlag.NONE));
+        }
+        assertEquals(expected, entriesWritten);
+    }
+
+    @Test
+    public void testFragmentNotCopiedWhenDisabled() throws Exception {
+        assertEquals(BKException.Code.OK, replicate(replicator(false)));
+
+        verify(bookieClient, never())
+            .copyLedgerFragment(any(), anyLong(), any(), anyLong(), anyLong(), any(), any(), any());
+        verify(numFragmentCopyFallbacks, never()).inc();
+        assertEquals(LAST_ENTRY_ID + 1, entriesWritten.size());
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.Lists;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.common.util.MemoryLimitController;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookieClient;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the class {@link LedgerHandle}.
+ */
+public class TestLedgerHandle {
+
+    private static final long WAIT_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
+    private static final byte[] PASSWORD = new byte[0];
+    private static final List<BookieId> ENSEMBLE = Lists.newArrayList(
+            BookieId.parse("127.0.0.1:3181"),
+            BookieId.parse("127.0.0.2:3181"),
+            BookieId.parse("127.0.0.3:3181"));
+
+    /**
+     * A controller whose limit is already reached.
+     */
+    private static MemoryLimitController fullController() {
+        MemoryLimitController controller = new MemoryLimitController(100);
+        // one reservation may go over the limit
+        assertTrue(controller.tryReserveMemory(200));
+        return controller;
+    }
+
+    @Test
+    public void testFailFastByDefault() {
+        long waitTimeoutMs = new ClientConfiguration().getClientMemoryLimitWaitTimeoutMs();
+        assertEquals(0L, waitTimeoutMs);
+
+        MemoryLimitController controller = fullController();
+        long startNanos = MathUtils.nowInNano();
+        assertFalse(LedgerHandle.reserveClientMemory(controller, 10, waitTimeoutMs, true));
+        assertTrue(MathUtils.elapsedMSec(startNanos) < WAIT_TIMEOUT_MS);
+        assertEquals(200, controller.currentUsage());
+
+        controller.releaseMemory(200);
+        assertTrue(LedgerHandle.reserveClientMemory(controller, 10, waitTimeoutMs, true));
+        assertEquals(10, controller.currentUsage());
+    }
+
+    @Test
+    public void testClientThreadsNeverWait() {
+        MemoryLimitController controller = fullController();
+        long startNanos = MathUtils.nowInNano();
+        assertFalse(LedgerHandle.reserveClientMemory(controller, 10, WAIT_TIMEOUT_MS, false));
+        assertTrue(MathUtils.elapsedMSec(startNanos) < WAIT_TIMEOUT_MS);
+    }
+
+    @Test
+    public void testWaitForMemory() throws Exception {
+        MemoryLimitController controller = fullController();
+        CompletableFuture<Boolean> reserved = CompletableFuture.supplyAsync(
+                () -> LedgerHandle.reserveClientMemory(controller, 10, WAIT_TIMEOUT_MS, true));
+        // released by the completion of another operation
+        controller.releaseMemory(200);
+        assertTrue(reserved.get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(10, controller.currentUsage());
+    }
+
+    @Test
+    public void testWaitTimesOut() {
+        MemoryLimitController controller = fullController();
+        assertFalse(LedgerHandle.reserveClientMemory(controller, 10, 100, true));
+        assertEquals(200, controller.currentUsage());
+    }
+
+    /**
+     * A handle of an open ledger, on a client whose bookies acknowledge every add on the ordered
+     * thread of the ledger, like the real client does with the responses.
+     */
+    private static LedgerHandle ledgerHandle(OrderedExecutor mainWorkerPool, boolean closed) throws Exception {
+        ClientConfiguration conf = new ClientConfiguration()
+            .setThrottleValue(0)
+            .setSingleWriterAddSequencingEnabled(true);
+        BookieClient bookieClient = mock(BookieClient.class);
+        doAnswer(invocation -> {
+            long ledgerId = invocation.getArgument(1);
+            long entryId = invocation.getArgument(3);
+            WriteCallback cb = invocation.getArgument(5);
+            mainWorkerPool.executeOrdered(ledgerId, () -> cb.writeComplete(BKException.Code.OK, ledgerId, entryId,
+                    invocation.getArgument(0), invocation.getArgument(6)));
+            return null;
+        }).when(bookieClient).addEntry(any(), anyLong(), any(), anyLong(), any(), any(), any(), anyInt(),
+                anyBoolean(), any());
+        when(bookieClient.isWritable(any(), anyLong())).thenReturn(true);
+
+        ClientContext clientCtx = mock(ClientContext.class);
+        when(clientCtx.getConf()).thenReturn(ClientInternalConf.fromConfig(conf));
+        when(clientCtx.getBookieClient()).thenReturn(bookieClient);
+        when(clientCtx.getByteBufAllocator()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        when(clientCtx.getMainWorkerPool()).thenReturn(mainWorkerPool);
+        when(clientCtx.getClientStats()).thenReturn(BookKeeperClientStats.newInstance(NullStatsLogger.INSTANCE));
+
+        LedgerMetadataBuilder builder = LedgerMetadataBuilder.create()
+            .withId(1L)
+            .withEnsembleSize(3).withWriteQuorumSize(3).withAckQuorumSize(2)
+            .withPassword(PASSWORD).withDigestType(DigestType.CRC32C)
+            .newEnsembleEntry(0L, ENSEMBLE);
+        if (closed) {
+            builder.withClosedState().withLastEntryId(-1L).withLength(0L);
+        }
+        LedgerMetadata metadata = builder.build();
+        return new LedgerHandle(clientCtx, 1L, new Versioned<>(metadata, new LongVersion(0L)),
+                BookKeeper.DigestType.CRC32C, PASSWORD, EnumSet.noneOf(WriteFlag.class));
+    }
+
+    @Test
+    public void testAddsSequencedInOrderOfConcurrentCallers() throws Exception {
+        int numCallers = 8;
+        int numAddsPerCaller = 1000;
+        OrderedExecutor mainWorkerPool = OrderedExecutor.newBuilder().numThreads(1).build();
+        try {
+            LedgerHandle lh = ledgerHandle(mainWorkerPool, false);
+            long[][] entryIds = new long[numCallers][numAddsPerCaller];
+            List<Long> completed = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch done = new CountDownLatch(numCallers * numAddsPerCaller);
+            List<Thread> callers = new ArrayList<>();
+            for (int i = 0; i < numCallers; i++) {
+                int caller = i;
+                callers.add(new Thread(() -> {
+                    for (int j = 0; j < numAddsPerCaller; j++) {
+                        lh.asyncAddEntry(new byte[10], (rc, handle, entryId, ctx) -> {
+                            assertEquals(BKException.Code.OK, rc);
+                            entryIds[caller][(Integer) ctx] = entryId;
+                            completed.add(entryId);
+                            done.countDown();
+                        }, j);
+                    }
+                }));
+            }
+            callers.forEach(Thread::start);
+            for (Thread caller : callers) {
+                caller.join();
+            }
+            assertTrue(done.await(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+            // the adds of each caller got increasing entry ids, in the order they were made
+            for (int i = 0; i < numCallers; i++) {
+                for (int j = 1; j < numAddsPerCaller; j++) {
+                    assertTrue(entryIds[i][j] > entryIds[i][j - 1]);
+                }
+            }
+            // no entry id was skipped or given twice, and the adds completed in the order of their ids
+            assertEquals(numCallers * numAddsPerCaller, completed.size());
+            for (int i = 0; i < completed.size(); i++) {
+                assertEquals(i, completed.get(i).longValue());
+            }
+            assertEquals(numCallers * numAddsPerCaller - 1, lh.getLastAddPushed());
+            assertEquals(numCallers * numAddsPerCaller - 1, lh.getLastAddConfirmed());
+            assertEquals(numCallers * numAddsPerCaller * 10L, lh.getLength());
+        } finally {
+            mainWorkerPool.shutdown();
+        }
+    }
+
+    @Test
+    public void testAddsToClosedLedgerRejected() throws Exception {
+        OrderedExecutor mainWorkerPool = OrderedExecutor.newBuilder().numThreads(1).build();
+        try {
+            LedgerHandle lh = ledgerHandle(mainWorkerPool, true);
+            CompletableFuture<Integer> rc = new CompletableFuture<>();
+            lh.asyncAddEntry(new byte[10], (addRc, handle, entryId, ctx) -> {
+                assertEquals(LedgerHandle.INVALID_ENTRY_ID, entryId);
+                rc.complete(addRc);
+            }, null);
+            assertEquals(BKException.Code.LedgerClosedException, rc.get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            assertEquals(-1L, lh.getLastAddPushed());
+        } finally {
+            mainWorkerPool.shutdown();
+        }
+    }
+
+    @Test
+    public void testAddsFailedWhenExecutorShutDown() throws Exception {
+        OrderedExecutor mainWorkerPool = OrderedExecutor.newBuilder().numThreads(1).build();
+        LedgerHandle lh = ledgerHandle(mainWorkerPool, false);
+        mainWorkerPool.shutdown();
+
+        CompletableFuture<Integer> rc = new CompletableFuture<>();
+        lh.asyncAddEntry(new byte[10], (addRc, handle, entryId, ctx) -> rc.complete(addRc), null);
+        assertEquals(BKException.Code.InterruptedException, rc.get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(-1L, lh.getLastAddPushed());
+
+        // the failed add doesn't leave the sequencing stuck
+        CompletableFuture<Integer> nextRc = new CompletableFuture<>();
+        lh.asyncAddEntry(new byte[10], (addRc, handle, entryId, ctx) -> nextRc.complete(addRc), null);
+        assertEquals(BKException.Code.InterruptedException, nextRc.get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.client;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.netty.buffer.Unpooled;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.AsyncCallback.AddCallback;
+import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the class {@link LedgerRecoveryOp}.
+ */
+public class TestLedgerRecoveryOp {
+
+    private static final long WAIT_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
+
+    private final List<LedgerRecoveryOp.ReadBatch> batches = new ArrayList<>();
+    private final List<String> reAdded = new ArrayList<>();
+
+    private static byte[] data(long entryId) {
+        return ("entry-" + entryId).getBytes(UTF_8);
+    }
+
+    private static LedgerEntry entry(long entryId) {
+        byte[] data = data(entryId);
+        return new LedgerEntry(LedgerEntryImpl.create(1L, entryId, 100L * (entryId + 1), Unpooled.wrappedBuffer(data)));
+    }
+
+    /**
+     * A recovery of a ledger whose last add confirmed is -1, which records the batches it reads
+     * and re-adds the entries to a handle acknowledging them at once.
+     */
+    private LedgerRecoveryOp recoveryOp(int batchSize, int maxOutstandingBatches) {
+        ClientConfiguration conf = new ClientConfiguration()
+            .setRecoveryReadBatchSize(batchSize)
+            .setRecoveryReadMaxOutstandingBatches(maxOutstandingBatches);
+        ClientContext clientCtx = mock(ClientContext.class);
+        when(clientCtx.getConf()).thenReturn(ClientInternalConf.fromConfig(conf));
+        when(clientCtx.getClientStats()).thenReturn(BookKeeperClientStats.newInstance(NullStatsLogger.INSTANCE));
+
+        LedgerHandle lh = mock(LedgerHandle.class);
+        lh.lastAddPushed = -1L;
+        LedgerRecoveryOp op = new LedgerRecoveryOp(lh, clientCtx) {
+            @Override
+            void readBatch(ReadBatch batch) {
+                batches.add(batch);
+            }
+        };
+        doAnswer(invocation -> {
+            // the entries are re-added outside of the lock of the recovery
+            assertFalse(Thread.holdsLock(op));
+            byte[] data = invocation.getArgument(0);
+            long entryId;
+            synchronized (lh) {
+                entryId = ++lh.lastAddPushed;
+            }
+            reAdded.add(new String(data, UTF_8));
+            AddCallback cb = invocation.getArgument(3);
+            cb.addComplete(BKException.Code.OK, lh, entryId, invocation.getArgument(4));
+            return null;
+        }).when(lh).asyncRecoveryAddEntry(any(), anyInt(), anyInt(), any(), any());
+        return op;
+    }
+
+    private static void completeBatch(LedgerRecoveryOp op, LedgerRecoveryOp.ReadBatch batch) {
+        for (long entryId = batch.firstEntryId; entryId <= batch.lastEntryId; entryId++) {
+            op.onEntryComplete(BKException.Code.OK, op.lh, entry(entryId), batch);
+        }
+    }
+
+    private static void completeBatchPastEnd(LedgerRecoveryOp op, LedgerRecoveryOp.ReadBatch batch) {
+        for (long entryId = batch.firstEntryId; entryId <= batch.lastEntryId; entryId++) {
+            op.onEntryComplete(BKException.Code.NoSuchEntryException, op.lh, null, batch);
+        }
+    }
+
+    @Test
+    public void testBatchesCompletingOutOfOrder() throws Exception {
+        LedgerRecoveryOp op = recoveryOp(2, 3);
+        op.recoverFrom(-1L);
+        assertEquals(3, batches.size());
+        assertEquals(0L, batches.get(0).firstEntryId);
+        assertEquals(5L, batches.get(2).lastEntryId);
+
+        // the last batch completes first, its entries wait for the previous ones
+        completeBatch(op, batches.get(2));
+        assertTrue(reAdded.isEmpty());
+        // while the next batch is read
+        assertEquals(4, batches.size());
+        assertEquals(6L, batches.get(3).firstEntryId);
+
+        // a batch completing partially re-adds nothing either
+        op.onEntryComplete(BKException.Code.OK, op.lh, entry(2L), batches.get(1));
+        assertTrue(reAdded.isEmpty());
+
+        completeBatch(op, batches.get(0));
+        assertEquals(3, reAdded.size());
+        op.onEntryComplete(BKException.Code.OK, op.lh, entry(3L), batches.get(1));
+
+        // the entries are re-added in entry id order
+        assertEquals(6, reAdded.size());
+        for (int i = 0; i < reAdded.size(); i++) {
+            assertEquals(new String(data(i), UTF_8), reAdded.get(i));
+        }
+        assertEquals(6, batches.size());
+        assertFalse(op.promise.isDone());
+
+        // the end of the ledger completes the recovery, the batches read ahead of it are ignored
+        completeBatchPastEnd(op, batches.get(4));
+        assertFalse(op.promise.isDone());
+        completeBatch(op, batches.get(5));
+        completeBatchPastEnd(op, batches.get(3));
+        assertSame(op.lh, op.promise.get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(6, reAdded.size());
+        assertEquals(6L, op.readCount.get());
+        assertEquals(6L, op.writeCount.get());
+    }
+
+    @Test
+    public void testReadErrorFailsRecovery() throws Exception {
+        LedgerRecoveryOp op = recoveryOp(2, 2);
+        op.recoverFrom(-1L);
+        completeBatch(op, batches.get(1));
+
+        op.onEntryComplete(BKException.Code.OK, op.lh, entry(0L), batches.get(0));
+        op.onEntryComplete(BKException.Code.ReadException, op.lh, null, batches.get(0));
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> op.promise.get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(BKException.Code.ReadException, ((BKException) e.getCause()).getCode());
+        // the entries read ahead of the error aren't re-added
+        assertEquals(1, reAdded.size());
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the class {@link LedgerRecoveryScheduler}.
+ */
+public class TestLedgerRecoveryScheduler {
+
+    private static final long WAIT_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
+
+    private static final BookieId BOOKIE1 = BookieId.parse("127.0.0.1:3181");
+    private static final BookieId BOOKIE2 = BookieId.parse("127.0.0.2:3181");
+    private static final BookieId BOOKIE3 = BookieId.parse("127.0.0.3:3181");
+    private static final BookieId BOOKIE4 = BookieId.parse("127.0.0.4:3181");
+
+    private final OrderedExecutor executor = OrderedExecutor.newBuilder().numThreads(2).build();
+    // the recoveries started, by ledger id, completed by the tests
+    private final Map<Long, CompletableFuture<Long>> started = new ConcurrentHashMap<>();
+
+    @AfterEach
+    public void teardown() {
+        executor.shutdown();
+    }
+
+    private LedgerRecoveryScheduler scheduler(int maxConcurrentRecoveries, int maxConcurrentRecoveriesPerBookie) {
+        return new LedgerRecoveryScheduler(maxConcurrentRecoveries, maxConcurrentRecoveriesPerBookie, executor,
+                NullStatsLogger.INSTANCE.getOpStatsLogger("recovery_queue_time"));
+    }
+
+    private CompletableFuture<Long> submit(LedgerRecoveryScheduler scheduler, long ledgerId,
+                                           BookieId... ensemble) {
+        List<BookieId> bookies = Arrays.asList(ensemble);
+        return scheduler.submit(ledgerId, bookies, () -> {
+            CompletableFuture<Long> recovery = new CompletableFuture<>();
+            started.put(ledgerId, recovery);
+            return recovery;
+        });
+    }
+
+    /**
+     * Wait for the recoveries started on the executor, and check which recoveries are running.
+     */
+    private void assertStarted(LedgerRecoveryScheduler scheduler, Long... ledgerIds) throws Exception {
+        // the recoveries are started on the executor threads, by the time the tasks queued after them ran
+        executor.submitOrdered(0L, () -> null).get();
+        executor.submitOrdered(1L, () -> null).get();
+        assertEquals(ledgerIds.length, started.size());
+        for (Long ledgerId : ledgerIds) {
+            assertTrue(started.containsKey(ledgerId), "recovery of ledger " + ledgerId + " not started");
+        }
+        assertEquals(ledgerIds.length, scheduler.getNumRunningRecoveries());
+    }
+
+    @Test
+    public void testMaxConcurrentRecoveries() throws Exception {
+        LedgerRecoveryScheduler scheduler = scheduler(2, 0);
+        CompletableFuture<Long> first = submit(scheduler, 1L, BOOKIE1);
+        submit(scheduler, 2L, BOOKIE2);
+        CompletableFuture<Long> third = submit(scheduler, 3L, BOOKIE3);
+        assertStarted(scheduler, 1L, 2L);
+        assertEquals(1, scheduler.getNumPendingRecoveries());
+
+        started.remove(1L).complete(1L);
+        assertEquals(1L, first.get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS).longValue());
+        assertStarted(scheduler, 2L, 3L);
+        assertEquals(0, scheduler.getNumPendingRecoveries());
+
+        // a failed recovery frees its slot too
+        started.remove(3L).completeExceptionally(new BKException.BKReadException());
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> third.get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertTrue(e.getCause() instanceof BKException.BKReadException);
+        assertStarted(scheduler, 2L);
+    }
+
+    @Test
+    public void testMaxConcurrentRecoveriesPerBookie() throws Exception {
+        LedgerRecoveryScheduler scheduler = scheduler(0, 1);
+        submit(scheduler, 1L, BOOKIE1, BOOKIE2);
+        // waits for the first bookie
+        submit(scheduler, 2L, BOOKIE1, BOOKIE3);
+        // doesn't wait behind the recovery queued before it, on other bookies
+        submit(scheduler, 3L, BOOKIE3, BOOKIE4);
+        // waits for the second bookie, and for the recovery of ledger 3 on the third one
+        submit(scheduler, 4L, BOOKIE2, BOOKIE3);
+        assertStarted(scheduler, 1L, 3L);
+        assertEquals(2, scheduler.getNumPendingRecoveries());
+
+        // the queued recoveries still wait for the third bookie
+        started.remove(1L).complete(1L);
+        assertStarted(scheduler, 3L);
+        // the first queued recovery gets the freed bookie
+        started.remove(3L).complete(3L);
+        assertStarted(scheduler, 2L);
+        assertFalse(started.containsKey(4L));
+        started.remove(2L).complete(2L);
+        assertStarted(scheduler, 4L);
+        assertEquals(0, scheduler.getNumPendingRecoveries());
+    }
+
+    @Test
+    public void testRecoveryFailingToStart() throws Exception {
+        LedgerRecoveryScheduler scheduler = scheduler(1, 1);
+        CompletableFuture<Long> failed = scheduler.submit(1L, Arrays.asList(BOOKIE1), () -> {
+            throw new IllegalStateException("can't start");
+        });
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> failed.get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+
+        // the slots of the recovery are freed
+        submit(scheduler, 2L, BOOKIE1);
+        assertStarted(scheduler, 2L);
+    }
+}
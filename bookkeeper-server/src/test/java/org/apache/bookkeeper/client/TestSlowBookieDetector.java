@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.util.MathUtils;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the class {@link SlowBookieDetector}.
+ */
+public class TestSlowBookieDetector {
+
+    private static final long FAST_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static List<BookieId> ensemble(int... bookies) {
+        List<BookieId> ensemble = new ArrayList<>();
+        for (int bookie : bookies) {
+            ensemble.add(BookieId.parse("bookie-" + bookie + ".example.com:3181"));
+        }
+        return ensemble;
+    }
+
+    private static SlowBookieDetector detector() {
+        return new SlowBookieDetector(ensemble(0, 1, 2), 3.0, TimeUnit.MILLISECONDS.toNanos(5),
+                TimeUnit.SECONDS.toNanos(60));
+    }
+
+    private static long seconds(long start, int seconds) {
+        return start + TimeUnit.SECONDS.toNanos(seconds);
+    }
+
+    /**
+     * Record adds acknowledged at the given time, with the given latency for each bookie of the ensemble.
+     *
+     * @return the index of the slow bookie reported, -1 if none
+     */
+    private static int ack(SlowBookieDetector detector, long nowNanos, int numAdds, long... latencyNanos) {
+        int slowBookieIndex = -1;
+        for (int add = 0; add < numAdds; add++) {
+            for (int i = 0; i < latencyNanos.length; i++) {
+                int result = detector.recordAddLatency(i, nowNanos - latencyNanos[i], nowNanos);
+                if (result >= 0) {
+                    slowBookieIndex = result;
+                }
+            }
+        }
+        return slowBookieIndex;
+    }
+
+    @Test
+    public void testSlowBookieDetected() {
+        long start = MathUtils.nowInNano();
+        SlowBookieDetector detector = detector();
+
+        assertEquals(-1, ack(detector, seconds(start, 2), 100, FAST_NANOS, FAST_NANOS, SLOW_NANOS));
+        // the next evaluation compares the bookies
+        assertEquals(2, ack(detector, seconds(start, 4), 1, FAST_NANOS, FAST_NANOS, SLOW_NANOS));
+        assertEquals(FAST_NANOS, detector.getAverageLatencyNanos(0));
+        assertEquals(SLOW_NANOS, detector.getAverageLatencyNanos(2));
+    }
+
+    @Test
+    public void testNotEnoughSamples() {
+        long start = MathUtils.nowInNano();
+        SlowBookieDetector detector = detector();
+
+        ack(detector, seconds(start, 2), SlowBookieDetector.MIN_SAMPLES / 2, FAST_NANOS, FAST_NANOS, SLOW_NANOS);
+        assertEquals(-1, ack(detector, seconds(start, 4), 1, FAST_NANOS, FAST_NANOS, SLOW_NANOS));
+
+        // the samples of a bookie add up across the evaluations
+        ack(detector, seconds(start, 4), SlowBookieDetector.MIN_SAMPLES / 2, FAST_NANOS, FAST_NANOS, SLOW_NANOS);
+        assertEquals(2, ack(detector, seconds(start, 6), 1, FAST_NANOS, FAST_NANOS, SLOW_NANOS));
+    }
+
+    @Test
+    public void testBelowMinSlowLatency() {
+        long start = MathUtils.nowInNano();
+        SlowBookieDetector detector = detector();
+
+        // ten times slower than the others, but faster than the minimum slow latency
+        long fastNanos = TimeUnit.MICROSECONDS.toNanos(100);
+        ack(detector, seconds(start, 2), 100, fastNanos, fastNanos, FAST_NANOS);
+        assertEquals(-1, ack(detector, seconds(start, 4), 1, fastNanos, fastNanos, FAST_NANOS));
+    }
+
+    @Test
+    public void testNotSlowEnoughComparedToPeers() {
+        long start = MathUtils.nowInNano();
+        SlowBookieDetector detector = detector();
+
+        long latencyNanos = TimeUnit.MILLISECONDS.toNanos(20);
+        ack(detector, seconds(start, 2), 100, SLOW_NANOS, SLOW_NANOS, latencyNanos);
+        assertEquals(-1, ack(detector, seconds(start, 4), 1, SLOW_NANOS, SLOW_NANOS, latencyNanos));
+    }
+
+    @Test
+    public void testSwapInterval() {
+        long start = MathUtils.nowInNano();
+        SlowBookieDetector detector = detector();
+
+        ack(detector, seconds(start, 2), 100, FAST_NANOS, FAST_NANOS, SLOW_NANOS);
+        assertEquals(2, ack(detector, seconds(start, 4), 1, FAST_NANOS, FAST_NANOS, SLOW_NANOS));
+
+        // the bookie is still slow, but another swap waits for the end of the interval
+        assertEquals(-1, ack(detector, seconds(start, 6), 100, FAST_NANOS, FAST_NANOS, SLOW_NANOS));
+        assertEquals(-1, ack(detector, seconds(start, 60), 1, FAST_NANOS, FAST_NANOS, SLOW_NANOS));
+        assertEquals(2, ack(detector, seconds(start, 66), 1, FAST_NANOS, FAST_NANOS, SLOW_NANOS));
+    }
+
+    @Test
+    public void testEnsembleChangeResetsReplacedBookie() {
+        long start = MathUtils.nowInNano();
+        SlowBookieDetector detector = detector();
+
+        ack(detector, seconds(start, 2), 100, FAST_NANOS, FAST_NANOS, SLOW_NANOS);
+        assertEquals(2, ack(detector, seconds(start, 4), 1, FAST_NANOS, FAST_NANOS, SLOW_NANOS));
+
+        assertEquals(ensemble(0, 1, 2).get(2), detector.getBookie(2));
+        detector.ensembleChanged(ensemble(0, 1, 3));
+        // the slow bookie reported is no longer in the ensemble
+        assertEquals(ensemble(0, 1, 3).get(2), detector.getBookie(2));
+        assertNull(detector.getBookie(3));
+        assertEquals(FAST_NANOS, detector.getAverageLatencyNanos(0));
+        assertEquals(0L, detector.getAverageLatencyNanos(2));
+
+        // the adds sent before the change are resent to the new bookie, their latency isn't counted
+        for (int add = 0; add < 100; add++) {
+            detector.recordAddLatency(2, start, seconds(start, 5));
+        }
+        assertEquals(-1, detector.evaluate(seconds(start, 5)));
+        assertEquals(0L, detector.getAverageLatencyNanos(2));
+
+        // the new bookie has to collect enough samples before it is compared again
+        assertEquals(-1, ack(detector, seconds(start, 70), 10, FAST_NANOS, FAST_NANOS, SLOW_NANOS));
+        assertEquals(-1, ack(detector, seconds(start, 72), 1, FAST_NANOS, FAST_NANOS, SLOW_NANOS));
+        assertEquals(SLOW_NANOS, detector.getAverageLatencyNanos(2));
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.client;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+import org.apache.bookkeeper.client.api.LedgerEntryStream;
+import org.apache.bookkeeper.client.api.LedgerEntryStreamListener;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookieClient;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the class {@link StreamingPendingReadOp}.
+ */
+public class TestStreamingPendingReadOp {
+
+    private static final long WAIT_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
+    private static final long LEDGER_ID = 1L;
+    private static final long LAST_ENTRY_ID = 9L;
+    private static final int MAX_OUTSTANDING_ENTRIES = 3;
+    private static final byte[] PASSWORD = new byte[0];
+
+    private final OrderedExecutor mainWorkerPool = OrderedExecutor.newBuilder().numThreads(1).build();
+    // the entries read from the bookies, in order
+    private final List<Long> readEntryIds = Collections.synchronizedList(new ArrayList<>());
+    // the entries whose responses are held by the test, and the entries the bookies fail to read
+    private final Set<Long> heldEntryIds = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Runnable> heldResponses = new ConcurrentHashMap<>();
+    private final Set<Long> failedEntryIds = ConcurrentHashMap.newKeySet();
+    // responses scheduled on the ordered executor and not yet run
+    private final AtomicInteger inflightResponses = new AtomicInteger();
+    private final List<ByteBuf> responses = Collections.synchronizedList(new ArrayList<>());
+
+    private LedgerHandle lh;
+
+    @AfterEach
+    public void teardown() {
+        mainWorkerPool.shutdown();
+    }
+
+    private static byte[] data(long entryId) {
+        return ("entry-" + entryId).getBytes(UTF_8);
+    }
+
+    /**
+     * A handle of a closed ledger of ten entries, on a client whose bookies answer the reads on
+     * the ordered thread of the ledger, like the real client does with the responses.
+     */
+    private LedgerHandle ledgerHandle() throws Exception {
+        ClientConfiguration conf = new ClientConfiguration()
+            .setFirstSpeculativeReadTimeout(0)
+            .setStreamingReadMaxOutstandingEntries(MAX_OUTSTANDING_ENTRIES);
+        BookieClient bookieClient = mock(BookieClient.class);
+        doAnswer(invocation -> {
+            long entryId = invocation.getArgument(2);
+            ReadEntryCallback cb = invocation.getArgument(3);
+            Object ctx = invocation.getArgument(4);
+            readEntryIds.add(entryId);
+            Runnable response = () -> {
+                try {
+                    if (failedEntryIds.contains(entryId)) {
+                        cb.readEntryComplete(BKException.Code.ReadException, LEDGER_ID, entryId, null, ctx);
+                    } else {
+                        ByteBuf buffer = packagedEntry(entryId);
+                        cb.readEntryComplete(BKException.Code.OK, LEDGER_ID, entryId, buffer, ctx);
+                        buffer.release();
+                    }
+                } finally {
+                    inflightResponses.decrementAndGet();
+                }
+            };
+            if (heldEntryIds.remove(entryId)) {
+                heldResponses.put(entryId, response);
+            } else {
+                inflightResponses.incrementAndGet();
+                mainWorkerPool.executeOrdered(LEDGER_ID, response);
+            }
+            return null;
+        }).when(bookieClient).readEntry(any(), anyLong(), anyLong(), any(), any(), anyInt());
+
+        ClientContext clientCtx = mock(ClientContext.class);
+        when(clientCtx.getConf()).thenReturn(ClientInternalConf.fromConfig(conf));
+        when(clientCtx.getBookieClient()).thenReturn(bookieClient);
+        when(clientCtx.getByteBufAllocator()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        when(clientCtx.getMainWorkerPool()).thenReturn(mainWorkerPool);
+        when(clientCtx.getClientStats()).thenReturn(BookKeeperClientStats.newInstance(NullStatsLogger.INSTANCE));
+
+        LedgerMetadata metadata = LedgerMetadataBuilder.create()
+            .withId(LEDGER_ID)
+            .withEnsembleSize(3).withWriteQuorumSize(3).withAckQuorumSize(2)
+            .withPassword(PASSWORD).withDigestType(DigestType.CRC32C)
+            .newEnsembleEntry(0L, Arrays.asList(
+                    BookieId.parse("127.0.0.1:3181"),
+                    BookieId.parse("127.0.0.2:3181"),
+                    BookieId.parse("127.0.0.3:3181")))
+            .withClosedState().withLastEntryId(LAST_ENTRY_ID).withLength(1000L)
+            .build();
+        return new LedgerHandle(clientCtx, LEDGER_ID, new Versioned<>(metadata, new LongVersion(0L)),
+                BookKeeper.DigestType.CRC32C, PASSWORD, EnumSet.noneOf(WriteFlag.class));
+    }
+
+    private ByteBuf packagedEntry(long entryId) {
+        ByteBufList packaged = (ByteBufList) lh.macManager.computeDigestAndPackageForSending(entryId, LAST_ENTRY_ID,
+                100L * (entryId + 1), Unpooled.wrappedBuffer(data(entryId)), lh.ledgerKey, 0);
+        ByteBuf buffer = ByteBufList.coalesce(packaged);
+        packaged.release();
+        responses.add(buffer);
+        return buffer;
+    }
+
+    private void releaseResponse(long entryId) {
+        Runnable response = heldResponses.remove(entryId);
+        assertNotNull(response);
+        inflightResponses.incrementAndGet();
+        mainWorkerPool.executeOrdered(LEDGER_ID, response);
+    }
+
+    /**
+     * Wait until the stream is idle, with no request or response left to run.
+     */
+    private void awaitIdle() throws Exception {
+        do {
+            mainWorkerPool.submitOrdered(LEDGER_ID, () -> null).get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } while (inflightResponses.get() > 0);
+    }
+
+    /**
+     * Records the events of a stream.
+     */
+    private static class RecordingListener implements LedgerEntryStreamListener {
+        final CompletableFuture<LedgerEntryStream> stream = new CompletableFuture<>();
+        final List<Long> entryIds = Collections.synchronizedList(new ArrayList<>());
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        @Override
+        public void onStart(LedgerEntryStream stream) {
+            this.stream.complete(stream);
+        }
+
+        @Override
+        public void onEntry(LedgerEntry entry) {
+            try {
+                assertEquals(new String(data(entry.getEntryId()), UTF_8), new String(entry.getEntryBytes(), UTF_8));
+                entryIds.add(entry.getEntryId());
+            } finally {
+                entry.close();
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            done.complete(null);
+        }
+
+        @Override
+        public void onError(Throwable cause) {
+            done.completeExceptionally(cause);
+        }
+
+        LedgerEntryStream stream() throws Exception {
+            return stream.get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private RecordingListener readStream(long firstEntry, long lastEntry) throws Exception {
+        lh = ledgerHandle();
+        RecordingListener listener = new RecordingListener();
+        lh.readStream(firstEntry, lastEntry, listener);
+        return listener;
+    }
+
+    private static List<Long> range(long first, long last) {
+        List<Long> entryIds = new ArrayList<>();
+        for (long entryId = first; entryId <= last; entryId++) {
+            entryIds.add(entryId);
+        }
+        return entryIds;
+    }
+
+    @Test
+    public void testEntriesOnlyReadOnDemand() throws Exception {
+        RecordingListener listener = readStream(2L, LAST_ENTRY_ID);
+        LedgerEntryStream stream = listener.stream();
+        awaitIdle();
+        assertTrue(readEntryIds.isEmpty());
+
+        stream.request(2);
+        awaitIdle();
+        assertEquals(range(2L, 3L), readEntryIds);
+        assertEquals(range(2L, 3L), listener.entryIds);
+
+        stream.request(3);
+        awaitIdle();
+        assertEquals(range(2L, 6L), readEntryIds);
+        assertEquals(range(2L, 6L), listener.entryIds);
+        assertFalse(listener.done.isDone());
+
+        // the requests add up past the end of the range
+        stream.request(2);
+        stream.request(100);
+        listener.done.get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertEquals(range(2L, LAST_ENTRY_ID), listener.entryIds);
+        assertEquals(range(2L, LAST_ENTRY_ID), readEntryIds);
+    }
+
+    @Test
+    public void testOutstandingEntriesBounded() throws Exception {
+        RecordingListener listener = readStream(0L, LAST_ENTRY_ID);
+        heldEntryIds.add(0L);
+        listener.stream().request(Long.MAX_VALUE);
+        awaitIdle();
+        // the entries read ahead wait for the first one, and no more entries are read meanwhile
+        assertEquals(range(0L, MAX_OUTSTANDING_ENTRIES - 1), readEntryIds);
+        assertTrue(listener.entryIds.isEmpty());
+
+        releaseResponse(0L);
+        listener.done.get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertEquals(range(0L, LAST_ENTRY_ID), listener.entryIds);
+        assertEquals(range(0L, LAST_ENTRY_ID), readEntryIds);
+    }
+
+    @Test
+    public void testCloseReleasesEntries() throws Exception {
+        RecordingListener listener = readStream(0L, LAST_ENTRY_ID);
+        heldEntryIds.add(1L);
+        LedgerEntryStream stream = listener.stream();
+        stream.request(5);
+        awaitIdle();
+        assertEquals(range(0L, MAX_OUTSTANDING_ENTRIES), readEntryIds);
+        assertEquals(range(0L, 0L), listener.entryIds);
+
+        stream.close();
+        awaitIdle();
+        // the response read after the close is dropped, and nothing is delivered anymore
+        releaseResponse(1L);
+        stream.request(5);
+        awaitIdle();
+        assertEquals(range(0L, 0L), listener.entryIds);
+        assertEquals(range(0L, MAX_OUTSTANDING_ENTRIES), readEntryIds);
+        assertFalse(listener.done.isDone());
+        for (ByteBuf response : responses) {
+            assertEquals(0, response.refCnt());
+        }
+    }
+
+    @Test
+    public void testReadErrorFailsStream() throws Exception {
+        RecordingListener listener = readStream(0L, LAST_ENTRY_ID);
+        failedEntryIds.add(2L);
+        listener.stream().request(Long.MAX_VALUE);
+
+        CompletableFuture<Void> done = listener.done;
+        Throwable cause = done.handle((result, t) -> t).get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertTrue(cause instanceof BKException, "unexpected failure " + cause);
+        // the entries before the failed one were delivered, but none after it
+        assertEquals(range(0L, 1L), listener.entryIds);
+        awaitIdle();
+        for (ByteBuf response : responses) {
+            assertEquals(0, response.refCnt());
+        }
+    }
+
+    @Test
+    public void testInvalidRequestsFailStream() throws Exception {
+        RecordingListener listener = readStream(0L, LAST_ENTRY_ID);
+        listener.stream().request(0);
+        Throwable cause = listener.done.handle((result, t) -> t).get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertTrue(cause instanceof IllegalArgumentException);
+        assertTrue(readEntryIds.isEmpty());
+
+        // a range past the last add confirmed fails before the stream starts
+        RecordingListener pastLac = new RecordingListener();
+        lh.readStream(0L, LAST_ENTRY_ID + 1, pastLac);
+        cause = pastLac.done.handle((result, t) -> t).get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertTrue(cause instanceof BKException.BKReadException);
+        assertFalse(pastLac.stream.isDone());
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.meta;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.LedgerMetadataBuilder;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.LedgerMetadataListener;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Version;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the class {@link CachingLedgerManager}.
+ */
+public class TestCachingLedgerManager {
+
+    private final LedgerManager underlying = mock(LedgerManager.class);
+    // the metadata stored by the underlying ledger manager, and the listeners registered on it
+    private final Map<Long, Versioned<LedgerMetadata>> stored = new ConcurrentHashMap<>();
+    private final Map<Long, LedgerMetadataListener> listeners = new ConcurrentHashMap<>();
+
+    private static Versioned<LedgerMetadata> metadata(long ledgerId, long version, boolean closed) {
+        LedgerMetadataBuilder builder = LedgerMetadataBuilder.create()
+                .withId(ledgerId)
+                .withEnsembleSize(3).withWriteQuorumSize(3).withAckQuorumSize(2)
+                .withPassword("secret".getBytes(UTF_8)).withDigestType(DigestType.CRC32C)
+                .newEnsembleEntry(0L, Arrays.asList(
+                        BookieId.parse("bookie-0.example.com:3181"),
+                        BookieId.parse("bookie-1.example.com:3181"),
+                        BookieId.parse("bookie-2.example.com:3181")));
+        if (closed) {
+            builder.withClosedState().withLastEntryId(version).withLength(100L * version);
+        }
+        return new Versioned<>(builder.build(), new LongVersion(version));
+    }
+
+    private CachingLedgerManager ledgerManager(long maxEntries) {
+        when(underlying.readLedgerMetadata(anyLong())).thenAnswer(invocation -> {
+            Versioned<LedgerMetadata> metadata = stored.get(invocation.<Long>getArgument(0));
+            return metadata != null ? CompletableFuture.completedFuture(metadata)
+                    : CompletableFuture.failedFuture(new BKException.BKNoSuchLedgerExistsOnMetadataServerException());
+        });
+        doAnswer(invocation -> {
+            assertNull(listeners.put(invocation.getArgument(0), invocation.getArgument(1)));
+            return null;
+        }).when(underlying).registerLedgerMetadataListener(anyLong(), any());
+        doAnswer(invocation -> {
+            assertTrue(listeners.remove(invocation.getArgument(0), invocation.getArgument(1)));
+            return null;
+        }).when(underlying).unregisterLedgerMetadataListener(anyLong(), any());
+        return new CachingLedgerManager(underlying, maxEntries, 0, NullStatsLogger.INSTANCE);
+    }
+
+    private static Versioned<LedgerMetadata> read(LedgerManager lm, long ledgerId) throws Exception {
+        return lm.readLedgerMetadata(ledgerId).get();
+    }
+
+    @Test
+    public void testClosedLedgerCached() throws Exception {
+        CachingLedgerManager lm = ledgerManager(100);
+        stored.put(1L, metadata(1L, 1L, true));
+
+        assertEquals(stored.get(1L), read(lm, 1L));
+        // the metadata store changes behind the back of the client are only seen once evicted
+        stored.put(1L, metadata(1L, 2L, true));
+        assertEquals(new LongVersion(1L), read(lm, 1L).getVersion());
+        verify(underlying, times(1)).readLedgerMetadata(1L);
+        // closed ledgers aren't watched
+        assertTrue(listeners.isEmpty());
+
+        // the reads of missing ledgers aren't cached
+        assertThrows(ExecutionException.class, () -> read(lm, 2L));
+        assertThrows(ExecutionException.class, () -> read(lm, 2L));
+        verify(underlying, times(2)).readLedgerMetadata(2L);
+    }
+
+    @Test
+    public void testOpenLedgerKeptUpToDate() throws Exception {
+        CachingLedgerManager lm = ledgerManager(100);
+        stored.put(1L, metadata(1L, 1L, false));
+        read(lm, 1L);
+        LedgerMetadataListener listener = listeners.get(1L);
+
+        // the updates notified by the watch are cached, unless older than the cached metadata
+        listener.onChanged(1L, metadata(1L, 3L, false));
+        assertEquals(new LongVersion(3L), read(lm, 1L).getVersion());
+        listener.onChanged(1L, metadata(1L, 2L, false));
+        assertEquals(new LongVersion(3L), read(lm, 1L).getVersion());
+        verify(underlying, times(1)).readLedgerMetadata(1L);
+
+        // a deleted ledger is dropped, the underlying ledger manager already dropped its listeners
+        listeners.remove(1L);
+        listener.onChanged(1L, null);
+        stored.remove(1L);
+        assertThrows(ExecutionException.class, () -> read(lm, 1L));
+        assertTrue(listeners.isEmpty());
+    }
+
+    @Test
+    public void testWritesApplied() throws Exception {
+        CachingLedgerManager lm = ledgerManager(100);
+        stored.put(1L, metadata(1L, 1L, false));
+        read(lm, 1L);
+
+        Versioned<LedgerMetadata> written = metadata(1L, 2L, true);
+        when(underlying.writeLedgerMetadata(1L, written.getValue(), new LongVersion(1L)))
+                .thenReturn(CompletableFuture.completedFuture(written));
+        lm.writeLedgerMetadata(1L, written.getValue(), new LongVersion(1L)).get();
+        assertEquals(written, read(lm, 1L));
+
+        // a failed write drops the cached metadata, and its watch
+        when(underlying.writeLedgerMetadata(1L, written.getValue(), new LongVersion(1L)))
+                .thenReturn(CompletableFuture.failedFuture(new BKException.BKMetadataVersionException()));
+        assertThrows(ExecutionException.class,
+                () -> lm.writeLedgerMetadata(1L, written.getValue(), new LongVersion(1L)).get());
+        assertTrue(listeners.isEmpty());
+        stored.put(1L, written);
+        assertEquals(written, read(lm, 1L));
+        verify(underlying, times(2)).readLedgerMetadata(1L);
+
+        when(underlying.removeLedgerMetadata(1L, Version.ANY)).thenReturn(CompletableFuture.completedFuture(null));
+        lm.removeLedgerMetadata(1L, Version.ANY).get();
+        read(lm, 1L);
+        verify(underlying, times(3)).readLedgerMetadata(1L);
+    }
+
+    @Test
+    public void testEvictionDropsWatch() throws Exception {
+        CachingLedgerManager lm = ledgerManager(1);
+        stored.put(1L, metadata(1L, 1L, false));
+        stored.put(2L, metadata(2L, 1L, false));
+
+        read(lm, 1L);
+        assertEquals(1, listeners.size());
+        read(lm, 2L);
+        // the first ledger is evicted, and only the cached ledger is watched
+        assertEquals(1, listeners.size());
+        assertTrue(listeners.containsKey(2L));
+
+        lm.close();
+        assertTrue(listeners.isEmpty());
+    }
+
+    @Test
+    public void testWatchNotLeakedWhenEvictedAtOnce() throws Exception {
+        // every entry is evicted as soon as it's cached, before any watch could be registered after it
+        CachingLedgerManager lm = ledgerManager(0);
+        stored.put(1L, metadata(1L, 1L, false));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(stored.get(1L), read(lm, 1L));
+            assertTrue(listeners.isEmpty());
+        }
+        verify(underlying, times(10)).registerLedgerMetadataListener(anyLong(), any());
+        verify(underlying, times(10)).unregisterLedgerMetadataListener(anyLong(), any());
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.meta;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import org.apache.bookkeeper.client.LedgerMetadataBuilder;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.net.BookieId;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the class {@link LedgerMetadataSerDe}.
+ */
+public class TestLedgerMetadataSerDe {
+
+    private static LedgerMetadataBuilder builder(int formatVersion, int numEnsembles) {
+        List<BookieId> bookies = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            bookies.add(BookieId.parse("bookie-" + i + ".example.com:3181"));
+        }
+        LedgerMetadataBuilder builder = LedgerMetadataBuilder.create()
+                .withId(1L)
+                .withMetadataFormatVersion(formatVersion)
+                .withEnsembleSize(3).withWriteQuorumSize(3).withAckQuorumSize(2)
+                .withPassword("secret".getBytes(UTF_8)).withDigestType(DigestType.CRC32C)
+                .withCreationTime(12345L).storingCreationTime(true);
+        // every ensemble change replaces one bookie, so the same bookies appear in many ensembles
+        List<BookieId> ensemble = new ArrayList<>(bookies.subList(0, 3));
+        builder.newEnsembleEntry(0L, new ArrayList<>(ensemble));
+        for (int i = 1; i < numEnsembles; i++) {
+            ensemble.set(i % 3, bookies.get((i + 3) % bookies.size()));
+            builder.newEnsembleEntry(i * 1000L + i, new ArrayList<>(ensemble));
+        }
+        return builder;
+    }
+
+    @Test
+    public void testVersion4RoundTrip() throws Exception {
+        LedgerMetadataSerDe serDe = new LedgerMetadataSerDe();
+        LedgerMetadata metadata = builder(LedgerMetadataSerDe.METADATA_FORMAT_VERSION_4, 50)
+                .withClosedState().withLastEntryId(60000L).withLength(1234567L).build();
+
+        LedgerMetadata parsed = serDe.parseConfig(serDe.serialize(metadata), 1L, Optional.empty());
+
+        assertEquals(LedgerMetadataSerDe.METADATA_FORMAT_VERSION_4, parsed.getMetadataFormatVersion());
+        assertEquals(metadata.getAllEnsembles(), parsed.getAllEnsembles());
+        assertEquals(metadata, parsed);
+        assertArrayEquals(serDe.serialize(metadata), serDe.serialize(parsed));
+    }
+
+    @Test
+    public void testVersion4OpenLedgerRoundTrip() throws Exception {
+        LedgerMetadataSerDe serDe = new LedgerMetadataSerDe();
+        LedgerMetadata metadata = builder(LedgerMetadataSerDe.METADATA_FORMAT_VERSION_4, 1)
+                .withCustomMetadata(Collections.singletonMap("application", "test".getBytes(UTF_8)))
+                .build();
+
+        LedgerMetadata parsed = serDe.parseConfig(serDe.serialize(metadata), 1L, Optional.empty());
+
+        assertEquals(metadata.getAllEnsembles(), parsed.getAllEnsembles());
+        assertEquals(metadata.getState(), parsed.getState());
+        assertEquals(metadata.getCtime(), parsed.getCtime());
+        assertArrayEquals(metadata.getPassword(), parsed.getPassword());
+        assertArrayEquals("test".getBytes(UTF_8), parsed.getCustomMetadata().get("application"));
+    }
+
+    @Test
+    public void testVersion4KeptOnUpdate() throws Exception {
+        LedgerMetadataSerDe serDe = new LedgerMetadataSerDe();
+        LedgerMetadata metadata = builder(LedgerMetadataSerDe.METADATA_FORMAT_VERSION_4, 3).build();
+        LedgerMetadata parsed = serDe.parseConfig(serDe.serialize(metadata), 1L, Optional.empty());
+
+        LedgerMetadata closed = LedgerMetadataBuilder.from(parsed)
+                .withClosedState().withLastEntryId(5000L).withLength(100L).build();
+        LedgerMetadata reparsed = serDe.parseConfig(serDe.serialize(closed), 1L, Optional.empty());
+
+        assertEquals(LedgerMetadataSerDe.METADATA_FORMAT_VERSION_4, reparsed.getMetadataFormatVersion());
+        assertEquals(closed, reparsed);
+    }
+
+    @Test
+    public void testVersion4SmallerThanVersion3() throws Exception {
+        LedgerMetadataSerDe serDe = new LedgerMetadataSerDe();
+        byte[] version3 = serDe.serialize(builder(LedgerMetadataSerDe.METADATA_FORMAT_VERSION_3, 100).build());
+        byte[] version4 = serDe.serialize(builder(LedgerMetadataSerDe.METADATA_FORMAT_VERSION_4, 100).build());
+
+        assertTrue(version4.length < version3.length,
+                "version 4 is " + version4.length + " bytes, version 3 is " + version3.length + " bytes");
+        assertEquals(serDe.parseConfig(version3, 1L, Optional.empty()).getAllEnsembles(),
+                serDe.parseConfig(version4, 1L, Optional.empty()).getAllEnsembles());
+    }
+}
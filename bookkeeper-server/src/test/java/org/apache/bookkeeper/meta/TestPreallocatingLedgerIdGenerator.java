@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.meta;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the class {@link PreallocatingLedgerIdGenerator}.
+ */
+public class TestPreallocatingLedgerIdGenerator {
+
+    /**
+     * Generator whose batches are only returned when the test completes them.
+     */
+    private static class PendingBatchesGenerator implements LedgerIdGenerator {
+        final List<GenericCallback<List<Long>>> pendingBatches = new ArrayList<>();
+        final List<Integer> batchSizes = new ArrayList<>();
+        long nextId = 0;
+        boolean closed = false;
+
+        @Override
+        public void generateLedgerId(GenericCallback<Long> cb) {
+            cb.operationComplete(BKException.Code.OK, nextId++);
+        }
+
+        @Override
+        public void generateLedgerIds(int count, GenericCallback<List<Long>> cb) {
+            pendingBatches.add(cb);
+            batchSizes.add(count);
+        }
+
+        void completeBatch(int rc) {
+            GenericCallback<List<Long>> cb = pendingBatches.remove(0);
+            int count = batchSizes.remove(0);
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                ids.add(nextId++);
+            }
+            cb.operationComplete(rc, rc == BKException.Code.OK ? ids : null);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static CompletableFuture<Long> generate(LedgerIdGenerator generator) {
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        generator.generateLedgerId((rc, ledgerId) -> {
+            if (rc == BKException.Code.OK) {
+                result.complete(ledgerId);
+            } else {
+                result.completeExceptionally(BKException.create(rc));
+            }
+        });
+        return result;
+    }
+
+    private static int failureCode(CompletableFuture<Long> result) {
+        assertTrue(result.isCompletedExceptionally());
+        return result.handle((id, e) -> ((BKException) e).getCode()).join();
+    }
+
+    @Test
+    public void testIdsServedFromBatch() {
+        PendingBatchesGenerator underlying = new PendingBatchesGenerator();
+        PreallocatingLedgerIdGenerator generator = new PreallocatingLedgerIdGenerator(underlying, 3);
+
+        CompletableFuture<Long> first = generate(generator);
+        CompletableFuture<Long> second = generate(generator);
+        // both wait for the same batch
+        assertEquals(1, underlying.pendingBatches.size());
+
+        underlying.completeBatch(BKException.Code.OK);
+        assertEquals(0L, first.join().longValue());
+        assertEquals(1L, second.join().longValue());
+
+        // the last id of the batch is served without reserving another one
+        assertEquals(2L, generate(generator).join().longValue());
+        assertTrue(underlying.pendingBatches.isEmpty());
+
+        CompletableFuture<Long> fourth = generate(generator);
+        assertEquals(1, underlying.pendingBatches.size());
+        underlying.completeBatch(BKException.Code.OK);
+        assertEquals(3L, fourth.join().longValue());
+    }
+
+    @Test
+    public void testMoreWaitersThanBatch() {
+        PendingBatchesGenerator underlying = new PendingBatchesGenerator();
+        PreallocatingLedgerIdGenerator generator = new PreallocatingLedgerIdGenerator(underlying, 2);
+
+        List<CompletableFuture<Long>> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            results.add(generate(generator));
+        }
+        underlying.completeBatch(BKException.Code.OK);
+        assertEquals(0L, results.get(0).join().longValue());
+        assertEquals(1L, results.get(1).join().longValue());
+        assertFalse(results.get(2).isDone());
+
+        // another batch was reserved for the remaining waiter
+        underlying.completeBatch(BKException.Code.OK);
+        assertEquals(2L, results.get(2).join().longValue());
+    }
+
+    @Test
+    public void testBatchFailureFailsWaiters() {
+        PendingBatchesGenerator underlying = new PendingBatchesGenerator();
+        PreallocatingLedgerIdGenerator generator = new PreallocatingLedgerIdGenerator(underlying, 2);
+
+        CompletableFuture<Long> result = generate(generator);
+        underlying.completeBatch(BKException.Code.ZKException);
+        assertEquals(BKException.Code.ZKException, failureCode(result));
+
+        // the next request reserves a new batch
+        CompletableFuture<Long> retry = generate(generator);
+        underlying.completeBatch(BKException.Code.OK);
+        assertEquals(0L, retry.join().longValue());
+    }
+
+    @Test
+    public void testCloseFailsWaiters() throws Exception {
+        PendingBatchesGenerator underlying = new PendingBatchesGenerator();
+        PreallocatingLedgerIdGenerator generator = new PreallocatingLedgerIdGenerator(underlying, 2);
+
+        CompletableFuture<Long> result = generate(generator);
+        generator.close();
+        assertTrue(underlying.closed);
+        assertEquals(BKException.Code.ClientClosedException, failureCode(result));
+
+        // a batch completing after the close serves nobody
+        underlying.completeBatch(BKException.Code.OK);
+        assertEquals(BKException.Code.ClientClosedException, failureCode(generate(generator)));
+        assertTrue(underlying.pendingBatches.isEmpty());
+    }
+
+    @Test
+    public void testSingleIdsNotPreallocated() {
+        PendingBatchesGenerator underlying = new PendingBatchesGenerator();
+        PreallocatingLedgerIdGenerator generator = new PreallocatingLedgerIdGenerator(underlying, 2);
+
+        List<List<Long>> batches = new ArrayList<>();
+        generator.generateLedgerIds(5, (rc, ids) -> batches.add(ids));
+        underlying.completeBatch(BKException.Code.OK);
+
+        assertEquals(1, batches.size());
+        assertEquals(5, batches.get(0).size());
+        assertTrue(underlying.pendingBatches.isEmpty());
+    }
+}
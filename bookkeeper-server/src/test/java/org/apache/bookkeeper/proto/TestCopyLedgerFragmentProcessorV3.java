@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.proto;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.protobuf.ByteString;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.bookie.LedgerStorage;
+import org.apache.bookkeeper.bookie.datainteg.EntryCopier;
+import org.apache.bookkeeper.client.LedgerMetadataBuilder;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.CopyLedgerFragmentRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.CopyLedgerFragmentResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.proto.checksum.DigestManager;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the class {@link CopyLedgerFragmentProcessorV3}.
+ */
+public class TestCopyLedgerFragmentProcessorV3 {
+
+    private static final long LEDGER_ID = 1L;
+    private static final long LAST_ENTRY_ID = 9L;
+    private static final byte[] PASSWORD = "password".getBytes(UTF_8);
+    private static final BookieId FAILED_BOOKIE = BookieId.parse("127.0.0.1:3181");
+
+    private final EmbeddedChannel channel = new EmbeddedChannel();
+    private final LedgerStorage storage = mock(LedgerStorage.class);
+    private final EntryCopier copier = mock(EntryCopier.class);
+    private final EntryCopier.Batch batch = mock(EntryCopier.Batch.class);
+
+    public TestCopyLedgerFragmentProcessorV3() throws Exception {
+        when(copier.newFragmentBatch(eq(LEDGER_ID), any(), any(), any())).thenReturn(batch);
+        when(batch.copyFromAvailable(anyLong())).thenReturn(CompletableFuture.completedFuture(100L));
+    }
+
+    private static byte[] masterKey() throws Exception {
+        return DigestManager.generateMasterKey(PASSWORD);
+    }
+
+    private static Request copyRequest(byte[] masterKey, long firstEntryId, long lastEntryId) {
+        return Request.newBuilder()
+                .setHeader(BKPacketHeader.newBuilder()
+                        .setVersion(ProtocolVersion.VERSION_THREE)
+                        .setOperation(OperationType.COPY_LEDGER_FRAGMENT)
+                        .setTxnId(1L))
+                .setCopyLedgerFragmentRequest(CopyLedgerFragmentRequest.newBuilder()
+                        .setLedgerId(LEDGER_ID)
+                        .setMasterKey(ByteString.copyFrom(masterKey))
+                        .setFirstEntryId(firstEntryId)
+                        .setLastEntryId(lastEntryId)
+                        .addUnavailableBookies(FAILED_BOOKIE.toString()))
+                .build();
+    }
+
+    private CopyLedgerFragmentProcessorV3 processor(Request request) {
+        LedgerMetadata metadata = LedgerMetadataBuilder.create()
+            .withId(LEDGER_ID)
+            .withEnsembleSize(3).withWriteQuorumSize(3).withAckQuorumSize(2)
+            .withPassword(PASSWORD).withDigestType(DigestType.CRC32C)
+            .newEnsembleEntry(0L, Arrays.asList(FAILED_BOOKIE,
+                    BookieId.parse("127.0.0.2:3181"),
+                    BookieId.parse("127.0.0.3:3181")))
+            .withClosedState().withLastEntryId(LAST_ENTRY_ID).withLength(1000L)
+            .build();
+        LedgerManager ledgerManager = mock(LedgerManager.class);
+        when(ledgerManager.readLedgerMetadata(LEDGER_ID))
+            .thenReturn(CompletableFuture.completedFuture(new Versioned<>(metadata, new LongVersion(0L))));
+
+        ChannelHandlerContext ctx = mock(ChannelHandlerContext.class);
+        when(ctx.channel()).thenReturn(channel);
+        BookieRequestHandler requestHandler = mock(BookieRequestHandler.class);
+        when(requestHandler.ctx()).thenReturn(ctx);
+
+        Bookie bookie = mock(Bookie.class);
+        when(bookie.getLedgerStorage()).thenReturn(storage);
+        BookieRequestProcessor requestProcessor = mock(BookieRequestProcessor.class);
+        when(requestProcessor.getServerCfg()).thenReturn(new ServerConfiguration()
+                .setFragmentCopyMaxOutstandingEntries(4));
+        when(requestProcessor.getBookie()).thenReturn(bookie);
+        when(requestProcessor.getFragmentCopier()).thenReturn(copier);
+        when(requestProcessor.getFragmentCopyLedgerManager()).thenReturn(ledgerManager);
+        when(requestProcessor.getRequestStats()).thenReturn(new RequestStats(NullStatsLogger.INSTANCE));
+        return new CopyLedgerFragmentProcessorV3(request, requestHandler, requestProcessor);
+    }
+
+    private CopyLedgerFragmentResponse readResponse(StatusCode expectedStatus) {
+        Response response = channel.readOutbound();
+        assertEquals(expectedStatus, response.getStatus());
+        assertEquals(expectedStatus, response.getCopyLedgerFragmentResponse().getStatus());
+        assertNull(channel.readOutbound());
+        return response.getCopyLedgerFragmentResponse();
+    }
+
+    @Test
+    public void testCopyFlushedBeforeResponse() throws Exception {
+        doAnswer(invocation -> {
+            // every entry is copied, and nothing is sent yet
+            verify(batch, times((int) LAST_ENTRY_ID + 1)).copyFromAvailable(anyLong());
+            assertNull(channel.readOutbound());
+            return null;
+        }).when(storage).flush();
+
+        processor(copyRequest(masterKey(), 0L, LAST_ENTRY_ID)).run();
+
+        CopyLedgerFragmentResponse response = readResponse(StatusCode.EOK);
+        assertEquals(LAST_ENTRY_ID + 1, response.getEntriesCopied());
+        assertEquals(100L * (LAST_ENTRY_ID + 1), response.getBytesCopied());
+        verify(storage, times(1)).flush();
+        // the master key and the bookies to avoid come from the request and the metadata store
+        verify(copier).newFragmentBatch(eq(LEDGER_ID), any(), eq(masterKey()),
+                eq(Collections.singleton(FAILED_BOOKIE)));
+    }
+
+    @Test
+    public void testFlushFailure() throws Exception {
+        doThrow(new IOException("failed to flush")).when(storage).flush();
+        processor(copyRequest(masterKey(), 0L, LAST_ENTRY_ID)).run();
+
+        readResponse(StatusCode.EIO);
+    }
+
+    @Test
+    public void testCopyFailure() throws Exception {
+        CompletableFuture<Long> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IOException("failed to read the entry"));
+        when(batch.copyFromAvailable(5L)).thenReturn(failed);
+        processor(copyRequest(masterKey(), 0L, LAST_ENTRY_ID)).run();
+
+        // the entries copied are not made durable as the fragment must be copied again
+        readResponse(StatusCode.EIO);
+        verify(storage, never()).flush();
+    }
+
+    @Test
+    public void testWrongMasterKeyRejected() throws Exception {
+        processor(copyRequest("wrong".getBytes(UTF_8), 0L, LAST_ENTRY_ID)).run();
+        readResponse(StatusCode.EUA);
+
+        // the ledger already exists on the bookie with another master key
+        when(storage.ledgerExists(LEDGER_ID)).thenReturn(true);
+        when(storage.readMasterKey(LEDGER_ID)).thenReturn("other".getBytes(UTF_8));
+        processor(copyRequest(masterKey(), 0L, LAST_ENTRY_ID)).run();
+        readResponse(StatusCode.EUA);
+
+        verify(copier, never()).newFragmentBatch(anyLong(), any(), any(), any());
+        verify(storage, never()).flush();
+    }
+
+    @Test
+    public void testInvalidRangeRejected() throws Exception {
+        // beyond the last entry of the closed ledger
+        processor(copyRequest(masterKey(), 0L, LAST_ENTRY_ID + 1)).run();
+        readResponse(StatusCode.EBADREQ);
+
+        processor(copyRequest(masterKey(), 5L, 4L)).run();
+        readResponse(StatusCode.EBADREQ);
+
+        verify(copier, never()).newFragmentBatch(anyLong(), any(), any(), any());
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.proto;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookieClient.ExplicitLac;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteLacCallback;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchWriteLacResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.WriteLacRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.WriteLacResponse;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the class {@link PerChannelBookieClient}.
+ */
+public class TestPerChannelBookieClient {
+
+    private static final long WAIT_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
+    private static final BookieId BOOKIE = BookieId.parse("127.0.0.1:3181");
+
+    private final OrderedExecutor executor = OrderedExecutor.newBuilder().numThreads(1).build();
+    private final EmbeddedChannel channel = new EmbeddedChannel();
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    /**
+     * A client connected to the bookie through an embedded channel, keeping the requests sent.
+     */
+    private PerChannelBookieClient client() {
+        PerChannelBookieClient client = new PerChannelBookieClient(executor, mock(EventLoopGroup.class), BOOKIE,
+                mock(BookieAddressResolver.class));
+        client.channel = channel;
+        return client;
+    }
+
+    private static List<ExplicitLac> lacs(long... ledgerIds) {
+        List<ExplicitLac> lacs = new ArrayList<>();
+        for (long ledgerId : ledgerIds) {
+            lacs.add(new ExplicitLac(ledgerId, ("ledger-" + ledgerId).getBytes(UTF_8), 10L * ledgerId,
+                    ByteBufList.get(Unpooled.wrappedBuffer(("lac-" + ledgerId).getBytes(UTF_8)))));
+        }
+        return lacs;
+    }
+
+    private static Response batchWriteLacResponse(Request request, StatusCode status,
+                                                  Map<Long, StatusCode> ledgerStatuses) {
+        BatchWriteLacResponse.Builder batch = BatchWriteLacResponse.newBuilder();
+        ledgerStatuses.forEach((ledgerId, ledgerStatus) -> batch.addWriteLacResponses(
+                WriteLacResponse.newBuilder().setLedgerId(ledgerId).setStatus(ledgerStatus)));
+        Response.Builder response = Response.newBuilder()
+                .setHeader(BKPacketHeader.newBuilder()
+                        .setVersion(ProtocolVersion.VERSION_THREE)
+                        .setOperation(OperationType.BATCH_WRITE_LAC)
+                        .setTxnId(request.getHeader().getTxnId()))
+                .setStatus(status);
+        if (status == StatusCode.EOK) {
+            response.setBatchWriteLacResponse(batch);
+        }
+        return response.build();
+    }
+
+    /**
+     * A callback recording the result of each ledger of a batch.
+     */
+    private static class BatchCallback implements WriteLacCallback {
+        final Map<Long, Integer> results = new ConcurrentHashMap<>();
+        final CountDownLatch done;
+
+        BatchCallback(int numLedgers) {
+            this.done = new CountDownLatch(numLedgers);
+        }
+
+        @Override
+        public void writeLacComplete(int rc, long ledgerId, BookieId addr, Object ctx) {
+            assertEquals(BOOKIE, addr);
+            assertEquals("ctx", ctx);
+            results.put(ledgerId, rc);
+            done.countDown();
+        }
+
+        Map<Long, Integer> await() throws InterruptedException {
+            assertTrue(done.await(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            return results;
+        }
+    }
+
+    @Test
+    public void testBatchWriteLac() throws Exception {
+        PerChannelBookieClient client = client();
+        BatchCallback cb = new BatchCallback(3);
+        client.batchWriteLac(lacs(1L, 2L, 3L), cb, "ctx");
+
+        // a single request carrying the lacs of all the ledgers
+        Request request = channel.readOutbound();
+        assertEquals(OperationType.BATCH_WRITE_LAC, request.getHeader().getOperation());
+        List<WriteLacRequest> writeLacRequests = request.getBatchWriteLacRequest().getWriteLacRequestsList();
+        assertEquals(3, writeLacRequests.size());
+        for (int i = 0; i < writeLacRequests.size(); i++) {
+            long ledgerId = i + 1;
+            WriteLacRequest writeLacRequest = writeLacRequests.get(i);
+            assertEquals(ledgerId, writeLacRequest.getLedgerId());
+            assertEquals(10L * ledgerId, writeLacRequest.getLac());
+            assertEquals("ledger-" + ledgerId, writeLacRequest.getMasterKey().toStringUtf8());
+            assertEquals("lac-" + ledgerId, writeLacRequest.getBody().toStringUtf8());
+        }
+
+        // each ledger gets the result of its own lac
+        Map<Long, StatusCode> statuses = new HashMap<>();
+        statuses.put(1L, StatusCode.EOK);
+        statuses.put(2L, StatusCode.EUA);
+        statuses.put(3L, StatusCode.EIO);
+        client.channelRead(null, batchWriteLacResponse(request, StatusCode.EOK, statuses));
+
+        Map<Long, Integer> expected = new HashMap<>();
+        expected.put(1L, BKException.Code.OK);
+        expected.put(2L, BKException.Code.UnauthorizedAccessException);
+        expected.put(3L, BKException.Code.WriteException);
+        assertEquals(expected, cb.await());
+    }
+
+    @Test
+    public void testBatchWriteLacRejected() throws Exception {
+        PerChannelBookieClient client = client();
+        BatchCallback cb = new BatchCallback(2);
+        client.batchWriteLac(lacs(1L, 2L), cb, "ctx");
+
+        // e.g. a read-only bookie, or one which doesn't know the operation
+        Request request = channel.readOutbound();
+        client.channelRead(null, batchWriteLacResponse(request, StatusCode.EREADONLY, new HashMap<>()));
+
+        Map<Long, Integer> expected = new HashMap<>();
+        expected.put(1L, BKException.Code.WriteOnReadOnlyBookieException);
+        expected.put(2L, BKException.Code.WriteOnReadOnlyBookieException);
+        assertEquals(expected, cb.await());
+    }
+
+    @Test
+    public void testBatchWriteLacWithoutChannel() throws Exception {
+        PerChannelBookieClient client = client();
+        client.channel = null;
+        BatchCallback cb = new BatchCallback(2);
+        client.batchWriteLac(lacs(1L, 2L), cb, "ctx");
+
+        Map<Long, Integer> expected = new HashMap<>();
+        expected.put(1L, BKException.Code.BookieHandleNotAvailableException);
+        expected.put(2L, BKException.Code.BookieHandleNotAvailableException);
+        assertEquals(expected, cb.await());
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import org.apache.bookkeeper.auth.BookKeeperPrincipal;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the class {@link PrincipalQuotas}.
+ */
+public class TestPrincipalQuotas {
+
+    private static final BookKeeperPrincipal ALICE = new BookKeeperPrincipal("alice");
+
+    private static PrincipalQuotas quotas(long addBytesPerSecond, long readBytesPerSecond, long requestsPerSecond) {
+        ServerConfiguration conf = new ServerConfiguration()
+                .setPrincipalQuotaAddBytesPerSecond(addBytesPerSecond)
+                .setPrincipalQuotaReadBytesPerSecond(readBytesPerSecond)
+                .setPrincipalQuotaRequestsPerSecond(requestsPerSecond)
+                .setPrincipalQuotaMaxPrincipals(2);
+        return new PrincipalQuotas(conf, NullStatsLogger.INSTANCE);
+    }
+
+    private static List<BookkeeperProtocol.ContextPair> context(String principal) {
+        return Collections.singletonList(BookkeeperProtocol.ContextPair.newBuilder()
+                .setKey("principal").setValue(principal).build());
+    }
+
+    @Test
+    public void testAddBytes() {
+        PrincipalQuotas.PrincipalQuota quota = quotas(1000, 0, 0).getQuota(ALICE, null);
+
+        assertEquals(0, quota.tryAcquireAdd(600));
+        // 200 bytes missing, refilled in 200 ms
+        long retryAfterMillis = quota.tryAcquireAdd(600);
+        assertTrue(retryAfterMillis > 0 && retryAfterMillis <= 200, "retry after " + retryAfterMillis + " ms");
+    }
+
+    @Test
+    public void testAddLargerThanBucket() {
+        PrincipalQuotas.PrincipalQuota quota = quotas(1000, 0, 0).getQuota(ALICE, null);
+
+        // only needs a full bucket, and leaves the principal in debt
+        assertEquals(0, quota.tryAcquireAdd(3000));
+        long retryAfterMillis = quota.tryAcquireAdd(1);
+        assertTrue(retryAfterMillis > 1000, "retry after " + retryAfterMillis + " ms");
+    }
+
+    @Test
+    public void testReleaseAdd() {
+        PrincipalQuotas.PrincipalQuota quota = quotas(1000, 0, 0).getQuota(ALICE, null);
+
+        assertEquals(0, quota.tryAcquireAdd(600));
+        quota.releaseAdd(600);
+        assertEquals(0, quota.tryAcquireAdd(600));
+
+        // a release doesn't fill the bucket beyond its capacity
+        quota.releaseAdd(600);
+        quota.releaseAdd(600);
+        assertEquals(0, quota.tryAcquireAdd(1000));
+        assertTrue(quota.tryAcquireAdd(100) > 0);
+    }
+
+    @Test
+    public void testRequests() {
+        PrincipalQuotas.PrincipalQuota quota = quotas(0, 0, 2).getQuota(ALICE, null);
+
+        assertEquals(0, quota.tryAcquireRead());
+        assertEquals(0, quota.tryAcquireAdd(1_000_000));
+        assertTrue(quota.tryAcquireRead() > 0);
+
+        quota.releaseRead();
+        assertEquals(0, quota.tryAcquireRead());
+    }
+
+    @Test
+    public void testReadBytesDebt() {
+        PrincipalQuotas.PrincipalQuota quota = quotas(0, 1000, 0).getQuota(ALICE, null);
+
+        assertEquals(0, quota.tryAcquireRead());
+        quota.chargeReadBytes(3000);
+        long retryAfterMillis = quota.tryAcquireRead();
+        assertTrue(retryAfterMillis > 1000, "retry after " + retryAfterMillis + " ms");
+    }
+
+    @Test
+    public void testPrincipals() {
+        PrincipalQuotas quotas = quotas(1000, 0, 0);
+
+        PrincipalQuotas.PrincipalQuota alice = quotas.getQuota(ALICE, null);
+        assertSame(alice, quotas.getQuota(ALICE, context("bob")));
+        // the principal of an anonymous connection is taken from the request context
+        PrincipalQuotas.PrincipalQuota bob = quotas.getQuota(BookKeeperPrincipal.ANONYMOUS, context("bob"));
+        assertNotSame(alice, bob);
+        assertSame(bob, quotas.getQuota(null, context("bob")));
+
+        // past the max number of principals, the others share a quota
+        PrincipalQuotas.PrincipalQuota carol = quotas.getQuota(new BookKeeperPrincipal("carol"), null);
+        assertNotSame(alice, carol);
+        assertNotSame(bob, carol);
+        assertSame(carol, quotas.getQuota(new BookKeeperPrincipal("dave"), null));
+    }
+}
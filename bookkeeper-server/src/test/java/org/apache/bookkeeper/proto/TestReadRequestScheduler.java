@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.proto.ReadRequestScheduler.ReadClass;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the class {@link ReadRequestScheduler}.
+ */
+public class TestReadRequestScheduler {
+
+    private static ReadRequestScheduler scheduler(int tailingWeight, int backlogWeight) {
+        ServerConfiguration conf = new ServerConfiguration()
+                .setNumReadWorkerThreads(1)
+                .setReadSchedulerTailingWeight(tailingWeight)
+                .setReadSchedulerBacklogWeight(backlogWeight)
+                .setReadSchedulerTailingDistanceEntries(1000);
+        return new ReadRequestScheduler(conf, new RequestStats(NullStatsLogger.INSTANCE));
+    }
+
+    @Test
+    public void testClassify() {
+        ReadRequestScheduler scheduler = scheduler(1, 1);
+        try {
+            scheduler.onEntryAdded(1L, 5000L);
+            // an add out of order doesn't move the last added entry back
+            scheduler.onEntryAdded(1L, 100L);
+
+            assertEquals(ReadClass.TAILING, scheduler.classify(1L, 4000L, false));
+            assertEquals(ReadClass.TAILING, scheduler.classify(1L, -1L, false));
+            assertEquals(ReadClass.BACKLOG, scheduler.classify(1L, 3999L, false));
+            assertEquals(ReadClass.BACKLOG, scheduler.classify(2L, 0L, false));
+            assertEquals(ReadClass.RECOVERY, scheduler.classify(1L, 4000L, true));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testStrideShare() throws Exception {
+        ReadRequestScheduler scheduler = scheduler(3, 1);
+        try {
+            // keep the only worker busy until all the reads are queued
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            scheduler.submit(ReadClass.RECOVERY, () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            int numReads = 100;
+            List<ReadClass> executed = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch done = new CountDownLatch(2 * numReads);
+            for (int i = 0; i < numReads; i++) {
+                scheduler.submit(ReadClass.BACKLOG, () -> {
+                    executed.add(ReadClass.BACKLOG);
+                    done.countDown();
+                });
+                scheduler.submit(ReadClass.TAILING, () -> {
+                    executed.add(ReadClass.TAILING);
+                    done.countDown();
+                });
+            }
+            release.countDown();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+
+            // while both classes have reads queued, the tailing reads get 3 of every 4 picks
+            int tailing = Collections.frequency(executed.subList(0, 40), ReadClass.TAILING);
+            assertEquals(30, tailing, 1);
+            assertEquals(2 * numReads, executed.size());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.proto;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.protobuf.ByteString;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.bookie.BookieException;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchWriteLacRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.WriteLacRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.WriteLacResponse;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the class {@link WriteLacProcessorV3}.
+ */
+public class TestWriteLacProcessorV3 {
+
+    private final EmbeddedChannel channel = new EmbeddedChannel();
+    private final Bookie bookie = mock(Bookie.class);
+    // the callbacks of the lacs being written, by ledger
+    private final Map<Long, WriteCallback> pendingWrites = new ConcurrentHashMap<>();
+
+    private static byte[] masterKey(long ledgerId) {
+        return ("ledger-" + ledgerId).getBytes(UTF_8);
+    }
+
+    private static long ledgerId(byte[] masterKey) {
+        return Long.parseLong(new String(masterKey, UTF_8).substring("ledger-".length()));
+    }
+
+    private static Request batchWriteLacRequest(long... ledgerIds) {
+        BatchWriteLacRequest.Builder batch = BatchWriteLacRequest.newBuilder();
+        for (long ledgerId : ledgerIds) {
+            batch.addWriteLacRequests(WriteLacRequest.newBuilder()
+                    .setLedgerId(ledgerId)
+                    .setLac(10L)
+                    .setMasterKey(ByteString.copyFrom(masterKey(ledgerId)))
+                    .setBody(ByteString.copyFrom(new byte[16])));
+        }
+        return Request.newBuilder()
+                .setHeader(BKPacketHeader.newBuilder()
+                        .setVersion(ProtocolVersion.VERSION_THREE)
+                        .setOperation(OperationType.BATCH_WRITE_LAC)
+                        .setTxnId(1L))
+                .setBatchWriteLacRequest(batch)
+                .build();
+    }
+
+    private WriteLacProcessorV3 processor(Request request) {
+        ChannelHandlerContext ctx = mock(ChannelHandlerContext.class);
+        when(ctx.channel()).thenReturn(channel);
+        BookieRequestHandler requestHandler = mock(BookieRequestHandler.class);
+        when(requestHandler.ctx()).thenReturn(ctx);
+
+        BookieRequestProcessor requestProcessor = mock(BookieRequestProcessor.class);
+        when(requestProcessor.getBookie()).thenReturn(bookie);
+        when(requestProcessor.getRequestStats()).thenReturn(new RequestStats(NullStatsLogger.INSTANCE));
+        return new WriteLacProcessorV3(request, requestHandler, requestProcessor);
+    }
+
+    @Test
+    public void testBatchWriteLac() throws Exception {
+        // ledger 1 and 3 are written asynchronously, ledger 2 and 4 fail at once
+        doAnswer(invocation -> {
+            long ledgerId = ledgerId(invocation.getArgument(3));
+            if (ledgerId == 2L) {
+                throw new BookieException.BookieUnauthorizedAccessException();
+            } else if (ledgerId == 4L) {
+                throw new IOException("failed to write the lac");
+            }
+            pendingWrites.put(ledgerId, invocation.getArgument(1));
+            return null;
+        }).when(bookie).setExplicitLac(any(), any(), any(), any());
+
+        processor(batchWriteLacRequest(1L, 2L, 3L, 4L)).run();
+        pendingWrites.get(3L).writeComplete(BookieProtocol.EIO, 3L, BookieProtocol.LAST_ADD_CONFIRMED, null, null);
+        // the response waits for all the lacs of the batch
+        assertNull(channel.readOutbound());
+        pendingWrites.get(1L).writeComplete(BookieProtocol.EOK, 1L, BookieProtocol.LAST_ADD_CONFIRMED, null, null);
+
+        Response response = channel.readOutbound();
+        assertEquals(OperationType.BATCH_WRITE_LAC, response.getHeader().getOperation());
+        assertEquals(1L, response.getHeader().getTxnId());
+        assertEquals(StatusCode.EOK, response.getStatus());
+        // a status per ledger, in the order of the request
+        StatusCode[] expectedStatuses = { StatusCode.EOK, StatusCode.EUA, StatusCode.EIO, StatusCode.EIO };
+        assertEquals(expectedStatuses.length, response.getBatchWriteLacResponse().getWriteLacResponsesCount());
+        for (int i = 0; i < expectedStatuses.length; i++) {
+            WriteLacResponse writeLacResponse = response.getBatchWriteLacResponse().getWriteLacResponses(i);
+            assertEquals(i + 1, writeLacResponse.getLedgerId());
+            assertEquals(expectedStatuses[i], writeLacResponse.getStatus());
+        }
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void testEmptyBatch() {
+        processor(batchWriteLacRequest()).run();
+
+        Response response = channel.readOutbound();
+        assertEquals(StatusCode.EOK, response.getStatus());
+        assertEquals(0, response.getBatchWriteLacResponse().getWriteLacResponsesCount());
+    }
+
+    @Test
+    public void testReadOnlyBookieRejectsBatch() throws Exception {
+        when(bookie.isReadOnly()).thenReturn(true);
+        processor(batchWriteLacRequest(1L, 2L)).run();
+
+        // a single error for the whole batch, the client fails every ledger of it
+        Response response = channel.readOutbound();
+        assertEquals(StatusCode.EREADONLY, response.getStatus());
+        assertFalse(response.hasBatchWriteLacResponse());
+        verify(bookie, never()).setExplicitLac(any(), any(), any(), any());
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.replication;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.client.BookKeeperAdmin;
+import org.apache.bookkeeper.client.LedgerMetadataBuilder;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.meta.LedgerManager.LedgerRange;
+import org.apache.bookkeeper.meta.LedgerManager.LedgerRangeIterator;
+import org.apache.bookkeeper.meta.LedgerUnderreplicationManager;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.AvailabilityOfEntriesOfLedger;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit test for the class {@link AuditorReplicasCheckTask}.
+ */
+public class TestAuditorReplicasCheckTask {
+
+    private static final Set<Long> LEDGERS = Sets.newHashSet(1L, 2L, 3L, 4L, 5L);
+    private static final List<BookieId> ENSEMBLE = Lists.newArrayList(
+            BookieId.parse("127.0.0.1:3181"),
+            BookieId.parse("127.0.0.2:3181"));
+
+    @TempDir
+    File dir;
+
+    private final LedgerManager ledgerManager = mock(LedgerManager.class);
+    private final LedgerUnderreplicationManager underreplicationManager = mock(LedgerUnderreplicationManager.class);
+    private final BookKeeperAdmin admin = mock(BookKeeperAdmin.class);
+    // the metadata version of each ledger, 1 unless changed
+    private final Map<Long, Long> metadataVersions = new ConcurrentHashMap<>();
+    // ledgers missing an entry on a bookie
+    private final Set<Long> ledgersMissingEntries = ConcurrentHashMap.newKeySet();
+    // ledgers whose replicas were checked by the last run
+    private final Set<Long> ledgersChecked = new ConcurrentSkipListSet<>();
+    private final AtomicBoolean auditPending = new AtomicBoolean(false);
+    // an audit is pending once the metadata of this ledger is read
+    private final AtomicLong auditPendingAfterLedger = new AtomicLong(-1L);
+    private AuditorReplicasCheckTask task;
+
+    public TestAuditorReplicasCheckTask() throws Exception {
+        when(underreplicationManager.isLedgerReplicationEnabled()).thenReturn(true);
+        when(ledgerManager.getLedgerRanges(anyLong())).thenAnswer(invocation -> new LedgerRangeIterator() {
+            private boolean hasNext = true;
+
+            @Override
+            public boolean hasNext() {
+                return hasNext;
+            }
+
+            @Override
+            public LedgerRange next() {
+                hasNext = false;
+                return new LedgerRange(LEDGERS);
+            }
+        });
+        when(ledgerManager.readLedgerMetadata(anyLong())).thenAnswer(invocation -> {
+            long ledgerId = invocation.getArgument(0);
+            if (ledgerId == auditPendingAfterLedger.get()) {
+                auditPending.set(true);
+            }
+            return CompletableFuture.completedFuture(new Versioned<>(LedgerMetadataBuilder.create()
+                    .withId(ledgerId)
+                    .withEnsembleSize(2).withWriteQuorumSize(2).withAckQuorumSize(2)
+                    .withPassword(new byte[0]).withDigestType(DigestType.CRC32C)
+                    .newEnsembleEntry(0L, ENSEMBLE)
+                    .withClosedState().withLastEntryId(1L).withLength(10L)
+                    .build(), new LongVersion(metadataVersions.getOrDefault(ledgerId, 1L))));
+        });
+        when(admin.asyncGetListOfEntriesOfLedger(any(), anyLong())).thenAnswer(invocation -> {
+            long ledgerId = invocation.getArgument(1);
+            ledgersChecked.add(ledgerId);
+            long[] entries = ledgersMissingEntries.contains(ledgerId) ? new long[] { 0L } : new long[] { 0L, 1L };
+            return CompletableFuture.completedFuture(new AvailabilityOfEntriesOfLedger(entries));
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (task != null) {
+            task.shutdown();
+        }
+    }
+
+    private void newTask(boolean incremental) {
+        ServerConfiguration conf = new ServerConfiguration()
+            .setAuditorReplicasCheckIncrementalEnabled(incremental)
+            .setAuditorReplicasCheckStateDir(dir.getPath())
+            .setAuditorReplicasCheckMaxLedgersPerSecond(1000);
+        task = new AuditorReplicasCheckTask(conf, new AuditorStats(NullStatsLogger.INSTANCE), admin,
+                ledgerManager, underreplicationManager, mock(AuditorTask.ShutdownTaskHandler.class),
+                (flag, throwable) -> flag.set(auditPending.get()));
+    }
+
+    private Set<Long> runCheck() {
+        ledgersChecked.clear();
+        task.run();
+        return Sets.newHashSet(ledgersChecked);
+    }
+
+    @Test
+    public void testUnchangedLedgersSkipped() throws Exception {
+        ledgersMissingEntries.add(5L);
+        newTask(true);
+        assertEquals(LEDGERS, runCheck());
+
+        // the ledger missing an entry wasn't recorded as checked, the others are skipped
+        assertEquals(Sets.newHashSet(5L), runCheck());
+
+        metadataVersions.put(3L, 2L);
+        assertEquals(Sets.newHashSet(3L, 5L), runCheck());
+        verify(underreplicationManager, times(3)).setReplicasCheckCTime(anyLong());
+    }
+
+    @Test
+    public void testStateKeptByNewTask() throws Exception {
+        newTask(true);
+        assertEquals(LEDGERS, runCheck());
+        task.shutdown();
+
+        // e.g. the auditor restarted on the same bookie
+        newTask(true);
+        assertEquals(Sets.newHashSet(), runCheck());
+    }
+
+    @Test
+    public void testResumeAfterInterruption() throws Exception {
+        auditPendingAfterLedger.set(2L);
+        newTask(true);
+        assertEquals(Sets.newHashSet(1L, 2L), runCheck());
+        // the check isn't complete
+        verify(underreplicationManager, never()).setReplicasCheckCTime(anyLong());
+
+        // the next run carries on with the ledgers not checked yet
+        auditPending.set(false);
+        auditPendingAfterLedger.set(-1L);
+        assertEquals(Sets.newHashSet(3L, 4L, 5L), runCheck());
+        verify(underreplicationManager).setReplicasCheckCTime(anyLong());
+    }
+
+    @Test
+    public void testAllLedgersCheckedWhenNotIncremental() throws Exception {
+        auditPendingAfterLedger.set(2L);
+        newTask(false);
+        // the full check isn't interrupted by an audit, and checks every ledger each time
+        assertEquals(LEDGERS, runCheck());
+        auditPending.set(false);
+        assertEquals(LEDGERS, runCheck());
+        verify(underreplicationManager, times(2)).setReplicasCheckCTime(anyLong());
+    }
+}
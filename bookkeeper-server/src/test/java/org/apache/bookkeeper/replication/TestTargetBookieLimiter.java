@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.replication;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.bookkeeper.net.BookieId;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the class {@link TargetBookieLimiter}.
+ */
+public class TestTargetBookieLimiter {
+
+    private static final long WAIT_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
+    private static final long BLOCKED_MS = 200;
+
+    private static final BookieId BOOKIE1 = BookieId.parse("127.0.0.1:3181");
+    private static final BookieId BOOKIE2 = BookieId.parse("127.0.0.2:3181");
+    private static final BookieId BOOKIE3 = BookieId.parse("127.0.0.3:3181");
+
+    private static CompletableFuture<Void> acquireAsync(TargetBookieLimiter limiter, List<BookieId> bookies) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                limiter.acquire(bookies);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private static void assertBlocked(CompletableFuture<Void> acquired) {
+        assertThrows(TimeoutException.class, () -> acquired.get(BLOCKED_MS, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testLimitPerBookie() throws Exception {
+        TargetBookieLimiter limiter = new TargetBookieLimiter(2);
+        List<BookieId> bookie1 = Collections.singletonList(BOOKIE1);
+        limiter.acquire(bookie1);
+        limiter.acquire(bookie1);
+
+        CompletableFuture<Void> acquired = acquireAsync(limiter, bookie1);
+        assertBlocked(acquired);
+        // the other bookies aren't limited by the replications to the busy one
+        limiter.acquire(Arrays.asList(BOOKIE2, BOOKIE3));
+        limiter.acquire(Arrays.asList(BOOKIE2, BOOKIE3));
+        assertFalse(acquired.isDone());
+
+        limiter.release(bookie1);
+        acquired.get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertBlocked(acquireAsync(limiter, bookie1));
+    }
+
+    @Test
+    public void testAcquireAllTargetsAtOnce() throws Exception {
+        TargetBookieLimiter limiter = new TargetBookieLimiter(1);
+        limiter.acquire(Collections.singletonList(BOOKIE1));
+
+        // waiting for the first bookie doesn't hold a slot on the second one
+        CompletableFuture<Void> acquired = acquireAsync(limiter, Arrays.asList(BOOKIE1, BOOKIE2));
+        assertBlocked(acquired);
+        limiter.acquire(Collections.singletonList(BOOKIE2));
+        limiter.release(Collections.singletonList(BOOKIE2));
+
+        limiter.release(Collections.singletonList(BOOKIE1));
+        acquired.get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        // both slots are taken by the replication to the two bookies
+        assertBlocked(acquireAsync(limiter, Collections.singletonList(BOOKIE2)));
+    }
+
+    @Test
+    public void testReleaseFreesSlots() throws Exception {
+        TargetBookieLimiter limiter = new TargetBookieLimiter(1);
+        List<BookieId> bookies = Arrays.asList(BOOKIE1, BOOKIE2);
+        for (int i = 0; i < 100; i++) {
+            acquireAsync(limiter, bookies).get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            limiter.release(bookies);
+        }
+        // releasing bookies without any replication is harmless
+        limiter.release(Collections.singletonList(BOOKIE3));
+        acquireAsync(limiter, Arrays.asList(BOOKIE1, BOOKIE2, BOOKIE3)).get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.buffer.Unpooled;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the class {@link AvailabilityOfEntriesOfLedger}, and its V1 encoding
+ * {@link CompressedEntryBitmap}.
+ */
+public class TestAvailabilityOfEntriesOfLedger {
+
+    private static long[] sparseEntries() {
+        Random random = new Random(42);
+        TreeSet<Long> entries = new TreeSet<>();
+        while (entries.size() < 2000) {
+            entries.add((long) random.nextInt(200000));
+        }
+        return entries.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static long[] stripedEntries() {
+        return LongStream.range(0, 100000).map(i -> i * 3).toArray();
+    }
+
+    private static int headerVersion(byte[] serialized) {
+        return ByteBuffer.wrap(serialized).getInt();
+    }
+
+    private static byte[] serializeV1(CompressedEntryBitmap bitmap) {
+        byte[] serialized = new byte[AvailabilityOfEntriesOfLedger.HEADER_SIZE + bitmap.getSerializedSize()];
+        ByteBuffer header = ByteBuffer.wrap(serialized);
+        header.putInt(AvailabilityOfEntriesOfLedger.V1);
+        header.putInt(bitmap.getNumOfContainers());
+        bitmap.serialize(Unpooled.wrappedBuffer(serialized).writerIndex(AvailabilityOfEntriesOfLedger.HEADER_SIZE));
+        return serialized;
+    }
+
+    private static void assertSameEntries(long[] entries, AvailabilityOfEntriesOfLedger availability) {
+        assertEquals(entries.length, availability.getTotalNumOfAvailableEntries());
+        long lastEntryId = entries[entries.length - 1];
+        BitSet expected = new BitSet();
+        expected.set(0, (int) lastEntryId + 1);
+        List<Long> unavailable = availability.getUnavailableEntries(0, lastEntryId, expected);
+        assertEquals(lastEntryId + 1 - entries.length, unavailable.size());
+        for (long entryId : entries) {
+            assertTrue(availability.isEntryAvailable(entryId));
+        }
+        assertFalse(availability.isEntryAvailable(lastEntryId + 1));
+    }
+
+    @Test
+    public void testSparseEntriesSentInV1() {
+        long[] entries = sparseEntries();
+        AvailabilityOfEntriesOfLedger availability = new AvailabilityOfEntriesOfLedger(entries);
+
+        byte[] v0 = availability.serializeStateOfEntriesOfLedger(AvailabilityOfEntriesOfLedger.V0);
+        byte[] v1 = availability.serializeStateOfEntriesOfLedger(AvailabilityOfEntriesOfLedger.V1);
+
+        assertEquals(AvailabilityOfEntriesOfLedger.V0, headerVersion(v0));
+        assertEquals(AvailabilityOfEntriesOfLedger.V1, headerVersion(v1));
+        assertTrue(v1.length < v0.length, "V1 is " + v1.length + " bytes, V0 is " + v0.length + " bytes");
+        assertSameEntries(entries, new AvailabilityOfEntriesOfLedger(v0));
+        assertSameEntries(entries, new AvailabilityOfEntriesOfLedger(v1));
+        assertSameEntries(entries, new AvailabilityOfEntriesOfLedger(Unpooled.wrappedBuffer(v1)));
+    }
+
+    @Test
+    public void testStripedEntriesSentInV0() {
+        long[] entries = stripedEntries();
+        AvailabilityOfEntriesOfLedger availability = new AvailabilityOfEntriesOfLedger(entries);
+
+        // a single sequence group is smaller than the bitmap
+        byte[] serialized = availability.serializeStateOfEntriesOfLedger(AvailabilityOfEntriesOfLedger.V1);
+
+        assertEquals(AvailabilityOfEntriesOfLedger.V0, headerVersion(serialized));
+        assertArrayEquals(availability.serializeStateOfEntriesOfLedger(), serialized);
+        assertSameEntries(entries, new AvailabilityOfEntriesOfLedger(serialized));
+    }
+
+    @Test
+    public void testReadFromV1SerializedInSmallerEncoding() {
+        long[] entries = stripedEntries();
+        CompressedEntryBitmap.Builder builder = new CompressedEntryBitmap.Builder();
+        for (long entryId : entries) {
+            builder.add(entryId);
+        }
+        AvailabilityOfEntriesOfLedger availability =
+                new AvailabilityOfEntriesOfLedger(serializeV1(builder.build()));
+
+        byte[] forV0 = availability.serializeStateOfEntriesOfLedger(AvailabilityOfEntriesOfLedger.V0);
+        byte[] forV1 = availability.serializeStateOfEntriesOfLedger(AvailabilityOfEntriesOfLedger.V1);
+
+        assertEquals(AvailabilityOfEntriesOfLedger.V0, headerVersion(forV0));
+        assertEquals(AvailabilityOfEntriesOfLedger.V0, headerVersion(forV1));
+        assertSameEntries(entries, new AvailabilityOfEntriesOfLedger(forV0));
+        assertSameEntries(entries, new AvailabilityOfEntriesOfLedger(forV1));
+    }
+
+    @Test
+    public void testBitmapRoundTrip() {
+        CompressedEntryBitmap.Builder builder = new CompressedEntryBitmap.Builder();
+        // a run container, a bitmap container and an array container
+        builder.addRange(0, 70000);
+        for (long entryId = 1L << 17; entryId < (1L << 17) + 65536; entryId += 2) {
+            builder.add(entryId);
+        }
+        builder.add(5L << 16).add((5L << 16) + 100).add((5L << 16) + 65535);
+        CompressedEntryBitmap bitmap = builder.build();
+
+        byte[] serialized = serializeV1(bitmap);
+        CompressedEntryBitmap parsed = CompressedEntryBitmap.deserialize(
+                Unpooled.wrappedBuffer(serialized).readerIndex(AvailabilityOfEntriesOfLedger.HEADER_SIZE),
+                bitmap.getNumOfContainers());
+
+        assertEquals(bitmap.getNumOfContainers(), parsed.getNumOfContainers());
+        assertEquals(70000 + 32768 + 3, parsed.getCardinality());
+        List<Long> expected = new ArrayList<>();
+        bitmap.forEach(expected::add);
+        List<Long> actual = new ArrayList<>();
+        parsed.forEach(actual::add);
+        assertEquals(expected, actual);
+        assertEquals(parsed.getCardinality(), actual.size());
+        assertTrue(parsed.contains(69999));
+        assertFalse(parsed.contains(70000));
+        assertTrue(parsed.contains((1L << 17) + 2));
+        assertFalse(parsed.contains((1L << 17) + 3));
+        assertTrue(parsed.contains((5L << 16) + 65535));
+    }
+
+    @Test
+    public void testBitmapMissingEntries() {
+        CompressedEntryBitmap bitmap = new CompressedEntryBitmap.Builder()
+                .addRange(10, 100)
+                .add(150)
+                .build();
+        BitSet expected = new BitSet();
+        expected.set(0, 200);
+
+        List<Long> missing = bitmap.getMissingEntries(50, 160, expected);
+
+        List<Long> expectedMissing = new ArrayList<>();
+        for (long entryId = 100; entryId <= 160; entryId++) {
+            if (entryId != 150) {
+                expectedMissing.add(entryId);
+            }
+        }
+        assertEquals(expectedMissing, missing);
+    }
+
+    /**
+     * Overwrite the int at <i>offset</i> of a copy of <i>serialized</i>.
+     */
+    private static byte[] withInt(byte[] serialized, int offset, int value) {
+        byte[] corrupted = serialized.clone();
+        ByteBuffer.wrap(corrupted).putInt(offset, value);
+        return corrupted;
+    }
+
+    private static void assertRejected(byte[] corrupted) {
+        assertThrows(IllegalArgumentException.class, () -> new AvailabilityOfEntriesOfLedger(corrupted));
+        assertThrows(IllegalArgumentException.class,
+                () -> new AvailabilityOfEntriesOfLedger(Unpooled.wrappedBuffer(corrupted)));
+    }
+
+    @Test
+    public void testCorruptedBitmapRejected() {
+        int numOfContainersOffset = Integer.BYTES;
+        // the number of entries of the first container, after its key and type
+        int cardinalityOffset = AvailabilityOfEntriesOfLedger.HEADER_SIZE + Long.BYTES + 1;
+        int numRunsOffset = cardinalityOffset + Integer.BYTES;
+        byte[] array = serializeV1(new CompressedEntryBitmap.Builder().add(1).add(100).build());
+        byte[] runs = serializeV1(new CompressedEntryBitmap.Builder().addRange(0, 1000).build());
+
+        assertRejected(withInt(array, numOfContainersOffset, -1));
+        assertRejected(withInt(array, numOfContainersOffset, Integer.MAX_VALUE));
+        assertRejected(withInt(array, cardinalityOffset, -1));
+        assertRejected(withInt(array, cardinalityOffset, Integer.MAX_VALUE));
+        // within the size of a container, but beyond the bytes left
+        assertRejected(withInt(array, cardinalityOffset, 60000));
+        assertRejected(Arrays.copyOf(array, array.length - 1));
+
+        assertRejected(withInt(runs, numRunsOffset, -1));
+        assertRejected(withInt(runs, numRunsOffset, Integer.MAX_VALUE));
+        assertRejected(withInt(runs, numRunsOffset, 1000));
+        assertRejected(Arrays.copyOf(runs, runs.length - 1));
+
+        // the bitmaps are parsed as long as they are intact
+        assertEquals(2, new AvailabilityOfEntriesOfLedger(array).getTotalNumOfAvailableEntries());
+        assertEquals(1000, new AvailabilityOfEntriesOfLedger(runs).getTotalNumOfAvailableEntries());
+    }
+}
@@ -32,6 +32,10 @@ import io.etcd.jetcd.op.CmpTarget;
 import io.etcd.jetcd.options.GetOption;
 import io.etcd.jetcd.options.PutOption;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import lombok.extern.slf4j.Slf4j;
@@ -52,6 +56,8 @@ class Etcd64bitIdGenerator implements LedgerIdGenerator {
     static final long BUCKET_ID_MASK    = 0xff00000000000000L;
     static final int BUCKET_ID_SHIFT    = 56;
     static final int NUM_BUCKETS        = 0x80;
+    // each id of a batch takes a put and a get in the txn, and etcd allows 128 operations per txn by default
+    static final int MAX_IDS_PER_TXN    = 64;
 
     static int getBucketId(long lid) {
         return (int) ((lid & BUCKET_ID_MASK) >>> BUCKET_ID_SHIFT);
@@ -135,6 +141,75 @@ class Etcd64bitIdGenerator implements LedgerIdGenerator {
             });
     }
 
+    /**
+     * Generate ledger ids in batches, by incrementing a different bucket for each id of a batch in
+     * a single txn. Each bucket is incremented by one, as for a single id, so batches and single ids
+     * can be generated concurrently by different clients.
+     */
+    @Override
+    public void generateLedgerIds(int count, GenericCallback<List<Long>> cb) {
+        if (count <= 1) {
+            LedgerIdGenerator.super.generateLedgerIds(count, cb);
+            return;
+        }
+        // a txn can't update the same key twice
+        Set<Integer> bucketIds = new LinkedHashSet<>();
+        for (int i = 0; i < Math.min(count, MAX_IDS_PER_TXN); i++) {
+            bucketIds.add(nextBucketId());
+        }
+
+        List<io.etcd.jetcd.op.Op> ops = new ArrayList<>(bucketIds.size() * 2);
+        for (int bucketId : bucketIds) {
+            ByteSequence bucketKey =
+                ByteSequence.from(EtcdUtils.getBucketPath(scope, bucketId), StandardCharsets.UTF_8);
+            ops.add(io.etcd.jetcd.op.Op.put(bucketKey, EMPTY_BS, PutOption.DEFAULT));
+            ops.add(io.etcd.jetcd.op.Op.get(bucketKey, GetOption.DEFAULT));
+        }
+        kvClient.txn()
+            .Then(ops.toArray(new io.etcd.jetcd.op.Op[0]))
+            .commit()
+            .thenAccept(txnResponse -> {
+                List<GetResponse> responses = txnResponse.getGetResponses();
+                if (responses.size() != bucketIds.size()) {
+                    cb.operationComplete(Code.UnexpectedConditionException, null);
+                    return;
+                }
+                List<Long> lids = new ArrayList<>(count);
+                int i = 0;
+                for (int bucketId : bucketIds) {
+                    GetResponse resp = responses.get(i++);
+                    if (resp.getCount() <= 0) {
+                        cb.operationComplete(Code.UnexpectedConditionException, null);
+                        return;
+                    }
+                    long version = resp.getKvs().get(0).getVersion();
+                    if (version > MAX_ID_PER_BUCKET) {
+                        // the bucket is overflowed, the id is generated again from another bucket.
+                        log.warn("Etcd bucket '{}' is overflowed", bucketId);
+                        continue;
+                    }
+                    lids.add(((((long) bucketId) << BUCKET_ID_SHIFT) & BUCKET_ID_MASK)
+                        | (version & MAX_ID_PER_BUCKET));
+                }
+                if (lids.size() == count) {
+                    cb.operationComplete(Code.OK, lids);
+                    return;
+                }
+                generateLedgerIds(count - lids.size(), (rc, moreLids) -> {
+                    if (rc == Code.OK) {
+                        lids.addAll(moreLids);
+                        cb.operationComplete(rc, lids);
+                    } else {
+                        cb.operationComplete(rc, null);
+                    }
+                });
+            })
+            .exceptionally(cause -> {
+                cb.operationComplete(Code.MetaStoreException, null);
+                return null;
+            });
+    }
+
     @Override
     public void close() {
         // no-op
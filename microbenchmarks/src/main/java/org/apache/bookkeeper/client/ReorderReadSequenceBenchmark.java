@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.feature.SettableFeatureProvider;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.net.DNSToSwitchMapping;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmark of the reordering of the read sequence by the rack-aware placement policy, with
+ * and without concurrent changes of the topology.
+ *
+ * <p>In the {@code churn} group, one thread keeps moving a bookie of the read ensemble between
+ * the writable and the read-only bookies, as {@link BookieWatcherImpl} does on membership
+ * changes, while the other threads reorder reads of that ensemble.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class ReorderReadSequenceBenchmark {
+
+    private static final int ENSEMBLE_SIZE = 5;
+    private static final int WRITE_QUORUM_SIZE = 3;
+
+    /**
+     * State holder of the test.
+     */
+    @State(Scope.Group)
+    public static class TestState {
+        @Param({"100", "1000"})
+        private int numBookies;
+
+        @Param({"10"})
+        private int numRacks;
+
+        private RackawareEnsemblePlacementPolicy policy;
+        private RoundRobinDistributionSchedule schedule;
+        private List<BookieId> ensemble;
+        private Set<BookieId> writableBookies;
+        private Set<BookieId> writableBookiesWithoutChurning;
+        private Set<BookieId> churningBookie;
+        private BookiesHealthInfo healthInfo;
+        private boolean churningBookieWritable = true;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            Map<BookieId, BookieSocketAddress> addresses = new HashMap<>();
+            writableBookies = new HashSet<>();
+            for (int i = 0; i < numBookies; i++) {
+                BookieSocketAddress address = new BookieSocketAddress(
+                        "10.0." + (i % numRacks) + "." + (i / numRacks), 3181);
+                addresses.put(address.toBookieId(), address);
+                writableBookies.add(address.toBookieId());
+            }
+
+            policy = new RackawareEnsemblePlacementPolicy();
+            policy.initialize(new ClientConfiguration(), Optional.of(new SubnetRackResolver()), null,
+                    SettableFeatureProvider.DISABLE_ALL, NullStatsLogger.INSTANCE, addresses::get);
+            policy.onClusterChanged(writableBookies, Collections.emptySet());
+
+            ensemble = writableBookies.stream().limit(ENSEMBLE_SIZE).collect(Collectors.toList());
+            churningBookie = Collections.singleton(ensemble.get(0));
+            writableBookiesWithoutChurning = new HashSet<>(writableBookies);
+            writableBookiesWithoutChurning.removeAll(churningBookie);
+            schedule = new RoundRobinDistributionSchedule(WRITE_QUORUM_SIZE, 2, ENSEMBLE_SIZE);
+            healthInfo = new BookiesHealthInfo() {
+                @Override
+                public long getBookieFailureHistory(BookieId bookieSocketAddress) {
+                    return -1L;
+                }
+
+                @Override
+                public long getBookiePendingRequests(BookieId bookieSocketAddress) {
+                    return 0L;
+                }
+            };
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            policy.uninitalize();
+        }
+    }
+
+    /**
+     * Resolves the bookies at 10.0.x.y to the rack /rack-x.
+     */
+    static class SubnetRackResolver implements DNSToSwitchMapping {
+        @Override
+        public List<String> resolve(List<String> names) {
+            List<String> racks = new ArrayList<>(names.size());
+            for (String name : names) {
+                racks.add("/rack-" + name.split("\\.")[2]);
+            }
+            return racks;
+        }
+
+        @Override
+        public void reloadCachedMappings() {
+        }
+    }
+
+    private static int reorder(TestState s) {
+        long entryId = ThreadLocalRandom.current().nextInt(ENSEMBLE_SIZE);
+        DistributionSchedule.WriteSet writeSet = s.schedule.getWriteSet(entryId);
+        DistributionSchedule.WriteSet reordered = s.policy.reorderReadSequence(s.ensemble, s.healthInfo, writeSet);
+        int first = reordered.get(0);
+        reordered.recycle();
+        return first;
+    }
+
+    @Benchmark
+    public int reorderReadSequence(TestState s) {
+        return reorder(s);
+    }
+
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(7)
+    public int reorderReadSequenceUnderChurn(TestState s) {
+        return reorder(s);
+    }
+
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(1)
+    public Set<BookieId> topologyChurn(TestState s) {
+        // only this thread of the group changes the topology
+        s.churningBookieWritable = !s.churningBookieWritable;
+        if (s.churningBookieWritable) {
+            return s.policy.onClusterChanged(s.writableBookies, Collections.emptySet());
+        } else {
+            return s.policy.onClusterChanged(s.writableBookiesWithoutChurning, s.churningBookie);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.client;
+
+import com.google.common.collect.Lists;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.bookkeeper.client.LedgerAddBenchmark.AckingBookieClient;
+import org.apache.bookkeeper.client.LedgerAddBenchmark.MockClientContext;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.common.util.OrderedScheduler;
+import org.apache.bookkeeper.common.util.VirtualThreads;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmark of many concurrent writers, each blocked on synchronous adds to a single ledger
+ * handle, against a bookie client which acknowledges the adds immediately.
+ *
+ * <p>Each writer runs in its own virtual thread when the JDK supports them (JDK 21 and later),
+ * otherwise the writers share a pool of platform threads. A benchmark operation is a round in
+ * which every writer does its adds, so the add throughput is writers * addsPerWriter divided by
+ * the reported time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class VirtualThreadAddBenchmark {
+
+    private static final byte[] PASSWORD = new byte[0];
+    private static final int PLATFORM_THREADS = 256;
+
+    /**
+     * State holder of the test.
+     */
+    @State(Scope.Benchmark)
+    public static class TestState {
+        @Param({"10000", "100000"})
+        private int writers;
+
+        @Param({"10"})
+        private int addsPerWriter;
+
+        @Param({"false", "true"})
+        private boolean singleWriterAddSequencing;
+
+        @Param({"100"})
+        private int entrySize;
+
+        private OrderedExecutor mainWorkerPool;
+        private OrderedScheduler scheduler;
+        private ExecutorService writerExecutor;
+        private LedgerHandle lh;
+        private byte[] entry;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            mainWorkerPool = OrderedExecutor.newBuilder().numThreads(1).build();
+            scheduler = OrderedScheduler.newSchedulerBuilder().numThreads(1).build();
+            if (VirtualThreads.isSupported()) {
+                writerExecutor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+            } else {
+                writerExecutor = Executors.newFixedThreadPool(PLATFORM_THREADS);
+            }
+            entry = new byte[entrySize];
+
+            // no add rate limit, to measure the client itself
+            ClientConfiguration conf = new ClientConfiguration()
+                .setThrottleValue(0)
+                .setSingleWriterAddSequencingEnabled(singleWriterAddSequencing);
+            ClientContext clientCtx = new MockClientContext(ClientInternalConf.fromConfig(conf),
+                    new AckingBookieClient(mainWorkerPool), mainWorkerPool, scheduler);
+
+            List<BookieId> ensemble = Lists.newArrayList(
+                    BookieId.parse("127.0.0.1:3181"),
+                    BookieId.parse("127.0.0.2:3181"),
+                    BookieId.parse("127.0.0.3:3181"));
+            LedgerMetadata metadata = LedgerMetadataBuilder.create()
+                .withId(1L)
+                .withEnsembleSize(3).withWriteQuorumSize(3).withAckQuorumSize(2)
+                .withPassword(PASSWORD).withDigestType(DigestType.CRC32C)
+                .newEnsembleEntry(0L, ensemble)
+                .build();
+            lh = new LedgerHandle(clientCtx, 1L, new Versioned<>(metadata, new LongVersion(0L)),
+                    BookKeeper.DigestType.CRC32C, PASSWORD, EnumSet.noneOf(WriteFlag.class));
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            writerExecutor.shutdownNow();
+            mainWorkerPool.shutdown();
+            scheduler.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void concurrentSyncAdds(TestState s) throws Exception {
+        CountDownLatch done = new CountDownLatch(s.writers);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        for (int i = 0; i < s.writers; i++) {
+            s.writerExecutor.execute(() -> {
+                try {
+                    for (int j = 0; j < s.addsPerWriter; j++) {
+                        s.lh.addEntry(s.entry);
+                    }
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+}
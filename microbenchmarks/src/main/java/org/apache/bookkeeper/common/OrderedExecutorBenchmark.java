@@ -26,10 +26,15 @@ import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
 import org.apache.bookkeeper.common.util.OrderedScheduler;
+import org.apache.bookkeeper.common.util.WorkStealingOrderedExecutor;
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
 import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
 import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
@@ -38,9 +43,14 @@ import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
 
 /**
  * Microbenchmarks for different executors providers.
+ *
+ * <p>In the {@code skewed} group, some threads keep the thread of a hot key busy with slow ordered
+ * tasks, while the other threads submit short unordered tasks, to measure how long the unordered
+ * tasks wait behind the hot key.
  */
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
 @Threads(16)
@@ -52,14 +62,24 @@ public class OrderedExecutorBenchmark {
     private static Map<String, Supplier<ExecutorService>> providers = ImmutableMap.of(
             "JDK-ThreadPool", () -> Executors.newFixedThreadPool(1),
             "OrderedExecutor", () -> OrderedExecutor.newBuilder().numThreads(1).build(),
-            "OrderedScheduler", () -> OrderedScheduler.newSchedulerBuilder().numThreads(1).build());
+            "OrderedScheduler", () -> OrderedScheduler.newSchedulerBuilder().numThreads(1).build(),
+            "WorkStealingOrderedExecutor", () -> WorkStealingOrderedExecutor.newWorkStealingBuilder().numThreads(1)
+                    .build());
+
+    private static Map<String, Supplier<OrderedExecutor>> orderedProviders = ImmutableMap.of(
+            "OrderedExecutor", () -> OrderedExecutor.newBuilder().numThreads(4).build(),
+            "WorkStealingOrderedExecutor", () -> WorkStealingOrderedExecutor.newWorkStealingBuilder().numThreads(4)
+                    .build());
+
+    private static final long HOT_KEY = 0L;
+    private static final long UNORDERED_TASK_TOKENS = 1000L;
 
     /**
      * State holder of the test.
     */
     @State(Scope.Benchmark)
     public static class TestState {
-        @Param({"JDK-ThreadPool", "OrderedExecutor", "OrderedScheduler"})
+        @Param({"JDK-ThreadPool", "OrderedExecutor", "OrderedScheduler", "WorkStealingOrderedExecutor"})
         private String executorName;
 
         private ExecutorService executor;
@@ -75,9 +95,51 @@ public class OrderedExecutorBenchmark {
         }
     }
 
+    /**
+     * State holder of the skewed test.
+     */
+    @State(Scope.Group)
+    public static class SkewedState {
+        @Param({"OrderedExecutor", "WorkStealingOrderedExecutor"})
+        private String executorName;
+
+        @Param({"100000"})
+        private long hotTaskTokens;
+
+        private OrderedExecutor executor;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            executor = orderedProviders.get(executorName).get();
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            executor.shutdown();
+        }
+    }
+
     @Benchmark
     public void submitAndWait(TestState s) throws Exception {
         s.executor.submit(() -> {
         }).get();
     }
+
+    @Benchmark
+    @Group("skewed")
+    @GroupThreads(4)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void submitHotKeyAndWait(SkewedState s) throws Exception {
+        s.executor.chooseThread(HOT_KEY).submit(() -> Blackhole.consumeCPU(s.hotTaskTokens)).get();
+    }
+
+    @Benchmark
+    @Group("skewed")
+    @GroupThreads(4)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void submitUnorderedAndWait(SkewedState s) throws Exception {
+        s.executor.submit(() -> Blackhole.consumeCPU(UNORDERED_TASK_TOKENS)).get();
+    }
 }
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.bookkeeper.meta;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.LedgerMetadataBuilder;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.net.BookieId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks of serializing and parsing ledger metadata with many ensembles,
+ * in the different binary format versions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class LedgerMetadataSerDeBenchmark {
+
+    /**
+     * State holder of the test.
+     */
+    @State(Scope.Thread)
+    public static class TestState {
+        @Param({"3", "4"})
+        private int formatVersion;
+
+        @Param({"1", "100", "1000"})
+        private int numEnsembles;
+
+        @Param({"20"})
+        private int numBookies;
+
+        private final LedgerMetadataSerDe serDe = new LedgerMetadataSerDe();
+        private LedgerMetadata metadata;
+        private byte[] serialized;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            List<BookieId> bookies = new ArrayList<>();
+            for (int i = 0; i < numBookies; i++) {
+                bookies.add(BookieId.parse("bookie-" + i + ".example.com:3181"));
+            }
+            LedgerMetadataBuilder builder = LedgerMetadataBuilder.create()
+                .withId(1L)
+                .withMetadataFormatVersion(formatVersion)
+                .withEnsembleSize(3).withWriteQuorumSize(3).withAckQuorumSize(2)
+                .withPassword(new byte[0]).withDigestType(DigestType.CRC32C);
+            // every ensemble change replaces one bookie, like after bookie failures
+            List<BookieId> ensemble = new ArrayList<>(bookies.subList(0, 3));
+            for (int i = 0; i < numEnsembles; i++) {
+                ensemble.set(i % 3, bookies.get((i + 3) % numBookies));
+                builder.newEnsembleEntry(i * 1000L, new ArrayList<>(ensemble));
+            }
+            metadata = builder.withClosedState().withLastEntryId(numEnsembles * 1000L).withLength(1L).build();
+            serialized = serDe.serialize(metadata);
+        }
+    }
+
+    @Benchmark
+    public byte[] serialize(TestState s) throws Exception {
+        return s.serDe.serialize(s.metadata);
+    }
+
+    @Benchmark
+    public LedgerMetadata parse(TestState s) throws Exception {
+        return s.serDe.parseConfig(s.serialized, 1L, Optional.empty());
+    }
+
+    @Benchmark
+    public long parseAndGetLastEnsemble(TestState s) throws Exception {
+        LedgerMetadata parsed = s.serDe.parseConfig(s.serialized, 1L, Optional.empty());
+        return parsed.getAllEnsembles().lastKey();
+    }
+
+    @Benchmark
+    public boolean parseAndCheckClosed(TestState s) throws Exception {
+        return s.serDe.parseConfig(s.serialized, 1L, Optional.empty()).isClosed();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.bookkeeper.util;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import org.apache.bookkeeper.client.RoundRobinDistributionSchedule;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks of the replicas check of the auditor for a ledger on one bookie, with and
+ * without the V1 encoding of {@link AvailabilityOfEntriesOfLedger}: encoding the entries of the
+ * bookie, parsing them and finding the entries missing on the bookie. The size of the encoded
+ * entries, sent over the network, is reported as the {@code serializedBytes} counter.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class AvailabilityOfEntriesOfLedgerBenchmark {
+
+    /**
+     * State holder of the test.
+     */
+    @State(Scope.Thread)
+    public static class TestState {
+        @Param({"0", "1"})
+        private int headerVersion;
+
+        // contiguous: ensemble size == write quorum size, striped: 5 bookies with a write quorum
+        // of 3, holes: striped with 0.1% of the entries lost
+        @Param({"contiguous", "striped", "holes"})
+        private String pattern;
+
+        @Param({"1000000"})
+        private int numEntries;
+
+        private AvailabilityOfEntriesOfLedger entriesOfBookie;
+        private byte[] serialized;
+        private BitSet expectedEntries;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            int ensembleSize = "contiguous".equals(pattern) ? 3 : 5;
+            RoundRobinDistributionSchedule schedule = new RoundRobinDistributionSchedule(3, 2, ensembleSize);
+            expectedEntries = schedule.getEntriesStripedToTheBookie(0, 0, numEntries - 1);
+            Random random = new Random(1234);
+            long[] entries = LongStream.range(0, numEntries)
+                .filter(entryId -> expectedEntries.get((int) entryId))
+                .filter(entryId -> !"holes".equals(pattern) || random.nextInt(1000) != 0)
+                .toArray();
+            entriesOfBookie = new AvailabilityOfEntriesOfLedger(entries);
+            serialized = entriesOfBookie.serializeStateOfEntriesOfLedger(headerVersion);
+        }
+    }
+
+    /**
+     * Reports the size of the encoded entries of the bookie.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class SizeCounter {
+        public long serializedBytes;
+    }
+
+    @Benchmark
+    public byte[] serialize(TestState s, SizeCounter counter) {
+        byte[] serialized = s.entriesOfBookie.serializeStateOfEntriesOfLedger(s.headerVersion);
+        counter.serializedBytes = serialized.length;
+        return serialized;
+    }
+
+    @Benchmark
+    public AvailabilityOfEntriesOfLedger parse(TestState s) {
+        return new AvailabilityOfEntriesOfLedger(s.serialized);
+    }
+
+    @Benchmark
+    public List<Long> parseAndGetUnavailableEntries(TestState s) {
+        AvailabilityOfEntriesOfLedger parsed = new AvailabilityOfEntriesOfLedger(s.serialized);
+        return parsed.getUnavailableEntries(0, s.numEntries - 1, s.expectedEntries);
+    }
+}